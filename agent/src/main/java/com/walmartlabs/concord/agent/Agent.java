@@ -30,6 +30,7 @@ import com.walmartlabs.concord.agent.executors.runner.*;
 import com.walmartlabs.concord.agent.executors.runner.DockerRunnerJobExecutor.DockerRunnerJobExecutorConfiguration;
 import com.walmartlabs.concord.agent.executors.runner.RunnerJobExecutor.RunnerJobExecutorConfiguration;
 import com.walmartlabs.concord.agent.logging.LogAppender;
+import com.walmartlabs.concord.agent.logging.LogShipper;
 import com.walmartlabs.concord.agent.logging.ProcessLogFactory;
 import com.walmartlabs.concord.agent.postprocessing.JobFileUploadPostProcessor;
 import com.walmartlabs.concord.agent.postprocessing.JobPostProcessor;
@@ -71,6 +72,7 @@ public class Agent {
     private final ProcessLogFactory processLogFactory;
     private final ExecutorService executor;
     private final WorkerFactory workerFactory;
+    private final StateCache stateCache;
 
     private final Map<UUID, Worker> activeWorkers = new ConcurrentHashMap<>();
     private final AtomicBoolean maintenanceMode = new AtomicBoolean(false);
@@ -84,10 +86,16 @@ public class Agent {
         SecretClient secretClient = new SecretClient(apiClient);
         RepositoryManager repositoryManager = new RepositoryManager(cfg, secretClient);
 
-        this.processLogFactory = new ProcessLogFactory(cfg.getLogDir(), cfg.getLogMaxDelay(), createLogAppender(processApi));
-
         this.executor = Executors.newCachedThreadPool();
 
+        LogAppender logAppender = createLogAppender(processApi);
+        LogShipper logShipper = new LogShipper(cfg.getLogDir(), logAppender,
+                cfg.getLogMaxDelay(), cfg.getLogShipperLinger(), cfg.getLogShipperMaxBatchSize(),
+                cfg.getLogShipperMaxRatePerProcess(), cfg.getLogShipperMaxSizePerProcess());
+        logShipper.start(executor);
+
+        this.processLogFactory = new ProcessLogFactory(cfg.getLogDir(), logShipper, logAppender);
+
         ProcessPool processPool = new ProcessPool(cfg.getMaxPreforkAge(), cfg.getMaxPreforkCount());
         DependencyManager dependencyManager = new DependencyManager(cfg.getDependencyCacheDir());
         ImportManagerProvider imp = new ImportManagerProvider(repositoryManager, dependencyManager);
@@ -96,6 +104,8 @@ public class Agent {
         Map<JobRequest.Type, JobExecutor> executors = Collections.singletonMap(JobRequest.Type.RUNNER, runnerExec);
 
         this.workerFactory = new WorkerFactory(repositoryManager, imp.get(), executors);
+
+        this.stateCache = cfg.isStateCacheEnabled() ? new StateCache(cfg.getStateCacheDir(), cfg.getStateCacheMaxSize()) : null;
     }
 
     public void run() throws Exception {
@@ -234,7 +244,7 @@ public class Agent {
     }
 
     private StateFetcher createStateFetcher() {
-        return new RemoteStateFetcher(processApi, API_CALL_MAX_RETRIES, API_CALL_RETRY_DELAY);
+        return new RemoteStateFetcher(processApi, stateCache, API_CALL_MAX_RETRIES, API_CALL_RETRY_DELAY);
     }
 
     private JobRequest take(QueueClient queueClient) throws Exception {
@@ -271,17 +281,46 @@ public class Agent {
     }
 
     private LogAppender createLogAppender(ProcessApi processApi) {
-        return (instanceId, ab) -> {
-            String path = "/api/v1/process/" + instanceId + "/log";
+        return new LogAppender() {
+            @Override
+            public void appendLog(UUID instanceId, byte[] ab) {
+                String path = "/api/v1/process/" + instanceId + "/log";
 
-            try {
-                ClientUtils.withRetry(API_CALL_MAX_RETRIES, API_CALL_RETRY_DELAY, () -> {
-                    ClientUtils.postData(processApi.getApiClient(), path, ab);
-                    return null;
-                });
-            } catch (ApiException e) {
-                // TODO handle errors
-                log.warn("appendLog ['{}'] -> error: {}", instanceId, e.getMessage());
+                try {
+                    ClientUtils.withRetry(API_CALL_MAX_RETRIES, API_CALL_RETRY_DELAY, () -> {
+                        ClientUtils.postData(processApi.getApiClient(), path, ab);
+                        return null;
+                    });
+                } catch (ApiException e) {
+                    // TODO handle errors
+                    log.warn("appendLog ['{}'] -> error: {}", instanceId, e.getMessage());
+                }
+            }
+
+            @Override
+            public boolean appendLogBatch(byte[] batch) throws IOException {
+                String path = "/api/v1/process/logs/batch";
+
+                try {
+                    ClientUtils.withRetry(API_CALL_MAX_RETRIES, API_CALL_RETRY_DELAY, () -> {
+                        ClientUtils.postData(processApi.getApiClient(), path, batch);
+                        return null;
+                    });
+                } catch (ApiException e) {
+                    if (e.getCode() == 404 || e.getCode() == 405) {
+                        return false;
+                    }
+
+                    // the server won't accept this batch no matter how many times we send it
+                    if (e.getCode() == 400 || e.getCode() == 413) {
+                        log.warn("appendLogBatch -> the batch was rejected, skipping: {}", e.getMessage());
+                        return true;
+                    }
+
+                    throw new IOException("Error while sending a log batch: " + e.getMessage(), e);
+                }
+
+                return true;
             }
         };
     }
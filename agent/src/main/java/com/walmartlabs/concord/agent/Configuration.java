@@ -47,6 +47,10 @@ public class Configuration {
 
     private final Path logDir;
     private final long logMaxDelay;
+    private final long logShipperLinger;
+    private final int logShipperMaxBatchSize;
+    private final long logShipperMaxRatePerProcess;
+    private final long logShipperMaxSizePerProcess;
 
     private final int workersCount;
     private final Path javaPath;
@@ -75,6 +79,10 @@ public class Configuration {
     private final Path repositoryCacheDir;
     private final long repositoryLockTimeout;
 
+    private final boolean stateCacheEnabled;
+    private final Path stateCacheDir;
+    private final long stateCacheMaxSize;
+
     private final String repositoryOauthToken;
     private final boolean shallowClone;
     private final int repositoryHttpLowSpeedLimit;
@@ -104,6 +112,10 @@ public class Configuration {
 
         this.logDir = getDir(cfg, "logDir");
         this.logMaxDelay = cfg.getDuration("logMaxDelay", TimeUnit.MILLISECONDS);
+        this.logShipperLinger = cfg.getDuration("logShipper.linger", TimeUnit.MILLISECONDS);
+        this.logShipperMaxBatchSize = cfg.getBytes("logShipper.maxBatchSize").intValue();
+        this.logShipperMaxRatePerProcess = cfg.getBytes("logShipper.maxRatePerProcess");
+        this.logShipperMaxSizePerProcess = cfg.getBytes("logShipper.maxSizePerProcess");
 
         this.workersCount = cfg.getInt("workersCount");
 
@@ -145,6 +157,10 @@ public class Configuration {
         this.repositoryCacheDir = getDir(cfg, "repositoryCache.cacheDir");
         this.repositoryLockTimeout = cfg.getDuration("repositoryCache.lockTimeout", TimeUnit.MILLISECONDS);
 
+        this.stateCacheEnabled = cfg.getBoolean("stateCache.enabled");
+        this.stateCacheDir = getDir(cfg, "stateCache.cacheDir");
+        this.stateCacheMaxSize = cfg.getBytes("stateCache.maxSize");
+
         this.repositoryOauthToken = getStringOrDefault(cfg, "git.oauth", () -> null);
         this.shallowClone = cfg.getBoolean("git.shallowClone");
         this.repositoryHttpLowSpeedLimit = cfg.getInt("git.httpLowSpeedLimit");
@@ -187,6 +203,22 @@ public class Configuration {
         return logMaxDelay;
     }
 
+    public long getLogShipperLinger() {
+        return logShipperLinger;
+    }
+
+    public int getLogShipperMaxBatchSize() {
+        return logShipperMaxBatchSize;
+    }
+
+    public long getLogShipperMaxRatePerProcess() {
+        return logShipperMaxRatePerProcess;
+    }
+
+    public long getLogShipperMaxSizePerProcess() {
+        return logShipperMaxSizePerProcess;
+    }
+
     public Path getPayloadDir() {
         return payloadDir;
     }
@@ -303,6 +335,18 @@ public class Configuration {
         return repositoryCacheDir;
     }
 
+    public boolean isStateCacheEnabled() {
+        return stateCacheEnabled;
+    }
+
+    public Path getStateCacheDir() {
+        return stateCacheDir;
+    }
+
+    public long getStateCacheMaxSize() {
+        return stateCacheMaxSize;
+    }
+
     public int getRepositorySshTimeout() {
         return repositorySshTimeout;
     }
@@ -333,6 +377,10 @@ public class Configuration {
                 ", payloadDir=" + payloadDir +
                 ", logDir=" + logDir +
                 ", logMaxDelay=" + logMaxDelay +
+                ", logShipperLinger=" + logShipperLinger +
+                ", logShipperMaxBatchSize=" + logShipperMaxBatchSize +
+                ", logShipperMaxRatePerProcess=" + logShipperMaxRatePerProcess +
+                ", logShipperMaxSizePerProcess=" + logShipperMaxSizePerProcess +
                 ", workersCount=" + workersCount +
                 ", javaPath=" + javaPath +
                 ", pollInterval=" + pollInterval +
@@ -353,6 +401,9 @@ public class Configuration {
                 ", extraDockerVolumes=" + extraDockerVolumes +
                 ", repositoryCacheDir=" + repositoryCacheDir +
                 ", repositoryLockTimeout=" + repositoryLockTimeout +
+                ", stateCacheEnabled=" + stateCacheEnabled +
+                ", stateCacheDir=" + stateCacheDir +
+                ", stateCacheMaxSize=" + stateCacheMaxSize +
                 ", repositoryOauthToken='" + repositoryOauthToken + '\'' +
                 ", shallowClone=" + shallowClone +
                 ", repositoryHttpLowSpeedLimit=" + repositoryHttpLowSpeedLimit +
@@ -20,36 +20,127 @@ package com.walmartlabs.concord.agent;
  * =====
  */
 
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.client.ProcessApi;
+import com.walmartlabs.concord.client.ProcessStateFileEntry;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.Posix;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Downloads the process state. If the state cache is enabled, only
+ * the files missing in the cache are downloaded.
+ */
 public class RemoteStateFetcher implements Worker.StateFetcher {
 
     private static final Logger log = LoggerFactory.getLogger(RemoteStateFetcher.class);
 
     private final ProcessApi processApi;
+    private final StateCache cache;
     private final int maxRetries;
     private final long retryDelay;
 
-    public RemoteStateFetcher(ProcessApi processApi, int maxRetries, long retryDelay) {
+    public RemoteStateFetcher(ProcessApi processApi, StateCache cache, int maxRetries, long retryDelay) {
         this.processApi = processApi;
+        this.cache = cache;
         this.maxRetries = maxRetries;
         this.retryDelay = retryDelay;
     }
 
     @Override
     public void downloadState(JobRequest job) throws Exception {
+        List<ProcessStateFileEntry> manifest = cache != null ? getManifest(job) : null;
+        if (manifest == null) {
+            long downloaded = downloadAll(job);
+            job.getLog().info("State download: {} bytes", downloaded);
+            return;
+        }
+
+        Path dst = job.getPayloadDir();
+
+        long bytesTotal = 0;
+        long bytesCached = 0;
+        int filesCached = 0;
+        List<ProcessStateFileEntry> missing = new ArrayList<>();
+
+        for (ProcessStateFileEntry e : manifest) {
+            long size = e.getSize() != null ? e.getSize() : 0;
+            bytesTotal += size;
+
+            Path p = resolve(dst, e.getPath());
+            if (e.getHash() != null && cache.copyTo(e.getHash(), p)) {
+                setUnixMode(p, e.getUnixMode());
+                bytesCached += size;
+                filesCached++;
+            } else {
+                missing.add(e);
+            }
+        }
+
+        long bytesDownloaded = 0;
+        if (!missing.isEmpty()) {
+            bytesDownloaded = download(job, missing);
+
+            for (ProcessStateFileEntry e : missing) {
+                Path p = resolve(dst, e.getPath());
+                if (e.getHash() != null && Files.exists(p)) {
+                    cache.put(e.getHash(), p);
+                }
+            }
+        }
+
+        int hitRatio = manifest.isEmpty() ? 100 : filesCached * 100 / manifest.size();
+        job.getLog().info("State download: {} file(s), {} bytes total, {} bytes downloaded, {} bytes cached, cache hit ratio {}%",
+                manifest.size(), bytesTotal, bytesDownloaded, bytesCached, hitRatio);
+    }
+
+    private List<ProcessStateFileEntry> getManifest(JobRequest job) throws ApiException {
+        try {
+            return ClientUtils.withRetry(maxRetries, retryDelay, () -> processApi.getStateManifest(job.getInstanceId()));
+        } catch (ApiException e) {
+            if (e.getCode() == 404 || e.getCode() == 405) {
+                // older servers
+                log.warn("getManifest ['{}'] -> not supported by the server, falling back to the full download", job.getInstanceId());
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private long downloadAll(JobRequest job) throws Exception {
         File payload = null;
         try {
             payload = ClientUtils.withRetry(maxRetries, retryDelay, () -> processApi.downloadState(job.getInstanceId()));
             IOUtils.unzip(payload.toPath(), job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
+            return payload.length();
+        } finally {
+            if (payload != null) {
+                delete(payload.toPath());
+            }
+        }
+    }
+
+    private long download(JobRequest job, List<ProcessStateFileEntry> entries) throws Exception {
+        List<String> paths = new ArrayList<>(entries.size());
+        for (ProcessStateFileEntry e : entries) {
+            paths.add(e.getPath());
+        }
+
+        File payload = null;
+        try {
+            payload = ClientUtils.withRetry(maxRetries, retryDelay, () -> processApi.downloadStateFiles(job.getInstanceId(), paths));
+            IOUtils.unzip(payload.toPath(), job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
+            return payload.length();
         } finally {
             if (payload != null) {
                 delete(payload.toPath());
@@ -57,6 +148,18 @@ public class RemoteStateFetcher implements Worker.StateFetcher {
         }
     }
 
+    private static Path resolve(Path dir, String path) {
+        Path p = dir.resolve(path).normalize();
+        if (!p.startsWith(dir)) {
+            throw new IllegalStateException("Invalid state file path: " + path);
+        }
+        return p;
+    }
+
+    private static void setUnixMode(Path p, Integer unixMode) throws IOException {
+        int mode = unixMode != null && unixMode > 0 ? unixMode : Posix.DEFAULT_UNIX_MODE;
+        Files.setPosixFilePermissions(p, Posix.posix(mode));
+    }
     private static void delete(Path dir) {
         if (dir == null) {
             return;
@@ -0,0 +1,219 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Local cache of the process state files. The files are addressed by
+ * the SHA-256 hash of their content, so the same files (e.g. repository
+ * content, templates, dependencies) are shared between processes.
+ * <p>
+ * The least recently used files are removed when the total size
+ * of the cache exceeds the configured limit.
+ */
+public class StateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(StateCache.class);
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path cacheDir;
+    private final long maxSize;
+    private final AtomicLong size;
+
+    public StateCache(Path cacheDir, long maxSize) throws IOException {
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+        this.size = new AtomicLong(init(cacheDir));
+    }
+
+    /**
+     * Copies the cached file into the specified location.
+     *
+     * @return {@code false} if the cache doesn't contain the file
+     */
+    public boolean copyTo(String hash, Path dst) throws IOException {
+        if (!isValid(hash)) {
+            return false;
+        }
+
+        Path src = path(hash);
+
+        try {
+            Path parent = dst.getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+
+            Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING);
+
+            // used to find the least recently used files
+            Files.setLastModifiedTime(src, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // not cached or was removed by a concurrent cleanup
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds a copy of the specified file to the cache. The file is ignored
+     * if its content doesn't match the specified hash.
+     *
+     * @return {@code true} if the file was added
+     */
+    public boolean put(String hash, Path src) throws IOException {
+        if (!isValid(hash)) {
+            return false;
+        }
+
+        Path dst = path(hash);
+        if (Files.exists(dst)) {
+            return false;
+        }
+
+        String actual = MoreFiles.asByteSource(src).hash(Hashing.sha256()).toString();
+        if (!hash.equals(actual)) {
+            log.warn("put ['{}', '{}'] -> hash mismatch: {}, skipping", hash, src, actual);
+            return false;
+        }
+
+        Files.createDirectories(dst.getParent());
+
+        // copy first and then move to make the file visible only when it is complete
+        Path tmp = Files.createTempFile(dst.getParent(), hash, TMP_SUFFIX);
+        try {
+            Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, dst, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        if (size.addAndGet(Files.size(dst)) > maxSize) {
+            cleanup();
+        }
+
+        return true;
+    }
+
+    private synchronized void cleanup() throws IOException {
+        if (size.get() <= maxSize) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            files.filter(p -> isValid(p.getFileName().toString()))
+                    .forEach(p -> {
+                        try {
+                            BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                            entries.add(new Entry(p, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                        } catch (NoSuchFileException e) {
+                            // ignore
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        }
+
+        long total = entries.stream().mapToLong(e -> e.size).sum();
+        long removed = 0;
+
+        entries.sort(Comparator.comparingLong(e -> e.lastModified));
+        for (Entry e : entries) {
+            if (total <= maxSize) {
+                break;
+            }
+
+            Files.deleteIfExists(e.path);
+            total -= e.size;
+            removed++;
+        }
+
+        size.set(total);
+
+        log.info("cleanup -> removed {} file(s), current size: {} bytes", removed, total);
+    }
+
+    private Path path(String hash) {
+        return cacheDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static long init(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            Files.createDirectories(dir);
+            return 0;
+        }
+
+        long result = 0;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(p)) {
+                    continue;
+                }
+
+                if (p.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    // leftovers of an unclean shutdown
+                    Files.deleteIfExists(p);
+                    continue;
+                }
+
+                result += Files.size(p);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isValid(String hash) {
+        return hash != null && HASH_PATTERN.matcher(hash).matches();
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
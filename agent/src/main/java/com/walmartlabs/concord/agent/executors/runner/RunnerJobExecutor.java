@@ -54,7 +54,6 @@ import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -149,8 +148,8 @@ public class RunnerJobExecutor {
         UUID instanceId = job.getInstanceId();
         ProcessLog processLog = job.getLog();
 
-        // start the log's maintenance thread (e.g. streaming to the server)
-        LogStream logStream = new LogStream(job, proc);
+        // start sending the log to the server
+        LogStream logStream = new LogStream(job);
         logStream.start();
 
         try {
@@ -447,47 +446,35 @@ public class RunnerJobExecutor {
     /**
      * A tiny wrapper to simplify working with the log streaming.
      */
-    private class LogStream {
+    private static class LogStream {
 
         private final RunnerJob job;
-        private final Process proc;
-
-        private Future<?> f;
-        private transient boolean doStop = false;
 
-        private LogStream(RunnerJob job, Process proc) {
+        private LogStream(RunnerJob job) {
             this.job = job;
-            this.proc = proc;
         }
 
         /**
-         * Starts the log streaming in a separate thread.
+         * Starts the log streaming.
          */
         public void start() {
-            RedirectedProcessLog processLog = job.getLog();
-
-            f = executor.submit(() -> {
-                try {
-                    processLog.run(() -> doStop);
-                } catch (Exception e) {
-                    handleError(job, proc, e.getMessage());
-                }
-            });
+            job.getLog().start();
         }
 
         /**
          * Waits for the log stream to finish and removes the log file.
          */
         public void waitForCompletion() {
-            this.doStop = true;
+            RedirectedProcessLog processLog = job.getLog();
 
             try {
-                f.get(1, TimeUnit.MINUTES);
+                processLog.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             } catch (Exception e) {
                 log.warn("waitForCompletion -> timeout waiting for the log stream of {}", job.getInstanceId());
             }
 
-            ProcessLog processLog = job.getLog();
             processLog.delete();
         }
     }
@@ -20,9 +20,19 @@ package com.walmartlabs.concord.agent.logging;
  * =====
  */
 
+import java.io.IOException;
 import java.util.UUID;
 
 public interface LogAppender {
 
     void appendLog(UUID instanceId, byte[] ab);
+
+    /**
+     * Sends the log data of multiple processes.
+     *
+     * @param batch compressed data, see {@link com.walmartlabs.concord.common.ProcessLogBatch}
+     * @return {@code false} if the server doesn't support batches
+     * @throws IOException if the batch wasn't sent, the caller should send the same data again
+     */
+    boolean appendLogBatch(byte[] batch) throws IOException;
 }
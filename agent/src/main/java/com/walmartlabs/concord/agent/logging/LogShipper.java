@@ -0,0 +1,500 @@
+package com.walmartlabs.concord.agent.logging;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.LogUtils;
+import com.walmartlabs.concord.common.ProcessLogBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Sends the logs of all processes running on the agent to the server.
+ * <p>
+ * The log files are watched for changes, the new data is sent as soon as
+ * it appears. The data of multiple processes is combined into compressed
+ * batches (see {@link ProcessLogBatch}), so a chatty process doesn't
+ * produce a request per chunk. The amount of data sent for a single process
+ * is limited by {@code maxRatePerProcess} (bytes per second) and
+ * {@code maxSizePerProcess} (total bytes).
+ */
+public class LogShipper {
+
+    private static final Logger log = LoggerFactory.getLogger(LogShipper.class);
+
+    private static final String LOG_FILE_SUFFIX = ".log";
+    private static final long STATS_INTERVAL = 60000;
+
+    private final Path logDir;
+    private final LogAppender appender;
+    private final long maxDelay;
+    private final long linger;
+    private final int maxBatchSize;
+    private final long maxRatePerProcess;
+    private final long maxSizePerProcess;
+
+    private final Map<UUID, Source> sources = new ConcurrentHashMap<>();
+    private final Object mutex = new Object();
+    private boolean signaled = false;
+
+    private volatile boolean batchesSupported = true;
+
+    private final Stats stats = new Stats();
+
+    /**
+     * @param logDir            directory with the process log files
+     * @param appender          used to send the data
+     * @param maxDelay          maximum delay between checks of the log files, used when
+     *                          the file change notifications are not available
+     * @param linger            minimum delay between batches
+     * @param maxBatchSize      maximum size of a batch, uncompressed
+     * @param maxRatePerProcess maximum number of bytes per second sent for a single process, 0 - unlimited
+     * @param maxSizePerProcess maximum number of bytes sent for a single process, 0 - unlimited
+     */
+    public LogShipper(Path logDir, LogAppender appender,
+                      long maxDelay, long linger, int maxBatchSize,
+                      long maxRatePerProcess, long maxSizePerProcess) {
+
+        this.logDir = logDir;
+        this.appender = appender;
+        this.maxDelay = maxDelay;
+        this.linger = linger;
+        this.maxBatchSize = maxBatchSize;
+        this.maxRatePerProcess = maxRatePerProcess;
+        this.maxSizePerProcess = maxSizePerProcess;
+    }
+
+    public void start(ExecutorService executor) {
+        executor.submit(this::watch);
+        executor.submit(this::run);
+    }
+
+    /**
+     * Starts sending the specified log file. The file doesn't have to exist yet.
+     */
+    public void register(UUID instanceId, Path logFile) {
+        sources.computeIfAbsent(instanceId, id -> new Source(id, logFile));
+        signal();
+    }
+
+    /**
+     * Sends the remaining data of the specified log and stops watching it.
+     * Blocks until all data is sent or the timeout is reached.
+     */
+    public void complete(UUID instanceId, long timeout) throws InterruptedException, TimeoutException {
+        Source s = sources.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        s.completed = true;
+        signal();
+
+        try {
+            s.done.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void signal() {
+        synchronized (mutex) {
+            signaled = true;
+            mutex.notifyAll();
+        }
+    }
+
+    private void onChange(UUID instanceId) {
+        Source s = sources.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        s.markPending();
+        signal();
+    }
+
+    private void await(long timeout) throws InterruptedException {
+        synchronized (mutex) {
+            if (!signaled) {
+                mutex.wait(timeout);
+            }
+            signaled = false;
+        }
+    }
+
+    private void watch() {
+        try (WatchService ws = logDir.getFileSystem().newWatchService()) {
+            logDir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey k = ws.take();
+
+                for (WatchEvent<?> e : k.pollEvents()) {
+                    if (e.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        sources.keySet().forEach(this::onChange);
+                        continue;
+                    }
+
+                    UUID instanceId = parseInstanceId((Path) e.context());
+                    if (instanceId != null) {
+                        onChange(instanceId);
+                    }
+                }
+
+                if (!k.reset()) {
+                    log.warn("watch -> the log directory is no longer accessible: {}", logDir);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("watch -> file change notifications are not available, checking the logs every {}ms: {}", maxDelay, e.getMessage());
+        }
+    }
+
+    private void run() {
+        long lastBatchAt = 0;
+        boolean backlog = false;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // wait for changes. If some of the logs were throttled, check again sooner
+                await(backlog ? linger : maxDelay);
+
+                // give the processes a chance to write more data, so we send fewer but larger batches
+                long t = lastBatchAt + linger - System.currentTimeMillis();
+                if (t > 0 && !hasCompleted()) {
+                    Thread.sleep(t);
+                }
+
+                backlog = ship();
+                lastBatchAt = System.currentTimeMillis();
+
+                stats.report(sources.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("run -> error while sending the logs", e);
+            }
+        }
+    }
+
+    /**
+     * Sends all available data.
+     *
+     * @return {@code true} if some data wasn't sent due to the rate limits
+     */
+    private boolean ship() throws IOException {
+        boolean backlog = false;
+
+        while (true) {
+            backlog = false;
+
+            int size;
+            List<Source> batched = new ArrayList<>();
+            try (ProcessLogBatch.Writer w = new ProcessLogBatch.Writer()) {
+                for (Source s : sources.values()) {
+                    int capacity = maxBatchSize - w.rawSize();
+                    if (capacity <= 0) {
+                        break;
+                    }
+
+                    s.mark();
+                    batched.add(s);
+
+                    backlog |= read(s, w, capacity);
+                }
+
+                size = w.rawSize();
+                if (size > 0) {
+                    send(w.toByteArray(), size);
+                }
+            } catch (IOException | RuntimeException e) {
+                // the data wasn't sent, read it again on the next attempt
+                batched.forEach(Source::reset);
+                throw e;
+            }
+
+            if (size < maxBatchSize) {
+                break;
+            }
+        }
+
+        // stop watching the completed logs with no remaining data
+        Iterator<Source> it = sources.values().iterator();
+        while (it.hasNext()) {
+            Source s = it.next();
+            if (s.completed && s.offset >= s.size()) {
+                it.remove();
+                s.close();
+                s.done.complete(null);
+            }
+        }
+
+        return backlog;
+    }
+
+    /**
+     * Reads the new data of a log into the batch.
+     *
+     * @return {@code true} if some data wasn't read due to the rate limit
+     */
+    private boolean read(Source s, ProcessLogBatch.Writer w, int capacity) throws IOException {
+        long size = s.size();
+        long available = size - s.offset;
+        if (available <= 0) {
+            s.pendingSince = 0;
+            return false;
+        }
+
+        s.markPending();
+
+        if (maxSizePerProcess > 0 && s.offset >= maxSizePerProcess) {
+            if (!s.truncated) {
+                byte[] ab = LogUtils.formatMessage(LogUtils.LogLevel.WARN, "Log size limit exceeded ({} bytes), the rest of the log is skipped", maxSizePerProcess).getBytes();
+                w.write(s.instanceId, ab, 0, ab.length);
+                s.truncated = true;
+            }
+            s.offset = size;
+            s.pendingSince = 0;
+            return false;
+        }
+
+        long n = Math.min(available, capacity);
+        if (maxSizePerProcess > 0) {
+            n = Math.min(n, maxSizePerProcess - s.offset);
+        }
+
+        // the completed processes are not throttled, the remaining data should be sent ASAP
+        boolean throttled = false;
+        if (maxRatePerProcess > 0 && !s.completed) {
+            long allowed = s.acquire(n, maxRatePerProcess);
+            throttled = allowed < n;
+            n = allowed;
+        }
+
+        if (n <= 0) {
+            return throttled;
+        }
+
+        byte[] ab = new byte[(int) n];
+        int len = s.read(ab);
+        if (len <= 0) {
+            return throttled;
+        }
+
+        w.write(s.instanceId, ab, 0, len);
+        s.offset += len;
+
+        stats.onRead(System.currentTimeMillis() - s.pendingSince);
+
+        if (s.offset >= size) {
+            s.pendingSince = 0;
+        }
+
+        return throttled;
+    }
+
+    private void send(byte[] batch, int rawSize) throws IOException {
+        stats.onBatch(rawSize, batch.length);
+
+        if (batchesSupported) {
+            if (appender.appendLogBatch(batch)) {
+                return;
+            }
+
+            log.warn("send -> the server doesn't support log batches, switching to individual requests");
+            batchesSupported = false;
+        }
+
+        ProcessLogBatch.read(new ByteArrayInputStream(batch), appender::appendLog);
+    }
+
+    private boolean hasCompleted() {
+        for (Source s : sources.values()) {
+            if (s.completed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static UUID parseInstanceId(Path p) {
+        String n = p.getFileName().toString();
+        if (!n.endsWith(LOG_FILE_SUFFIX)) {
+            return null;
+        }
+
+        try {
+            return UUID.fromString(n.substring(0, n.length() - LOG_FILE_SUFFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Source {
+
+        private final UUID instanceId;
+        private final Path file;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private FileChannel channel;
+        private long offset = 0;
+        private boolean truncated = false;
+
+        // the position before the current batch, see #mark
+        private long markedOffset;
+        private boolean markedTruncated;
+        private long markedPendingSince;
+
+        // the bucket is full initially, see #acquire
+        private double tokens = Double.MAX_VALUE;
+        private long lastRefill = System.currentTimeMillis();
+
+        private volatile boolean completed = false;
+        private volatile long pendingSince = 0;
+
+        private Source(UUID instanceId, Path file) {
+            this.instanceId = instanceId;
+            this.file = file;
+        }
+
+        /**
+         * Remembers the current position, so it can be restored with {@link #reset()}
+         * if the data read after this point wasn't sent.
+         */
+        private void mark() {
+            markedOffset = offset;
+            markedTruncated = truncated;
+            markedPendingSince = pendingSince;
+        }
+
+        private void reset() {
+            offset = markedOffset;
+            truncated = markedTruncated;
+            pendingSince = markedPendingSince;
+        }
+
+        private void markPending() {
+            if (pendingSince == 0) {
+                pendingSince = System.currentTimeMillis();
+            }
+        }
+
+        private long size() throws IOException {
+            try {
+                return Files.size(file);
+            } catch (NoSuchFileException e) {
+                return 0;
+            }
+        }
+
+        private int read(byte[] ab) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+
+            ByteBuffer buf = ByteBuffer.wrap(ab);
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, offset + buf.position());
+                if (read < 0) {
+                    break;
+                }
+            }
+            return buf.position();
+        }
+
+        /**
+         * Token bucket, allows bursts up to {@code rate} bytes.
+         */
+        private long acquire(long n, long rate) {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1000.0);
+            lastRefill = now;
+
+            long allowed = Math.min(n, (long) tokens);
+            tokens -= allowed;
+            return allowed;
+        }
+
+        private void close() {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("close ['{}'] -> error: {}", instanceId, e.getMessage());
+            }
+        }
+    }
+
+    private static final class Stats {
+
+        private long lastReportAt = System.currentTimeMillis();
+        private long batches;
+        private long bytes;
+        private long compressedBytes;
+        private long maxLag;
+
+        private void onBatch(int rawSize, int compressedSize) {
+            batches++;
+            bytes += rawSize;
+            compressedBytes += compressedSize;
+        }
+
+        private void onRead(long lag) {
+            maxLag = Math.max(maxLag, lag);
+        }
+
+        private void report(int activeLogs) {
+            long now = System.currentTimeMillis();
+            if (now - lastReportAt < STATS_INTERVAL) {
+                return;
+            }
+
+            if (batches > 0) {
+                log.info("stats -> {} batch(es), {} bytes ({} compressed), max lag: {}ms, active logs: {}",
+                        batches, bytes, compressedBytes, maxLag, activeLogs);
+            }
+
+            lastReportAt = now;
+            batches = 0;
+            bytes = 0;
+            compressedBytes = 0;
+            maxLag = 0;
+        }
+    }
+}
@@ -26,17 +26,17 @@ import java.util.UUID;
 public class ProcessLogFactory {
 
     private final Path logDir;
-    private final long logStreamMaxDelay;
+    private final LogShipper logShipper;
     private final LogAppender logAppender;
 
-    public ProcessLogFactory(Path logDir, long logStreamMaxDelay, LogAppender logAppender) {
+    public ProcessLogFactory(Path logDir, LogShipper logShipper, LogAppender logAppender) {
         this.logDir = logDir;
-        this.logStreamMaxDelay = logStreamMaxDelay;
+        this.logShipper = logShipper;
         this.logAppender = logAppender;
     }
 
     public RedirectedProcessLog createRedirectedLog(UUID instanceId) {
-        return new RedirectedProcessLog(logDir, instanceId, logAppender, logStreamMaxDelay);
+        return new RedirectedProcessLog(logDir, instanceId, logShipper);
     }
 
     public RemoteProcessLog createRemoteLog(UUID instanceId) {
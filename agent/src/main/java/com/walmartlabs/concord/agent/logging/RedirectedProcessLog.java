@@ -22,44 +22,42 @@ package com.walmartlabs.concord.agent.logging;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.UUID;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.concurrent.TimeoutException;
 
 /**
- * Log that uses a local file as a buffer before sending the data into the specified {@link LogAppender}.
- * Typically, {@link #run(Supplier)} method should be executed in a separate thread.
+ * Log that uses a local file as a buffer before sending the data to the server.
+ * The file is sent by the {@link LogShipper} between {@link #start()} and {@link #flush()}.
  */
 public class RedirectedProcessLog implements ProcessLog {
 
+    private static final long FLUSH_TIMEOUT = 60000;
+
     private final UUID instanceId;
-    private final LogAppender appender;
-    private final long logSteamMaxDelay;
+    private final LogShipper shipper;
 
     private final LocalProcessLog localLog;
 
-    public RedirectedProcessLog(Path baseDir, UUID instanceId, LogAppender appender, long logSteamMaxDelay) {
+    public RedirectedProcessLog(Path baseDir, UUID instanceId, LogShipper shipper) {
         this.instanceId = instanceId;
-        this.appender = appender;
-        this.logSteamMaxDelay = logSteamMaxDelay;
+        this.shipper = shipper;
         this.localLog = new LocalProcessLog(baseDir, instanceId);
     }
 
-    public void run(Supplier<Boolean> stopCondition) throws Exception {
-        Consumer<Chunk> sink = chunk -> {
-            byte[] ab = new byte[chunk.len];
-            System.arraycopy(chunk.ab, 0, ab, 0, chunk.len);
-            appender.appendLog(instanceId, ab);
-        };
-
-        streamLog(localLog.logFile(), stopCondition, logSteamMaxDelay, sink);
+    /**
+     * Starts sending the log's data.
+     */
+    public void start() {
+        shipper.register(instanceId, localLog.logFile());
     }
 
-    public void flush() throws Exception {
-        run(() -> true);
+    /**
+     * Sends the remaining data and waits for its completion.
+     */
+    public void flush() throws InterruptedException, TimeoutException {
+        shipper.register(instanceId, localLog.logFile());
+        shipper.complete(instanceId, FLUSH_TIMEOUT);
     }
 
     @Override
@@ -86,46 +84,4 @@ public class RedirectedProcessLog implements ProcessLog {
     public void error(String log, Object... args) {
         this.localLog.error(log, args);
     }
-
-    private static void streamLog(Path p, Supplier<Boolean> stopCondition, long maxDelay, Consumer<Chunk> sink) throws IOException {
-        long total = 0;
-
-        byte[] ab = new byte[8192];
-
-        try (InputStream in = Files.newInputStream(p, StandardOpenOption.READ)) {
-            while (true) {
-                int read = in.read(ab, 0, ab.length);
-                if (read > 0) {
-                    sink.accept(new Chunk(ab, read));
-                    total += read;
-                }
-
-                if (read < ab.length) {
-                    if (stopCondition.get() && total >= Files.size(p)) {
-                        // the log and the job are finished
-                        break;
-                    }
-
-                    // job is still running, wait for more data
-                    try {
-                        Thread.sleep(maxDelay);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            }
-        }
-    }
-
-    private static final class Chunk {
-
-        private final byte[] ab;
-        private final int len;
-
-        private Chunk(byte[] ab, int len) { // NOSONAR
-            this.ab = ab;
-            this.len = len;
-        }
-    }
 }
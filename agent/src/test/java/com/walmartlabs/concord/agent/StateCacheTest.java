@@ -0,0 +1,90 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.Hashing;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class StateCacheTest {
+
+    @Test
+    public void testPutAndCopy() throws Exception {
+        Path cacheDir = Files.createTempDirectory("cache");
+        Path workDir = Files.createTempDirectory("test");
+
+        StateCache cache = new StateCache(cacheDir, 1024 * 1024);
+
+        Path src = workDir.resolve("a.txt");
+        Files.write(src, "hello".getBytes(StandardCharsets.UTF_8));
+        String hash = hash("hello");
+
+        Path dst = workDir.resolve("x/y/b.txt");
+        assertFalse(cache.copyTo(hash, dst));
+
+        assertTrue(cache.put(hash, src));
+        assertTrue(cache.copyTo(hash, dst));
+        assertEquals("hello", new String(Files.readAllBytes(dst), StandardCharsets.UTF_8));
+
+        // wrong hash
+        assertFalse(cache.put(hash("something else"), src));
+        assertFalse(cache.copyTo(hash("something else"), dst));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Path cacheDir = Files.createTempDirectory("cache");
+        Path workDir = Files.createTempDirectory("test");
+
+        StateCache cache = new StateCache(cacheDir, 10);
+
+        Path a = workDir.resolve("a.txt");
+        Files.write(a, "aaaaaa".getBytes(StandardCharsets.UTF_8));
+        assertTrue(cache.put(hash("aaaaaa"), a));
+
+        // make sure the first file is older
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.setLastModifiedTime(p, FileTime.fromMillis(0));
+            }
+        }
+
+        Path b = workDir.resolve("b.txt");
+        Files.write(b, "bbbbbb".getBytes(StandardCharsets.UTF_8));
+        assertTrue(cache.put(hash("bbbbbb"), b));
+
+        // the oldest file is removed
+        Path dst = workDir.resolve("dst.txt");
+        assertFalse(cache.copyTo(hash("aaaaaa"), dst));
+        assertTrue(cache.copyTo(hash("bbbbbb"), dst));
+    }
+
+    private static String hash(String s) {
+        return Hashing.sha256().hashString(s, StandardCharsets.UTF_8).toString();
+    }
+}
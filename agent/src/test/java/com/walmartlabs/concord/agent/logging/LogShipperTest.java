@@ -0,0 +1,207 @@
+package com.walmartlabs.concord.agent.logging;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.ProcessLogBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LogShipperTest {
+
+    private ExecutorService executor;
+    private Path logDir;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        logDir = Files.createTempDirectory("logs");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        TestAppender appender = new TestAppender(true);
+        LogShipper shipper = new LogShipper(logDir, appender, 1000, 100, 1024 * 1024, 0, 0);
+        shipper.start(executor);
+
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        shipper.register(a, logDir.resolve(a + ".log"));
+        shipper.register(b, logDir.resolve(b + ".log"));
+
+        for (int i = 0; i < 100; i++) {
+            append(logDir.resolve(a + ".log"), "a" + i + "\n");
+            append(logDir.resolve(b + ".log"), "b" + i + "\n");
+        }
+
+        shipper.complete(a, 10000);
+        shipper.complete(b, 10000);
+
+        assertEquals(expected("a"), appender.data(a));
+        assertEquals(expected("b"), appender.data(b));
+
+        // the data of both processes is sent in the same requests
+        assertTrue(appender.batches.get() < 200);
+        assertEquals(0, appender.requests.get());
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        TestAppender appender = new TestAppender(true);
+        LogShipper shipper = new LogShipper(logDir, appender, 1000, 100, 1024 * 1024, 0, 10);
+        shipper.start(executor);
+
+        UUID a = UUID.randomUUID();
+        shipper.register(a, logDir.resolve(a + ".log"));
+
+        append(logDir.resolve(a + ".log"), "0123456789abcdef");
+
+        shipper.complete(a, 10000);
+
+        String s = appender.data(a);
+        assertTrue(s, s.startsWith("0123456789"));
+        assertTrue(s, s.contains("Log size limit exceeded"));
+        assertFalse(s, s.contains("abcdef"));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        TestAppender appender = new TestAppender(false);
+        LogShipper shipper = new LogShipper(logDir, appender, 1000, 100, 1024 * 1024, 0, 0);
+        shipper.start(executor);
+
+        UUID a = UUID.randomUUID();
+        shipper.register(a, logDir.resolve(a + ".log"));
+
+        append(logDir.resolve(a + ".log"), "hello\n");
+
+        shipper.complete(a, 10000);
+
+        assertEquals("hello\n", appender.data(a));
+        assertTrue(appender.requests.get() > 0);
+    }
+
+    @Test
+    public void testFailedBatch() throws Exception {
+        TestAppender appender = new TestAppender(true);
+        appender.failures.set(2);
+
+        LogShipper shipper = new LogShipper(logDir, appender, 1000, 100, 1024 * 1024, 0, 0);
+        shipper.start(executor);
+
+        UUID a = UUID.randomUUID();
+        shipper.register(a, logDir.resolve(a + ".log"));
+
+        append(logDir.resolve(a + ".log"), "hello\n");
+
+        shipper.complete(a, 10000);
+
+        // the data of the failed batches is sent again, nothing is lost or duplicated
+        assertEquals("hello\n", appender.data(a));
+        assertEquals(0, appender.failures.get());
+    }
+
+    private static String expected(String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append(prefix).append(i).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static void append(Path p, String s) throws IOException {
+        Files.write(p, s.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static class TestAppender implements LogAppender {
+
+        private final boolean batchesSupported;
+        private final Map<UUID, ByteArrayOutputStream> data = new ConcurrentHashMap<>();
+        private final AtomicInteger batches = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private TestAppender(boolean batchesSupported) {
+            this.batchesSupported = batchesSupported;
+        }
+
+        @Override
+        public void appendLog(UUID instanceId, byte[] ab) {
+            requests.incrementAndGet();
+            write(instanceId, ab);
+        }
+
+        @Override
+        public boolean appendLogBatch(byte[] batch) throws IOException {
+            if (!batchesSupported) {
+                return false;
+            }
+
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new IOException("test failure");
+            }
+
+            batches.incrementAndGet();
+
+            try {
+                ProcessLogBatch.read(new ByteArrayInputStream(batch), this::write);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return true;
+        }
+
+        private void write(UUID instanceId, byte[] ab) {
+            ByteArrayOutputStream out = data.computeIfAbsent(instanceId, k -> new ByteArrayOutputStream());
+            synchronized (out) {
+                out.write(ab, 0, ab.length);
+            }
+        }
+
+        private String data(UUID instanceId) {
+            ByteArrayOutputStream out = data.get(instanceId);
+            return out != null ? new String(out.toByteArray()) : "";
+        }
+    }
+}
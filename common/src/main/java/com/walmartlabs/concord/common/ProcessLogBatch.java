@@ -0,0 +1,146 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.*;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log data of multiple processes sent in a single request.
+ * The format is a GZIP-compressed sequence of chunks:
+ * <pre>
+ * instanceId (16 bytes), length (4 bytes), data (length bytes)
+ * </pre>
+ */
+public final class ProcessLogBatch {
+
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Default limit of the total size of a batch, uncompressed.
+     */
+    public static final long MAX_BATCH_SIZE = 32 * 1024 * 1024;
+
+    public interface ChunkConsumer {
+
+        void accept(UUID instanceId, byte[] data) throws IOException;
+    }
+
+    public static final class Writer implements Closeable {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out;
+
+        private int rawSize = 0;
+
+        public Writer() throws IOException {
+            this.out = new DataOutputStream(new GZIPOutputStream(buffer));
+        }
+
+        public void write(UUID instanceId, byte[] ab, int off, int len) throws IOException {
+            out.writeLong(instanceId.getMostSignificantBits());
+            out.writeLong(instanceId.getLeastSignificantBits());
+            out.writeInt(len);
+            out.write(ab, off, len);
+            rawSize += len;
+        }
+
+        /**
+         * @return total size of the log data written so far, uncompressed
+         */
+        public int rawSize() {
+            return rawSize;
+        }
+
+        /**
+         * Completes the batch and returns its compressed content.
+         */
+        public byte[] toByteArray() throws IOException {
+            out.close();
+            return buffer.toByteArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Thrown when the uncompressed size of a batch exceeds the limit.
+     */
+    public static final class BatchTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public BatchTooLargeException(long maxSize) {
+            super("The batch exceeds the maximum allowed size of " + maxSize + " bytes");
+        }
+    }
+
+    public static void read(InputStream in, ChunkConsumer consumer) throws IOException {
+        read(in, MAX_BATCH_SIZE, consumer);
+    }
+
+    /**
+     * Reads the chunks of a batch.
+     *
+     * @param maxSize maximum total size of the chunks' data, uncompressed.
+     *                The chunks read before the limit is reached are passed
+     *                to the consumer, then {@link BatchTooLargeException} is thrown.
+     */
+    public static void read(InputStream in, long maxSize, ChunkConsumer consumer) throws IOException {
+        long total = 0;
+
+        try (DataInputStream src = new DataInputStream(new GZIPInputStream(in))) {
+            while (true) {
+                long msb;
+                try {
+                    msb = src.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                UUID instanceId = new UUID(msb, src.readLong());
+
+                int len = src.readInt();
+                if (len < 0 || len > MAX_CHUNK_SIZE) {
+                    throw new IOException("Invalid chunk size: " + len);
+                }
+
+                total += len;
+                if (total > maxSize) {
+                    throw new BatchTooLargeException(maxSize);
+                }
+
+                byte[] ab = new byte[len];
+                src.readFully(ab);
+
+                consumer.accept(instanceId, ab);
+            }
+        }
+    }
+
+    private ProcessLogBatch() {
+    }
+}
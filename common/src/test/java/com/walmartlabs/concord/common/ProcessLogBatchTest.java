@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.common;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ProcessLogBatchTest {
+
+    @Test
+    public void testRead() throws Exception {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        byte[] batch;
+        try (ProcessLogBatch.Writer w = new ProcessLogBatch.Writer()) {
+            write(w, a, "hello");
+            write(w, b, "world");
+            batch = w.toByteArray();
+        }
+
+        List<String> result = new ArrayList<>();
+        ProcessLogBatch.read(new ByteArrayInputStream(batch), (id, ab) -> result.add(id + ":" + new String(ab)));
+
+        assertEquals(2, result.size());
+        assertEquals(a + ":hello", result.get(0));
+        assertEquals(b + ":world", result.get(1));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        UUID a = UUID.randomUUID();
+
+        byte[] batch;
+        try (ProcessLogBatch.Writer w = new ProcessLogBatch.Writer()) {
+            for (int i = 0; i < 10; i++) {
+                write(w, a, "0123456789");
+            }
+            batch = w.toByteArray();
+        }
+
+        ProcessLogBatch.read(new ByteArrayInputStream(batch), 100, (id, ab) -> {
+        });
+
+        try {
+            ProcessLogBatch.read(new ByteArrayInputStream(batch), 99, (id, ab) -> {
+            });
+            fail("exception expected");
+        } catch (ProcessLogBatch.BatchTooLargeException e) {
+            // expected
+        }
+    }
+
+    private static void write(ProcessLogBatch.Writer w, UUID instanceId, String s) throws Exception {
+        byte[] ab = s.getBytes();
+        w.write(instanceId, ab, 0, ab.length);
+    }
+}
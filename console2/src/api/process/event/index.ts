@@ -53,6 +53,7 @@ export interface ProcessEventFilter {
     instanceId: ConcordId;
     type?: string;
     after?: string;
+    afterSeq?: number;
     eventCorrelationId?: string;
     eventPhase?: 'PRE' | 'POST';
     includeAll?: boolean;
@@ -61,6 +62,7 @@ export interface ProcessEventFilter {
 
 export interface ProcessEventEntry<T extends ProcessEventData> {
     id: ConcordId;
+    seq?: number;
     eventType: ProcessEventType;
     eventDate: string;
     duration?: number;
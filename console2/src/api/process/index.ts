@@ -186,6 +186,8 @@ export const start = (
 
 export type ProcessDataInclude = 'checkpoints' | 'history' | 'childrenIds';
 
+export type ProcessDataExclude = 'handlers' | 'meta' | 'requirements';
+
 export const get = (
     instanceId: ConcordId,
     includes: ProcessDataInclude[]
@@ -237,11 +239,13 @@ export interface ProcessListQuery {
     projectName?: ConcordKey;
     afterCreatedAt?: string;
     beforeCreatedAt?: string;
+    beforeInstanceId?: ConcordId;
     tags?: string[];
     status?: ProcessStatus;
     initiator?: string;
     parentInstanceId?: ConcordId;
     include?: ProcessDataInclude[];
+    exclude?: ProcessDataExclude[];
     limit?: number;
     offset?: number;
 }
@@ -0,0 +1,45 @@
+#!/bin/bash
+
+# Starts a primary DB (port 5432) and its streaming replica (port 5434).
+# Used to test the read-only query routing, e.g. ReplicaRoutingTest.
+# Set "db.replica.url" to "jdbc:postgresql://localhost:5434/postgres" to use the replica with a local server.
+
+PG_IMAGE="library/postgres:10.4-alpine"
+
+echo "Removing old containers..."
+docker rm -f db db-replica > /dev/null
+
+docker run -d \
+--name db \
+-e 'POSTGRES_PASSWORD=q1' \
+-p 5432:5432 \
+"${PG_IMAGE}" \
+-c 'wal_level=replica' \
+-c 'max_wal_senders=4' \
+-c 'wal_keep_segments=64'
+
+echo -n "Waiting for the primary DB to start"
+until docker exec db pg_isready -U postgres > /dev/null 2>&1; do
+    printf '.'
+    sleep 1
+done
+echo "done!"
+
+docker exec db sh -c 'echo "host replication all all md5" >> "${PGDATA}/pg_hba.conf"'
+docker exec db psql -U postgres -c 'select pg_reload_conf()' > /dev/null
+
+# the image's entrypoint skips initdb if PGDATA is not empty
+docker run -d \
+--name db-replica \
+--link db \
+-e 'PGPASSWORD=q1' \
+-p 5434:5432 \
+"${PG_IMAGE}" \
+sh -c 'pg_basebackup -h db -U postgres -D "${PGDATA}" -R -X stream && exec docker-entrypoint.sh postgres -c hot_standby=on'
+
+echo -n "Waiting for the replica to start"
+until docker exec db-replica pg_isready -U postgres > /dev/null 2>&1; do
+    printf '.'
+    sleep 1
+done
+echo "done!"
@@ -245,7 +245,7 @@ public class CrudIT extends AbstractServerIT {
 
         // --- exec
         @SuppressWarnings("unchecked")
-        List<Object> result = queriesApi.exec(orgName, inventoryName, queryName, null);
+        List<Object> result = queriesApi.exec(orgName, inventoryName, queryName, null, null, null);
         assertNotNull(result);
         Map<String, Object> m = (Map<String, Object>) result.get(0);
         assertEquals(Collections.singletonMap("k", "v"), m);
@@ -270,7 +270,7 @@ public class CrudIT extends AbstractServerIT {
         // ---
 
         try {
-            queriesApi.exec(orgName, inventoryName, queryName, null);
+            queriesApi.exec(orgName, inventoryName, queryName, null, null, null);
             fail("should fail");
         } catch (ApiException e) {
             assertTrue(e.getMessage().contains("not found") && e.getMessage().contains(queryName));
@@ -746,7 +746,7 @@ public class GitHubTriggersIT extends AbstractServerIT {
         ProcessV2Api processApi = new ProcessV2Api(getApiClient());
         while (true) {
             String afterCreatedAt = after != null ? after.getCreatedAt().format(DATE_TIME_FORMATTER) : null;
-            List<ProcessEntry> l = processApi.list(null, orgName, null, projectName, afterCreatedAt, null, null, null, initiator, null, null, null, null);
+            List<ProcessEntry> l = processApi.list(null, orgName, null, projectName, afterCreatedAt, null, null, null, null, initiator, null, null, null, null, null);
             if (l.size() == 1) {
                 return l.get(0);
             }
@@ -758,7 +758,7 @@ public class GitHubTriggersIT extends AbstractServerIT {
     private int waitForProcessesToFinish() throws Exception {
         ProcessV2Api processApi = new ProcessV2Api(getApiClient());
         while (true) {
-            List<ProcessEntry> l = processApi.list(null, null, null, null, null, null, null, null, null, null, null, null, null);
+            List<ProcessEntry> l = processApi.list(null, null, null, null, null, null, null, null, null, null, null, null, null, null, null);
 
             boolean allDone = true;
             for (ProcessEntry e : l) {
@@ -787,7 +787,7 @@ public class GitHubTriggersIT extends AbstractServerIT {
     private void expectNoProceses(String orgName, String projectName, ProcessEntry after) throws Exception {
         ProcessV2Api processApi = new ProcessV2Api(getApiClient());
         String afterCreatedAt = after != null ? after.getCreatedAt().format(DATE_TIME_FORMATTER) : null;
-        List<ProcessEntry> l = processApi.list(null, orgName, null, projectName, afterCreatedAt, null, null, null, null, null, null, null, null);
+        List<ProcessEntry> l = processApi.list(null, orgName, null, projectName, afterCreatedAt, null, null, null, null, null, null, null, null, null, null);
         assertEquals(0, l.size());
     }
 
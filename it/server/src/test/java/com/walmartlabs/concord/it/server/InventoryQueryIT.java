@@ -22,13 +22,17 @@ package com.walmartlabs.concord.it.server;
 
 import com.walmartlabs.concord.client.CreateInventoryQueryResponse;
 import com.walmartlabs.concord.client.InventoriesApi;
+import com.walmartlabs.concord.client.InventoryDataApi;
 import com.walmartlabs.concord.client.InventoryEntry;
 import com.walmartlabs.concord.client.InventoryQueriesApi;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -56,7 +60,34 @@ public class InventoryQueryIT extends AbstractServerIT {
         assertTrue(cqr.isOk());
         assertNotNull(cqr.getId());
 
-        List<Object> resp = resource.exec(orgName, inventoryName, queryName, new HashMap<>());
+        List<Object> resp = resource.exec(orgName, inventoryName, queryName, new HashMap<>(), null, null);
         assertNotNull(resp);
     }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    @SuppressWarnings("unchecked")
+    public void testPagination() throws Exception {
+        String orgName = "Default";
+        String inventoryName = "inventory" + randomString();
+        String queryName = "query" + randomString();
+
+        InventoriesApi inventoryResource = new InventoriesApi(getApiClient());
+        inventoryResource.createOrUpdate(orgName, new InventoryEntry().setName(inventoryName));
+
+        InventoryDataApi dataResource = new InventoryDataApi(getApiClient());
+        for (int i = 0; i < 5; i++) {
+            dataResource.data(orgName, inventoryName, "/item" + i, Collections.singletonMap("n", i));
+        }
+
+        InventoryQueriesApi resource = new InventoryQueriesApi(getApiClient());
+        resource.createOrUpdate(orgName, inventoryName, queryName, "select item_data::text from inventory_data order by item_path");
+
+        List<Object> all = resource.exec(orgName, inventoryName, queryName, null, null, null);
+        assertEquals(5, all.size());
+
+        List<Object> page = resource.exec(orgName, inventoryName, queryName, null, 1, 2);
+        assertEquals(2, page.size());
+        assertEquals(1, ((Number) ((Map<String, Object>) page.get(0)).get("n")).intValue());
+        assertEquals(2, ((Number) ((Map<String, Object>) page.get(1)).get("n")).intValue());
+    }
 }
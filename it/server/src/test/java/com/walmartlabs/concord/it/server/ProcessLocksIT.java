@@ -20,16 +20,20 @@ package com.walmartlabs.concord.it.server;
  * =====
  */
 
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.client.*;
 import com.walmartlabs.concord.client.ProcessEntry.StatusEnum;
 import org.junit.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.walmartlabs.concord.it.common.ITUtils.archive;
 import static com.walmartlabs.concord.it.common.ServerClient.waitForStatus;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class ProcessLocksIT extends AbstractServerIT {
 
@@ -81,4 +85,69 @@ public class ProcessLocksIT extends AbstractServerIT {
         pirB = waitForStatus(processApi, sprB.getInstanceId(), StatusEnum.FAILED, StatusEnum.FINISHED);
         assertEquals(StatusEnum.FINISHED, pirB.getStatus());
     }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testWaitForLock() throws Exception {
+        String orgName = "org_" + randomString();
+        String projectName = "project_" + randomString();
+
+        OrganizationsApi organizationsApi = new OrganizationsApi(getApiClient());
+        organizationsApi.createOrUpdate(new OrganizationEntry().setName(orgName));
+
+        ProjectsApi projectsApi = new ProjectsApi(getApiClient());
+        projectsApi.createOrUpdate(orgName, new ProjectEntry().setName(projectName)
+                .setAcceptsRawPayload(true));
+
+        // ---
+
+        byte[] payload = archive(ProcessIT.class.getResource("processLocksWait").toURI());
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("org", orgName);
+        input.put("project", projectName);
+        input.put("archive", payload);
+
+        ProcessApi processApi = new ProcessApi(getApiClient());
+        UUID a = start(input).getInstanceId();
+        UUID b = start(input).getInstanceId();
+
+        assertEquals(StatusEnum.RUNNING, waitForStatus(processApi, a, StatusEnum.RUNNING).getStatus());
+        assertEquals(StatusEnum.RUNNING, waitForStatus(processApi, b, StatusEnum.RUNNING).getStatus());
+
+        // ---
+
+        String lockName = "lock_" + randomString();
+        String scope = "PROJECT";
+        long timeout = 30000;
+
+        ProcessLocksApi locksApi = new ProcessLocksApi(getApiClient());
+        assertTrue(locksApi.tryLock(a, lockName, scope, 0L).isAcquired());
+
+        CompletableFuture<LockResult> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return locksApi.tryLock(b, lockName, scope, timeout);
+            } catch (ApiException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // the request is held while the lock is taken
+        Thread.sleep(1000);
+        assertFalse(waiter.isDone());
+
+        long t1 = System.currentTimeMillis();
+        locksApi.unlock(a, lockName, scope);
+
+        // the waiter gets the lock right after the unlock, not when the timeout expires
+        LockResult result = waiter.get(timeout, TimeUnit.MILLISECONDS);
+        long t2 = System.currentTimeMillis();
+
+        assertTrue(result.isAcquired());
+        assertTrue("waited for " + (t2 - t1) + "ms", t2 - t1 < 5000);
+
+        // ---
+
+        processApi.kill(a);
+        processApi.kill(b);
+    }
 }
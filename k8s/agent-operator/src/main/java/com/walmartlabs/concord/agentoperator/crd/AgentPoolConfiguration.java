@@ -25,11 +25,14 @@ import java.util.Map;
 public class AgentPoolConfiguration {
 
     private static final long DEFAULT_SCALING_DELAY_MS = 30000;
+    private static final long DEFAULT_POD_STARTUP_MS = 60000;
+    private static final long DEFAULT_SCALE_DOWN_COOLDOWN_MS = 300000;
 
     private static final int DEFAULT_MAX_SIZE = 10;
     private static final int DEFAULT_MIN_SIZE = 1;
     private static final int DEFAULT_SIZE = 1;
     private static final int DEFAULT_SIZE_INCREMENT = 2;
+    private static final int DEFAULT_AGENT_CAPACITY = 1;
 
     private boolean autoScale = true;
     private long scalingDelayMs = DEFAULT_SCALING_DELAY_MS;
@@ -37,6 +40,10 @@ public class AgentPoolConfiguration {
     private int minSize = DEFAULT_MIN_SIZE;
     private int size = DEFAULT_SIZE;
     private int sizeIncrement = DEFAULT_SIZE_INCREMENT;
+    private ScalingMode scalingMode = ScalingMode.INCREMENTAL;
+    private int agentCapacity = DEFAULT_AGENT_CAPACITY;
+    private long podStartupMs = DEFAULT_POD_STARTUP_MS;
+    private long scaleDownCooldownMs = DEFAULT_SCALE_DOWN_COOLDOWN_MS;
     private Map<String, Object> queueSelector;
     private Map<String, Object> configMap;
     private Map<String, Object> pod;
@@ -89,6 +96,49 @@ public class AgentPoolConfiguration {
         this.sizeIncrement = sizeIncrement;
     }
 
+    public ScalingMode getScalingMode() {
+        return scalingMode;
+    }
+
+    public void setScalingMode(ScalingMode scalingMode) {
+        this.scalingMode = scalingMode;
+    }
+
+    /**
+     * Number of processes a single agent can run at the same time
+     * (the agent's {@code workersCount}).
+     */
+    public int getAgentCapacity() {
+        return agentCapacity;
+    }
+
+    public void setAgentCapacity(int agentCapacity) {
+        this.agentCapacity = agentCapacity;
+    }
+
+    /**
+     * Expected time between a pod's creation and its agent accepting processes.
+     */
+    public long getPodStartupMs() {
+        return podStartupMs;
+    }
+
+    public void setPodStartupMs(long podStartupMs) {
+        this.podStartupMs = podStartupMs;
+    }
+
+    /**
+     * Minimal time the demand must stay below the current pool size
+     * before the pool is scaled down.
+     */
+    public long getScaleDownCooldownMs() {
+        return scaleDownCooldownMs;
+    }
+
+    public void setScaleDownCooldownMs(long scaleDownCooldownMs) {
+        this.scaleDownCooldownMs = scaleDownCooldownMs;
+    }
+
     public Map<String, Object> getQueueSelector() {
         return queueSelector;
     }
@@ -112,4 +162,19 @@ public class AgentPoolConfiguration {
     public void setPod(Map<String, Object> pod) {
         this.pod = pod;
     }
+
+    public enum ScalingMode {
+
+        /**
+         * Moves the pool size by {@code sizeIncrement} depending on whether
+         * there are more ENQUEUED processes than pods.
+         */
+        INCREMENTAL,
+
+        /**
+         * Computes the pool size from the queue depth, the arrival rate
+         * of new processes and the agent capacity.
+         */
+        DEMAND
+    }
 }
@@ -27,12 +27,17 @@ import okhttp3.*;
 import javax.net.ssl.*;
 import java.io.IOException;
 import java.security.cert.CertificateException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ProcessQueueClient {
 
     private static final TypeReference<List<ProcessQueueEntry>> LIST_OF_PROCESS_QUEUE_ENTRIES = new TypeReference<List<ProcessQueueEntry>>() {
     };
+    private static final TypeReference<List<ProcessQueueStatsEntry>> LIST_OF_PROCESS_QUEUE_STATS = new TypeReference<List<ProcessQueueStatsEntry>>() {
+    };
 
     private final String baseUrl;
     private final String apiToken;
@@ -55,18 +60,62 @@ public class ProcessQueueClient {
         Call call = client.newCall(req);
         try (Response resp = call.execute()) {
             if (!resp.isSuccessful()) {
-                throw new IOException("Error while fething the process queue data: " + resp.code());
+                throw new IOException("Error while fetching the process queue data: " + resp.code());
             }
 
             ResponseBody body = resp.body();
             if (body == null) {
-                throw new IOException("Error while fething the process queue data: empty response");
+                throw new IOException("Error while fetching the process queue data: empty response");
             }
 
             return objectMapper.readValue(body.byteStream(), LIST_OF_PROCESS_QUEUE_ENTRIES);
         }
     }
 
+    /**
+     * Returns the aggregated process queue data grouped by the processes'
+     * requirements. Falls back to {@link #query()} if the server doesn't
+     * provide the statistics. In that case only the number of ENQUEUED
+     * processes is available.
+     *
+     * @param createdWithinSec the time window used to count the recently created processes
+     */
+    public List<ProcessQueueStatsEntry> queryStats(int createdWithinSec) throws IOException {
+        Request req = new Request.Builder()
+                .url(baseUrl + "/api/v2/process/queue/stats?createdWithin=" + createdWithinSec)
+                .header("Authorization", apiToken)
+                .build();
+
+        Call call = client.newCall(req);
+        try (Response resp = call.execute()) {
+            if (resp.code() == 404) {
+                return toStats(query());
+            }
+
+            if (!resp.isSuccessful()) {
+                throw new IOException("Error while fetching the process queue stats: " + resp.code());
+            }
+
+            ResponseBody body = resp.body();
+            if (body == null) {
+                throw new IOException("Error while fetching the process queue stats: empty response");
+            }
+
+            return objectMapper.readValue(body.byteStream(), LIST_OF_PROCESS_QUEUE_STATS);
+        }
+    }
+
+    private static List<ProcessQueueStatsEntry> toStats(List<ProcessQueueEntry> entries) {
+        Map<Map<String, Object>, Integer> counts = new HashMap<>();
+        for (ProcessQueueEntry e : entries) {
+            counts.merge(e.getRequirements(), 1, Integer::sum);
+        }
+
+        return counts.entrySet().stream()
+                .map(e -> new ProcessQueueStatsEntry(e.getKey(), e.getValue(), 0, 0, 0))
+                .collect(Collectors.toList());
+    }
+
     private static OkHttpClient initClient() {
         try {
             TrustManager[] trustAllCerts = new TrustManager[]{
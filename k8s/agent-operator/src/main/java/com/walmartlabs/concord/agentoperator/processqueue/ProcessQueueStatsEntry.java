@@ -0,0 +1,92 @@
+package com.walmartlabs.concord.agentoperator.processqueue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Aggregated process queue data for a specific set of requirements.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProcessQueueStatsEntry implements Serializable {
+
+    private final Map<String, Object> requirements;
+    private final int enqueuedCount;
+    private final long oldestEnqueuedAge;
+    private final int runningCount;
+    private final int createdCount;
+
+    @JsonCreator
+    public ProcessQueueStatsEntry(@JsonProperty("requirements") Map<String, Object> requirements,
+                                  @JsonProperty("enqueuedCount") int enqueuedCount,
+                                  @JsonProperty("oldestEnqueuedAge") long oldestEnqueuedAge,
+                                  @JsonProperty("runningCount") int runningCount,
+                                  @JsonProperty("createdCount") int createdCount) {
+
+        this.requirements = requirements;
+        this.enqueuedCount = enqueuedCount;
+        this.oldestEnqueuedAge = oldestEnqueuedAge;
+        this.runningCount = runningCount;
+        this.createdCount = createdCount;
+    }
+
+    public Map<String, Object> getRequirements() {
+        return requirements;
+    }
+
+    public int getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    /**
+     * Age of the oldest ENQUEUED process (ms).
+     */
+    public long getOldestEnqueuedAge() {
+        return oldestEnqueuedAge;
+    }
+
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * Number of processes created during the requested time window.
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessQueueStatsEntry{" +
+                "requirements=" + requirements +
+                ", enqueuedCount=" + enqueuedCount +
+                ", oldestEnqueuedAge=" + oldestEnqueuedAge +
+                ", runningCount=" + runningCount +
+                ", createdCount=" + createdCount +
+                '}';
+    }
+}
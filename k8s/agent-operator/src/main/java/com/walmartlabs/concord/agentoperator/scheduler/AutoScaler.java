@@ -21,21 +21,27 @@ package com.walmartlabs.concord.agentoperator.scheduler;
  */
 
 import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
-import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueEntry;
-import com.walmartlabs.concord.common.MapMatcher;
+import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueStatsEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 public class AutoScaler {
 
     private static final Logger log = LoggerFactory.getLogger(AutoScaler.class);
 
+    /**
+     * Time window used to estimate the arrival rate of new processes.
+     */
+    public static final int ARRIVAL_RATE_WINDOW_SEC = 60;
+
     private final Function<String, Integer> podCounter;
     private final Function<AgentPoolInstance, Boolean> canBeUpdated;
+    private final LongSupplier clock;
+    private final DemandScalingPolicy demandPolicy;
 
     public AutoScaler(Function<String, Integer> podCounter) {
         this(podCounter, i -> {
@@ -45,24 +51,40 @@ public class AutoScaler {
     }
 
     public AutoScaler(Function<String, Integer> podCounter, Function<AgentPoolInstance, Boolean> canBeUpdated) {
+        this(podCounter, canBeUpdated, System::currentTimeMillis);
+    }
+
+    public AutoScaler(Function<String, Integer> podCounter, Function<AgentPoolInstance, Boolean> canBeUpdated, LongSupplier clock) {
         this.podCounter = podCounter;
         this.canBeUpdated = canBeUpdated;
+        this.clock = clock;
+        this.demandPolicy = new DemandScalingPolicy();
     }
 
-    public AgentPoolInstance apply(AgentPoolInstance i, List<ProcessQueueEntry> queueEntries) {
+    public AgentPoolInstance apply(AgentPoolInstance i, List<ProcessQueueStatsEntry> queueStats) {
         AgentPoolConfiguration cfg = i.getResource().getSpec();
 
+        // the processes waiting for an agent in the current pool
+        QueueDemand demand = QueueDemand.of(queueStats, cfg.getQueueSelector(), ARRIVAL_RATE_WINDOW_SEC);
+
+        if (cfg.getScalingMode() == AgentPoolConfiguration.ScalingMode.DEMAND) {
+            // the policy keeps track of the demand even if the pool can't be updated yet
+            int targetSize = demandPolicy.targetSize(i.getName(), cfg, demand, i.getTargetSize(), clock.getAsLong());
+
+            if (!canBeUpdated.apply(i)) {
+                // was updated recently, skipping
+                return i;
+            }
+
+            return updateTargetSize(i, cfg, targetSize, demand);
+        }
+
         if (!canBeUpdated.apply(i)) {
             // was updated recently, skipping
             return i;
         }
 
-        // the number of processes waiting for an agent in the current pool
-        int enqueuedCount = (int) queueEntries.stream()
-                .map(ProcessQueueEntry::getRequirements)
-                .filter(Objects::nonNull)
-                .filter(a -> MapMatcher.matches(a, cfg.getQueueSelector()))
-                .count();
+        int enqueuedCount = demand.getEnqueuedCount();
 
         // count the currently running pods
         int podsCount = podCounter.apply(i.getName());
@@ -74,18 +96,25 @@ public class AutoScaler {
             increment = -cfg.getSizeIncrement();
         }
 
-        int targetSize = Math.max(cfg.getMinSize(), podsCount + increment);
+        return updateTargetSize(i, cfg, podsCount + increment, demand);
+    }
+
+    public void forget(String poolName) {
+        demandPolicy.forget(poolName);
+    }
+
+    private static AgentPoolInstance updateTargetSize(AgentPoolInstance i, AgentPoolConfiguration cfg, int size, QueueDemand demand) {
+        int targetSize = Math.min(Math.max(cfg.getMinSize(), size), cfg.getMaxSize());
         if (i.getTargetSize() == targetSize) {
             // no changes needed
             return i;
         }
 
-        if (targetSize > cfg.getMaxSize()) {
-            log.warn("apply ['{}'] -> target pool size exceeds the allowed maximum: {} > {}", i.getName(), enqueuedCount, cfg.getMaxSize());
+        if (size > cfg.getMaxSize()) {
+            log.warn("apply ['{}'] -> target pool size exceeds the allowed maximum: {} > {}", i.getName(), size, cfg.getMaxSize());
         }
-        targetSize = Math.min(targetSize, cfg.getMaxSize());
 
-        log.info("apply ['{}'] -> updated to {}", i.getName(), targetSize);
+        log.info("apply ['{}'] -> updated to {} ({})", i.getName(), targetSize, demand);
         return AgentPoolInstance.updateTargetSize(i, targetSize);
     }
 }
@@ -0,0 +1,104 @@
+package com.walmartlabs.concord.agentoperator.scheduler;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the pool size required to run all running and ENQUEUED
+ * processes plus the processes expected to arrive while new pods start.
+ * <p>
+ * Scaling up is immediate. The pool is scaled down only to the highest
+ * size required during the last {@code scaleDownCooldownMs}, which keeps
+ * the pool from oscillating when the load drops for a short time.
+ */
+public class DemandScalingPolicy {
+
+    private final Map<String, Deque<Sample>> history = new ConcurrentHashMap<>();
+
+    public int targetSize(String poolName, AgentPoolConfiguration cfg, QueueDemand demand, int currentSize, long now) {
+        int requiredSize = requiredSize(cfg, demand);
+
+        Deque<Sample> samples = history.computeIfAbsent(poolName, k -> new ArrayDeque<>());
+        synchronized (samples) {
+            samples.addLast(new Sample(now, requiredSize));
+
+            // keep the last sample taken before the cooldown period, it marks the beginning of the period
+            long cooldownStart = now - cfg.getScaleDownCooldownMs();
+            while (samples.size() > 1 && secondSampleTimestamp(samples) <= cooldownStart) {
+                samples.removeFirst();
+            }
+
+            if (requiredSize >= currentSize) {
+                return requiredSize;
+            }
+
+            if (samples.getFirst().timestamp > cooldownStart) {
+                // not enough history yet
+                return currentSize;
+            }
+
+            int max = samples.stream()
+                    .mapToInt(s -> s.size)
+                    .max()
+                    .orElse(requiredSize);
+
+            return Math.min(currentSize, max);
+        }
+    }
+
+    public void forget(String poolName) {
+        history.remove(poolName);
+    }
+
+    static int requiredSize(AgentPoolConfiguration cfg, QueueDemand demand) {
+        double expectedArrivals = demand.getArrivalRate() * cfg.getPodStartupMs() / 1000.0;
+        double slots = demand.getRunningCount() + demand.getEnqueuedCount() + expectedArrivals;
+
+        int capacity = Math.max(1, cfg.getAgentCapacity());
+        // ignore the rounding errors
+        return (int) Math.ceil(slots / capacity - 1e-9);
+    }
+
+    private static long secondSampleTimestamp(Deque<Sample> samples) {
+        return samples.stream()
+                .skip(1)
+                .findFirst()
+                .map(s -> s.timestamp)
+                .orElse(Long.MAX_VALUE);
+    }
+
+    private static final class Sample {
+
+        private final long timestamp;
+        private final int size;
+
+        private Sample(long timestamp, int size) {
+            this.timestamp = timestamp;
+            this.size = size;
+        }
+    }
+}
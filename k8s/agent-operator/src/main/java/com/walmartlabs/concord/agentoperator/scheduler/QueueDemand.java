@@ -0,0 +1,101 @@
+package com.walmartlabs.concord.agentoperator.scheduler;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueStatsEntry;
+import com.walmartlabs.concord.common.MapMatcher;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated process queue data of a specific agent pool.
+ */
+public final class QueueDemand {
+
+    public static QueueDemand of(List<ProcessQueueStatsEntry> stats, Map<String, Object> queueSelector, int arrivalRateWindowSec) {
+        int enqueuedCount = 0;
+        int runningCount = 0;
+        int createdCount = 0;
+        long oldestEnqueuedAge = 0;
+
+        for (ProcessQueueStatsEntry e : stats) {
+            Map<String, Object> requirements = e.getRequirements();
+            if (requirements == null || !MapMatcher.matches(requirements, queueSelector)) {
+                continue;
+            }
+
+            enqueuedCount += e.getEnqueuedCount();
+            runningCount += e.getRunningCount();
+            createdCount += e.getCreatedCount();
+            oldestEnqueuedAge = Math.max(oldestEnqueuedAge, e.getOldestEnqueuedAge());
+        }
+
+        // the processes that are still in the queue are already counted
+        int arrivedCount = Math.max(0, createdCount - enqueuedCount);
+        double arrivalRate = arrivalRateWindowSec > 0 ? (double) arrivedCount / arrivalRateWindowSec : 0;
+        return new QueueDemand(enqueuedCount, runningCount, oldestEnqueuedAge, arrivalRate);
+    }
+
+    private final int enqueuedCount;
+    private final int runningCount;
+    private final long oldestEnqueuedAge;
+    private final double arrivalRate;
+
+    public QueueDemand(int enqueuedCount, int runningCount, long oldestEnqueuedAge, double arrivalRate) {
+        this.enqueuedCount = enqueuedCount;
+        this.runningCount = runningCount;
+        this.oldestEnqueuedAge = oldestEnqueuedAge;
+        this.arrivalRate = arrivalRate;
+    }
+
+    public int getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * Age of the oldest ENQUEUED process (ms).
+     */
+    public long getOldestEnqueuedAge() {
+        return oldestEnqueuedAge;
+    }
+
+    /**
+     * Number of new processes per second.
+     */
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueDemand{" +
+                "enqueuedCount=" + enqueuedCount +
+                ", runningCount=" + runningCount +
+                ", oldestEnqueuedAge=" + oldestEnqueuedAge +
+                ", arrivalRate=" + arrivalRate +
+                '}';
+    }
+}
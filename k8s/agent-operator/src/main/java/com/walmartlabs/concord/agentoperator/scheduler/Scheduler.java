@@ -21,11 +21,10 @@ package com.walmartlabs.concord.agentoperator.scheduler;
  */
 
 import com.walmartlabs.concord.agentoperator.crd.AgentPool;
-import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
 import com.walmartlabs.concord.agentoperator.planner.Change;
 import com.walmartlabs.concord.agentoperator.planner.Planner;
 import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueClient;
-import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueEntry;
+import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueStatsEntry;
 import com.walmartlabs.concord.agentoperator.resources.AgentPod;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -45,6 +44,7 @@ public class Scheduler {
     private final KubernetesClient k8sClient;
     private final ProcessQueueClient processQueueClient;
     private final Planner planner;
+    private final AutoScaler autoScaler;
     private final Map<String, AgentPoolInstance> pools;
     private final List<Event> events;
 
@@ -52,6 +52,7 @@ public class Scheduler {
         this.k8sClient = k8sClient;
         this.processQueueClient = new ProcessQueueClient(cfg.concordBaseUrl, cfg.concordApiToken);
         this.planner = new Planner(k8sClient);
+        this.autoScaler = new AutoScaler(n -> AgentPod.list(k8sClient, n).size());
         this.pools = new HashMap<>();
         this.events = new LinkedList<>();
     }
@@ -106,12 +107,26 @@ public class Scheduler {
         }
 
         // fetch the process queue status
+        List<ProcessQueueStatsEntry> queueStats = null;
+        boolean autoScale = todo.stream()
+                .anyMatch(i -> i.getStatus() == AgentPoolInstance.Status.ACTIVE && i.getResource().getSpec().isAutoScale());
+        if (autoScale) {
+            try {
+                queueStats = processQueueClient.queryStats(AutoScaler.ARRIVAL_RATE_WINDOW_SEC);
+            } catch (IOException e) {
+                // keep the current pool sizes, but still process the pools
+                log.error("doRun -> error while fetching the process queue stats: {}", e.getMessage());
+            }
+        }
 
+        List<ProcessQueueStatsEntry> stats = queueStats;
         todo.parallelStream().forEach(i -> {
             try {
                 switch (i.getStatus()) {
                     case ACTIVE: {
-                        updateTargetSize(i);
+                        if (stats != null) {
+                            updateTargetSize(i, stats);
+                        }
                         processActive(i);
                         break;
                     }
@@ -146,21 +161,14 @@ public class Scheduler {
         }
     }
 
-    private void updateTargetSize(AgentPoolInstance i) throws IOException {
+    private void updateTargetSize(AgentPoolInstance i, List<ProcessQueueStatsEntry> queueStats) {
         if (!i.getResource().getSpec().isAutoScale()) {
             return;
         }
 
-        List<ProcessQueueEntry> queueEntries = processQueueClient.query();
-
-        AgentPoolConfiguration spec = i.getResource().getSpec();
-        if (!spec.isAutoScale()) {
-            return;
-        }
-
-        AutoScaler autoScaler = new AutoScaler(n -> AgentPod.list(k8sClient, n).size());
+        AgentPoolInstance updated = autoScaler.apply(i, queueStats);
         synchronized (pools) {
-            pools.put(i.getName(), autoScaler.apply(i, queueEntries));
+            pools.put(i.getName(), updated);
         }
     }
 
@@ -181,6 +189,7 @@ public class Scheduler {
         if (pods.isEmpty()) {
             synchronized (pools) {
                 pools.remove(resourceName);
+                autoScaler.forget(resourceName);
                 log.info("processDeleted ['{}'] -> no pods left, the pool was removed", resourceName);
             }
         } else {
@@ -0,0 +1,257 @@
+package com.walmartlabs.concord.agentoperator.scheduler;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.agentoperator.crd.AgentPool;
+import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
+import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration.ScalingMode;
+import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueStatsEntry;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the auto-scaler against a simulated process queue and agent pool
+ * using synthetic load curves. Time is simulated, each tick is one
+ * iteration of the operator's scheduler.
+ */
+public class AutoScalerSimulationTest {
+
+    private static final long TICK_MS = 5000;
+    private static final long PROCESS_DURATION_MS = 120000;
+    private static final long POD_STARTUP_MS = 30000;
+    private static final int AGENT_CAPACITY = 2;
+    private static final Map<String, Object> REQUIREMENTS = Collections.singletonMap("flavor", "test");
+
+    @Test
+    public void testBurst() {
+        // 100 processes at once, then nothing
+        IntUnaryOperator load = t -> t == 10 ? 100 : 0;
+
+        Result incremental = simulate(ScalingMode.INCREMENTAL, load, 200);
+        Result demand = simulate(ScalingMode.DEMAND, load, 200);
+
+        assertEquals(100, incremental.finished);
+        assertEquals(100, demand.finished);
+
+        // the demand-based policy absorbs the burst in one step
+        assertTrue(demand.toString(), demand.maxSize >= 50);
+        assertTrue(demand + " vs " + incremental, demand.maxWaitMs * 2 < incremental.maxWaitMs);
+
+        // and scales back down once the cooldown expires
+        assertEquals(1, demand.lastSize);
+    }
+
+    @Test
+    public void testSteadyLoad() {
+        // one process every 5 seconds, requires 24 slots (12 pods) on average
+        IntUnaryOperator load = t -> 1;
+
+        Result incremental = simulate(ScalingMode.INCREMENTAL, load, 300);
+        Result demand = simulate(ScalingMode.DEMAND, load, 300);
+
+        assertEquals(0, demand.enqueuedAtEnd);
+
+        // no oscillation once the load is stable
+        assertTrue(demand + " vs " + incremental, demand.directionChanges < incremental.directionChanges);
+        assertTrue(demand.toString(), demand.directionChanges <= 2);
+    }
+
+    @Test
+    public void testSpikyLoad() {
+        // short spikes of 10 processes every two minutes
+        IntUnaryOperator load = t -> t % 24 == 0 ? 10 : 0;
+
+        Result incremental = simulate(ScalingMode.INCREMENTAL, load, 480);
+        Result demand = simulate(ScalingMode.DEMAND, load, 480);
+
+        // the cooldown keeps the pool from shrinking between the spikes
+        assertTrue(demand + " vs " + incremental, demand.directionChanges < incremental.directionChanges);
+        assertTrue(demand + " vs " + incremental, demand.maxWaitMs <= incremental.maxWaitMs);
+    }
+
+    private static Result simulate(ScalingMode mode, IntUnaryOperator load, int ticks) {
+        AgentPoolConfiguration spec = new AgentPoolConfiguration();
+        spec.setScalingMode(mode);
+        spec.setMinSize(1);
+        spec.setMaxSize(100);
+        spec.setSizeIncrement(2);
+        spec.setScalingDelayMs(TICK_MS);
+        spec.setAgentCapacity(AGENT_CAPACITY);
+        spec.setPodStartupMs(POD_STARTUP_MS);
+        spec.setScaleDownCooldownMs(300000);
+        spec.setQueueSelector(REQUIREMENTS);
+
+        AgentPool resource = new AgentPool();
+        resource.setSpec(spec);
+
+        Cluster cluster = new Cluster();
+        cluster.reconcile(1, 0);
+
+        long[] lastUpdate = {-TICK_MS * 10};
+        AutoScaler as = new AutoScaler(n -> cluster.pods.size(),
+                i -> cluster.now - lastUpdate[0] > spec.getScalingDelayMs(),
+                () -> cluster.now);
+
+        AgentPoolInstance pool = new AgentPoolInstance("test", resource, AgentPoolInstance.Status.ACTIVE, 1, 0);
+
+        Result result = new Result();
+        int lastDirection = 0;
+
+        for (int t = 0; t < ticks; t++) {
+            cluster.now = t * TICK_MS;
+
+            cluster.arrive(load.applyAsInt(t));
+            cluster.run();
+
+            AgentPoolInstance next = as.apply(pool, cluster.stats());
+            if (next.getTargetSize() != pool.getTargetSize()) {
+                lastUpdate[0] = cluster.now;
+
+                int direction = Integer.signum(next.getTargetSize() - pool.getTargetSize());
+                if (lastDirection != 0 && direction != lastDirection) {
+                    result.directionChanges++;
+                }
+                lastDirection = direction;
+            }
+            pool = next;
+
+            cluster.reconcile(pool.getTargetSize(), cluster.now);
+
+            result.maxSize = Math.max(result.maxSize, pool.getTargetSize());
+        }
+
+        result.lastSize = pool.getTargetSize();
+        result.maxWaitMs = cluster.maxWaitMs;
+        result.finished = cluster.finished;
+        result.enqueuedAtEnd = cluster.queue.size();
+        return result;
+    }
+
+    private static class Cluster {
+
+        private final Deque<Long> queue = new ArrayDeque<>();
+        private final List<Pod> pods = new ArrayList<>();
+        private final Deque<Long> created = new ArrayDeque<>();
+
+        private long now;
+        private long maxWaitMs;
+        private int finished;
+
+        void arrive(int count) {
+            for (int i = 0; i < count; i++) {
+                queue.addLast(now);
+                created.addLast(now);
+            }
+        }
+
+        void run() {
+            for (Pod p : pods) {
+                Iterator<Long> it = p.running.iterator();
+                while (it.hasNext()) {
+                    if (it.next() <= now) {
+                        it.remove();
+                        finished++;
+                    }
+                }
+            }
+
+            for (Pod p : pods) {
+                if (p.readyAt > now) {
+                    continue;
+                }
+
+                while (p.running.size() < AGENT_CAPACITY && !queue.isEmpty()) {
+                    long enqueuedAt = queue.removeFirst();
+                    maxWaitMs = Math.max(maxWaitMs, now - enqueuedAt);
+                    p.running.add(now + PROCESS_DURATION_MS);
+                }
+            }
+        }
+
+        List<ProcessQueueStatsEntry> stats() {
+            long windowStart = now - AutoScaler.ARRIVAL_RATE_WINDOW_SEC * 1000L;
+            while (!created.isEmpty() && created.peekFirst() <= windowStart) {
+                created.removeFirst();
+            }
+
+            int running = pods.stream()
+                    .mapToInt(p -> p.running.size())
+                    .sum();
+
+            long oldestAge = queue.isEmpty() ? 0 : now - queue.peekFirst();
+
+            return Collections.singletonList(new ProcessQueueStatsEntry(REQUIREMENTS, queue.size(), oldestAge, running, created.size()));
+        }
+
+        /**
+         * Adds new pods or removes the idle ones, similarly to the operator's planner.
+         */
+        void reconcile(int targetSize, long now) {
+            while (pods.size() < targetSize) {
+                pods.add(new Pod(now + POD_STARTUP_MS));
+            }
+
+            Iterator<Pod> it = pods.iterator();
+            while (pods.size() > targetSize && it.hasNext()) {
+                if (it.next().running.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static class Pod {
+
+        private final long readyAt;
+        private final List<Long> running = new ArrayList<>();
+
+        private Pod(long readyAt) {
+            this.readyAt = readyAt;
+        }
+    }
+
+    private static class Result {
+
+        private int maxSize;
+        private int lastSize;
+        private long maxWaitMs;
+        private int directionChanges;
+        private int finished;
+        private int enqueuedAtEnd;
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "maxSize=" + maxSize +
+                    ", lastSize=" + lastSize +
+                    ", maxWaitMs=" + maxWaitMs +
+                    ", directionChanges=" + directionChanges +
+                    ", finished=" + finished +
+                    ", enqueuedAtEnd=" + enqueuedAtEnd +
+                    '}';
+        }
+    }
+}
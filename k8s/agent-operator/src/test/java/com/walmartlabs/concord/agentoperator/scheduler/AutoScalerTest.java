@@ -22,7 +22,7 @@ package com.walmartlabs.concord.agentoperator.scheduler;
 
 import com.walmartlabs.concord.agentoperator.crd.AgentPool;
 import com.walmartlabs.concord.agentoperator.crd.AgentPoolConfiguration;
-import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueEntry;
+import com.walmartlabs.concord.agentoperator.processqueue.ProcessQueueStatsEntry;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -49,7 +49,7 @@ public class AutoScalerTest {
 
         AgentPoolInstance pool = new AgentPoolInstance("test", resource, AgentPoolInstance.Status.ACTIVE, 1, 0);
 
-        List<ProcessQueueEntry> queue = new ArrayList<>();
+        List<ProcessQueueStatsEntry> queue = new ArrayList<>();
 
         // ---
 
@@ -75,7 +75,7 @@ public class AutoScalerTest {
 
         AgentPoolInstance pool = new AgentPoolInstance("test", resource, AgentPoolInstance.Status.ACTIVE, 1, 0);
 
-        List<ProcessQueueEntry> queue = new ArrayList<>();
+        List<ProcessQueueStatsEntry> queue = new ArrayList<>();
 
         // ---
 
@@ -103,10 +103,8 @@ public class AutoScalerTest {
 
         AgentPoolInstance pool = new AgentPoolInstance("test", resource, AgentPoolInstance.Status.ACTIVE, 1, 0);
 
-        List<ProcessQueueEntry> queue = new ArrayList<>();
-        for (int i = 0; i < 5; i++) {
-            queue.add(new ProcessQueueEntry(Collections.singletonMap("test", 123)));
-        }
+        List<ProcessQueueStatsEntry> queue = new ArrayList<>();
+        queue.add(new ProcessQueueStatsEntry(Collections.singletonMap("test", 123), 5, 0, 0, 0));
 
         // ---
 
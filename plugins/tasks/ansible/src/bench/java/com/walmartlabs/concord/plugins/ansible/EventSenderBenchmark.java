@@ -0,0 +1,143 @@
+package com.walmartlabs.concord.plugins.ansible;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays an event file with 100k events recorded in the same format
+ * as concord_events.py produces. The server is simulated by a fixed
+ * delay per request.
+ * Run with {@code mvn -Pbenchmarks test-compile exec:java}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EventSenderBenchmark {
+
+    private static final int EVENTS = 100_000;
+
+    @Param({"0", "5"})
+    public long requestDelay;
+
+    private Path eventsFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        eventsFile = Files.createTempFile("events", ".log");
+        record(eventsFile, EVENTS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(eventsFile);
+    }
+
+    @Benchmark
+    public int replay() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        ProcessEventsApi api = new ProcessEventsApi(null) {
+            @Override
+            public void batchEvent(UUID processInstanceId, List<ProcessEventRequest> body) {
+                if (requestDelay > 0) {
+                    try {
+                        Thread.sleep(requestDelay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                count.addAndGet(body.size());
+            }
+        };
+
+        EventSender sender = new EventSender(false, UUID.randomUUID(), eventsFile, api);
+        sender.stop(); // the file is complete, send everything and exit
+        sender.start().get();
+
+        if (count.get() != EVENTS) {
+            throw new IllegalStateException("Expected " + EVENTS + " events, got " + count.get());
+        }
+
+        return count.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EventSenderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    /**
+     * Writes runner_on_ok-like events for a play over 500 hosts.
+     */
+    private static void record(Path dst, int count) throws IOException {
+        ObjectMapper om = new ObjectMapper();
+        Random rnd = new Random(count);
+
+        try (BufferedWriter w = Files.newBufferedWriter(dst, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("changed", rnd.nextBoolean());
+                result.put("stdout", "täsk output " + UUID.randomUUID());
+                result.put("stdout_lines", Arrays.asList("line 1", "line 2", "line 3"));
+
+                Map<String, Object> data = new LinkedHashMap<>();
+                data.put("playbook", "playbook.yml");
+                data.put("host", "host-" + (i % 500) + ".example.com");
+                data.put("hostGroup", "servers");
+                data.put("task", "task " + (i / 500));
+                data.put("action", "command");
+                data.put("correlationId", UUID.randomUUID().toString());
+                data.put("phase", "post");
+                data.put("status", "OK");
+                data.put("duration", rnd.nextInt(10000));
+                data.put("result", result);
+                data.put("parentCorrelationId", null);
+                data.put("currentRetryCount", null);
+
+                Map<String, Object> event = new LinkedHashMap<>();
+                event.put("eventType", "ANSIBLE");
+                event.put("data", data);
+
+                w.write(om.writeValueAsString(event));
+                w.write("<~EOL~>\n");
+            }
+        }
+    }
+}
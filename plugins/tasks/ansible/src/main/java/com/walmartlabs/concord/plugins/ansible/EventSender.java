@@ -28,17 +28,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
 
 /**
  * Reads data recorded by concord_events.py and sends it to the Server.
+ * <p>
+ * The events are read and sent in separate threads. While the previous
+ * batch is being sent, the reader keeps collecting the events into the
+ * next one, so the batches grow when the server can't keep up and stay
+ * small (i.e. the events are sent right away) otherwise.
  */
 public class EventSender {
 
@@ -46,10 +49,17 @@ public class EventSender {
 
     private static final String EOL_MARKER = "<~EOL~>";
 
-    private static final long NO_DATA_DELAY = 1000;
+    private static final long MIN_NO_DATA_DELAY = 10;
+    private static final long MAX_NO_DATA_DELAY = 1000;
     private static final long API_ERROR_DELAY = 10000;
-    private static final long MAX_BATCH_SIZE = 10;
+    private static final int MAX_SEND_ATTEMPTS = 3;
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final long MAX_BATCH_BYTES = 1024 * 1024;
     private static final long MAX_BATCH_AGE = 5000;
+    private static final int MAX_PENDING_BATCHES = 2;
+    private static final long ENQUEUE_TIMEOUT = 1000;
+
+    private static final List<ProcessEventRequest> END_OF_DATA = Collections.emptyList();
 
     private final boolean debug;
     private final UUID instanceId;
@@ -57,9 +67,11 @@ public class EventSender {
     private final ProcessEventsApi eventsApi;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final BlockingQueue<List<ProcessEventRequest>> queue = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
 
     private volatile boolean stop = false;
+    private volatile boolean senderStopped = false;
 
     public EventSender(boolean debug, UUID instanceId, Path eventsFile, ProcessEventsApi eventsApi) {
         this.debug = debug;
@@ -69,7 +81,21 @@ public class EventSender {
     }
 
     public Future<?> start() {
-        return executor.submit(this::doRun);
+        Future<?> sender = executor.submit(this::doSend);
+        Future<?> result = executor.submit(() -> {
+            try {
+                doRun();
+            } finally {
+                enqueue(END_OF_DATA);
+            }
+
+            // wait until all batches are sent
+            sender.get();
+            return null;
+        });
+
+        executor.shutdown();
+        return result;
     }
 
     public void stop() {
@@ -81,41 +107,55 @@ public class EventSender {
             log.info("run -> started...");
         }
 
-        try (RandomAccessFile f = new RandomAccessFile(eventsFile.toFile(), "r")) {
-            Batch batch = new Batch(instanceId, eventsApi);
-            long t1 = System.currentTimeMillis();
+        try (LineTailer tailer = new LineTailer(eventsFile)) {
+            Batch batch = new Batch();
+            StringBuilder pending = new StringBuilder();
+            long noDataDelay = MIN_NO_DATA_DELAY;
 
             while (true) {
-                String line = f.readLine();
+                String line = tailer.readLine();
+
+                if (line == null) {
+                    // all available data is read, send what we have unless the previous batch is still in flight
+                    if (!batch.isEmpty() && (queue.isEmpty() || batch.age() >= MAX_BATCH_AGE)) {
+                        batch = send(batch);
+                    }
 
-                if (line == null || line.isEmpty()) {
-                    if (stop) {
+                    if (stop || Thread.currentThread().isInterrupted()) {
                         // looks like the end of the play
                         break;
                     }
 
                     // wait for more data
-                    sleep(NO_DATA_DELAY);
+                    sleep(noDataDelay);
+                    noDataDelay = Math.min(noDataDelay * 2, MAX_NO_DATA_DELAY);
                     continue;
                 }
 
-                if (line.endsWith(EOL_MARKER)) {
-                    String data = line.substring(0, line.length() - EOL_MARKER.length());
-                    ProcessEventRequest req = objectMapper.readValue(data, ProcessEventRequest.class);
-                    batch.add(req);
-                } else {
-                    // partial line, re-read next time
-                    f.seek(f.getFilePointer() - line.length());
+                noDataDelay = MIN_NO_DATA_DELAY;
+
+                if (!line.endsWith(EOL_MARKER)) {
+                    // a line break inside of the event's data, keep reading
+                    pending.append(line).append('\n');
+                    continue;
                 }
 
-                long t2 = System.currentTimeMillis();
-                if (batch.size() >= MAX_BATCH_SIZE || t2 - t1 >= MAX_BATCH_AGE) {
-                    flush(batch);
-                    t1 = t2;
+                String data = line.substring(0, line.length() - EOL_MARKER.length());
+                if (pending.length() > 0) {
+                    data = pending.append(data).toString();
+                    pending.setLength(0);
+                }
+
+                batch.add(objectMapper.readValue(data, ProcessEventRequest.class), data.length());
+
+                if (batch.size() >= MAX_BATCH_SIZE || batch.bytes() >= MAX_BATCH_BYTES) {
+                    batch = send(batch);
                 }
             }
 
-            flush(batch);
+            if (!batch.isEmpty()) {
+                send(batch);
+            }
         } catch (IOException e) {
             log.error("Error while reading the event file: {}", e.getMessage(), e);
         }
@@ -125,12 +165,63 @@ public class EventSender {
         }
     }
 
-    private static void flush(Batch b) {
+    private Batch send(Batch b) {
+        enqueue(b.items);
+        return new Batch();
+    }
+
+    private void enqueue(List<ProcessEventRequest> items) {
+        try {
+            // blocks if the sender is behind. If the sender is gone, nobody will take the items
+            while (!queue.offer(items, ENQUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (senderStopped) {
+                    log.warn("The event sender is stopped, {} event(s) skipped", items.size());
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void doSend() {
         try {
-            b.flush();
-        } catch (ApiException e) {
-            log.warn("Error while sending the event to the server", e);
-            sleep(API_ERROR_DELAY);
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ProcessEventRequest> items;
+                try {
+                    items = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                if (items == END_OF_DATA) {
+                    break;
+                }
+
+                send(items);
+            }
+        } finally {
+            // unblock the reader
+            senderStopped = true;
+            queue.clear();
+        }
+    }
+
+    private void send(List<ProcessEventRequest> items) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                eventsApi.batchEvent(instanceId, items);
+                return;
+            } catch (ApiException | RuntimeException e) {
+                if (attempt >= MAX_SEND_ATTEMPTS) {
+                    log.warn("Error while sending the events to the server, {} event(s) skipped", items.size(), e);
+                    return;
+                }
+
+                log.warn("Error while sending the events to the server, retrying in {}ms...", API_ERROR_DELAY, e);
+                sleep(API_ERROR_DELAY);
+            }
         }
     }
 
@@ -144,27 +235,33 @@ public class EventSender {
 
     private static class Batch {
 
-        private final UUID instanceId;
-        private final ProcessEventsApi eventsApi;
-
         private final List<ProcessEventRequest> items = new ArrayList<>();
+        private long createdAt;
+        private long bytes = 0;
 
-        private Batch(UUID instanceId, ProcessEventsApi eventsApi) {
-            this.instanceId = instanceId;
-            this.eventsApi = eventsApi;
-        }
+        public void add(ProcessEventRequest req, int size) {
+            if (items.isEmpty()) {
+                createdAt = System.currentTimeMillis();
+            }
 
-        public void add(ProcessEventRequest req) {
             items.add(req);
-        }
-
-        public void flush() throws ApiException {
-            eventsApi.batchEvent(instanceId, items);
-            items.clear();
+            bytes += size;
         }
 
         public int size() {
             return items.size();
         }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long age() {
+            return System.currentTimeMillis() - createdAt;
+        }
+
+        public boolean isEmpty() {
+            return items.isEmpty();
+        }
     }
 }
@@ -0,0 +1,100 @@
+package com.walmartlabs.concord.plugins.ansible;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads lines from a file that is still being written.
+ * Unlike {@link java.io.RandomAccessFile#readLine()}, reads the data
+ * in large blocks and decodes it as UTF-8. Incomplete lines are kept
+ * until the rest of the line is available.
+ */
+public class LineTailer implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private byte[] line = new byte[BUFFER_SIZE];
+    private int lineLen = 0;
+
+    public LineTailer(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.buf.flip();
+    }
+
+    /**
+     * @return the next complete line without the line separator or {@code null}
+     * if there is no complete line available yet
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            byte[] ab = buf.array();
+            int start = buf.position();
+            int end = buf.limit();
+
+            for (int i = start; i < end; i++) {
+                if (ab[i] == '\n') {
+                    append(ab, start, i - start);
+                    buf.position(i + 1);
+
+                    String result = new String(line, 0, lineLen, StandardCharsets.UTF_8);
+                    lineLen = 0;
+                    return result;
+                }
+            }
+
+            append(ab, start, end - start);
+
+            buf.clear();
+            int read = channel.read(buf);
+            buf.flip();
+
+            if (read <= 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void append(byte[] ab, int off, int len) {
+        if (lineLen + len > line.length) {
+            byte[] a = new byte[Math.max(line.length * 2, lineLen + len)];
+            System.arraycopy(line, 0, a, 0, lineLen);
+            line = a;
+        }
+
+        System.arraycopy(ab, off, line, lineLen, len);
+        lineLen += len;
+    }
+}
@@ -0,0 +1,79 @@
+package com.walmartlabs.concord.plugins.ansible;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.client.ProcessEventRequest;
+import com.walmartlabs.concord.client.ProcessEventsApi;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventSenderTest extends AbstractTest {
+
+    @Test
+    public void test() throws Exception {
+        Path eventsFile = Files.createTempFile(tempDir("events"), "events", ".log");
+
+        List<ProcessEventRequest> events = new CopyOnWriteArrayList<>();
+        ProcessEventsApi api = new ProcessEventsApi(null) {
+            @Override
+            public void batchEvent(UUID processInstanceId, List<ProcessEventRequest> body) {
+                events.addAll(body);
+            }
+        };
+
+        EventSender sender = new EventSender(false, UUID.randomUUID(), eventsFile, api);
+        Future<?> f = sender.start();
+
+        for (int i = 0; i < 100; i++) {
+            append(eventsFile, "{\"eventType\": \"ANSIBLE\", \"data\": {\"n\": " + i + ", \"host\": \"höst-ü\"}}<~EOL~>\n");
+        }
+
+        // a partially written event
+        append(eventsFile, "{\"eventType\": \"ANSIBLE\", \"data\": {\"n\": 100,");
+        Thread.sleep(100);
+        append(eventsFile, " \"host\": \"last\"}}<~EOL~>\n");
+
+        sender.stop();
+        f.get(1, TimeUnit.MINUTES);
+
+        assertEquals(101, events.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, events.get(i).getData().get("n"));
+            assertEquals("höst-ü", events.get(i).getData().get("host"));
+        }
+        assertEquals("last", events.get(100).getData().get("host"));
+    }
+
+    private static void append(Path p, String s) throws Exception {
+        Files.write(p, s.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -166,6 +166,65 @@ public class ConcordTask extends AbstractConcordTask {
     }
 
     public Map<String, ProcessEntry> waitForCompletion(@InjectVariable("context") Context ctx, List<String> ids, long timeout) {
+        try {
+            Map<String, ProcessEntry> result = waitForCompletionBatch(ctx, ids, timeout);
+            if (result != null) {
+                return result;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return pollForCompletion(ctx, ids, timeout);
+    }
+
+    /**
+     * Waits for the processes using a single long-polling request
+     * (repeated if the server returns before all processes are finished).
+     *
+     * @return the processes' final state or {@code null} if the server
+     * doesn't support waiting for multiple processes.
+     */
+    private Map<String, ProcessEntry> waitForCompletionBatch(Context ctx, List<String> ids, long timeout) throws Exception {
+        List<UUID> instanceIds = ids.stream()
+                .map(UUID::fromString)
+                .distinct()
+                .collect(Collectors.toList());
+
+        log.info("Waiting for {}...", instanceIds);
+
+        long t1 = System.currentTimeMillis();
+        while (true) {
+            long left = timeout > 0 ? timeout - (System.currentTimeMillis() - t1) : -1;
+            if (timeout > 0 && left <= 0) {
+                throw new TimeoutException("Timeout waiting for " + instanceIds + ": " + (System.currentTimeMillis() - t1));
+            }
+
+            List<ProcessEntry> l;
+            try {
+                l = ClientUtils.withRetry(3, 1000, () -> withClient(ctx, client -> {
+                    ProcessApi api = new ProcessApi(client);
+                    return api.waitForCompletionMany(instanceIds, false, left);
+                }));
+            } catch (ApiException e) {
+                if (e.getCode() == 404 || e.getCode() == 405) {
+                    log.info("Waiting for multiple processes is not supported by the server, polling each process...");
+                    return null;
+                }
+                throw e;
+            }
+
+            boolean done = l.stream()
+                    .allMatch(e -> isFinalStatus(e.getStatus()));
+
+            if (done) {
+                return l.stream()
+                        .collect(Collectors.toMap(e -> e.getInstanceId().toString(), e -> e));
+            }
+        }
+    }
+
+    private Map<String, ProcessEntry> pollForCompletion(Context ctx, List<String> ids, long timeout) {
         Map<String, ProcessEntry> result = new HashMap<>();
 
         ids.parallelStream().map(UUID::fromString).forEach(id -> {
@@ -451,7 +510,8 @@ public class ConcordTask extends AbstractConcordTask {
     }
 
     private List<String> forkMany(Context ctx, List<Map<String, Object>> jobs) throws Exception {
-        List<String> ids = new ArrayList<>();
+        List<Map<String, Object>> cfgs = new ArrayList<>();
+        boolean sync = false;
 
         for (Map<String, Object> job : jobs) {
             Map<String, Object> cfg = createJobCfg(ctx, job);
@@ -459,24 +519,72 @@ public class ConcordTask extends AbstractConcordTask {
 
             int n = getInstances(cfg);
             for (int i = 0; i < n; i++) {
-                UUID id = forkOne(ctx, cfg);
-                ids.add(id.toString());
+                cfgs.add(cfg);
+            }
+
+            sync |= getBoolean(cfg, SYNC_KEY, false);
+        }
+
+        // sync forks must be started one by one
+        if (!sync && cfgs.size() > 1) {
+            List<UUID> ids = forkBulk(ctx, cfgs);
+            if (ids != null) {
+                return ids.stream()
+                        .map(UUID::toString)
+                        .collect(Collectors.toList());
             }
         }
 
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> cfg : cfgs) {
+            UUID id = forkOne(ctx, cfg);
+            ids.add(id.toString());
+        }
+
         return ids;
     }
 
-    private UUID forkOne(Context ctx, Map<String, Object> cfg) throws Exception {
-        if (cfg.containsKey(ARCHIVE_KEY)) {
-            log.warn("'" + ARCHIVE_KEY + "' parameter is not supported for fork action and will be ignored");
+    /**
+     * Forks the current instance using a single request.
+     *
+     * @return IDs of the forked processes or {@code null} if the server
+     * doesn't support bulk forks.
+     */
+    private List<UUID> forkBulk(Context ctx, List<Map<String, Object>> cfgs) throws Exception {
+        List<Map<String, Object>> reqs = new ArrayList<>(cfgs.size());
+        for (Map<String, Object> cfg : cfgs) {
+            reqs.add(createForkRequest(cfg));
         }
 
-        if (!cfg.containsKey(ENTRY_POINT_KEY)) {
-            throw new IllegalArgumentException("'" + ENTRY_POINT_KEY + "' is required");
-        }
+        UUID instanceId = assertUUID(cfgs.get(0), INSTANCE_ID_KEY);
 
-        Map<String, Object> req = createRequest(cfg);
+        log.info("Forking the current instance {} times...", reqs.size());
+
+        return withClient(ctx, client -> {
+            ProcessApi api = new ProcessApi(client);
+
+            List<StartProcessResponse> resp;
+            try {
+                resp = api.forkMany(instanceId, reqs, null);
+            } catch (ApiException e) {
+                if (e.getCode() == 404 || e.getCode() == 405) {
+                    log.info("Bulk forks are not supported by the server, forking one by one...");
+                    return null;
+                }
+                throw e;
+            }
+
+            List<UUID> ids = new ArrayList<>(resp.size());
+            for (StartProcessResponse r : resp) {
+                log.info("Forked a child process: {} url: {}", r.getInstanceId(), getProcessUrl(ctx, r.getInstanceId().toString()));
+                ids.add(r.getInstanceId());
+            }
+            return ids;
+        });
+    }
+
+    private UUID forkOne(Context ctx, Map<String, Object> cfg) throws Exception {
+        Map<String, Object> req = createForkRequest(cfg);
 
         UUID instanceId = assertUUID(cfg, INSTANCE_ID_KEY);
         boolean sync = getBoolean(cfg, SYNC_KEY, false);
@@ -491,6 +599,18 @@ public class ConcordTask extends AbstractConcordTask {
         });
     }
 
+    private static Map<String, Object> createForkRequest(Map<String, Object> cfg) {
+        if (cfg.containsKey(ARCHIVE_KEY)) {
+            log.warn("'" + ARCHIVE_KEY + "' parameter is not supported for fork action and will be ignored");
+        }
+
+        if (!cfg.containsKey(ENTRY_POINT_KEY)) {
+            throw new IllegalArgumentException("'" + ENTRY_POINT_KEY + "' is required");
+        }
+
+        return createRequest(cfg);
+    }
+
     private void kill(Context ctx) throws Exception {
         Map<String, Object> cfg = createCfg(ctx, INSTANCE_ID_KEY);
         kill(ctx, cfg);
@@ -129,7 +129,7 @@ public class InventoryTask extends AbstractConcordTask {
     private List<Object> execQuery(Context ctx, String orgName, String inventoryName, String queryName, Map<String, Object> params) throws Exception {
         return withClient(ctx, client -> {
             InventoryQueriesApi api = new InventoryQueriesApi(client);
-            return api.exec(orgName, inventoryName, queryName, params);
+            return api.exec(orgName, inventoryName, queryName, params, null, null);
         });
     }
 
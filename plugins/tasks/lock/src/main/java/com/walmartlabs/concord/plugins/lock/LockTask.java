@@ -60,7 +60,7 @@ public class LockTask implements Task {
 
         log.info("Locking '{}' with scope '{}'", lockName, scope);
 
-        LockResult lock = withRetry(() -> api.tryLock(UUID.fromString(instanceId), lockName, scope));
+        LockResult lock = withRetry(() -> api.tryLock(UUID.fromString(instanceId), lockName, scope, null));
 
         log.info("Locking '{}' with scope '{}' -> {}", lockName, scope, lock.isAcquired());
 
@@ -0,0 +1,147 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runner.model.ImmutableStateConfiguration;
+import com.walmartlabs.concord.runner.model.StateConfiguration;
+import io.takari.bpm.api.Variables;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the state codecs using a typical set of process variables.
+ * Run with {@code mvn -Pbenchmarks test-compile exec:java}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateCodecBenchmark {
+
+    @Param({"JAVA", "BINARY", "BINARY_DEFLATE"})
+    public String codecName;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private StateCodec codec;
+    private Variables vars;
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws Exception {
+        codec = codec(codecName);
+        vars = variables(size);
+        data = write(codec, vars);
+    }
+
+    @Benchmark
+    public byte[] write() throws Exception {
+        return write(codec, vars);
+    }
+
+    @Benchmark
+    public Object read() throws Exception {
+        return codec.read(new ByteArrayInputStream(data));
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String n : new String[]{"JAVA", "BINARY", "BINARY_DEFLATE"}) {
+            for (int size : new int[]{100, 1000}) {
+                byte[] ab = write(codec(n), variables(size));
+                System.out.printf("%s, %d variables: %d bytes%n", n, size, ab.length);
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(StateCodecBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static StateCodec codec(String name) {
+        ImmutableStateConfiguration.Builder b = StateConfiguration.builder();
+        switch (name) {
+            case "JAVA":
+                b.format(StateConfiguration.Format.JAVA);
+                break;
+            case "BINARY":
+                b.format(StateConfiguration.Format.BINARY);
+                break;
+            case "BINARY_DEFLATE":
+                b.format(StateConfiguration.Format.BINARY).compress(true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + name);
+        }
+        return StateCodecs.create(b.build());
+    }
+
+    private static byte[] write(StateCodec codec, Object value) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.write(value, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Strings, numbers and nested maps and lists, i.e. what's usually found
+     * in the process arguments and in the results of tasks.
+     */
+    private static Variables variables(int size) {
+        Random rnd = new Random(size);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            switch (i % 4) {
+                case 0:
+                    m.put("str" + i, UUID.randomUUID().toString());
+                    break;
+                case 1:
+                    m.put("num" + i, rnd.nextInt());
+                    break;
+                case 2: {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("name", "item" + i);
+                    item.put("enabled", rnd.nextBoolean());
+                    item.put("ts", System.currentTimeMillis());
+                    m.put("obj" + i, item);
+                    break;
+                }
+                default: {
+                    List<Object> l = new ArrayList<>();
+                    for (int j = 0; j < 10; j++) {
+                        l.add("value" + j);
+                    }
+                    m.put("list" + i, l);
+                }
+            }
+        }
+        return new Variables(m);
+    }
+}
@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runner;
  */
 
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.project.InternalConstants;
 import com.walmartlabs.concord.sdk.Constants;
@@ -29,13 +30,13 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 public class CheckpointManager {
 
@@ -60,21 +61,9 @@ public class CheckpointManager {
             Path checkpointMeta = baseDir.resolve(Constants.Files.CHECKPOINT_META_FILE_NAME);
             Files.write(checkpointMeta, checkpointName.getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
 
-            try (TemporaryPath checkpointFile = new TemporaryPath(checkpointDir.resolve(checkpointId + "_" + checkpointName + ".zip"))) {
-                try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(checkpointFile.path()))) {
-                    IOUtils.zip(zip, InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME));
-                    IOUtils.zip(zip, InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME));
-                    IOUtils.zipFile(zip, checkpointMeta, Constants.Files.CHECKPOINT_META_FILE_NAME);
-                }
-
-                try (InputStream in = Files.newInputStream(checkpointFile.path())) {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("id", checkpointId);
-                    data.put("name", checkpointName);
-                    data.put("data", in);
-
-                    processApiClient.uploadCheckpoint(instanceId, data);
-                }
+            boolean uploaded = uploadChanges(checkpointId, checkpointName, baseDir, checkpointDir, checkpointMeta);
+            if (!uploaded) {
+                uploadArchive(checkpointId, checkpointName, baseDir, checkpointDir, checkpointMeta);
             }
 
             Files.delete(checkpointMeta);
@@ -91,4 +80,158 @@ public class CheckpointManager {
             throw new ExecutionException("Checkpoint process error", e);
         }
     }
+
+    /**
+     * Uploads the list of the checkpoint's files and only the files that are
+     * not stored on the server yet (e.g. saved by the previous checkpoints).
+     *
+     * @return {@code false} if the server doesn't support incremental checkpoints
+     */
+    private boolean uploadChanges(UUID checkpointId, String checkpointName, Path baseDir, Path checkpointDir, Path checkpointMeta) throws Exception {
+        List<FileEntry> files = new ArrayList<>();
+        collect(files, InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME));
+        collect(files, InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME));
+        files.add(FileEntry.create(checkpointMeta, Constants.Files.CHECKPOINT_META_FILE_NAME));
+
+        Set<String> hashes = new HashSet<>();
+        for (FileEntry f : files) {
+            hashes.add(f.hash);
+        }
+
+        Set<String> missing = processApiClient.findMissingCheckpointFiles(instanceId, hashes);
+        if (missing == null) {
+            log.info("uploadChanges ['{}'] -> not supported by the server, uploading the whole checkpoint", checkpointId);
+            return false;
+        }
+
+        long totalSize = 0;
+        long uploadSize = 0;
+        int uploadCount = 0;
+
+        List<Map<String, Object>> manifest = new ArrayList<>(files.size());
+
+        try (TemporaryPath blobsFile = new TemporaryPath(checkpointDir.resolve(checkpointId + "_" + checkpointName + "_delta.zip"))) {
+            try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(blobsFile.path()))) {
+                Set<String> added = new HashSet<>();
+                for (FileEntry f : files) {
+                    totalSize += f.size;
+
+                    if (missing.contains(f.hash) && added.add(f.hash)) {
+                        IOUtils.zipFile(zip, f.src, f.hash);
+                        uploadSize += f.size;
+                        uploadCount++;
+                    }
+
+                    manifest.add(f.toMap());
+                }
+            }
+
+            try (InputStream in = Files.newInputStream(blobsFile.path())) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("id", checkpointId);
+                data.put("name", checkpointName);
+                data.put("manifest", Collections.singletonMap("files", manifest));
+                data.put("data", in);
+
+                processApiClient.uploadCheckpoint(instanceId, data);
+            }
+        }
+
+        log.info("uploadChanges ['{}'] -> {} file(s), {} byte(s) total, uploaded {} file(s), {} byte(s)",
+                checkpointId, files.size(), totalSize, uploadCount, uploadSize);
+
+        return true;
+    }
+
+    private void uploadArchive(UUID checkpointId, String checkpointName, Path baseDir, Path checkpointDir, Path checkpointMeta) throws Exception {
+        try (TemporaryPath checkpointFile = new TemporaryPath(checkpointDir.resolve(checkpointId + "_" + checkpointName + ".zip"))) {
+            try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(checkpointFile.path()))) {
+                IOUtils.zip(zip, InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME));
+                IOUtils.zip(zip, InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME + "/", baseDir.resolve(InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME));
+                IOUtils.zipFile(zip, checkpointMeta, Constants.Files.CHECKPOINT_META_FILE_NAME);
+            }
+
+            try (InputStream in = Files.newInputStream(checkpointFile.path())) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("id", checkpointId);
+                data.put("name", checkpointName);
+                data.put("data", in);
+
+                processApiClient.uploadCheckpoint(instanceId, data);
+            }
+        }
+    }
+
+    /**
+     * Collects the same files as {@link IOUtils#zip(ZipArchiveOutputStream, String, Path, String...)}.
+     */
+    private static void collect(List<FileEntry> files, String dstPrefix, Path srcDir) throws IOException {
+        Files.walkFileTree(srcDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                files.add(FileEntry.create(file, dstPrefix + srcDir.relativize(file).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static final class FileEntry {
+
+        private final Path src;
+        private final String path;
+        private final String hash;
+        private final long size;
+        private final int unixMode;
+
+        private FileEntry(Path src, String path, String hash, long size, int unixMode) {
+            this.src = src;
+            this.path = path;
+            this.hash = hash;
+            this.size = size;
+            this.unixMode = unixMode;
+        }
+
+        static FileEntry create(Path src, String path) throws IOException {
+            MessageDigest md = sha256();
+            long size = 0;
+
+            byte[] ab = new byte[8192];
+            try (InputStream in = Files.newInputStream(src)) {
+                int read;
+                while ((read = in.read(ab)) > 0) {
+                    md.update(ab, 0, read);
+                    size += read;
+                }
+            }
+
+            int unixMode = Posix.unixMode(Files.getPosixFilePermissions(src));
+            return new FileEntry(src, path, toHex(md.digest()), size, unixMode);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new HashMap<>();
+            m.put("path", path);
+            m.put("hash", hash);
+            m.put("size", size);
+            m.put("unixMode", unixMode);
+            return m;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] ab) {
+        StringBuilder sb = new StringBuilder(ab.length * 2);
+        for (byte b : ab) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
 }
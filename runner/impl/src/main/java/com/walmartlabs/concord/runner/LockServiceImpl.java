@@ -44,6 +44,7 @@ public class LockServiceImpl implements LockService {
     private static final int RETRY_COUNT = 3;
     private static final long RETRY_INTERVAL = 5000;
     private static final long LOCK_RETRY_INTERVAL = 10000; // TODO custom intervals?
+    private static final long LOCK_WAIT_TIMEOUT = 30000;
 
     private final ApiClientFactory apiClientFactory;
 
@@ -63,14 +64,22 @@ public class LockServiceImpl implements LockService {
 
         // TODO: timeout
         while (!Thread.currentThread().isInterrupted()) {
-            LockResult lock = withRetry(() -> api.tryLock(instanceId, lockName, LockScope.PROJECT.name()));
+            long t1 = System.currentTimeMillis();
+
+            // the server keeps the request until the lock is handed to the process or the timeout expires
+            LockResult lock = withRetry(() -> api.tryLock(instanceId, lockName, LockScope.PROJECT.name(), LOCK_WAIT_TIMEOUT));
             if (lock.isAcquired()) {
                 log.info("sucessfully aquired lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
                 return;
             }
 
             log.info("waiting for lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
-            sleep(LOCK_RETRY_INTERVAL);
+
+            // older servers return right away
+            long elapsed = System.currentTimeMillis() - t1;
+            if (elapsed < LOCK_RETRY_INTERVAL) {
+                sleep(LOCK_RETRY_INTERVAL - elapsed);
+            }
         }
     }
 
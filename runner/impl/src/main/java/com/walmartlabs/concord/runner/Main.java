@@ -38,6 +38,7 @@ import com.walmartlabs.concord.project.model.ProjectDefinition;
 import com.walmartlabs.concord.runner.engine.EngineFactory;
 import com.walmartlabs.concord.runner.engine.ProcessErrorProcessor;
 import com.walmartlabs.concord.runner.model.RunnerConfiguration;
+import com.walmartlabs.concord.runner.state.StateCodecs;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.sdk.Task;
 import io.takari.bpm.api.*;
@@ -279,8 +280,8 @@ public class Main {
         }
 
         Variables vars;
-        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(varsFile))) {
-            vars = (Variables) in.readObject();
+        try (InputStream in = Files.newInputStream(varsFile)) {
+            vars = (Variables) StateCodecs.read(in);
         } catch (ClassNotFoundException | IOException e) {
             log.error("Can't restore the saved variables: {}", e.getMessage());
             return null;
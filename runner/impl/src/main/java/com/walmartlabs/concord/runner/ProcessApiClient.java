@@ -20,15 +20,17 @@ package com.walmartlabs.concord.runner;
  * =====
  */
 
+import com.google.gson.reflect.TypeToken;
 import com.walmartlabs.concord.ApiClient;
 import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.ApiResponse;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.client.ProcessApi;
 import com.walmartlabs.concord.client.ProcessEntry;
 import com.walmartlabs.concord.runner.model.RunnerConfiguration;
 
-import java.util.Map;
-import java.util.UUID;
+import java.lang.reflect.Type;
+import java.util.*;
 
 public class ProcessApiClient {
 
@@ -55,6 +57,32 @@ public class ProcessApiClient {
         });
     }
 
+    /**
+     * Returns the hashes of the checkpoint files that are not stored on the server yet
+     * or {@code null} if the server doesn't support incremental checkpoints.
+     */
+    public Set<String> findMissingCheckpointFiles(UUID instanceId, Collection<String> hashes) throws ApiException {
+        String path = "/api/v1/process/" + instanceId + "/checkpoint/blobs/missing";
+
+        Map<String, String> headerParams = new HashMap<>();
+        headerParams.put("Content-Type", "application/json");
+
+        Type returnType = new TypeToken<List<String>>() {
+        }.getType();
+
+        try {
+            return ClientUtils.withRetry(retryCount, retryInterval, () -> {
+                ApiResponse<List<String>> resp = ClientUtils.postData(apiClient, path, new ArrayList<>(hashes), headerParams, returnType);
+                return new HashSet<>(resp.getData());
+            });
+        } catch (ApiException e) {
+            if (e.getCode() == 404 || e.getCode() == 405) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     public void updateStatus(UUID instanceId, String agentId, ProcessEntry.StatusEnum status) throws ApiException {
         ClientUtils.withRetry(retryCount, retryInterval, () -> {
             processApi.updateStatus(instanceId, agentId, status.name());
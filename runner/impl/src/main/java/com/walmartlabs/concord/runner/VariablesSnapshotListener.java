@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runner;
  */
 
 import com.walmartlabs.concord.project.InternalConstants;
+import com.walmartlabs.concord.runner.state.StateCodec;
 import io.takari.bpm.EngineListener;
 import io.takari.bpm.api.Variables;
 import io.takari.bpm.state.BpmnErrorHelper;
@@ -28,8 +29,8 @@ import io.takari.bpm.state.ProcessInstance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -45,9 +46,11 @@ public class VariablesSnapshotListener implements EngineListener {
     private static final Logger log = LoggerFactory.getLogger(VariablesSnapshotListener.class);
 
     private final Path stateDir;
+    private final StateCodec codec;
 
-    public VariablesSnapshotListener(Path stateDir) {
+    public VariablesSnapshotListener(Path stateDir, StateCodec codec) {
         this.stateDir = stateDir;
+        this.codec = codec;
     }
 
     @Override
@@ -59,9 +62,8 @@ public class VariablesSnapshotListener implements EngineListener {
 
         try {
             Path dst = stateDir.resolve(InternalConstants.Files.LAST_KNOWN_VARIABLES_FILE_NAME);
-            try (OutputStream out = Files.newOutputStream(dst, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                 ObjectOutputStream oos = new ObjectOutputStream(out)) {
-                oos.writeObject(vars);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dst, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
+                codec.write(vars, out);
             }
         } catch (IOException e) {
             log.error("Can't save a snapshot of the process variables. Process forks (including onError, onCancel and " +
@@ -30,6 +30,8 @@ import com.walmartlabs.concord.runner.VariablesSnapshotListener;
 import com.walmartlabs.concord.runner.engine.el.InjectVariableELResolver;
 import com.walmartlabs.concord.runner.engine.el.TaskResolver;
 import com.walmartlabs.concord.runner.model.RunnerConfiguration;
+import com.walmartlabs.concord.runner.state.StateCodec;
+import com.walmartlabs.concord.runner.state.StateCodecs;
 import com.walmartlabs.concord.sdk.Context;
 import com.walmartlabs.concord.sdk.Task;
 import io.takari.bpm.Configuration;
@@ -135,8 +137,9 @@ public class EngineFactory {
         ProtectedVarContext protectedVarContext = new ProtectedVarContext(PolicyEngineHolder.INSTANCE.getEngine());
         ConcordExecutionContextFactory contextFactory = new ConcordExecutionContextFactory(expressionManager, protectedVarContext, formService);
 
-        EventStorage eventStorage = new FileEventStorage(eventsDir);
-        PersistenceManager persistenceManager = new FilePersistenceManager(instancesDir);
+        EventStorage eventStorage = new FileEventStorage(eventsDir, stateDir.resolve("events.idx"));
+        StateCodec stateCodec = StateCodecs.create(runnerCfg.state());
+        PersistenceManager persistenceManager = new FilePersistenceManager(instancesDir, stateCodec);
 
         ProjectDefinitionAdapter adapter = new ProjectDefinitionAdapter(project, activeProfiles, baseDir);
 
@@ -167,7 +170,7 @@ public class EngineFactory {
                 .withUserTaskHandler(uth)
                 .withConfiguration(cfg)
                 .withListener(new ProcessOutVariablesListener(attachmentsDir, outVariables))
-                .withListener(new VariablesSnapshotListener(stateDir))
+                .withListener(new VariablesSnapshotListener(stateDir, stateCodec))
                 .withResourceResolver(new ResourceResolverImpl(baseDir))
                 .build();
 
@@ -27,39 +27,54 @@ import io.takari.bpm.event.ExpiredEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
 import java.util.stream.Stream;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
+/**
+ * Stores each event in a separate file. The events' metadata (ID, process business key,
+ * definition ID and name) is kept in an append-only index file, so the lookups don't
+ * require deserialization of all stored events.
+ * <p>
+ * The event files remain the source of truth: the index is reconciled with the directory
+ * on the first use, e.g. when the state was saved by a version without the index.
+ */
 public class FileEventStorage implements EventStorage {
 
     private static final Logger log = LoggerFactory.getLogger(FileEventStorage.class);
 
+    private static final int OP_ADD = 1;
+    private static final int OP_REMOVE = 2;
+
     private final Path dir;
+    private final Path indexFile;
+
+    private Index index;
 
-    public FileEventStorage(Path dir) {
+    public FileEventStorage(Path dir, Path indexFile) {
         this.dir = dir;
+        this.indexFile = indexFile;
     }
 
     @Override
-    public void add(Event event) {
+    public synchronized void add(Event event) {
         Path p = dir.resolve(event.getId().toString());
 
         try {
             Path tmp = IOUtils.createTempFile(event.getId().toString(), "event");
-            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(tmp))) {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
                 out.writeObject(event);
             }
             Files.move(tmp, p, REPLACE_EXISTING);
+
+            IndexEntry e = new IndexEntry(event.getId(), event.getProcessBusinessKey(), event.getDefinitionId(), event.getName());
+            index().put(e);
+            appendIndex(OP_ADD, e);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -68,7 +83,7 @@ public class FileEventStorage implements EventStorage {
     }
 
     @Override
-    public Event get(UUID id) {
+    public synchronized Event get(UUID id) {
         Path p = dir.resolve(id.toString());
         if (!Files.exists(p)) {
             return null;
@@ -78,7 +93,7 @@ public class FileEventStorage implements EventStorage {
     }
 
     private Event get(Path p) {
-        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(p))) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(p)))) {
             return (Event) in.readObject();
         } catch (ClassNotFoundException | IOException e) {
             throw new RuntimeException(e);
@@ -86,7 +101,7 @@ public class FileEventStorage implements EventStorage {
     }
 
     @Override
-    public Event remove(UUID id) {
+    public synchronized Event remove(UUID id) {
         Event ev = get(id);
         if (ev == null) {
             return null;
@@ -95,6 +110,11 @@ public class FileEventStorage implements EventStorage {
         Path p = dir.resolve(id.toString());
         try {
             Files.delete(p);
+
+            IndexEntry e = index().remove(id);
+            if (e != null) {
+                appendIndex(OP_REMOVE, e);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -109,19 +129,223 @@ public class FileEventStorage implements EventStorage {
     }
 
     @Override
-    public Collection<Event> find(String processBusinessKey, String eventName) {
-        try (Stream<Path> s = Files.list(dir)) {
-            return s.map(this::get)
-                    .filter(ev -> processBusinessKey.equals(ev.getProcessBusinessKey()) &&
-                            (eventName == null || eventName.equals(ev.getName())))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    public synchronized Collection<Event> find(String processBusinessKey, String eventName) {
+        Collection<IndexEntry> entries = index().find(processBusinessKey);
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Event> result = new ArrayList<>();
+        for (IndexEntry e : entries) {
+            if (eventName != null && !eventName.equals(e.name)) {
+                continue;
+            }
+
+            result.add(get(dir.resolve(e.id.toString())));
         }
+        return result;
     }
 
     @Override
     public List<ExpiredEvent> findNextExpiredEvent(int maxEvents) {
         throw new RuntimeException("Not implemented");
     }
+
+    private Index index() {
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            index = loadIndex();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return index;
+    }
+
+    private Index loadIndex() throws IOException {
+        Index idx = new Index();
+        boolean compact = false;
+
+        if (Files.exists(indexFile)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                while (true) {
+                    int op;
+                    IndexEntry e;
+                    try {
+                        op = in.readUnsignedByte();
+                        e = readEntry(in);
+                    } catch (EOFException ex) {
+                        // a partially written record is ignored, the missing entries are restored below
+                        break;
+                    }
+
+                    if (op == OP_ADD) {
+                        idx.put(e);
+                    } else {
+                        idx.remove(e.id);
+                        compact = true;
+                    }
+                }
+            }
+        }
+
+        // the event files are the source of truth, only the events that are missing
+        // in the index are deserialized
+        Set<UUID> ids = new HashSet<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            Iterator<Path> it = s.iterator();
+            while (it.hasNext()) {
+                Path p = it.next();
+
+                UUID id = parseId(p);
+                if (id == null) {
+                    continue;
+                }
+                ids.add(id);
+
+                if (idx.get(id) == null) {
+                    Event ev = get(p);
+                    idx.put(new IndexEntry(ev.getId(), ev.getProcessBusinessKey(), ev.getDefinitionId(), ev.getName()));
+                    compact = true;
+                }
+            }
+        }
+
+        for (UUID id : new ArrayList<>(idx.ids())) {
+            if (!ids.contains(id)) {
+                idx.remove(id);
+                compact = true;
+            }
+        }
+
+        if (compact) {
+            writeIndex(idx);
+        }
+
+        log.debug("loadIndex -> {} event(s), compacted: {}", ids.size(), compact);
+        return idx;
+    }
+
+    private void writeIndex(Index idx) throws IOException {
+        Path tmp = IOUtils.createTempFile("events", "index");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            for (IndexEntry e : idx.entries()) {
+                out.writeByte(OP_ADD);
+                writeEntry(e, out);
+            }
+        }
+        Files.move(tmp, indexFile, REPLACE_EXISTING);
+    }
+
+    private void appendIndex(int op, IndexEntry e) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(indexFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            out.writeByte(op);
+            writeEntry(e, out);
+        }
+    }
+
+    private static void writeEntry(IndexEntry e, DataOutputStream out) throws IOException {
+        out.writeLong(e.id.getMostSignificantBits());
+        out.writeLong(e.id.getLeastSignificantBits());
+        writeNullableString(e.processBusinessKey, out);
+        writeNullableString(e.definitionId, out);
+        writeNullableString(e.name, out);
+    }
+
+    private static IndexEntry readEntry(DataInputStream in) throws IOException {
+        UUID id = new UUID(in.readLong(), in.readLong());
+        String processBusinessKey = readNullableString(in);
+        String definitionId = readNullableString(in);
+        String name = readNullableString(in);
+        return new IndexEntry(id, processBusinessKey, definitionId, name);
+    }
+
+    private static void writeNullableString(String s, DataOutputStream out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return in.readUTF();
+    }
+
+    private static UUID parseId(Path p) {
+        try {
+            return UUID.fromString(p.getFileName().toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class IndexEntry {
+
+        private final UUID id;
+        private final String processBusinessKey;
+        private final String definitionId;
+        private final String name;
+
+        private IndexEntry(UUID id, String processBusinessKey, String definitionId, String name) {
+            this.id = id;
+            this.processBusinessKey = processBusinessKey;
+            this.definitionId = definitionId;
+            this.name = name;
+        }
+    }
+
+    private static final class Index {
+
+        private final Map<UUID, IndexEntry> byId = new LinkedHashMap<>();
+        private final Map<String, Map<UUID, IndexEntry>> byBusinessKey = new HashMap<>();
+
+        IndexEntry get(UUID id) {
+            return byId.get(id);
+        }
+
+        void put(IndexEntry e) {
+            remove(e.id);
+            byId.put(e.id, e);
+            byBusinessKey.computeIfAbsent(e.processBusinessKey, k -> new LinkedHashMap<>()).put(e.id, e);
+        }
+
+        IndexEntry remove(UUID id) {
+            IndexEntry e = byId.remove(id);
+            if (e == null) {
+                return null;
+            }
+
+            Map<UUID, IndexEntry> m = byBusinessKey.get(e.processBusinessKey);
+            if (m != null) {
+                m.remove(id);
+                if (m.isEmpty()) {
+                    byBusinessKey.remove(e.processBusinessKey);
+                }
+            }
+            return e;
+        }
+
+        Collection<IndexEntry> find(String processBusinessKey) {
+            Map<UUID, IndexEntry> m = byBusinessKey.get(processBusinessKey);
+            if (m == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(m.values());
+        }
+
+        Set<UUID> ids() {
+            return byId.keySet();
+        }
+
+        Collection<IndexEntry> entries() {
+            return byId.values();
+        }
+    }
 }
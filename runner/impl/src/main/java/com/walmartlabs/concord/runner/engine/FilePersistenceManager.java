@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runner.engine;
  */
 
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.runner.state.StateCodec;
 import io.takari.bpm.api.ExecutionException;
 import io.takari.bpm.persistence.PersistenceManager;
 import io.takari.bpm.state.ProcessInstance;
@@ -39,9 +40,11 @@ public class FilePersistenceManager implements PersistenceManager {
     private static final Logger log = LoggerFactory.getLogger(FilePersistenceManager.class);
 
     private final Path dir;
+    private final StateCodec codec;
 
-    public FilePersistenceManager(Path dir) {
+    public FilePersistenceManager(Path dir, StateCodec codec) {
         this.dir = dir;
+        this.codec = codec;
     }
 
     @Override
@@ -50,8 +53,8 @@ public class FilePersistenceManager implements PersistenceManager {
 
         try {
             Path tmp = IOUtils.createTempFile(state.getId().toString(), "state");
-            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(tmp))) {
-                out.writeObject(state);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                codec.write(state, out);
             }
             Files.move(tmp, p, REPLACE_EXISTING);
         } catch (IOException e) {
@@ -68,8 +71,8 @@ public class FilePersistenceManager implements PersistenceManager {
             return null;
         }
 
-        try (ObjectInputStream in = new ThreadLocalClassLoaderObjectInputStream(Files.newInputStream(p))) {
-            return (ProcessInstance) in.readObject();
+        try (InputStream in = Files.newInputStream(p)) {
+            return (ProcessInstance) codec.read(in);
         } catch (ClassNotFoundException | IOException e) {
             throw new RuntimeException(e);
         }
@@ -90,25 +93,4 @@ public class FilePersistenceManager implements PersistenceManager {
 
         log.debug("remove ['{}'] -> done, {}", id, p);
     }
-
-    private static class ThreadLocalClassLoaderObjectInputStream extends ObjectInputStream {
-
-        private final ClassLoader classLoader;
-
-        public ThreadLocalClassLoaderObjectInputStream(InputStream inputStream) throws IOException {
-            super(inputStream);
-            this.classLoader = Thread.currentThread().getContextClassLoader();
-        }
-
-        @Override
-        protected Class<?> resolveClass(final ObjectStreamClass objectStreamClass)
-                throws IOException, ClassNotFoundException {
-
-            try {
-                return Class.forName(objectStreamClass.getName(), false, classLoader);
-            } catch (final ClassNotFoundException e) {
-                return super.resolveClass(objectStreamClass);
-            }
-        }
-    }
 }
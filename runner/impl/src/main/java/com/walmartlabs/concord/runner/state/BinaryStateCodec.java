@@ -0,0 +1,432 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import io.takari.bpm.api.Variables;
+import io.takari.bpm.state.ProcessInstance;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary format of the process state.
+ * <p>
+ * Process variables are stored using a tagged encoding for the common types
+ * (strings, numbers, booleans, maps, lists and byte arrays). Repeating strings,
+ * e.g. map keys, are stored only once. Any other values, as well as the rest of
+ * the engine's state, are stored in a single Java serialization stream.
+ * <p>
+ * The data starts with a header:
+ * <pre>
+ * 'C' 'S' [version:1] [flags:1]
+ * </pre>
+ * followed by the (optionally deflated) body:
+ * <pre>
+ * [kind:1] [serialized objects length:4] [serialized objects] [tagged data]
+ * </pre>
+ */
+public class BinaryStateCodec implements StateCodec {
+
+    private static final int MAGIC_0 = 'C';
+    private static final int MAGIC_1 = 'S';
+    private static final int VERSION = 1;
+
+    private static final int FLAG_DEFLATE = 0x01;
+
+    // body kinds
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_VARIABLES = 1;
+    private static final int KIND_PROCESS_INSTANCE = 2;
+
+    // value tags
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_STRING_REF = 2;
+    private static final int T_TRUE = 3;
+    private static final int T_FALSE = 4;
+    private static final int T_INT = 5;
+    private static final int T_LONG = 6;
+    private static final int T_DOUBLE = 7;
+    private static final int T_LINKED_MAP = 8;
+    private static final int T_HASH_MAP = 9;
+    private static final int T_LIST = 10;
+    private static final int T_BYTES = 11;
+    private static final int T_OBJECT_REF = 12;
+
+    /**
+     * Longer strings are not deduplicated.
+     */
+    private static final int MAX_SHARED_STRING_LENGTH = 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean compress;
+
+    public BinaryStateCodec(boolean compress) {
+        this.compress = compress;
+    }
+
+    @Override
+    public void write(Object value, OutputStream out) throws IOException {
+        out.write(MAGIC_0);
+        out.write(MAGIC_1);
+        out.write(VERSION);
+        out.write(compress ? FLAG_DEFLATE : 0);
+
+        if (!compress) {
+            DataOutputStream dos = new DataOutputStream(out);
+            writeBody(value, dos);
+            dos.flush();
+            return;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream zos = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            DataOutputStream dos = new DataOutputStream(zos);
+            writeBody(value, dos);
+            dos.flush();
+            zos.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the stream starts with the header of this format.
+     * The stream's position is not changed.
+     */
+    static boolean hasHeader(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        try {
+            return in.read() == MAGIC_0 && in.read() == MAGIC_1;
+        } finally {
+            in.reset();
+        }
+    }
+
+    static Object readValue(InputStream in) throws IOException, ClassNotFoundException {
+        if (in.read() != MAGIC_0 || in.read() != MAGIC_1) {
+            throw new StreamCorruptedException("Invalid state header");
+        }
+
+        int version = in.read();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported state format version: " + version);
+        }
+
+        int flags = in.read();
+        if (flags < 0) {
+            throw new EOFException();
+        }
+
+        if ((flags & FLAG_DEFLATE) == 0) {
+            return readBody(new DataInputStream(in));
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            InflaterInputStream zis = new InflaterInputStream(in, inflater, BUFFER_SIZE);
+            return readBody(new DataInputStream(zis));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeBody(Object value, DataOutputStream out) throws IOException {
+        Encoder enc = new Encoder();
+
+        int kind;
+        if (value instanceof ProcessInstance && isTaggable(((ProcessInstance) value).getVariables())) {
+            ProcessInstance instance = (ProcessInstance) value;
+            kind = KIND_PROCESS_INSTANCE;
+            enc.objects.add(instance.setVariables(new Variables()));
+            enc.writeVariables(instance.getVariables());
+        } else if (value instanceof Variables && isTaggable((Variables) value)) {
+            kind = KIND_VARIABLES;
+            enc.writeVariables((Variables) value);
+        } else {
+            kind = KIND_OBJECT;
+            enc.objects.add(value);
+        }
+
+        out.writeByte(kind);
+
+        if (enc.objects.isEmpty()) {
+            out.writeInt(0);
+        } else {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            JavaStateCodec.INSTANCE.write(enc.objects, baos);
+            out.writeInt(baos.size());
+            baos.writeTo(out);
+        }
+
+        enc.data.writeTo(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readBody(DataInputStream in) throws IOException, ClassNotFoundException {
+        int kind = in.readUnsignedByte();
+
+        List<Object> objects = Collections.emptyList();
+        int len = in.readInt();
+        if (len > 0) {
+            byte[] ab = new byte[len];
+            in.readFully(ab);
+            objects = (List<Object>) JavaStateCodec.readValue(new ByteArrayInputStream(ab));
+        }
+
+        Decoder dec = new Decoder(in, objects);
+        switch (kind) {
+            case KIND_OBJECT: {
+                return objects.get(0);
+            }
+            case KIND_VARIABLES: {
+                return dec.readVariables();
+            }
+            case KIND_PROCESS_INSTANCE: {
+                ProcessInstance instance = (ProcessInstance) objects.get(0);
+                return instance.setVariables(dec.readVariables());
+            }
+            default:
+                throw new StreamCorruptedException("Unknown state kind: " + kind);
+        }
+    }
+
+    /**
+     * The tagged encoding doesn't preserve the identity of the objects. The variables
+     * are encoded that way only if the values form a tree, i.e. there are no shared
+     * or cyclic references between maps and lists. Also, nested scopes are not supported.
+     */
+    private static boolean isTaggable(Variables vars) {
+        if (vars == null || vars.getParent() != null) {
+            return false;
+        }
+
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object v : vars.asMap().values()) {
+            if (!isTree(v, seen)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTree(Object v, Set<Object> seen) {
+        Class<?> type = v != null ? v.getClass() : null;
+
+        if (type == LinkedHashMap.class || type == HashMap.class) {
+            if (!seen.add(v)) {
+                return false;
+            }
+
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) {
+                if (!isTree(e.getKey(), seen) || !isTree(e.getValue(), seen)) {
+                    return false;
+                }
+            }
+        } else if (type == ArrayList.class) {
+            if (!seen.add(v)) {
+                return false;
+            }
+
+            for (Object i : (List<?>) v) {
+                if (!isTree(i, seen)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static int capacity(int size) {
+        return Math.max((int) (size / 0.75f) + 1, 16);
+    }
+
+    private static final class Encoder {
+
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final DataOutputStream out = new DataOutputStream(data);
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final ArrayList<Object> objects = new ArrayList<>();
+
+        void writeVariables(Variables vars) throws IOException {
+            Map<String, Object> m = vars.asMap();
+            out.writeInt(m.size());
+            for (Map.Entry<String, Object> e : m.entrySet()) {
+                writeString(e.getKey());
+                write(e.getValue());
+            }
+        }
+
+        private void write(Object v) throws IOException {
+            if (v == null) {
+                out.writeByte(T_NULL);
+                return;
+            }
+
+            // only the exact types, subclasses may have their own state
+            Class<?> type = v.getClass();
+            if (type == String.class) {
+                writeString((String) v);
+            } else if (type == Boolean.class) {
+                out.writeByte((Boolean) v ? T_TRUE : T_FALSE);
+            } else if (type == Integer.class) {
+                out.writeByte(T_INT);
+                out.writeInt((Integer) v);
+            } else if (type == Long.class) {
+                out.writeByte(T_LONG);
+                out.writeLong((Long) v);
+            } else if (type == Double.class) {
+                out.writeByte(T_DOUBLE);
+                out.writeDouble((Double) v);
+            } else if (type == LinkedHashMap.class || type == HashMap.class) {
+                Map<?, ?> m = (Map<?, ?>) v;
+                out.writeByte(type == LinkedHashMap.class ? T_LINKED_MAP : T_HASH_MAP);
+                out.writeInt(m.size());
+                for (Map.Entry<?, ?> e : m.entrySet()) {
+                    write(e.getKey());
+                    write(e.getValue());
+                }
+            } else if (type == ArrayList.class) {
+                List<?> l = (List<?>) v;
+                out.writeByte(T_LIST);
+                out.writeInt(l.size());
+                for (Object i : l) {
+                    write(i);
+                }
+            } else if (type == byte[].class) {
+                byte[] ab = (byte[]) v;
+                out.writeByte(T_BYTES);
+                out.writeInt(ab.length);
+                out.write(ab);
+            } else {
+                out.writeByte(T_OBJECT_REF);
+                out.writeInt(objects.size());
+                objects.add(v);
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            Integer idx = strings.get(s);
+            if (idx != null) {
+                out.writeByte(T_STRING_REF);
+                out.writeInt(idx);
+                return;
+            }
+
+            if (s.length() <= MAX_SHARED_STRING_LENGTH) {
+                strings.put(s, strings.size());
+            }
+
+            // DataOutputStream#writeUTF is limited to 64k
+            byte[] ab = s.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(T_STRING);
+            out.writeInt(ab.length);
+            out.write(ab);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final DataInputStream in;
+        private final List<Object> objects;
+        private final List<String> strings = new ArrayList<>();
+
+        private Decoder(DataInputStream in, List<Object> objects) {
+            this.in = in;
+            this.objects = objects;
+        }
+
+        Variables readVariables() throws IOException {
+            int size = in.readInt();
+            Map<String, Object> m = new LinkedHashMap<>(capacity(size));
+            for (int i = 0; i < size; i++) {
+                String k = (String) read();
+                m.put(k, read());
+            }
+            return new Variables(m);
+        }
+
+        private Object read() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case T_NULL:
+                    return null;
+                case T_STRING: {
+                    byte[] ab = new byte[in.readInt()];
+                    in.readFully(ab);
+                    String s = new String(ab, StandardCharsets.UTF_8);
+                    if (s.length() <= MAX_SHARED_STRING_LENGTH) {
+                        strings.add(s);
+                    }
+                    return s;
+                }
+                case T_STRING_REF:
+                    return strings.get(in.readInt());
+                case T_TRUE:
+                    return Boolean.TRUE;
+                case T_FALSE:
+                    return Boolean.FALSE;
+                case T_INT:
+                    return in.readInt();
+                case T_LONG:
+                    return in.readLong();
+                case T_DOUBLE:
+                    return in.readDouble();
+                case T_LINKED_MAP:
+                case T_HASH_MAP: {
+                    int size = in.readInt();
+                    Map<Object, Object> m = tag == T_LINKED_MAP ? new LinkedHashMap<>(capacity(size)) : new HashMap<>(capacity(size));
+                    for (int i = 0; i < size; i++) {
+                        Object k = read();
+                        m.put(k, read());
+                    }
+                    return m;
+                }
+                case T_LIST: {
+                    int size = in.readInt();
+                    List<Object> l = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        l.add(read());
+                    }
+                    return l;
+                }
+                case T_BYTES: {
+                    byte[] ab = new byte[in.readInt()];
+                    in.readFully(ab);
+                    return ab;
+                }
+                case T_OBJECT_REF:
+                    return objects.get(in.readInt());
+                default:
+                    throw new StreamCorruptedException("Unknown value tag: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.*;
+
+/**
+ * Java object serialization. The default format.
+ */
+public class JavaStateCodec implements StateCodec {
+
+    public static final JavaStateCodec INSTANCE = new JavaStateCodec();
+
+    @Override
+    public void write(Object value, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(value);
+        oos.flush();
+    }
+
+    static Object readValue(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ThreadLocalClassLoaderObjectInputStream(in);
+        return ois.readObject();
+    }
+
+    /**
+     * Resolves classes using the thread's context class loader, i.e. the classes
+     * of the process' dependencies.
+     */
+    private static class ThreadLocalClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        public ThreadLocalClassLoaderObjectInputStream(InputStream inputStream) throws IOException {
+            super(inputStream);
+            this.classLoader = Thread.currentThread().getContextClassLoader();
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass objectStreamClass)
+                throws IOException, ClassNotFoundException {
+
+            try {
+                return Class.forName(objectStreamClass.getName(), false, classLoader);
+            } catch (final ClassNotFoundException e) {
+                return super.resolveClass(objectStreamClass);
+            }
+        }
+    }
+}
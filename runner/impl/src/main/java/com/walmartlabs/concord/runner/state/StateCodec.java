@@ -0,0 +1,44 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Serializes the process state: engine instances, snapshots of variables, etc.
+ */
+public interface StateCodec {
+
+    /**
+     * Writes the value into the specified stream. The stream is not closed.
+     */
+    void write(Object value, OutputStream out) throws IOException;
+
+    /**
+     * Reads a value written by this or any other supported codec.
+     * @see StateCodecs#read(InputStream)
+     */
+    default Object read(InputStream in) throws IOException, ClassNotFoundException {
+        return StateCodecs.read(in);
+    }
+}
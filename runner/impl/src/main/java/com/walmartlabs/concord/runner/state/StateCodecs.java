@@ -0,0 +1,58 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runner.model.StateConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class StateCodecs {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public static StateCodec create(StateConfiguration cfg) {
+        switch (cfg.format()) {
+            case JAVA:
+                return JavaStateCodec.INSTANCE;
+            case BINARY:
+                return new BinaryStateCodec(cfg.compress());
+            default:
+                throw new IllegalArgumentException("Unknown state format: " + cfg.format());
+        }
+    }
+
+    /**
+     * Reads a value saved using any of the supported formats.
+     * The format is detected using the header of the data.
+     */
+    public static Object read(InputStream in) throws IOException, ClassNotFoundException {
+        BufferedInputStream bin = new BufferedInputStream(in, BUFFER_SIZE);
+        if (BinaryStateCodec.hasHeader(bin)) {
+            return BinaryStateCodec.readValue(bin);
+        }
+        return JavaStateCodec.readValue(bin);
+    }
+
+    private StateCodecs() {
+    }
+}
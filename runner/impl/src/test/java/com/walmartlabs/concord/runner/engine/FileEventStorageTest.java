@@ -0,0 +1,90 @@
+package com.walmartlabs.concord.runner.engine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import io.takari.bpm.event.Event;
+import org.junit.Test;
+
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class FileEventStorageTest {
+
+    @Test
+    public void testFind() throws Exception {
+        Path dir = Files.createTempDirectory("events");
+        Path indexFile = dir.resolveSibling(dir.getFileName() + ".idx");
+
+        FileEventStorage storage = new FileEventStorage(dir, indexFile);
+        Event a = event("key1", "a");
+        Event b = event("key1", "b");
+        Event c = event("key2", "a");
+        storage.add(a);
+        storage.add(b);
+        storage.add(c);
+
+        assertEquals(2, storage.find("key1").size());
+        assertEquals(1, storage.find("key2", "a").size());
+        assertTrue(storage.find("key3").isEmpty());
+
+        assertNotNull(storage.remove(a.getId()));
+        assertEquals(1, storage.find("key1").size());
+
+        // a new instance uses the saved index
+        storage = new FileEventStorage(dir, indexFile);
+        Collection<Event> events = storage.find("key1");
+        assertEquals(1, events.size());
+        assertEquals(b.getId(), events.iterator().next().getId());
+    }
+
+    @Test
+    public void testNoIndex() throws Exception {
+        Path dir = Files.createTempDirectory("events");
+        Path indexFile = dir.resolveSibling(dir.getFileName() + ".idx");
+
+        // events saved by a previous version
+        Event a = event("key1", "a");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(dir.resolve(a.getId().toString())))) {
+            out.writeObject(a);
+        }
+
+        FileEventStorage storage = new FileEventStorage(dir, indexFile);
+        assertEquals(1, storage.find("key1", "a").size());
+        assertTrue(Files.exists(indexFile));
+
+        // the event's file was removed without updating the index
+        storage.add(event("key1", "b"));
+        Files.delete(dir.resolve(a.getId().toString()));
+
+        storage = new FileEventStorage(dir, indexFile);
+        assertTrue(storage.find("key1", "a").isEmpty());
+        assertEquals(1, storage.find("key1", "b").size());
+    }
+
+    private static Event event(String processBusinessKey, String name) {
+        return new Event(UUID.randomUUID(), UUID.randomUUID(), "main", UUID.randomUUID(), name, processBusinessKey, false, null, null);
+    }
+}
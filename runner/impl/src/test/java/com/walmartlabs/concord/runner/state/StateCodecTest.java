@@ -0,0 +1,120 @@
+package com.walmartlabs.concord.runner.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import io.takari.bpm.api.Variables;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StateCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Variables vars = new Variables(sample());
+
+        for (StateCodec codec : Arrays.asList(JavaStateCodec.INSTANCE, new BinaryStateCodec(false), new BinaryStateCodec(true))) {
+            Variables result = (Variables) StateCodecs.read(new ByteArrayInputStream(write(codec, vars)));
+            assertEquals(vars.asMap().keySet(), result.asMap().keySet());
+            assertEquals(vars.getVariable("str"), result.getVariable("str"));
+            assertEquals(vars.getVariable("map"), result.getVariable("map"));
+            assertEquals(vars.getVariable("list"), result.getVariable("list"));
+            assertEquals(vars.getVariable("decimal"), result.getVariable("decimal"));
+            assertArrayEquals((byte[]) vars.getVariable("bytes"), (byte[]) result.getVariable("bytes"));
+            assertSame(LinkedHashMap.class, result.getVariable("map").getClass());
+        }
+    }
+
+    @Test
+    public void testLegacyFormat() throws Exception {
+        Variables vars = new Variables(sample());
+
+        // the previous versions used plain Java serialization
+        Object result = new BinaryStateCodec(true).read(new ByteArrayInputStream(write(JavaStateCodec.INSTANCE, vars)));
+        assertEquals(vars.getVariable("map"), ((Variables) result).getVariable("map"));
+    }
+
+    @Test
+    public void testSharedReferences() throws Exception {
+        List<Object> shared = new ArrayList<>(Collections.singletonList("x"));
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("a", shared);
+        m.put("b", shared);
+
+        Variables result = (Variables) StateCodecs.read(new ByteArrayInputStream(write(new BinaryStateCodec(false), new Variables(m))));
+        assertSame(result.getVariable("a"), result.getVariable("b"));
+    }
+
+    @Test
+    public void testNestedScopes() throws Exception {
+        Variables parent = new Variables(sample());
+        Variables vars = new Variables(parent).setVariable("x", 123);
+
+        Variables result = (Variables) StateCodecs.read(new ByteArrayInputStream(write(new BinaryStateCodec(false), vars)));
+        assertEquals(123, result.getVariable("x"));
+        assertNotNull(result.getParent());
+    }
+
+    @Test
+    public void testSize() throws Exception {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            m.put("k" + i, sample());
+        }
+        Variables vars = new Variables(m);
+
+        int java = write(JavaStateCodec.INSTANCE, vars).length;
+        int binary = write(new BinaryStateCodec(false), vars).length;
+        int compressed = write(new BinaryStateCodec(true), vars).length;
+
+        assertTrue(binary < java);
+        assertTrue(compressed < binary);
+    }
+
+    private static Map<String, Object> sample() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("n", 1);
+        nested.put("l", 2L);
+        nested.put("d", 3.0);
+        nested.put("b", true);
+        nested.put("nil", null);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("str", "hello");
+        m.put("map", nested);
+        m.put("list", new ArrayList<>(Arrays.asList("a", 1, false)));
+        m.put("decimal", new BigDecimal("1.5"));
+        m.put("bytes", new byte[]{1, 2, 3});
+        return m;
+    }
+
+    private static byte[] write(StateCodec codec, Object value) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        codec.write(value, baos);
+        return baos.toByteArray();
+    }
+}
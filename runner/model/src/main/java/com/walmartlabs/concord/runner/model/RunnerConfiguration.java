@@ -97,6 +97,14 @@ public interface RunnerConfiguration {
         return EventConfiguration.builder().build();
     }
 
+    /**
+     * Process state configuration.
+     */
+    @Value.Default
+    default StateConfiguration state() {
+        return StateConfiguration.builder().build();
+    }
+
     static ImmutableRunnerConfiguration.Builder builder() {
         return ImmutableRunnerConfiguration.builder();
     }
@@ -0,0 +1,69 @@
+package com.walmartlabs.concord.runner.model;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+@Value.Immutable
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonSerialize(as = ImmutableStateConfiguration.class)
+@JsonDeserialize(as = ImmutableStateConfiguration.class)
+public interface StateConfiguration {
+
+    /**
+     * Format of the process state files. The runner reads the files saved
+     * in any of the formats.
+     */
+    @Value.Default
+    default Format format() {
+        return Format.JAVA;
+    }
+
+    /**
+     * Enable/disable compression of the process state files.
+     * Only supported by the {@link Format#BINARY} format.
+     */
+    @Value.Default
+    default boolean compress() {
+        return false;
+    }
+
+    static ImmutableStateConfiguration.Builder builder() {
+        return ImmutableStateConfiguration.builder();
+    }
+
+    enum Format {
+
+        /**
+         * Java object serialization.
+         */
+        JAVA,
+
+        /**
+         * Compact binary format for the process variables, the rest of the
+         * state uses Java object serialization.
+         */
+        BINARY
+    }
+}
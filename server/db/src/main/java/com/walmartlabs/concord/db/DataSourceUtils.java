@@ -30,6 +30,7 @@ import liquibase.logging.LogFactory;
 import liquibase.logging.LogLevel;
 import liquibase.resource.ClassLoaderResourceAccessor;
 import org.jooq.Configuration;
+import org.jooq.ConnectionProvider;
 import org.jooq.SQLDialect;
 import org.jooq.conf.RenderNameStyle;
 import org.jooq.conf.Settings;
@@ -105,14 +106,25 @@ public final class DataSourceUtils {
     }
 
     public static Configuration createJooqConfiguration(DataSource ds) {
+        return new DefaultConfiguration()
+                .set(createJooqSettings())
+                .set(ds)
+                .set(SQLDialect.POSTGRES);
+    }
+
+    public static Configuration createJooqConfiguration(ConnectionProvider connectionProvider) {
+        return new DefaultConfiguration()
+                .set(createJooqSettings())
+                .set(connectionProvider)
+                .set(SQLDialect.POSTGRES);
+    }
+
+    private static Settings createJooqSettings() {
         Settings settings = new Settings();
         settings.setRenderSchema(false);
         settings.setRenderCatalog(false);
         settings.setRenderNameStyle(RenderNameStyle.AS_IS);
-        return new DefaultConfiguration()
-                .set(settings)
-                .set(ds)
-                .set(SQLDialect.POSTGRES);
+        return settings;
     }
 
     private DataSourceUtils() {
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.db;
 import com.codahale.metrics.MetricRegistry;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.matcher.Matchers;
 import org.jooq.Configuration;
 
 import javax.inject.Singleton;
@@ -34,6 +35,7 @@ public class DatabaseModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        bindInterceptor(Matchers.any(), Matchers.annotatedWith(ReadOnly.class), new ReadOnlyInterceptor());
     }
 
     @Provides
@@ -64,7 +66,19 @@ public class DatabaseModule extends AbstractModule {
     @Provides
     @MainDB
     @Singleton
-    public Configuration appJooqConfiguration(@MainDB DataSource ds) {
+    public Configuration appJooqConfiguration(@MainDB DataSource ds,
+                                              @ReplicaDB ReplicaDatabaseConfiguration replicaCfg,
+                                              MetricRegistry metricRegistry) {
+
+        if (!replicaCfg.isEnabled()) {
+            return appJooqConfiguration(ds);
+        }
+
+        DataSource replica = DataSourceUtils.createDataSource(replicaCfg, "replica", replicaCfg.username(), replicaCfg.password(), metricRegistry);
+        return DataSourceUtils.createJooqConfiguration(new ReplicaRoutingConnectionProvider(ds, replica, replicaCfg));
+    }
+
+    public Configuration appJooqConfiguration(DataSource ds) {
         return DataSourceUtils.createJooqConfiguration(ds);
     }
 
@@ -47,6 +47,15 @@ public final class PgUtils {
         return field("{0}::jsonb->>{1}", Object.class, field, inline(name)).cast(String.class);
     }
 
+    /**
+     * Equality condition on a partition key. The value is inlined into the query:
+     * PostgreSQL 10 prunes partitions only if the key's value is known at the
+     * planning time, which is not the case for cached (generic) plans.
+     */
+    public static <T> Condition partitionKey(Field<T> field, T value) {
+        return field.eq(inline(value, field));
+    }
+
     private PgUtils() {
     }
 }
@@ -0,0 +1,142 @@
+package com.walmartlabs.concord.db;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.jooq.ConnectionProvider;
+import org.jooq.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Routes the queries executed within {@link ReadOnly} methods to the replica DB.
+ * Falls back to the primary DB if the replica is not available or
+ * its replication lag exceeds {@link ReplicaDatabaseConfiguration#maxLag()}.
+ */
+public class ReplicaRoutingConnectionProvider implements ConnectionProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingConnectionProvider.class);
+
+    /**
+     * The lag is zero if the replica has replayed all received WAL records,
+     * otherwise it is the time since the last replayed transaction.
+     */
+    private static final String LAG_QUERY = "select case" +
+            " when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0" +
+            " else (extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000)::bigint" +
+            " end";
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long maxLag;
+    private final long lagCheckInterval;
+
+    private final AtomicBoolean checking = new AtomicBoolean(false);
+    private volatile long lastCheck;
+    private volatile boolean replicaAvailable;
+
+    public ReplicaRoutingConnectionProvider(DataSource primary, DataSource replica, ReplicaDatabaseConfiguration cfg) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLag = cfg.maxLag();
+        this.lagCheckInterval = cfg.lagCheckInterval();
+    }
+
+    @Override
+    public Connection acquire() throws DataAccessException {
+        if (ReadOnlyInterceptor.isReadOnly() && isReplicaAvailable()) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                log.warn("acquire -> replica connection error, using the primary DB: {}", e.getMessage());
+                replicaAvailable = false;
+            }
+        }
+
+        try {
+            return primary.getConnection();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error while acquiring a connection", e);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) throws DataAccessException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error while releasing a connection", e);
+        }
+    }
+
+    private boolean isReplicaAvailable() {
+        long now = System.currentTimeMillis();
+
+        // only one thread performs the check, the others use the last known state
+        if (now - lastCheck >= lagCheckInterval && checking.compareAndSet(false, true)) {
+            try {
+                boolean available = checkLag();
+                if (available != replicaAvailable) {
+                    log.info("isReplicaAvailable -> the replica is {}", available ? "available" : "not available");
+                }
+                replicaAvailable = available;
+                lastCheck = now;
+            } finally {
+                checking.set(false);
+            }
+        }
+
+        return replicaAvailable;
+    }
+
+    private boolean checkLag() {
+        try (Connection conn = replica.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(LAG_QUERY)) {
+
+            if (!rs.next()) {
+                return false;
+            }
+
+            long lag = rs.getLong(1);
+            if (rs.wasNull()) {
+                // the replica hasn't replayed any transactions yet
+                return false;
+            }
+
+            if (lag > maxLag) {
+                log.warn("checkLag -> replication lag is {}ms (max {}ms)", lag, maxLag);
+                return false;
+            }
+
+            return true;
+        } catch (SQLException e) {
+            log.warn("checkLag -> error while checking the replication lag: {}", e.getMessage());
+            return false;
+        }
+    }
+}
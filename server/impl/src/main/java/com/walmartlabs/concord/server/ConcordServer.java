@@ -43,7 +43,12 @@ import com.walmartlabs.ollie.OllieServerBuilder;
 import com.walmartlabs.ollie.SessionCookieOptions;
 import io.prometheus.client.exporter.MetricsServlet;
 import org.apache.shiro.web.filter.authc.AnonymousFilter;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -157,6 +162,8 @@ public class ConcordServer {
             super.init();
 
             ServletContext ctx = getServletContext();
+            enableAsyncSupport(ctx);
+
             Injector injector = (Injector) ctx.getAttribute(Injector.class.getName());
 
             injector.injectMembers(this);
@@ -174,5 +181,34 @@ public class ConcordServer {
 
             super.destroy();
         }
+
+        /**
+         * Enables the async support for all registered filters (Guice, Shiro) and servlets.
+         * Required for the suspended requests, e.g. {@code ProcessLocksResource#tryLock}.
+         * The flag is checked by Jetty on each request, so it can be changed after the start.
+         */
+        private static void enableAsyncSupport(ServletContext ctx) {
+            ContextHandler h = ContextHandler.getContextHandler(ctx);
+            if (!(h instanceof ServletContextHandler)) {
+                log.warn("enableAsyncSupport -> unsupported context: {}, the suspended requests will fail", h);
+                return;
+            }
+
+            ServletHandler sh = ((ServletContextHandler) h).getServletHandler();
+
+            FilterHolder[] filters = sh.getFilters();
+            if (filters != null) {
+                for (FilterHolder f : filters) {
+                    f.setAsyncSupported(true);
+                }
+            }
+
+            ServletHolder[] servlets = sh.getServlets();
+            if (servlets != null) {
+                for (ServletHolder s : servlets) {
+                    s.setAsyncSupported(true);
+                }
+            }
+        }
     }
 }
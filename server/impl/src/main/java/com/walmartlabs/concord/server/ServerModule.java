@@ -24,7 +24,11 @@ import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
 import com.walmartlabs.concord.db.DatabaseModule;
 import com.walmartlabs.concord.server.agent.AgentCommandWebSocketHandler;
+import com.walmartlabs.concord.server.audit.AuditLogWriter;
 import com.walmartlabs.concord.server.metrics.MetricModule;
+import com.walmartlabs.concord.server.org.triggers.TriggerScheduler;
+import com.walmartlabs.concord.server.process.locks.ProcessLocksResource;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueWatchdog;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueWebSocketHandler;
 import com.walmartlabs.concord.server.task.TaskScheduler;
 
@@ -39,5 +43,9 @@ public class ServerModule extends AbstractModule {
         tasks.addBinding().to(AgentCommandWebSocketHandler.class);
         tasks.addBinding().to(ProcessQueueWebSocketHandler.class);
         tasks.addBinding().to(TaskScheduler.class);
+        tasks.addBinding().to(ProcessQueueWatchdog.class);
+        tasks.addBinding().to(AuditLogWriter.class);
+        tasks.addBinding().to(ProcessLocksResource.class);
+        tasks.addBinding().to(TriggerScheduler.class);
     }
 }
@@ -22,12 +22,15 @@ package com.walmartlabs.concord.server.audit;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
-import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.jooq.tables.records.AuditLogRecord;
 import org.jooq.Configuration;
-import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep5;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.tables.AuditLog.AUDIT_LOG;
@@ -37,30 +40,75 @@ import static org.jooq.impl.DSL.value;
 @Named
 public class AuditDao extends AbstractDao {
 
-    private final ConcordObjectMapper objectMapper;
-
     @Inject
-    public AuditDao(@MainDB Configuration cfg,
-                    ConcordObjectMapper objectMapper) {
+    public AuditDao(@MainDB Configuration cfg) {
         super(cfg);
-
-        this.objectMapper = objectMapper;
     }
 
-    public void insert(UUID userId, AuditObject object, AuditAction action, Object details) {
-        tx(tx -> insert(tx, userId, object, action, details));
+    /**
+     * Inserts the entries in a single statement. The order of the entries is preserved.
+     */
+    public void insert(List<Entry> entries) {
+        tx(tx -> {
+            InsertValuesStep5<AuditLogRecord, Timestamp, UUID, String, String, Object> q = tx.insertInto(AUDIT_LOG)
+                    .columns(AUDIT_LOG.ENTRY_DATE,
+                            AUDIT_LOG.USER_ID,
+                            AUDIT_LOG.ENTRY_OBJECT,
+                            AUDIT_LOG.ENTRY_ACTION,
+                            AUDIT_LOG.ENTRY_DETAILS);
+
+            for (Entry e : entries) {
+                q.values(value(e.getEntryDate()),
+                        value(e.getUserId()),
+                        value(e.getObject()),
+                        value(e.getAction()),
+                        field("?::jsonb", e.getDetails()));
+            }
+
+            q.execute();
+        });
     }
 
-    public void insert(DSLContext tx, UUID userId, AuditObject object, AuditAction action, Object details) {
-        tx.insertInto(AUDIT_LOG)
-                .columns(AUDIT_LOG.USER_ID,
-                        AUDIT_LOG.ENTRY_OBJECT,
-                        AUDIT_LOG.ENTRY_ACTION,
-                        AUDIT_LOG.ENTRY_DETAILS)
-                .values(value(userId),
-                        value(object.toString()),
-                        value(action.toString()),
-                        field("?::jsonb", objectMapper.serialize(details)))
-                .execute();
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Timestamp entryDate;
+        private final UUID userId;
+        private final String object;
+        private final String action;
+
+        /**
+         * Serialized JSON.
+         */
+        private final String details;
+
+        public Entry(Timestamp entryDate, UUID userId, String object, String action, String details) {
+            this.entryDate = entryDate;
+            this.userId = userId;
+            this.object = object;
+            this.action = action;
+            this.details = details;
+        }
+
+        public Timestamp getEntryDate() {
+            return entryDate;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getObject() {
+            return object;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public String getDetails() {
+            return details;
+        }
     }
 }
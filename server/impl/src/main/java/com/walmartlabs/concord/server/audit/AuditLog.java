@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.audit;
  * =====
  */
 
+import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.RequestId;
 import com.walmartlabs.concord.server.cfg.AuditConfiguration;
 import com.walmartlabs.concord.server.process.PartialProcessKey;
@@ -30,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -40,12 +42,14 @@ public class AuditLog {
     private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
 
     private final AuditConfiguration cfg;
-    private final AuditDao auditDao;
+    private final AuditLogWriter writer;
+    private final ConcordObjectMapper objectMapper;
 
     @Inject
-    public AuditLog(AuditConfiguration cfg, AuditDao auditDao) {
+    public AuditLog(AuditConfiguration cfg, AuditLogWriter writer, ConcordObjectMapper objectMapper) {
         this.cfg = cfg;
-        this.auditDao = auditDao;
+        this.writer = writer;
+        this.objectMapper = objectMapper;
     }
 
     public EntryBuilder add(AuditObject object, AuditAction action) {
@@ -94,6 +98,8 @@ public class AuditLog {
         }
 
         private void doLog() {
+            // the entry is written asynchronously, everything that depends on the current request must be collected here
+
             if (userId == null) {
                 UserPrincipal user = UserPrincipal.getCurrent();
                 if (user != null) {
@@ -117,7 +123,8 @@ public class AuditLog {
 
             details.put("requestId", RequestId.get());
 
-            auditDao.insert(userId, object, action, details);
+            Timestamp entryDate = new Timestamp(System.currentTimeMillis());
+            writer.add(new AuditDao.Entry(entryDate, userId, object.toString(), action.toString(), objectMapper.serialize(details)));
         }
     }
 }
@@ -0,0 +1,459 @@
+package com.walmartlabs.concord.server.audit;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.BackgroundTask;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration.OverflowPolicy;
+import org.jooq.exception.DataAccessException;
+import org.jooq.exception.SQLStateClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Writes the audit log entries in batches using a background thread.
+ * <p>
+ * The entries are kept in a bounded buffer. When the buffer is full, depending on
+ * {@link AuditConfiguration#getOverflowPolicy()}, the callers either wait for the free
+ * space or the entries are appended to a local "spill" file. The file is loaded back
+ * once the buffer is drained. The order of the entries is preserved in both cases.
+ * <p>
+ * On shutdown the remaining entries are written into the DB or, if that's not
+ * possible, into the spill file. The spilled entries are loaded on the next start.
+ * <p>
+ * If a batch can't be written after {@link #MAX_BATCH_RETRIES} attempts, its entries are
+ * written one by one. The entries rejected by the DB (e.g. invalid data) are logged and
+ * saved into a separate "rejected" file, so they don't block the entries behind them.
+ */
+@Named
+@Singleton
+public class AuditLogWriter implements BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(5);
+    private static final int MAX_BATCH_RETRIES = 3;
+
+    private static final String SPILL_FILE_NAME = "audit.jsonl";
+    private static final String PROCESSING_FILE_NAME = "audit.processing.jsonl";
+    private static final String PROCESSING_OFFSET_FILE_NAME = "audit.processing.offset";
+    private static final String REJECTED_FILE_NAME = "audit.rejected.jsonl";
+
+    private final AuditConfiguration cfg;
+    private final AuditDao auditDao;
+    private final ConcordObjectMapper objectMapper;
+
+    private final BlockingQueue<AuditDao.Entry> queue;
+    private final Path spillFile;
+    private final Path processingFile;
+    private final Path processingOffsetFile;
+    private final Path rejectedFile;
+
+    private final Object spillLock = new Object();
+
+    /**
+     * {@code true} if the new entries must be appended to the spill file
+     * to keep them behind the already spilled ones. Guarded by {@link #spillLock}.
+     */
+    private boolean spilling;
+
+    /**
+     * Number of entries of {@link #processingFile} which are already in the DB.
+     * Saved into {@link #processingOffsetFile}, so the entries are not written twice after a restart.
+     */
+    private long processedOffset;
+
+    /**
+     * Number of failed attempts to write the current batch.
+     */
+    private int batchFailures;
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private Thread worker;
+
+    @Inject
+    public AuditLogWriter(AuditConfiguration cfg, AuditDao auditDao, ConcordObjectMapper objectMapper) {
+        this.cfg = cfg;
+        this.auditDao = auditDao;
+        this.objectMapper = objectMapper;
+
+        this.queue = new ArrayBlockingQueue<>(Math.max(cfg.getBufferSize(), 1));
+        this.spillFile = cfg.getSpillDir().resolve(SPILL_FILE_NAME);
+        this.processingFile = cfg.getSpillDir().resolve(PROCESSING_FILE_NAME);
+        this.processingOffsetFile = cfg.getSpillDir().resolve(PROCESSING_OFFSET_FILE_NAME);
+        this.rejectedFile = cfg.getSpillDir().resolve(REJECTED_FILE_NAME);
+    }
+
+    @Override
+    public void start() {
+        if (cfg.getBufferSize() <= 0) {
+            log.info("start -> buffering is disabled, the entries are written synchronously");
+            return;
+        }
+
+        processedOffset = readProcessedOffset();
+
+        synchronized (spillLock) {
+            // the entries left from the previous run go first
+            spilling = Files.exists(spillFile);
+            if (spilling && !Files.exists(processingFile)) {
+                try {
+                    Files.move(spillFile, processingFile, StandardCopyOption.ATOMIC_MOVE);
+                    saveProcessedOffset(0);
+                    spilling = false;
+                } catch (IOException e) {
+                    log.warn("start -> can't move {}, the new entries will be spilled behind the old ones: {}", spillFile, e.getMessage());
+                }
+            }
+        }
+
+        this.running = true;
+        this.worker = new Thread(this::run, "audit-log-writer");
+        this.worker.start();
+        log.info("start -> done");
+    }
+
+    @Override
+    public void stop() {
+        if (worker == null) {
+            return;
+        }
+
+        // the entries added after this point are queued behind the remaining ones
+        stopping = true;
+        running = false;
+
+        try {
+            worker.join(cfg.getShutdownTimeout());
+            if (worker.isAlive()) {
+                log.warn("stop -> the remaining entries weren't written in {}ms, spilling...", cfg.getShutdownTimeout());
+                worker.interrupt();
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // the entries added while the writer was stopping
+        spillRemaining(Collections.emptyList());
+
+        worker = null;
+        stopping = false;
+        log.info("stop -> done");
+    }
+
+    public void add(AuditDao.Entry entry) {
+        if (!running && !stopping) {
+            synchronized (spillLock) {
+                if (spilling) {
+                    // the writer is stopped, keep the entry behind the spilled ones
+                    append(spillFile, Collections.singletonList(entry));
+                    return;
+                }
+            }
+
+            auditDao.insert(Collections.singletonList(entry));
+            return;
+        }
+
+        // while stopping the entries are never blocked, the writer might not be able to drain the buffer
+        if (running && cfg.getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            synchronized (spillLock) {
+                if (spilling) {
+                    // keep the entry behind the spilled ones, the file is loaded once the buffer is drained
+                    append(spillFile, Collections.singletonList(entry));
+                    return;
+                }
+            }
+
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while adding an audit log entry");
+            }
+            return;
+        }
+
+        synchronized (spillLock) {
+            if (!spilling && queue.offer(entry)) {
+                return;
+            }
+
+            if (!spilling) {
+                log.warn("add -> the buffer is full, spilling into {}", spillFile);
+                spilling = true;
+            }
+
+            append(spillFile, Collections.singletonList(entry));
+        }
+    }
+
+    private void run() {
+        List<AuditDao.Entry> batch = new ArrayList<>(cfg.getBatchSize());
+
+        while (true) {
+            try {
+                if (!batch.isEmpty()) {
+                    write(batch, n -> {
+                        // the batch itself keeps track of the remaining entries
+                    });
+                }
+
+                // the spilled entries go before anything that was added after the spilling has stopped
+                if (Files.exists(processingFile)) {
+                    writeProcessingFile();
+                    continue;
+                }
+
+                AuditDao.Entry e = queue.poll(cfg.getFlushInterval(), TimeUnit.MILLISECONDS);
+                if (e != null) {
+                    batch.add(e);
+                    queue.drainTo(batch, cfg.getBatchSize() - 1);
+                    continue;
+                }
+
+                // the buffer is empty, it is safe to load the spilled entries
+                synchronized (spillLock) {
+                    if (spilling) {
+                        Files.move(spillFile, processingFile, StandardCopyOption.ATOMIC_MOVE);
+                        saveProcessedOffset(0);
+                        spilling = false;
+                        continue;
+                    }
+                }
+
+                if (stopping) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                spillRemaining(batch);
+                return;
+            } catch (Exception e) {
+                log.warn("run -> error while writing the audit log entries: {}. Will retry in {}ms...", e.getMessage(), ERROR_DELAY);
+                try {
+                    Thread.sleep(ERROR_DELAY);
+                } catch (InterruptedException ee) {
+                    spillRemaining(batch);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeProcessingFile() throws IOException {
+        List<AuditDao.Entry> batch = new ArrayList<>(cfg.getBatchSize());
+
+        try (BufferedReader reader = Files.newBufferedReader(processingFile, StandardCharsets.UTF_8)) {
+            long lineNo = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // skip the entries written before a failure
+                if (lineNo++ < processedOffset) {
+                    continue;
+                }
+
+                batch.add(fromJson(line));
+                if (batch.size() >= cfg.getBatchSize()) {
+                    write(batch, n -> saveProcessedOffset(processedOffset + n));
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            write(batch, n -> saveProcessedOffset(processedOffset + n));
+        }
+
+        Files.delete(processingFile);
+        saveProcessedOffset(0);
+        log.info("writeProcessingFile -> done, the spilled entries are written");
+    }
+
+    /**
+     * Writes the batch into the DB. The written (or rejected) entries are removed from the batch.
+     * After {@link #MAX_BATCH_RETRIES} failed attempts the entries are written one by one.
+     *
+     * @param progress receives the number of entries removed from the batch
+     */
+    private void write(List<AuditDao.Entry> batch, IntConsumer progress) {
+        if (batchFailures < MAX_BATCH_RETRIES) {
+            try {
+                auditDao.insert(batch);
+            } catch (RuntimeException e) {
+                batchFailures++;
+                throw e;
+            }
+
+            int n = batch.size();
+            batch.clear();
+            batchFailures = 0;
+            progress.accept(n);
+            return;
+        }
+
+        log.warn("write -> the batch failed {} times, writing {} entries one by one...", batchFailures, batch.size());
+
+        Iterator<AuditDao.Entry> it = batch.iterator();
+        while (it.hasNext()) {
+            AuditDao.Entry e = it.next();
+            try {
+                auditDao.insert(Collections.singletonList(e));
+            } catch (RuntimeException ex) {
+                if (!isRejected(ex)) {
+                    // e.g. the DB is not available, keep the remaining entries and try again later
+                    throw ex;
+                }
+
+                log.error("write -> the audit log entry was rejected ({}), saving it into {}: {}", ex.getMessage(), rejectedFile, toJson(e));
+                append(rejectedFile, Collections.singletonList(e));
+            }
+
+            it.remove();
+            progress.accept(1);
+        }
+
+        batchFailures = 0;
+    }
+
+    private static boolean isRejected(Exception e) {
+        if (!(e instanceof DataAccessException)) {
+            return false;
+        }
+
+        SQLStateClass c = ((DataAccessException) e).sqlStateClass();
+        return c == SQLStateClass.C22_DATA_EXCEPTION || c == SQLStateClass.C23_INTEGRITY_CONSTRAINT_VIOLATION;
+    }
+
+    private long readProcessedOffset() {
+        if (!Files.exists(processingFile) || !Files.exists(processingOffsetFile)) {
+            return 0;
+        }
+
+        try {
+            String s = new String(Files.readAllBytes(processingOffsetFile), StandardCharsets.UTF_8).trim();
+            return s.isEmpty() ? 0 : Long.parseLong(s);
+        } catch (IOException | NumberFormatException e) {
+            log.warn("readProcessedOffset -> can't read {}, the spilled entries will be written from the start: {}", processingOffsetFile, e.getMessage());
+            return 0;
+        }
+    }
+
+    private void saveProcessedOffset(long offset) {
+        processedOffset = offset;
+
+        try {
+            if (offset == 0) {
+                Files.deleteIfExists(processingOffsetFile);
+                return;
+            }
+
+            Path tmp = processingOffsetFile.resolveSibling(PROCESSING_OFFSET_FILE_NAME + ".tmp");
+            Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, processingOffsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while saving the audit log processing offset into " + processingOffsetFile, e);
+        }
+    }
+
+    /**
+     * Saves the entries which weren't written into the DB, keeping the order:
+     * the current batch, the buffer, the already spilled entries.
+     */
+    private void spillRemaining(List<AuditDao.Entry> batch) {
+        synchronized (spillLock) {
+            List<AuditDao.Entry> entries = new ArrayList<>(batch);
+            queue.drainTo(entries);
+
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            Path tmp = spillFile.resolveSibling(SPILL_FILE_NAME + ".tmp");
+            try {
+                Files.deleteIfExists(tmp);
+                append(tmp, entries);
+
+                if (Files.exists(spillFile)) {
+                    Files.write(tmp, Files.readAllBytes(spillFile), StandardOpenOption.APPEND);
+                }
+
+                Files.move(tmp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                spilling = true;
+
+                log.warn("spillRemaining -> {} entries saved into {}", entries.size(), spillFile);
+            } catch (IOException e) {
+                log.error("spillRemaining -> error while saving {} audit log entries: {}", entries.size(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void append(Path file, List<AuditDao.Entry> entries) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (AuditDao.Entry e : entries) {
+                writer.write(toJson(e));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while writing audit log entries into " + file, e);
+        }
+    }
+
+    private String toJson(AuditDao.Entry e) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("entryDate", e.getEntryDate().getTime());
+        m.put("userId", e.getUserId());
+        m.put("object", e.getObject());
+        m.put("action", e.getAction());
+        m.put("details", e.getDetails());
+        return objectMapper.serialize(m);
+    }
+
+    private AuditDao.Entry fromJson(String s) {
+        Map<String, Object> m = objectMapper.deserialize(s);
+
+        Object userId = m.get("userId");
+        return new AuditDao.Entry(new Timestamp(((Number) m.get("entryDate")).longValue()),
+                userId != null ? UUID.fromString((String) userId) : null,
+                (String) m.get("object"),
+                (String) m.get("action"),
+                (String) m.get("details"));
+    }
+}
@@ -21,16 +21,25 @@ package com.walmartlabs.concord.server.cfg;
  */
 
 import com.walmartlabs.ollie.config.Config;
+import org.eclipse.sisu.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
+
+import static com.walmartlabs.concord.server.cfg.Utils.getPath;
 
 @Named
 @Singleton
 public class AuditConfiguration implements Serializable {
 
+    private static final Logger log = LoggerFactory.getLogger(AuditConfiguration.class);
+
     @Inject
     @Config("audit.enabled")
     private boolean enabled;
@@ -43,6 +52,35 @@ public class AuditConfiguration implements Serializable {
     @Config("audit.maxLogAge")
     private long maxLogAge;
 
+    @Inject
+    @Config("audit.bufferSize")
+    private int bufferSize;
+
+    @Inject
+    @Config("audit.batchSize")
+    private int batchSize;
+
+    @Inject
+    @Config("audit.flushInterval")
+    private long flushInterval;
+
+    @Inject
+    @Config("audit.shutdownTimeout")
+    private long shutdownTimeout;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Path spillDir;
+
+    @Inject
+    public AuditConfiguration(@Config("audit.overflowPolicy") String overflowPolicy,
+                              @Config("audit.spillDir") @Nullable String spillDir) throws IOException {
+
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.toUpperCase());
+        this.spillDir = getPath(spillDir, "auditSpill");
+        log.info("init -> using {} to store the audit log overflow", this.spillDir);
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -54,4 +92,41 @@ public class AuditConfiguration implements Serializable {
     public long getMaxLogAge() {
         return maxLogAge;
     }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public Path getSpillDir() {
+        return spillDir;
+    }
+
+    public enum OverflowPolicy {
+
+        /**
+         * Wait until there is free space in the buffer.
+         */
+        BLOCK,
+
+        /**
+         * Write the entries into a local file.
+         */
+        SPILL
+    }
 }
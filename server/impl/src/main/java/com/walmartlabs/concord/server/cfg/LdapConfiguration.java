@@ -89,6 +89,18 @@ public class LdapConfiguration implements Serializable {
     @Config("ldap.autoCreateUsers")
     private boolean autoCreateUsers;
 
+    @Inject
+    @Config("ldap.cacheTtl")
+    private long cacheTtl;
+
+    @Inject
+    @Config("ldap.negativeCacheTtl")
+    private long negativeCacheTtl;
+
+    @Inject
+    @Config("ldap.cacheMaxSize")
+    private long cacheMaxSize;
+
     @Inject
     @Nullable
     @Config("ldap.returningAttributes")
@@ -170,6 +182,18 @@ public class LdapConfiguration implements Serializable {
         return autoCreateUsers;
     }
 
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public long getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
     private static Set<String> split(String s) {
         if (s == null || s.isEmpty()) {
             return Collections.emptySet();
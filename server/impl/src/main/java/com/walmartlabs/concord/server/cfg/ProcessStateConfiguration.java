@@ -39,6 +39,14 @@ public class ProcessStateConfiguration implements Serializable {
     @Config("process.cleanupInterval")
     private long cleanupInterval;
 
+    @Inject
+    @Config("process.cleanupBatchSize")
+    private int cleanupBatchSize;
+
+    @Inject
+    @Config("process.cleanupMaxRowsPerSecond")
+    private int cleanupMaxRowsPerSecond;
+
     @Inject
     @Config("process.queueCleanup")
     private boolean queueCleanup;
@@ -63,6 +71,22 @@ public class ProcessStateConfiguration implements Serializable {
     @Config("process.maxStateAge")
     private long maxStateAge;
 
+    @Inject
+    @Config("process.partitionMaintenanceInterval")
+    private long partitionMaintenanceInterval;
+
+    @Inject
+    @Config("process.partitionPrecreateDays")
+    private int partitionPrecreateDays;
+
+    @Inject
+    @Config("process.statsCompactionInterval")
+    private long statsCompactionInterval;
+
+    @Inject
+    @Config("process.statsReconciliationInterval")
+    private long statsReconciliationInterval;
+
     @Inject
     @Config("process.secureFiles")
     private List<String> secureFiles;
@@ -93,6 +117,14 @@ public class ProcessStateConfiguration implements Serializable {
         return cleanupInterval;
     }
 
+    public int getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    public int getCleanupMaxRowsPerSecond() {
+        return cleanupMaxRowsPerSecond;
+    }
+
     public boolean isQueueCleanup() {
         return queueCleanup;
     }
@@ -117,6 +149,22 @@ public class ProcessStateConfiguration implements Serializable {
         return maxStateAge;
     }
 
+    public long getPartitionMaintenanceInterval() {
+        return partitionMaintenanceInterval;
+    }
+
+    public int getPartitionPrecreateDays() {
+        return partitionPrecreateDays;
+    }
+
+    public long getStatsCompactionInterval() {
+        return statsCompactionInterval;
+    }
+
+    public long getStatsReconciliationInterval() {
+        return statsReconciliationInterval;
+    }
+
     public List<String> getSecureFiles() {
         return secureFiles;
     }
@@ -47,6 +47,22 @@ public class ProcessWatchdogConfiguration implements Serializable {
     @Config("process.maxStartFailureAge")
     private String maxStartFailureAge;
 
+    @Inject
+    @Config("process.watchdogBatchSize")
+    private int batchSize;
+
+    @Inject
+    @Config("process.watchdogHandlerThreads")
+    private int handlerThreads;
+
+    @Inject
+    @Config("process.waitCheckPeriod")
+    private long waitCheckPeriod;
+
+    @Inject
+    @Config("process.waitSweepPeriod")
+    private long waitSweepPeriod;
+
     public long getPeriod() {
         return period;
     }
@@ -62,4 +78,20 @@ public class ProcessWatchdogConfiguration implements Serializable {
     public String getMaxStartFailureAge() {
         return maxStartFailureAge;
     }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getHandlerThreads() {
+        return handlerThreads;
+    }
+
+    public long getWaitCheckPeriod() {
+        return waitCheckPeriod;
+    }
+
+    public long getWaitSweepPeriod() {
+        return waitSweepPeriod;
+    }
 }
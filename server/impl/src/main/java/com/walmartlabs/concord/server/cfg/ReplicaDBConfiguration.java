@@ -0,0 +1,91 @@
+package com.walmartlabs.concord.server.cfg;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.ReplicaDB;
+import com.walmartlabs.concord.db.ReplicaDatabaseConfiguration;
+import com.walmartlabs.ollie.config.Config;
+import org.eclipse.sisu.Nullable;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+@Named
+@Singleton
+@ReplicaDB
+public class ReplicaDBConfiguration implements ReplicaDatabaseConfiguration {
+
+    @Inject
+    @Config("db.replica.url")
+    @Nullable
+    private String url;
+
+    @Inject
+    @Config("db.appUsername")
+    private String username;
+
+    @Inject
+    @Config("db.appPassword")
+    private String password;
+
+    @Inject
+    @Config("db.replica.maxPoolSize")
+    private int maxPoolSize;
+
+    @Inject
+    @Config("db.replica.maxLag")
+    private long maxLag;
+
+    @Inject
+    @Config("db.replica.lagCheckInterval")
+    private long lagCheckInterval;
+
+    @Override
+    public String url() {
+        return url;
+    }
+
+    @Override
+    public String username() {
+        return username;
+    }
+
+    @Override
+    public String password() {
+        return password;
+    }
+
+    @Override
+    public int maxPoolSize() {
+        return maxPoolSize;
+    }
+
+    @Override
+    public long maxLag() {
+        return maxLag;
+    }
+
+    @Override
+    public long lagCheckInterval() {
+        return lagCheckInterval;
+    }
+}
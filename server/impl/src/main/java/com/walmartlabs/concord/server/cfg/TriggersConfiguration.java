@@ -39,6 +39,18 @@ public class TriggersConfiguration {
     @Config("triggers.disabled")
     private List<String> disabled;
 
+    @Inject
+    @Config("triggers.cronCheckInterval")
+    private long cronCheckInterval;
+
+    @Inject
+    @Config("triggers.cronBatchSize")
+    private int cronBatchSize;
+
+    @Inject
+    @Config("triggers.cronThreads")
+    private int cronThreads;
+
     public boolean isDisableAll() {
         return disableAll;
     }
@@ -46,4 +58,16 @@ public class TriggersConfiguration {
     public List<String> getDisabled(){
         return disabled;
     }
+
+    public long getCronCheckInterval() {
+        return cronCheckInterval;
+    }
+
+    public int getCronBatchSize() {
+        return cronBatchSize;
+    }
+
+    public int getCronThreads() {
+        return cronThreads;
+    }
 }
@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.console;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.db.ReadOnly;
 import com.walmartlabs.concord.server.metrics.WithTimer;
 import com.walmartlabs.concord.server.process.ProcessEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessFilter;
@@ -47,7 +48,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.console.UserActivityResponse.ProjectProcesses;
-import static com.walmartlabs.concord.server.jooq.Tables.V_PROCESS_QUEUE;
+import static com.walmartlabs.concord.server.jooq.tables.Organizations.ORGANIZATIONS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStats.PROCESS_STATS;
 import static com.walmartlabs.concord.server.jooq.tables.Projects.PROJECTS;
 import static com.walmartlabs.concord.server.sdk.ProcessStatus.*;
 import static org.jooq.impl.DSL.*;
@@ -74,6 +76,7 @@ public class UserActivityResource implements Resource {
     @Path("/activity")
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
+    @ReadOnly
     public UserActivityResponse activity(@QueryParam("maxProjectsPerOrg") @DefaultValue("5") int maxProjectsPerOrg,
                                          @QueryParam("maxOwnProcesses") @DefaultValue("5") int maxOwnProcesses) {
 
@@ -101,46 +104,48 @@ public class UserActivityResource implements Resource {
         return Date.from(startOfDay.atZone(ZoneId.systemDefault()).toInstant());
     }
 
+    /**
+     * Reads the counters maintained in {@code PROCESS_STATS}. The rows are
+     * bucketed by the process creation time, the "today" numbers are the
+     * numbers of processes created since the start of the day.
+     */
     @Named
     private static class ProcessStatsDao extends AbstractDao {
 
+        /**
+         * Statuses counted regardless of the process creation time.
+         */
+        private static final Set<String> ALL_TIME_STATUSES = Collections.singleton(RUNNING.name());
+
+        private static final ProcessStatus[] DASHBOARD_STATUSES = {RUNNING, SUSPENDED, FINISHED, FAILED, ENQUEUED};
+
         @Inject
         protected ProcessStatsDao(@MainDB Configuration cfg) {
             super(cfg);
         }
 
-        public Map<String, Integer> getCountByStatuses(Set<UUID> orgIds, Timestamp fromUpdatedAt, UUID initiatorId) {
+        public Map<String, Integer> getCountByStatuses(Set<UUID> orgIds, Timestamp fromCreatedAt, UUID initiatorId) {
             try (DSLContext tx = DSL.using(cfg)) {
                 SelectConditionStep<Record1<UUID>> projectIds = select(PROJECTS.PROJECT_ID)
                         .from(PROJECTS)
                         .where(PROJECTS.ORG_ID.in(orgIds));
 
-                SelectConditionStep<Record5<Integer, Integer, Integer, Integer, Integer>> q = tx.select(
-                        when(V_PROCESS_QUEUE.CURRENT_STATUS.eq(RUNNING.name()), 1).otherwise(0).as(RUNNING.name()),
-                        when(V_PROCESS_QUEUE.CURRENT_STATUS.eq(SUSPENDED.name()), 1).otherwise(0).as(SUSPENDED.name()),
-                        when(V_PROCESS_QUEUE.CURRENT_STATUS.eq(FINISHED.name()), 1).otherwise(0).as(FINISHED.name()),
-                        when(V_PROCESS_QUEUE.CURRENT_STATUS.eq(FAILED.name()), 1).otherwise(0).as(FAILED.name()),
-                        when(V_PROCESS_QUEUE.CURRENT_STATUS.eq(ENQUEUED.name()), 1).otherwise(0).as(ENQUEUED.name()))
-                        .from(V_PROCESS_QUEUE)
-                        .where(V_PROCESS_QUEUE.INITIATOR_ID.eq(initiatorId)
-                                .and(V_PROCESS_QUEUE.LAST_UPDATED_AT.greaterOrEqual(fromUpdatedAt))
-                                .and(or(V_PROCESS_QUEUE.PROJECT_ID.in(projectIds), V_PROCESS_QUEUE.PROJECT_ID.isNull())));
-
-                Record5<BigDecimal, BigDecimal, BigDecimal, BigDecimal, BigDecimal> r = tx.select(
-                        sum(q.field(RUNNING.name(), Integer.class)),
-                        sum(q.field(SUSPENDED.name(), Integer.class)),
-                        sum(q.field(FINISHED.name(), Integer.class)),
-                        sum(q.field(FAILED.name(), Integer.class)),
-                        sum(q.field(ENQUEUED.name(), Integer.class)))
-                        .from(q)
-                        .fetchOne();
+                Set<String> statuses = Arrays.stream(DASHBOARD_STATUSES).map(Enum::name).collect(Collectors.toSet());
+
+                Map<String, BigDecimal> counts = tx.select(PROCESS_STATS.CURRENT_STATUS, sum(PROCESS_STATS.PROCESS_COUNT))
+                        .from(PROCESS_STATS)
+                        .where(PROCESS_STATS.INITIATOR_ID.eq(initiatorId)
+                                .and(PROCESS_STATS.CURRENT_STATUS.in(statuses))
+                                .and(inTimeRange(fromCreatedAt))
+                                .and(or(PROCESS_STATS.PROJECT_ID.in(projectIds), PROCESS_STATS.PROJECT_ID.isNull())))
+                        .groupBy(PROCESS_STATS.CURRENT_STATUS)
+                        .fetchMap(Record2::value1, Record2::value2);
 
                 Map<String, Integer> result = new HashMap<>();
-                result.put(RUNNING.name(), r.value1() != null ? r.value1().intValue() : 0);
-                result.put(SUSPENDED.name(), r.value2() != null ? r.value2().intValue() : 0);
-                result.put(FINISHED.name(), r.value3() != null ? r.value3().intValue() : 0);
-                result.put(FAILED.name(), r.value4() != null ? r.value4().intValue() : 0);
-                result.put(ENQUEUED.name(), r.value5() != null ? r.value5().intValue() : 0);
+                for (ProcessStatus s : DASHBOARD_STATUSES) {
+                    BigDecimal v = counts.get(s.name());
+                    result.put(s.name(), v != null ? v.intValue() : 0);
+                }
                 return result;
             }
         }
@@ -148,35 +153,46 @@ public class UserActivityResource implements Resource {
         public Map<String, List<ProjectProcesses>> processByOrgs(int maxProjectRows,
                                                                  Set<UUID> orgIds,
                                                                  Set<ProcessStatus> processStatuses,
-                                                                 Timestamp fromUpdatedAt) {
+                                                                 Timestamp fromCreatedAt) {
 
             Set<String> statuses = processStatuses.stream().map(Enum::name).collect(Collectors.toSet());
 
             try (DSLContext tx = DSL.using(cfg)) {
-                WindowRowsStep<Integer> rnField = rowNumber().over().partitionBy(V_PROCESS_QUEUE.ORG_NAME).orderBy(V_PROCESS_QUEUE.ORG_NAME);
-
-                SelectHavingStep<Record4<String, String, Integer, Integer>> a =
-                        tx.select(V_PROCESS_QUEUE.ORG_NAME, V_PROCESS_QUEUE.PROJECT_NAME, count(), rnField)
-                            .from(V_PROCESS_QUEUE)
-                                .where(V_PROCESS_QUEUE.ORG_ID.in(orgIds)
-                                        .and(V_PROCESS_QUEUE.CURRENT_STATUS.in(statuses))
-                                        .and(V_PROCESS_QUEUE.LAST_UPDATED_AT.greaterOrEqual(fromUpdatedAt)))
-                            .groupBy(V_PROCESS_QUEUE.ORG_NAME, V_PROCESS_QUEUE.PROJECT_NAME);
-
-                Result<Record3<String, String, Integer>> r = tx.select(a.field(0, String.class), a.field(1, String.class), a.field(2, Integer.class))
+                Field<BigDecimal> countField = sum(PROCESS_STATS.PROCESS_COUNT);
+                WindowRowsStep<Integer> rnField = rowNumber().over().partitionBy(ORGANIZATIONS.ORG_NAME).orderBy(countField.desc());
+
+                SelectHavingStep<Record4<String, String, BigDecimal, Integer>> a =
+                        tx.select(ORGANIZATIONS.ORG_NAME, PROJECTS.PROJECT_NAME, countField, rnField)
+                                .from(PROCESS_STATS)
+                                .join(PROJECTS).on(PROJECTS.PROJECT_ID.eq(PROCESS_STATS.PROJECT_ID))
+                                .join(ORGANIZATIONS).on(ORGANIZATIONS.ORG_ID.eq(PROJECTS.ORG_ID))
+                                .where(PROJECTS.ORG_ID.in(orgIds)
+                                        .and(PROCESS_STATS.CURRENT_STATUS.in(statuses))
+                                        .and(inTimeRange(fromCreatedAt)))
+                                .groupBy(ORGANIZATIONS.ORG_NAME, PROJECTS.PROJECT_NAME);
+
+                Result<Record3<String, String, BigDecimal>> r = tx.select(a.field(0, String.class), a.field(1, String.class), a.field(2, BigDecimal.class))
                         .from(a)
-                        .where(a.field(rnField).lessOrEqual(maxProjectRows))
+                        .where(a.field(rnField).lessOrEqual(maxProjectRows)
+                                .and(a.field(2, BigDecimal.class).greaterThan(BigDecimal.ZERO)))
                         .fetch();
 
                 Map<String, List<ProjectProcesses>> result = new HashMap<>();
                 r.forEach(i -> {
                     String orgName = i.value1();
                     String projectName = i.value2();
-                    int count = i.value3();
+                    int count = i.value3().intValue();
                     result.computeIfAbsent(orgName, (k) -> new ArrayList<>()).add(new ProjectProcesses(projectName, count));
                 });
                 return result;
             }
         }
+
+        private static Condition inTimeRange(Timestamp fromCreatedAt) {
+            // running processes are counted regardless of their age, same as before
+            // when the dashboard used LAST_UPDATED_AT which is refreshed by heartbeats
+            return PROCESS_STATS.CURRENT_STATUS.in(ALL_TIME_STATUSES)
+                    .or(PROCESS_STATS.BUCKET_START.greaterOrEqual(fromCreatedAt));
+        }
     }
 }
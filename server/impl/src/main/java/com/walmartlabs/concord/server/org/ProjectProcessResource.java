@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.org;
 
 import com.walmartlabs.concord.common.ConfigurationUtils;
 import com.walmartlabs.concord.common.validation.ConcordKey;
+import com.walmartlabs.concord.db.ReadOnly;
 import com.walmartlabs.concord.project.InternalConstants;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.IsoDateParam;
@@ -106,6 +107,7 @@ public class ProjectProcessResource implements Resource {
     @Path("/{orgName}/process")
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
+    @ReadOnly
     @Deprecated
     // TODO replace with /api/v1/process?orgName=...&status=...
     public List<ProcessEntry> list(@ApiParam @PathParam("orgName") @ConcordKey String orgName,
@@ -129,6 +131,7 @@ public class ProjectProcessResource implements Resource {
     @Path("/{orgName}/project/{projectName}/process")
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
+    @ReadOnly
     @Deprecated
     public List<ProcessEntry> list(@ApiParam @PathParam("orgName") @ConcordKey String orgName,
                                    @ApiParam @PathParam("projectName") @ConcordKey String projectName,
@@ -0,0 +1,74 @@
+package com.walmartlabs.concord.server.org.inventory;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Caches the rewritten SQL of inventory queries. The entries are keyed by
+ * the query ID and are reused only while the query text stays the same,
+ * so the queries updated by other server instances are prepared again.
+ */
+@Named
+@Singleton
+public class InventoryQueryCache {
+
+    private final Cache<UUID, PreparedQuery> cache;
+
+    public InventoryQueryCache() {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(1024)
+                .concurrencyLevel(32)
+                .build();
+    }
+
+    public String getSql(InventoryQueryEntry q, Function<String, String> preparer) {
+        PreparedQuery p = cache.getIfPresent(q.getId());
+        if (p != null && p.text.equals(q.getText())) {
+            return p.sql;
+        }
+
+        String sql = preparer.apply(q.getText());
+        cache.put(q.getId(), new PreparedQuery(q.getText(), sql));
+        return sql;
+    }
+
+    public void invalidate(UUID queryId) {
+        cache.invalidate(queryId);
+    }
+
+    private static final class PreparedQuery {
+
+        private final String text;
+        private final String sql;
+
+        private PreparedQuery(String text, String sql) {
+            this.text = text;
+            this.sql = sql;
+        }
+    }
+}
@@ -39,9 +39,12 @@ import static org.jooq.impl.DSL.value;
 @Named
 public class InventoryQueryDao extends AbstractDao {
 
+    private final InventoryQueryCache queryCache;
+
     @Inject
-    public InventoryQueryDao(@MainDB Configuration cfg) {
+    public InventoryQueryDao(@MainDB Configuration cfg, InventoryQueryCache queryCache) {
         super(cfg);
+        this.queryCache = queryCache;
     }
 
     public UUID getId(UUID inventoryId, String queryName) {
@@ -83,10 +86,12 @@ public class InventoryQueryDao extends AbstractDao {
 
     public void update(UUID queryId, UUID inventoryId, String queryName, String text) {
         tx(tx -> update(tx, queryId, inventoryId, queryName, text));
+        queryCache.invalidate(queryId);
     }
 
     public void delete(UUID queryId) {
         tx(tx -> delete(tx, queryId));
+        queryCache.invalidate(queryId);
     }
 
     private UUID insert(DSLContext tx, UUID inventoryId, String queryName, String text) {
@@ -41,6 +41,7 @@ import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
 import net.sf.jsqlparser.statement.select.SelectVisitorAdapter;
 import org.jooq.Configuration;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
 import org.jooq.QueryPart;
 import org.jooq.Record;
@@ -48,6 +49,8 @@ import org.jooq.impl.DSL;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -58,41 +61,78 @@ import static org.jooq.impl.DSL.val;
 @Named
 public class InventoryQueryExecDao extends AbstractDao {
 
+    /**
+     * Number of rows fetched from the DB at once when streaming the results.
+     */
+    private static final int FETCH_SIZE = 1000;
+
     private final ConcordObjectMapper objectMapper;
 
     private final InventoryQueryDao inventoryQueryDao;
 
+    private final InventoryQueryCache queryCache;
+
     @Inject
     public InventoryQueryExecDao(@InventoryDB Configuration cfg,
                                  InventoryQueryDao inventoryQueryDao,
+                                 InventoryQueryCache queryCache,
                                  ConcordObjectMapper objectMapper) {
         super(cfg);
 
         this.inventoryQueryDao = inventoryQueryDao;
+        this.queryCache = queryCache;
         this.objectMapper = objectMapper;
     }
 
-    public List<Object> exec(UUID queryId, Map<String, Object> params) {
+    /**
+     * Executes the query and passes the results to the consumer one by one.
+     * The results are fetched from the DB in chunks, the whole result set is
+     * never kept in memory.
+     *
+     * @param offset number of results to skip, optional
+     * @param limit  max number of results to return, optional
+     * @return {@code false} if the query doesn't exist
+     */
+    public boolean exec(UUID queryId, Map<String, Object> params, Integer offset, Integer limit, ResultConsumer consumer) throws IOException {
         InventoryQueryEntry q = inventoryQueryDao.get(queryId);
         if (q == null) {
-            return null;
+            return false;
         }
 
-        String sql = createQuery(q.getText());
+        String sql = queryCache.getSql(q, InventoryQueryExecDao::createQuery);
+
+        // TODO we should probably inspect the query to determine whether we need to bind the params or not
 
-        try (DSLContext tx = DSL.using(cfg)) {
-            // TODO we should probably inspect the query to determine whether we need to bind the params or not
+        List<QueryPart> args = new ArrayList<>();
+        if (params != null) {
+            args.add(val(objectMapper.serialize(params)));
+        }
+        args.add(val(q.getInventoryId()));
 
-            QueryPart[] args;
-            if (params == null) {
-                args = new QueryPart[]{val(q.getInventoryId())};
-            } else {
-                args = new QueryPart[]{val(objectMapper.serialize(params)), val(q.getInventoryId())};
+        if (offset != null || limit != null) {
+            StringBuilder sb = new StringBuilder("select * from (").append(sql).append(") q");
+            if (offset != null) {
+                sb.append(" offset ?");
+                args.add(val(offset));
+            }
+            if (limit != null) {
+                sb.append(" limit ?");
+                args.add(val(limit));
             }
+            sql = sb.toString();
+        }
 
-            return tx.resultQuery(sql, args)
-                    .fetch(this::toExecResult);
+        try (DSLContext tx = DSL.using(cfg);
+             Cursor<Record> cursor = tx.resultQuery(sql, args.toArray(new QueryPart[0]))
+                     .fetchSize(FETCH_SIZE)
+                     .fetchLazy()) {
+
+            for (Record r : cursor) {
+                consumer.accept(toExecResult(r));
+            }
         }
+
+        return true;
     }
 
     private Object toExecResult(Record record) {
@@ -149,4 +189,9 @@ public class InventoryQueryExecDao extends AbstractDao {
             throw new IllegalArgumentException("Query parse error: " + e.getMessage(), e);
         }
     }
+
+    public interface ResultConsumer {
+
+        void accept(Object item) throws IOException;
+    }
 }
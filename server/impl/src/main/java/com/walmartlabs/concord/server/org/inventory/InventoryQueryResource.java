@@ -20,6 +20,8 @@ package com.walmartlabs.concord.server.org.inventory;
  * =====
  */
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.walmartlabs.concord.common.validation.ConcordKey;
 import com.walmartlabs.concord.server.OperationResult;
 import com.walmartlabs.concord.server.metrics.WithTimer;
@@ -42,6 +44,9 @@ import javax.inject.Singleton;
 import javax.validation.Valid;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -56,17 +61,20 @@ public class InventoryQueryResource implements Resource {
     private final InventoryManager inventoryManager;
     private final InventoryQueryDao inventoryQueryDao;
     private final InventoryQueryExecDao inventoryQueryExecDao;
+    private final ObjectMapper objectMapper;
 
     @Inject
     public InventoryQueryResource(OrganizationManager orgManager,
                                   InventoryManager inventoryManager,
                                   InventoryQueryDao inventoryQueryDao,
-                                  InventoryQueryExecDao inventoryQueryExecDao) {
+                                  InventoryQueryExecDao inventoryQueryExecDao,
+                                  ObjectMapper objectMapper) {
 
         this.inventoryManager = inventoryManager;
         this.orgManager = orgManager;
         this.inventoryQueryDao = inventoryQueryDao;
         this.inventoryQueryExecDao = inventoryQueryExecDao;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -180,29 +188,56 @@ public class InventoryQueryResource implements Resource {
      * @param inventoryName inventory's name
      * @param queryName     query's name
      * @param params        query params
+     * @param offset        number of results to skip
+     * @param limit         max number of results to return
      * @return query result
      */
     @POST
-    @ApiOperation("Execute inventory query")
+    @ApiOperation(value = "Execute inventory query", response = Object[].class)
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{orgName}/inventory/{inventoryName}/query/{queryName}/exec")
     @WithTimer
-    public List<Object> exec(@ApiParam @PathParam("orgName") @ConcordKey String orgName,
-                             @ApiParam @PathParam("inventoryName") @ConcordKey String inventoryName,
-                             @ApiParam @PathParam("queryName") @ConcordKey String queryName,
-                             @ApiParam @Valid Map<String, Object> params) {
+    public Response exec(@ApiParam @PathParam("orgName") @ConcordKey String orgName,
+                         @ApiParam @PathParam("inventoryName") @ConcordKey String inventoryName,
+                         @ApiParam @PathParam("queryName") @ConcordKey String queryName,
+                         @ApiParam @Valid Map<String, Object> params,
+                         @ApiParam @QueryParam("offset") Integer offset,
+                         @ApiParam @QueryParam("limit") Integer limit) {
+
+        if (offset != null && offset < 0) {
+            throw new ValidationErrorsException("'offset' must be a positive number or zero");
+        }
+
+        if (limit != null && limit <= 0) {
+            throw new ValidationErrorsException("'limit' must be a positive number");
+        }
 
         OrganizationEntry org = orgManager.assertAccess(orgName, true);
         InventoryEntry inventory = inventoryManager.assertInventoryAccess(org.getId(), inventoryName, ResourceAccessLevel.READER, true);
 
         UUID inventoryId = inventory.getId();
         UUID queryId = assertQuery(inventoryId, queryName);
-        try {
-            return inventoryQueryExecDao.exec(queryId, params);
-        } catch (Exception e) {
-            throw new ConcordApplicationException("Error while execution query: " + e.getMessage(), e);
-        }
+
+        // the results are written as they are fetched from the DB
+        // nothing is flushed until the query is executed, so the query errors are returned as usual
+        StreamingOutput out = output -> {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(output);
+            json.writeStartArray();
+
+            try {
+                inventoryQueryExecDao.exec(queryId, params, offset, limit, json::writeObject);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ConcordApplicationException("Error while execution query: " + e.getMessage(), e);
+            }
+
+            json.writeEndArray();
+            json.flush();
+        };
+
+        return Response.ok(out, MediaType.APPLICATION_JSON).build();
     }
 
     private UUID assertQuery(UUID inventoryId, String queryName) {
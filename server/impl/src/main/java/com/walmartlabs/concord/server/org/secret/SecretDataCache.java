@@ -0,0 +1,113 @@
+package com.walmartlabs.concord.server.org.secret;
+
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the decrypted data of the secrets encrypted with the server's key,
+ * so the bursts of process starts using the same repository credentials
+ * don't have to read and decrypt the same secret each time.
+ * <p>
+ * The cache is memory-only. Access checks are not cached, they are performed
+ * on each request before the cache is consulted.
+ * Entries are evicted when the secret is updated, deleted or its access
+ * levels change. The TTL limits the staleness of the entries when such changes
+ * happen on a different server instance.
+ */
+@Named
+@Singleton
+public class SecretDataCache {
+
+    private static final long TTL_SECONDS = 30;
+
+    private final Cache<Key, byte[]> cache;
+
+    public SecretDataCache() {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+                .maximumSize(1024)
+                .concurrencyLevel(16)
+                .recordStats()
+                .build();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return a copy of the cached data or {@code null} if there is none.
+     */
+    public byte[] get(UUID orgId, UUID secretId) {
+        byte[] ab = cache.getIfPresent(new Key(orgId, secretId));
+        if (ab == null) {
+            return null;
+        }
+
+        return ab.clone();
+    }
+
+    public void put(UUID orgId, UUID secretId, byte[] data) {
+        cache.put(new Key(orgId, secretId), data.clone());
+    }
+
+    public void invalidate(UUID orgId, UUID secretId) {
+        cache.invalidate(new Key(orgId, secretId));
+    }
+
+    private static final class Key {
+
+        private final UUID orgId;
+        private final UUID secretId;
+
+        private Key(UUID orgId, UUID secretId) {
+            this.orgId = orgId;
+            this.secretId = secretId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(orgId, key.orgId) && Objects.equals(secretId, key.secretId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(orgId, secretId);
+        }
+    }
+}
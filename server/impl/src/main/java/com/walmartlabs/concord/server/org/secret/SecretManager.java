@@ -78,6 +78,7 @@ public class SecretManager {
     private final SecretStoreProvider secretStoreProvider;
     private final UserDao userDao;
     private final ProjectAccessManager projectAccessManager;
+    private final SecretDataCache dataCache;
 
     @Inject
     public SecretManager(PolicyManager policyManager,
@@ -88,7 +89,8 @@ public class SecretManager {
                          SecretStoreConfiguration secretCfg,
                          SecretStoreProvider secretStoreProvider,
                          UserDao userDao,
-                         ProjectAccessManager projectAccessManager) {
+                         ProjectAccessManager projectAccessManager,
+                         SecretDataCache dataCache) {
 
         this.policyManager = policyManager;
         this.secretDao = secretDao;
@@ -99,6 +101,7 @@ public class SecretManager {
         this.auditLog = auditLog;
         this.processQueueDao = processQueueDao;
         this.projectAccessManager = projectAccessManager;
+        this.dataCache = dataCache;
     }
 
     @WithTimer
@@ -309,6 +312,7 @@ public class SecretManager {
         }
 
         secretDao.update(e.getId(), req.name(), newData, req.visibility(), projectId);
+        dataCache.invalidate(e.getOrgId(), e.getId());
 
         Map<String, Object> changes = DiffUtils.compare(e, secretDao.get(e.getId()));
         changes.put("updated", updated);
@@ -331,6 +335,7 @@ public class SecretManager {
         getSecretStore(e.getStoreType()).delete(e.getId());
         // now delete secret information from secret table
         secretDao.delete(e.getId());
+        dataCache.invalidate(e.getOrgId(), e.getId());
 
         auditLog.add(AuditObject.SECRET, AuditAction.DELETE)
                 .field("id", e.getId())
@@ -365,6 +370,25 @@ public class SecretManager {
         return SecretUtils.decrypt(data, pwd, salt);
     }
 
+    /**
+     * Returns the decrypted data of the secret. The data of the secrets
+     * encrypted with the server's key is cached for a short time.
+     */
+    private byte[] getData(SecretEntry e, String password) {
+        if (e.getEncryptedBy() != SecretEncryptedByType.SERVER_KEY) {
+            return decryptData(e.getId(), e.getStoreType(), password);
+        }
+
+        byte[] ab = dataCache.get(e.getOrgId(), e.getId());
+        if (ab != null) {
+            return ab;
+        }
+
+        ab = decryptData(e.getId(), e.getStoreType(), password);
+        dataCache.put(e.getOrgId(), e.getId(), ab);
+        return ab;
+    }
+
     /**
      * Returns a raw (unencrypted) secret value.
      */
@@ -380,7 +404,7 @@ public class SecretManager {
         SecretEncryptedByType providedEncryptedByType = getEncryptedBy(password);
         assertEncryptedByType(name, providedEncryptedByType, e.getEncryptedBy());
 
-        byte[] ab = decryptData(e.getId(), e.getStoreType(), password);
+        byte[] ab = getData(e, password);
 
         auditLog.add(AuditObject.SECRET, AuditAction.ACCESS)
                 .field("id", e.getId())
@@ -423,8 +447,9 @@ public class SecretManager {
      * Updates a secret's access level for the specified team.
      */
     public void updateAccessLevel(UUID secretId, UUID teamId, ResourceAccessLevel level) {
-        assertAccess(null, secretId, null, ResourceAccessLevel.OWNER, true);
+        SecretEntry e = assertAccess(null, secretId, null, ResourceAccessLevel.OWNER, true);
         secretDao.upsertAccessLevel(secretId, teamId, level);
+        dataCache.invalidate(e.getOrgId(), secretId);
     }
 
     private UUID create(String name, UUID orgId, UUID projectId, Secret s, String password, SecretVisibility visibility, String storeType) {
@@ -487,7 +512,7 @@ public class SecretManager {
     }
 
     public void updateAccessLevel(UUID secretId, Collection<ResourceAccessEntry> entries, boolean isReplace) {
-        assertAccess(null, secretId, null, ResourceAccessLevel.OWNER, true);
+        SecretEntry secret = assertAccess(null, secretId, null, ResourceAccessLevel.OWNER, true);
 
         secretDao.tx(tx -> {
             if (isReplace) {
@@ -498,6 +523,8 @@ public class SecretManager {
                 secretDao.upsertAccessLevel(tx, secretId, e.getTeamId(), e.getLevel());
             }
         });
+
+        dataCache.invalidate(secret.getOrgId(), secretId);
     }
 
     private byte[] getPwd(String pwd) {
@@ -27,7 +27,9 @@ import com.walmartlabs.concord.server.jooq.tables.Triggers;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Field;
+import org.jooq.Query;
 import org.jooq.Record10;
+import org.jooq.Result;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -54,30 +56,32 @@ public class TriggerScheduleDao extends AbstractDao {
         this.objectMapper = objectMapper;
     }
 
-    public TriggerSchedulerEntry findNext() {
+    /**
+     * Returns up to {@code maxEntries} due triggers and moves their schedules
+     * to the next execution time.
+     */
+    public List<TriggerSchedulerEntry> findNext(int maxEntries) {
         return txResult(tx -> {
-            Map<String, Object> e = tx.select(TRIGGER_SCHEDULE.TRIGGER_ID, TRIGGER_SCHEDULE.FIRE_AT)
+            Map<UUID, Timestamp> due = tx.select(TRIGGER_SCHEDULE.TRIGGER_ID, TRIGGER_SCHEDULE.FIRE_AT)
                     .from(TRIGGER_SCHEDULE)
                     .where(TRIGGER_SCHEDULE.FIRE_AT.le(currentTimestamp()))
-                    .limit(1)
+                    .orderBy(TRIGGER_SCHEDULE.FIRE_AT)
+                    .limit(maxEntries)
                     .forUpdate()
                     .skipLocked()
-                    .fetchOneMap();
+                    .fetchMap(TRIGGER_SCHEDULE.TRIGGER_ID, TRIGGER_SCHEDULE.FIRE_AT);
 
-            if (e == null) {
-                return null;
+            if (due.isEmpty()) {
+                return Collections.emptyList();
             }
 
-            UUID id = (UUID) e.get(TRIGGER_SCHEDULE.TRIGGER_ID.getName());
-            Date fireAt = (Date) e.get(TRIGGER_SCHEDULE.FIRE_AT.getName());
-
             Triggers t = TRIGGERS.as("t");
 
             Field<UUID> orgIdField = select(PROJECTS.ORG_ID).from(PROJECTS).where(PROJECTS.PROJECT_ID.eq(t.PROJECT_ID)).asField();
             Field<String> specField = field("{0}->>'spec'", String.class, t.CONDITIONS);
             Field<String> timezoneField = field("{0}->>'timezone'", String.class, t.CONDITIONS);
 
-            Record10<UUID, UUID, UUID, UUID, String, String, String[], String, String, Timestamp> r = tx.select(
+            Result<Record10<UUID, UUID, UUID, UUID, String, String, String[], String, String, Timestamp>> rows = tx.select(
                     t.TRIGGER_ID,
                     orgIdField,
                     t.PROJECT_ID,
@@ -89,32 +93,40 @@ public class TriggerScheduleDao extends AbstractDao {
                     t.TRIGGER_CFG.cast(String.class),
                     currentTimestamp())
                     .from(t)
-                    .where(t.TRIGGER_ID.eq(id))
-                    .fetchOne();
-
-            if (r == null) {
-                return null;
+                    .where(t.TRIGGER_ID.in(due.keySet()))
+                    .fetch();
+
+            List<TriggerSchedulerEntry> result = new ArrayList<>(rows.size());
+            List<Query> updates = new ArrayList<>(rows.size());
+
+            for (Record10<UUID, UUID, UUID, UUID, String, String, String[], String, String, Timestamp> r : rows) {
+                TriggerSchedulerEntry e = new TriggerSchedulerEntry(
+                        due.get(r.value1()),
+                        r.value1(),
+                        r.value2(),
+                        r.value3(),
+                        r.value4(),
+                        r.value5(),
+                        r.value6(),
+                        toList(r.value7()),
+                        objectMapper.deserialize(r.value8()),
+                        objectMapper.deserialize(r.value9()));
+
+                ZoneId zoneId = null;
+                if (e.getTimezone() != null) {
+                    zoneId = TimeZone.getTimeZone(e.getTimezone()).toZoneId();
+                }
+                Instant now = r.value10().toInstant();
+                updates.add(updateFireAt(tx, e.getTriggerId(), CronUtils.nextExecution(now, e.getCronSpec(), zoneId)));
+
+                result.add(e);
             }
 
-            TriggerSchedulerEntry result = new TriggerSchedulerEntry(
-                    fireAt,
-                    r.value1(),
-                    r.value2(),
-                    r.value3(),
-                    r.value4(),
-                    r.value5(),
-                    r.value6(),
-                    toList(r.value7()),
-                    objectMapper.deserialize(r.value8()),
-                    objectMapper.deserialize(r.value9()));
-
-            ZoneId zoneId = null;
-            if (result.getTimezone() != null) {
-                zoneId = TimeZone.getTimeZone(result.getTimezone()).toZoneId();
+            if (!updates.isEmpty()) {
+                tx.batch(updates).execute();
             }
-            Instant now = r.value10().toInstant();
-            updateFireAt(tx, id, CronUtils.nextExecution(now, result.getCronSpec(), zoneId));
 
+            result.sort(Comparator.comparing(TriggerSchedulerEntry::getFireAt));
             return result;
         });
     }
@@ -132,11 +144,10 @@ public class TriggerScheduleDao extends AbstractDao {
                 .execute();
     }
 
-    private void updateFireAt(DSLContext tx, UUID triggerId, Instant fireAt) {
-        tx.update(TRIGGER_SCHEDULE)
+    private static Query updateFireAt(DSLContext tx, UUID triggerId, Instant fireAt) {
+        return tx.update(TRIGGER_SCHEDULE)
                 .set(TRIGGER_SCHEDULE.FIRE_AT, Timestamp.from(fireAt))
-                .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq(triggerId))
-                .execute();
+                .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq(triggerId));
     }
 
     private static <E> List<E> toList(E[] arr) {
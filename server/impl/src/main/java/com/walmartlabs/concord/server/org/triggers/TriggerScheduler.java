@@ -20,7 +20,10 @@ package com.walmartlabs.concord.server.org.triggers;
  * =====
  */
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.BackgroundTask;
 import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.process.*;
@@ -33,11 +36,17 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.xml.bind.DatatypeConverter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Named("trigger-scheduler")
 @Singleton
-public class TriggerScheduler implements ScheduledTask {
+public class TriggerScheduler implements ScheduledTask, BackgroundTask {
 
     private static final Logger log = LoggerFactory.getLogger(TriggerScheduler.class);
 
@@ -46,19 +55,24 @@ public class TriggerScheduler implements ScheduledTask {
 
     private static final String EVENT_SOURCE = "cron";
 
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
     private final Date startedAt;
     private final TriggerScheduleDao scheduleDao;
     private final RepositoryDao repositoryDao;
     private final ProcessManager processManager;
     private final ProcessSecurityContext processSecurityContext;
     private final TriggersConfiguration triggerCfg;
+    private final ExecutorService executor;
+    private final Histogram fireDelay;
 
     @Inject
     public TriggerScheduler(TriggerScheduleDao scheduleDao,
                             RepositoryDao repositoryDao,
                             ProcessManager processManager,
                             ProcessSecurityContext processSecurityContext,
-                            TriggersConfiguration triggerCfg) {
+                            TriggersConfiguration triggerCfg,
+                            MetricRegistry metricRegistry) {
 
         this.startedAt = new Date();
         this.scheduleDao = scheduleDao;
@@ -66,23 +80,60 @@ public class TriggerScheduler implements ScheduledTask {
         this.processManager = processManager;
         this.processSecurityContext = processSecurityContext;
         this.triggerCfg = triggerCfg;
+        this.executor = Executors.newFixedThreadPool(triggerCfg.getCronThreads(), new SchedulerThreadFactory());
+        this.fireDelay = metricRegistry.histogram("trigger-scheduler-fire-delay");
     }
 
     @Override
     public long getIntervalInSec() {
-        return TimeUnit.MINUTES.toSeconds(1);
+        return triggerCfg.getCronCheckInterval();
+    }
+
+    @Override
+    public void start() {
+        // the tasks are started by the TaskScheduler
     }
 
     @Override
-    public void performTask() {
+    public void stop() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("stop -> the process starts weren't finished in {}ms, interrupting...", SHUTDOWN_TIMEOUT);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void performTask() throws InterruptedException {
+        int batchSize = triggerCfg.getCronBatchSize();
+
+        // claim all due triggers first, the processes are started in the background
+        List<Future<?>> starts = new ArrayList<>();
         while (!Thread.currentThread().isInterrupted()) {
-            TriggerSchedulerEntry e = scheduleDao.findNext();
-            if (e == null) {
+            List<TriggerSchedulerEntry> entries = scheduleDao.findNext(batchSize);
+
+            for (TriggerSchedulerEntry e : entries) {
+                if (e.getFireAt().after(startedAt)) {
+                    starts.add(executor.submit(() -> startProcess(e)));
+                }
+            }
+
+            if (entries.size() < batchSize) {
                 break;
             }
+        }
 
-            if (e.getFireAt().after(startedAt)) {
-                startProcess(e);
+        // wait for all starts to complete before the next run
+        for (Future<?> f : starts) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                log.error("performTask -> error while starting a process", e.getCause());
             }
         }
     }
@@ -117,10 +168,10 @@ public class TriggerScheduler implements ScheduledTask {
             cfg.put(Constants.Request.ACTIVE_PROFILES_KEY, t.getActiveProfiles());
         }
 
-        startProcess(t.getTriggerId(), t.getOrgId(), t.getProjectId(), t.getRepoId(), t.getEntryPoint(), t.getExclusiveGroup(), cfg);
+        startProcess(t.getTriggerId(), t.getOrgId(), t.getProjectId(), t.getRepoId(), t.getEntryPoint(), t.getExclusiveGroup(), cfg, t.getFireAt());
     }
 
-    private void startProcess(UUID triggerId, UUID orgId, UUID projectId, UUID repoId, String entryPoint, String exclusiveGroup, Map<String, Object> cfg) {
+    private void startProcess(UUID triggerId, UUID orgId, UUID projectId, UUID repoId, String entryPoint, String exclusiveGroup, Map<String, Object> cfg, Date fireAt) {
         PartialProcessKey processKey = PartialProcessKey.create();
 
         Payload payload;
@@ -148,7 +199,11 @@ public class TriggerScheduler implements ScheduledTask {
             return;
         }
 
-        log.info("startProcess ['{}', '{}', '{}', '{}', '{}'] -> process '{}' started", triggerId, orgId, projectId, repoId, entryPoint, processKey);
+        long delay = System.currentTimeMillis() - fireAt.getTime();
+        fireDelay.update(delay);
+
+        log.info("startProcess ['{}', '{}', '{}', '{}', '{}'] -> process '{}' started, {}ms after the scheduled time",
+                triggerId, orgId, projectId, repoId, entryPoint, processKey, delay);
     }
 
     private boolean isRepositoryDisabled(TriggerSchedulerEntry t) {
@@ -170,4 +225,16 @@ public class TriggerScheduler implements ScheduledTask {
 
         return m;
     }
+
+    private static final class SchedulerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "trigger-scheduler-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
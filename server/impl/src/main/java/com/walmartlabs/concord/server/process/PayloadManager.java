@@ -40,7 +40,9 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -232,6 +234,67 @@ public class PayloadManager {
                 .build();
     }
 
+    /**
+     * Exports the parent's state to use with {@link #createForks(Path, ProcessKey, ProcessKind, UUID, String, UUID, List, String[])}.
+     * The caller must delete the returned directory.
+     */
+    @WithTimer
+    public Path exportForkState(ProcessKey parentProcessKey) throws IOException {
+        Path parentState = IOUtils.createTempDir("fork");
+
+        // skip forms and the parent process' arguments
+        if (!stateManager.export(parentProcessKey, exclude(copyTo(parentState), FORMS_PATH_PATTERN))) {
+            IOUtils.deleteRecursively(parentState);
+            throw new ProcessException(null, "Can't fork '" + parentProcessKey + "', the state snapshot not found");
+        }
+
+        return parentState;
+    }
+
+    /**
+     * Creates payloads to fork an existing process multiple times.
+     * The parent's state, exported with {@link #exportForkState(ProcessKey)},
+     * is copied into the workspace of each fork.
+     */
+    @WithTimer
+    public List<Payload> createForks(Path parentState, ProcessKey parentProcessKey, ProcessKind kind,
+                                     UUID initiatorId, String initiator, UUID projectId,
+                                     List<Map<String, Object>> reqs, String[] out) throws IOException {
+
+        List<Payload> result = new ArrayList<>(reqs.size());
+        try {
+            for (Map<String, Object> req : reqs) {
+                Path tmpDir = IOUtils.createTempDir("payload");
+                IOUtils.copy(parentState, tmpDir);
+
+                PartialProcessKey processKey = PartialProcessKey.from(UUID.randomUUID());
+                result.add(PayloadBuilder.start(processKey)
+                        .parentInstanceId(parentProcessKey.getInstanceId())
+                        .kind(kind)
+                        .initiator(initiatorId, initiator)
+                        .project(projectId)
+                        .configuration(req)
+                        .outExpressions(out)
+                        .workspace(tmpDir)
+                        .build());
+            }
+        } catch (IOException e) {
+            deleteWorkspaces(result);
+            throw e;
+        }
+
+        return result;
+    }
+
+    public void deleteWorkspaces(List<Payload> payloads) throws IOException {
+        for (Payload p : payloads) {
+            Path workspace = p.getHeader(Payload.WORKSPACE_DIR);
+            if (workspace != null) {
+                IOUtils.deleteRecursively(workspace);
+            }
+        }
+    }
+
     public void assertAcceptsRawPayload(Payload payload) {
         UUID projectId = payload.getHeader(Payload.PROJECT_ID);
         if (projectId == null) {
@@ -20,15 +20,22 @@ package com.walmartlabs.concord.server.process;
  * =====
  */
 
+import com.codahale.metrics.Meter;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.cfg.ProcessStateConfiguration;
+import com.walmartlabs.concord.server.metrics.InjectMeter;
+import com.walmartlabs.concord.server.metrics.WithTimer;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.Condition;
 import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record1;
+import org.jooq.Record2;
 import org.jooq.SelectConditionStep;
-import org.jooq.SelectJoinStep;
+import org.jooq.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,33 +43,54 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
+import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpointBlobs.PROCESS_CHECKPOINT_BLOBS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
-import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
-import static com.walmartlabs.concord.server.jooq.tables.ProcessLogs.PROCESS_LOGS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessCleanupMarkers.PROCESS_CLEANUP_MARKERS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static org.jooq.impl.DSL.currentTimestamp;
+import static org.jooq.impl.DSL.notExists;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.selectOne;
 
+/**
+ * Removes the old process data in small batches. Each batch is committed separately
+ * and the progress is saved in {@code PROCESS_CLEANUP_MARKERS}, so the task can resume
+ * after a restart instead of starting over.
+ * <p>
+ * {@code PROCESS_LOGS} and {@code PROCESS_EVENTS} are partitioned by the process creation time
+ * and cleaned up by {@link ProcessPartitionManager}.
+ */
 @Named("process-cleaner")
 @Singleton
 public class ProcessCleaner implements ScheduledTask {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessCleaner.class);
 
-    private static final String[] EXCLUDE_STATUSES = {
+    static final String[] EXCLUDE_STATUSES = {
             ProcessStatus.STARTING.toString(),
             ProcessStatus.RUNNING.toString(),
             ProcessStatus.RESUMING.toString()
     };
 
+    private static final String OLD_STATE_MARKER = "old-state";
+
     private final ProcessStateConfiguration cfg;
     private final CleanerDao cleanerDao;
 
+    @InjectMeter
+    private final Meter deletedRows;
+
     @Inject
-    public ProcessCleaner(ProcessStateConfiguration cfg, CleanerDao cleanerDao) {
+    public ProcessCleaner(ProcessStateConfiguration cfg, CleanerDao cleanerDao, Meter deletedRows) {
         this.cfg = cfg;
         this.cleanerDao = cleanerDao;
+        this.deletedRows = deletedRows;
     }
 
     @Override
@@ -71,10 +99,129 @@ public class ProcessCleaner implements ScheduledTask {
     }
 
     @Override
-    public void performTask() {
+    public void performTask() throws Exception {
         Timestamp cutoff = new Timestamp(System.currentTimeMillis() - cfg.getMaxStateAge());
-        cleanerDao.deleteOldState(cutoff, cfg);
-        cleanerDao.deleteOrphans(cfg);
+
+        deleteOldState(cutoff);
+
+        if (cfg.isStateCleanup()) {
+            deleteOrphans(PROCESS_STATE, PROCESS_STATE.INSTANCE_ID);
+        }
+
+        if (cfg.isCheckpointCleanup()) {
+            deleteOrphans(PROCESS_CHECKPOINTS, PROCESS_CHECKPOINTS.INSTANCE_ID);
+            deleteOrphans(PROCESS_CHECKPOINT_BLOBS, PROCESS_CHECKPOINT_BLOBS.INSTANCE_ID);
+        }
+    }
+
+    private void deleteOldState(Timestamp cutoff) throws InterruptedException {
+        long t1 = System.currentTimeMillis();
+
+        ProcessKey marker = cleanerDao.getMarker(OLD_STATE_MARKER);
+        if (marker != null) {
+            log.info("deleteOldState -> resuming after {} ({})", marker.getInstanceId(), marker.getCreatedAt());
+        }
+
+        int batchSize = cfg.getCleanupBatchSize();
+
+        int processes = 0;
+        long rows = 0;
+        while (true) {
+            long t2 = System.currentTimeMillis();
+
+            BatchResult<ProcessKey> r = deleteOldStateBatch(cutoff, marker, batchSize);
+            processes += r.keys;
+            rows += r.rows;
+
+            if (r.keys < batchSize) {
+                break;
+            }
+
+            marker = r.last;
+            throttle(r.rows, System.currentTimeMillis() - t2);
+        }
+
+        log.info("deleteOldState -> removed the data of {} process(es) older than {}: {} row(s), took {}ms",
+                processes, cutoff, rows, (System.currentTimeMillis() - t1));
+    }
+
+    private void deleteOrphans(Table<?> table, Field<UUID> instanceId) throws InterruptedException {
+        long t1 = System.currentTimeMillis();
+
+        int batchSize = cfg.getCleanupBatchSize();
+
+        UUID after = null;
+        long rows = 0;
+        while (true) {
+            long t2 = System.currentTimeMillis();
+
+            BatchResult<UUID> r = deleteOrphansBatch(table, instanceId, after, batchSize);
+            rows += r.rows;
+
+            if (r.keys < batchSize) {
+                break;
+            }
+
+            after = r.last;
+            throttle(r.rows, System.currentTimeMillis() - t2);
+        }
+
+        log.info("deleteOrphans ['{}'] -> removed {} row(s), took {}ms",
+                table.getName(), rows, (System.currentTimeMillis() - t1));
+    }
+
+    @WithTimer
+    BatchResult<ProcessKey> deleteOldStateBatch(Timestamp cutoff, ProcessKey after, int batchSize) {
+        BatchResult<ProcessKey> r = cleanerDao.deleteOldState(cutoff, after, batchSize, cfg);
+        deletedRows.mark(r.rows);
+        return r;
+    }
+
+    @WithTimer
+    BatchResult<UUID> deleteOrphansBatch(Table<?> table, Field<UUID> instanceId, UUID after, int batchSize) {
+        BatchResult<UUID> r = cleanerDao.deleteOrphans(table, instanceId, after, batchSize);
+        deletedRows.mark(r.rows);
+        return r;
+    }
+
+    /**
+     * Keeps the deletion rate under {@code process.cleanupMaxRowsPerSecond}
+     * to reduce the impact on the regular DB load (replication lag, vacuum, I/O).
+     */
+    private void throttle(long rows, long elapsed) throws InterruptedException {
+        int maxRowsPerSecond = cfg.getCleanupMaxRowsPerSecond();
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+
+        long minDuration = rows * 1000 / maxRowsPerSecond;
+        if (minDuration > elapsed) {
+            Thread.sleep(minDuration - elapsed);
+        }
+    }
+
+    static final class BatchResult<K> {
+
+        /**
+         * Number of processed keys.
+         */
+        private final int keys;
+
+        /**
+         * The last processed key or {@code null} if the batch was empty.
+         */
+        private final K last;
+
+        /**
+         * Total number of deleted rows.
+         */
+        private final int rows;
+
+        private BatchResult(int keys, K last, int rows) {
+            this.keys = keys;
+            this.last = last;
+            this.rows = rows;
+        }
     }
 
     @Named
@@ -85,98 +232,123 @@ public class ProcessCleaner implements ScheduledTask {
             super(cfg);
         }
 
-        void deleteOldState(Timestamp cutoff, ProcessStateConfiguration jobCfg) {
-            long t1 = System.currentTimeMillis();
+        ProcessKey getMarker(String name) {
+            return txResult(tx -> tx.select(PROCESS_CLEANUP_MARKERS.INSTANCE_ID, PROCESS_CLEANUP_MARKERS.INSTANCE_CREATED_AT)
+                    .from(PROCESS_CLEANUP_MARKERS)
+                    .where(PROCESS_CLEANUP_MARKERS.MARKER_NAME.eq(name))
+                    .fetchOne(r -> new ProcessKey(r.value1(), r.value2())));
+        }
 
-            tx(tx -> {
-                SelectConditionStep<Record1<UUID>> ids = tx.select(PROCESS_QUEUE.INSTANCE_ID)
+        BatchResult<ProcessKey> deleteOldState(Timestamp cutoff, ProcessKey after, int batchSize, ProcessStateConfiguration jobCfg) {
+            return txResult(tx -> {
+                SelectConditionStep<Record2<UUID, Timestamp>> q = tx.select(PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT)
                         .from(PROCESS_QUEUE)
                         .where(PROCESS_QUEUE.LAST_UPDATED_AT.lessThan(cutoff)
                                 .and(PROCESS_QUEUE.CURRENT_STATUS.notIn(EXCLUDE_STATUSES)));
 
-                int queueEntries = 0;
-                if (jobCfg.isQueueCleanup()) {
-                    queueEntries = tx.deleteFrom(PROCESS_QUEUE)
-                            .where(PROCESS_QUEUE.INSTANCE_ID.in(ids))
-                            .execute();
+                if (after != null) {
+                    q.and(row(PROCESS_QUEUE.CREATED_AT, PROCESS_QUEUE.INSTANCE_ID).gt(after.getCreatedAt(), after.getInstanceId()));
                 }
 
-                int stateRecords = 0;
+                // skip the entries locked by other transactions, they will be picked up on the next run
+                List<ProcessKey> keys = q.orderBy(PROCESS_QUEUE.CREATED_AT, PROCESS_QUEUE.INSTANCE_ID)
+                        .limit(batchSize)
+                        .forUpdate()
+                        .skipLocked()
+                        .fetch(r -> new ProcessKey(r.value1(), r.value2()));
+
+                if (keys.isEmpty()) {
+                    deleteMarker(tx, OLD_STATE_MARKER);
+                    return new BatchResult<>(0, null, 0);
+                }
+
+                Set<UUID> ids = keys.stream()
+                        .map(ProcessKey::getInstanceId)
+                        .collect(Collectors.toSet());
+
+                int rows = 0;
                 if (jobCfg.isStateCleanup()) {
-                    stateRecords = tx.deleteFrom(PROCESS_STATE)
+                    rows += tx.deleteFrom(PROCESS_STATE)
                             .where(PROCESS_STATE.INSTANCE_ID.in(ids))
                             .execute();
                 }
 
-                int events = 0;
-                if (jobCfg.isEventsCleanup()) {
-                    events = tx.deleteFrom(PROCESS_EVENTS)
-                            .where(PROCESS_EVENTS.INSTANCE_ID.in(ids))
+                if (jobCfg.isCheckpointCleanup()) {
+                    rows += tx.deleteFrom(PROCESS_CHECKPOINTS)
+                            .where(PROCESS_CHECKPOINTS.INSTANCE_ID.in(ids))
                             .execute();
-                }
 
-                int logEntries = 0;
-                if (jobCfg.isLogsCleanup()) {
-                    logEntries = tx.deleteFrom(PROCESS_LOGS)
-                            .where(PROCESS_LOGS.INSTANCE_ID.in(ids))
+                    rows += tx.deleteFrom(PROCESS_CHECKPOINT_BLOBS)
+                            .where(PROCESS_CHECKPOINT_BLOBS.INSTANCE_ID.in(ids))
                             .execute();
                 }
 
-                int checkpoints = 0;
-                if (jobCfg.isCheckpointCleanup()) {
-                    checkpoints = tx.deleteFrom(PROCESS_CHECKPOINTS)
-                            .where(PROCESS_CHECKPOINTS.INSTANCE_ID.in(ids))
+                if (jobCfg.isQueueCleanup()) {
+                    rows += tx.deleteFrom(PROCESS_QUEUE)
+                            .where(PROCESS_QUEUE.INSTANCE_ID.in(ids))
                             .execute();
                 }
 
-                log.info("deleteOldState -> removed older than {}: {} queue entries, {} log entries, {} state item(s), {} event(s), {} checkpoint(s)",
-                        cutoff, queueEntries, logEntries, stateRecords, events, checkpoints);
-            });
+                ProcessKey last = keys.get(keys.size() - 1);
+                if (keys.size() < batchSize) {
+                    // the end of the pass, the next run starts from the beginning
+                    deleteMarker(tx, OLD_STATE_MARKER);
+                } else {
+                    saveMarker(tx, OLD_STATE_MARKER, last);
+                }
 
-            long t2 = System.currentTimeMillis();
-            log.info("deleteOldState -> took {}ms", (t2 - t1));
+                return new BatchResult<>(keys.size(), last, rows);
+            });
         }
 
-        void deleteOrphans(ProcessStateConfiguration jobCfg) {
-            long t1 = System.currentTimeMillis();
+        BatchResult<UUID> deleteOrphans(Table<?> table, Field<UUID> instanceId, UUID after, int batchSize) {
+            return txResult(tx -> {
+                SelectConditionStep<Record1<UUID>> q = tx.selectDistinct(instanceId)
+                        .from(table)
+                        .where(isOrphan(instanceId));
 
-            tx(tx -> {
-                SelectJoinStep<Record1<UUID>> alive = tx.select(PROCESS_QUEUE.INSTANCE_ID).from(PROCESS_QUEUE);
-
-                int stateRecords = 0;
-                if (jobCfg.isStateCleanup()) {
-                    stateRecords = tx.deleteFrom(PROCESS_STATE)
-                            .where(PROCESS_STATE.INSTANCE_ID.notIn(alive))
-                            .execute();
+                if (after != null) {
+                    q.and(instanceId.gt(after));
                 }
 
-                int events = 0;
-                if (jobCfg.isEventsCleanup()) {
-                    events = tx.deleteFrom(PROCESS_EVENTS)
-                            .where(PROCESS_EVENTS.INSTANCE_ID.notIn(alive))
-                            .execute();
-                }
+                List<UUID> ids = q.orderBy(instanceId)
+                        .limit(batchSize)
+                        .fetch(instanceId);
 
-                int logEntries = 0;
-                if (jobCfg.isLogsCleanup()) {
-                    logEntries = tx.deleteFrom(PROCESS_LOGS)
-                            .where(PROCESS_LOGS.INSTANCE_ID.notIn(alive))
-                            .execute();
+                if (ids.isEmpty()) {
+                    return new BatchResult<>(0, null, 0);
                 }
 
-                int checkpoints = 0;
-                if (jobCfg.isCheckpointCleanup()) {
-                    checkpoints = tx.deleteFrom(PROCESS_CHECKPOINTS)
-                            .where(PROCESS_CHECKPOINTS.INSTANCE_ID.notIn(alive))
-                            .execute();
-                }
+                int rows = tx.deleteFrom(table)
+                        .where(instanceId.in(ids))
+                        .execute();
 
-                log.info("deleteOrphans -> removed orphan data: {} log entries, {} state item(s), {} event(s), {} checkpoint(s)",
-                        logEntries, stateRecords, events, checkpoints);
+                return new BatchResult<>(ids.size(), ids.get(ids.size() - 1), rows);
             });
+        }
 
-            long t2 = System.currentTimeMillis();
-            log.info("deleteOrphans -> took {}ms", (t2 - t1));
+        private static Condition isOrphan(Field<UUID> instanceId) {
+            return notExists(selectOne()
+                    .from(PROCESS_QUEUE)
+                    .where(PROCESS_QUEUE.INSTANCE_ID.eq(instanceId)));
+        }
+
+        private static void saveMarker(DSLContext tx, String name, ProcessKey key) {
+            tx.insertInto(PROCESS_CLEANUP_MARKERS)
+                    .columns(PROCESS_CLEANUP_MARKERS.MARKER_NAME, PROCESS_CLEANUP_MARKERS.INSTANCE_CREATED_AT, PROCESS_CLEANUP_MARKERS.INSTANCE_ID)
+                    .values(name, key.getCreatedAt(), key.getInstanceId())
+                    .onConflict(PROCESS_CLEANUP_MARKERS.MARKER_NAME)
+                    .doUpdate()
+                    .set(PROCESS_CLEANUP_MARKERS.INSTANCE_CREATED_AT, key.getCreatedAt())
+                    .set(PROCESS_CLEANUP_MARKERS.INSTANCE_ID, key.getInstanceId())
+                    .set(PROCESS_CLEANUP_MARKERS.LAST_UPDATED_AT, currentTimestamp())
+                    .execute();
+        }
+
+        private static void deleteMarker(DSLContext tx, String name) {
+            tx.deleteFrom(PROCESS_CLEANUP_MARKERS)
+                    .where(PROCESS_CLEANUP_MARKERS.MARKER_NAME.eq(name))
+                    .execute();
         }
     }
 }
@@ -0,0 +1,47 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+/**
+ * Process data that can be omitted from the responses, e.g. to make
+ * the process lists cheaper to fetch and transfer.
+ */
+public enum ProcessDataExclude {
+
+    HANDLERS ("handlers"),
+    META ("meta"),
+    REQUIREMENTS ("requirements");
+
+    private final String value;
+
+    ProcessDataExclude(String value) {
+        this.value = value;
+    }
+
+    public static ProcessDataExclude fromString(String str) {
+        for (ProcessDataExclude v : values()) {
+            if (v.value.equalsIgnoreCase(str)) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException(str + " not found");
+    }
+}
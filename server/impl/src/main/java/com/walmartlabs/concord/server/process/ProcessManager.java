@@ -21,6 +21,8 @@ package com.walmartlabs.concord.server.process;
  */
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.project.InternalConstants;
 import com.walmartlabs.concord.server.agent.AgentManager;
 import com.walmartlabs.concord.server.org.ResourceAccessLevel;
@@ -34,6 +36,7 @@ import com.walmartlabs.concord.server.process.pipelines.ForkPipeline;
 import com.walmartlabs.concord.server.process.pipelines.ProcessPipeline;
 import com.walmartlabs.concord.server.process.pipelines.ResumePipeline;
 import com.walmartlabs.concord.server.process.pipelines.processors.Chain;
+import com.walmartlabs.concord.server.process.pipelines.processors.InitialQueueEntryProcessor;
 import com.walmartlabs.concord.server.process.queue.AbstractWaitCondition;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao.IdAndStatus;
@@ -55,6 +58,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -65,6 +69,11 @@ public class ProcessManager {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessManager.class);
 
+    /**
+     * Maximum number of forks prepared at once, see {@link #startForks(ProcessKey, ProcessKind, UUID, String, UUID, List, String[])}.
+     */
+    private static final int FORK_BATCH_SIZE = 10;
+
     private final ProcessQueueDao queueDao;
     private final ProcessStateManager stateManager;
     private final AgentManager agentManager;
@@ -74,6 +83,7 @@ public class ProcessManager {
     private final ProcessCheckpointManager checkpointManager;
     private final PayloadManager payloadManager;
     private final RepositoryDao repositoryDao;
+    private final InitialQueueEntryProcessor initialQueueEntryProcessor;
 
     private final Chain processPipeline;
     private final Chain resumePipeline;
@@ -112,6 +122,7 @@ public class ProcessManager {
                           ProcessCheckpointManager checkpointManager,
                           PayloadManager payloadManager,
                           RepositoryDao repositoryDao,
+                          InitialQueueEntryProcessor initialQueueEntryProcessor,
                           ProcessPipeline processPipeline,
                           ResumePipeline resumePipeline,
                           ForkPipeline forkPipeline) {
@@ -125,6 +136,7 @@ public class ProcessManager {
         this.checkpointManager = checkpointManager;
         this.payloadManager = payloadManager;
         this.repositoryDao = repositoryDao;
+        this.initialQueueEntryProcessor = initialQueueEntryProcessor;
 
         this.processPipeline = processPipeline;
         this.resumePipeline = resumePipeline;
@@ -143,6 +155,104 @@ public class ProcessManager {
         return start(forkPipeline, payload, sync);
     }
 
+    /**
+     * Starts multiple forks of the same parent process. The parent's state
+     * is exported once, the forks are prepared and started in chunks of
+     * {@link #FORK_BATCH_SIZE}, so only a limited number of workspaces
+     * exists at any time.
+     * <p>
+     * Either all forks are started or none: if a fork fails to start,
+     * the forks started before it are cancelled.
+     */
+    public List<ProcessResult> startForks(ProcessKey parentProcessKey, ProcessKind kind,
+                                          UUID initiatorId, String initiator, UUID projectId,
+                                          List<Map<String, Object>> reqs, String[] out) throws IOException {
+
+        List<ProcessResult> results = new ArrayList<>(reqs.size());
+
+        Path parentState = payloadManager.exportForkState(parentProcessKey);
+        try {
+            for (List<Map<String, Object>> chunk : Lists.partition(reqs, FORK_BATCH_SIZE)) {
+                List<Payload> payloads = payloadManager.createForks(parentState, parentProcessKey, kind,
+                        initiatorId, initiator, projectId, chunk, out);
+
+                startForks(payloads, results);
+            }
+        } catch (IOException | RuntimeException e) {
+            cancelForks(results);
+            throw e;
+        } finally {
+            IOUtils.deleteRecursively(parentState);
+        }
+
+        return results;
+    }
+
+    /**
+     * Starts the forks one by one, adds the results of the started forks to {@code results}.
+     */
+    private void startForks(List<Payload> payloads, List<ProcessResult> results) {
+        List<Payload> l = initialQueueEntryProcessor.insertBatch(payloads);
+
+        for (int i = 0; i < l.size(); i++) {
+            try {
+                results.add(start(forkPipeline, l.get(i), false));
+            } catch (RuntimeException e) {
+                // the failed fork is handled by the pipeline, the remaining ones were never started
+                abandonForks(l.subList(i + 1, l.size()));
+                throw e;
+            }
+        }
+    }
+
+    private void cancelForks(List<ProcessResult> started) {
+        if (started.isEmpty()) {
+            return;
+        }
+
+        List<PartialProcessKey> processKeys = started.stream()
+                .map(r -> PartialProcessKey.from(r.getInstanceId()))
+                .collect(Collectors.toList());
+
+        try {
+            List<IdAndStatus> l = null;
+            boolean updated = false;
+            while (!updated) {
+                l = queueDao.get(processKeys).stream()
+                        .map(e -> new IdAndStatus(ProcessKey.from(e), e.status()))
+                        .collect(Collectors.toList());
+
+                List<ProcessKey> keys = filterProcessKeys(l, SERVER_PROCESS_STATUSES);
+                updated = keys.isEmpty() || queueDao.updateStatus(keys, ProcessStatus.CANCELLED, SERVER_PROCESS_STATUSES);
+            }
+
+            List<ProcessKey> keys = filterProcessKeys(l, AGENT_PROCESS_STATUSES);
+            if (!keys.isEmpty()) {
+                agentManager.killProcess(keys);
+            }
+        } catch (Exception e) {
+            log.warn("cancelForks -> error while cancelling {} started fork(s): {}", started.size(), e.getMessage());
+        }
+    }
+
+    private void abandonForks(List<Payload> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        List<ProcessKey> processKeys = payloads.stream()
+                .map(Payload::getProcessKey)
+                .collect(Collectors.toList());
+
+        queueDao.updateStatus(processKeys, ProcessStatus.FAILED, Collections.singletonList(ProcessStatus.PREPARING));
+
+        try {
+            payloadManager.deleteWorkspaces(payloads);
+        } catch (IOException e) {
+            log.warn("abandonForks -> error while removing the workspaces: {}", e.getMessage());
+        }
+    }
+
     public void resume(Payload payload) {
         resumePipeline.process(payload);
     }
@@ -0,0 +1,180 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.cfg.ProcessStateConfiguration;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.Condition;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.sql.Timestamp;
+import java.util.List;
+
+import static com.walmartlabs.concord.server.jooq.Routines.processPartitionsPrecreate;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessPartitions.PROCESS_PARTITIONS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.jooq.impl.DSL.selectOne;
+
+/**
+ * Maintains the time-based partitions of {@code PROCESS_LOGS} and {@code PROCESS_EVENTS}.
+ * New partitions are created ahead of time, the old ones are detached and dropped
+ * instead of deleting the individual rows.
+ */
+@Named("process-partition-manager")
+@Singleton
+public class ProcessPartitionManager implements ScheduledTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessPartitionManager.class);
+
+    private static final String PROCESS_LOGS = "PROCESS_LOGS";
+    private static final String PROCESS_EVENTS = "PROCESS_EVENTS";
+
+    private final ProcessStateConfiguration cfg;
+    private final PartitionDao partitionDao;
+
+    @Inject
+    public ProcessPartitionManager(ProcessStateConfiguration cfg, PartitionDao partitionDao) {
+        this.cfg = cfg;
+        this.partitionDao = partitionDao;
+    }
+
+    @Override
+    public long getIntervalInSec() {
+        return cfg.getPartitionMaintenanceInterval();
+    }
+
+    @Override
+    public void performTask() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - cfg.getMaxStateAge());
+
+        maintain(PROCESS_LOGS, cfg.isLogsCleanup(), cutoff);
+        maintain(PROCESS_EVENTS, cfg.isEventsCleanup(), cutoff);
+    }
+
+    private void maintain(String table, boolean cleanup, Timestamp cutoff) {
+        int created = partitionDao.precreate(table, cfg.getPartitionPrecreateDays());
+        if (created > 0) {
+            log.info("maintain ['{}'] -> created {} partition(s)", table, created);
+        }
+
+        if (!cleanup) {
+            return;
+        }
+
+        for (Partition p : partitionDao.listOlderThan(table, cutoff)) {
+            // the partition may contain data of processes that are not eligible for the cleanup yet
+            // e.g. long-running processes or the processes that were updated recently
+            if (partitionDao.hasActiveProcesses(p, cutoff)) {
+                log.info("maintain ['{}'] -> {} has active processes, skipping", table, p.name);
+                continue;
+            }
+
+            long t1 = System.currentTimeMillis();
+            partitionDao.drop(table, p.name);
+            log.info("maintain ['{}'] -> removed {} ({} - {}), took {}ms", table, p.name, p.rangeFrom, p.rangeTo, (System.currentTimeMillis() - t1));
+        }
+    }
+
+    private static final class Partition {
+
+        private final String name;
+        private final Timestamp rangeFrom;
+        private final Timestamp rangeTo;
+
+        private Partition(String name, Timestamp rangeFrom, Timestamp rangeTo) {
+            this.name = name;
+            this.rangeFrom = rangeFrom;
+            this.rangeTo = rangeTo;
+        }
+    }
+
+    @Named
+    private static class PartitionDao extends AbstractDao {
+
+        /**
+         * Attaching or detaching partitions requires an exclusive lock on the parent table.
+         * Give up early instead of blocking the writers, the task will retry on the next run.
+         */
+        private static final String LOCK_TIMEOUT = "10s";
+
+        @Inject
+        protected PartitionDao(@MainDB Configuration cfg) {
+            super(cfg);
+        }
+
+        int precreate(String table, int days) {
+            return txResult(tx -> {
+                setLockTimeout(tx);
+                return tx.select(processPartitionsPrecreate(table, days))
+                        .fetchOne(Record1::value1);
+            });
+        }
+
+        List<Partition> listOlderThan(String table, Timestamp cutoff) {
+            return txResult(tx -> tx.select(PROCESS_PARTITIONS.PARTITION_NAME, PROCESS_PARTITIONS.RANGE_FROM, PROCESS_PARTITIONS.RANGE_TO)
+                    .from(PROCESS_PARTITIONS)
+                    .where(PROCESS_PARTITIONS.PARENT_TABLE.eq(table)
+                            .and(PROCESS_PARTITIONS.RANGE_TO.lessOrEqual(cutoff)))
+                    .orderBy(PROCESS_PARTITIONS.RANGE_TO)
+                    .fetch(r -> new Partition(r.value1(), r.value2(), r.value3())));
+        }
+
+        boolean hasActiveProcesses(Partition p, Timestamp cutoff) {
+            Condition inRange = PROCESS_QUEUE.CREATED_AT.lessThan(p.rangeTo);
+            if (p.rangeFrom != null) {
+                inRange = inRange.and(PROCESS_QUEUE.CREATED_AT.greaterOrEqual(p.rangeFrom));
+            }
+
+            Condition active = inRange.and(PROCESS_QUEUE.LAST_UPDATED_AT.greaterOrEqual(cutoff)
+                    .or(PROCESS_QUEUE.CURRENT_STATUS.in(ProcessCleaner.EXCLUDE_STATUSES)));
+
+            return txResult(tx -> tx.fetchExists(selectOne()
+                    .from(PROCESS_QUEUE)
+                    .where(active)));
+        }
+
+        void drop(String table, String partition) {
+            tx(tx -> {
+                setLockTimeout(tx);
+
+                tx.execute("alter table " + table + " detach partition " + partition);
+                tx.execute("drop table " + partition);
+
+                tx.deleteFrom(PROCESS_PARTITIONS)
+                        .where(PROCESS_PARTITIONS.PARTITION_NAME.eq(partition))
+                        .execute();
+            });
+        }
+
+        private static void setLockTimeout(DSLContext tx) {
+            tx.execute("set local lock_timeout = '" + LOCK_TIMEOUT + "'");
+        }
+    }
+}
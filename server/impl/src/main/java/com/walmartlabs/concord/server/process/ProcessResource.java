@@ -22,8 +22,10 @@ package com.walmartlabs.concord.server.process;
 
 import com.codahale.metrics.Counter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
 import com.google.common.io.ByteStreams;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.ProcessLogBatch;
 import com.walmartlabs.concord.project.InternalConstants;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.IsoDateParam;
@@ -42,9 +44,11 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
 import com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
 import com.walmartlabs.concord.server.process.pipelines.processors.RequestInfoProcessor;
 import com.walmartlabs.concord.server.process.queue.AbstractWaitCondition;
+import com.walmartlabs.concord.server.process.queue.ProcessCompletionNotifier;
 import com.walmartlabs.concord.server.process.queue.ProcessFilter;
 import com.walmartlabs.concord.server.process.queue.ProcessKeyCache;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.process.state.ProcessStateFileEntry;
 import com.walmartlabs.concord.server.process.state.ProcessStateManager;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -90,6 +94,9 @@ public class ProcessResource implements Resource {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessResource.class);
 
+    private static final long MAX_BATCH_WAIT_TIME = 30000;
+    private static final long BATCH_WAIT_RECHECK_DELAY = 5000;
+
     private final ProcessManager processManager;
     private final ProcessQueueDao queueDao;
     private final ProcessLogsDao logsDao;
@@ -98,6 +105,7 @@ public class ProcessResource implements Resource {
     private final SecretStoreConfiguration secretStoreCfg;
     private final EncryptedProjectValueManager encryptedValueManager;
     private final ProcessKeyCache processKeyCache;
+    private final ProcessCompletionNotifier completionNotifier;
     private final ObjectMapper objectMapper;
 
     @InjectCounter
@@ -114,6 +122,7 @@ public class ProcessResource implements Resource {
                            SecretStoreConfiguration secretStoreCfg,
                            EncryptedProjectValueManager encryptedValueManager,
                            ProcessKeyCache processKeyCache,
+                           ProcessCompletionNotifier completionNotifier,
                            ObjectMapper objectMapper,
                            Counter logBytesAppended,
                            ProcessResourceV2 v2) {
@@ -126,6 +135,7 @@ public class ProcessResource implements Resource {
         this.secretStoreCfg = secretStoreCfg;
         this.encryptedValueManager = encryptedValueManager;
         this.processKeyCache = processKeyCache;
+        this.completionNotifier = completionNotifier;
         this.objectMapper = objectMapper;
         this.logBytesAppended = logBytesAppended;
 
@@ -434,6 +444,53 @@ public class ProcessResource implements Resource {
         return toResponse(processManager.startFork(payload, sync));
     }
 
+    /**
+     * Starts multiple child processes by forking the specified parent process.
+     * Each element of the request is a fork's configuration, same as in {@link #fork}.
+     * The parent's state is exported only once for all forks.
+     *
+     * @param parentInstanceId
+     * @param reqs
+     * @return
+     */
+    @POST
+    @ApiOperation(value = "Fork a process multiple times", responseContainer = "list", response = StartProcessResponse.class)
+    @javax.ws.rs.Path("/{id}/forks")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    public List<StartProcessResponse> forkMany(@ApiParam @PathParam("id") UUID parentInstanceId,
+                                               @ApiParam List<Map<String, Object>> reqs,
+                                               @ApiParam @QueryParam("out") String[] out) {
+
+        if (reqs == null || reqs.isEmpty()) {
+            throw new ValidationErrorsException("At least one fork request is required");
+        }
+
+        ProcessEntry parent = queueDao.get(PartialProcessKey.from(parentInstanceId));
+        if (parent == null) {
+            throw new ValidationErrorsException("Unknown parent instance ID: " + parentInstanceId);
+        }
+
+        ProcessKey parentProcessKey = ProcessKey.from(parent);
+
+        UUID projectId = parent.projectId();
+        UserPrincipal userPrincipal = UserPrincipal.assertCurrent();
+
+        List<ProcessResult> results;
+        try {
+            results = processManager.startForks(parentProcessKey, ProcessKind.DEFAULT,
+                    userPrincipal.getId(), userPrincipal.getUsername(), projectId, reqs, out);
+        } catch (IOException e) {
+            log.error("forkMany ['{}'] -> error creating the payloads: {}", parentProcessKey, e);
+            throw new ConcordApplicationException("Error creating a payload", e);
+        }
+
+        return results.stream()
+                .map(this::toResponse)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Waits for completion of a process.
      *
@@ -457,10 +514,7 @@ public class ProcessResource implements Resource {
             r = get(instanceId);
 
             ProcessStatus s = r.status();
-            if (s == ProcessStatus.FINISHED ||
-                    s == ProcessStatus.FAILED ||
-                    s == ProcessStatus.CANCELLED ||
-                    s == ProcessStatus.TIMED_OUT) {
+            if (isFinal(s)) {
                 return r;
             }
 
@@ -482,6 +536,74 @@ public class ProcessResource implements Resource {
         }
     }
 
+    /**
+     * Waits for completion of multiple processes.
+     * <p>
+     * Returns the current state of the processes when all of them (or
+     * any of them, if {@code any} is set) reach a final status, or when the
+     * timeout expires. The wait is limited to {@link #MAX_BATCH_WAIT_TIME}
+     * per request, the caller must check the returned statuses and repeat
+     * the request if necessary.
+     *
+     * @param instanceIds
+     * @param any
+     * @param timeout
+     * @return
+     */
+    @POST
+    @ApiOperation(value = "Wait for multiple processes to finish", responseContainer = "list", response = ProcessEntry.class)
+    @javax.ws.rs.Path("/waitForCompletion/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    public List<ProcessEntry> waitForCompletionMany(@ApiParam List<UUID> instanceIds,
+                                                    @ApiParam @QueryParam("any") @DefaultValue("false") boolean any,
+                                                    @ApiParam @QueryParam("timeout") @DefaultValue("-1") long timeout) {
+
+        if (instanceIds == null || instanceIds.isEmpty()) {
+            throw new ValidationErrorsException("At least one instance ID is required");
+        }
+
+        Set<UUID> ids = new LinkedHashSet<>(instanceIds);
+        List<PartialProcessKey> processKeys = ids.stream()
+                .map(PartialProcessKey::from)
+                .collect(Collectors.toList());
+
+        long maxWait = timeout > 0 ? Math.min(timeout, MAX_BATCH_WAIT_TIME) : MAX_BATCH_WAIT_TIME;
+        long deadline = System.currentTimeMillis() + maxWait;
+
+        ProcessCompletionNotifier.Waiter waiter = completionNotifier.register(ids);
+        try {
+            while (true) {
+                List<ProcessEntry> l = queueDao.get(processKeys);
+                if (l.size() != ids.size()) {
+                    throw new ConcordApplicationException("Process instance not found", Status.NOT_FOUND);
+                }
+
+                long done = l.stream()
+                        .filter(e -> isFinal(e.status()))
+                        .count();
+
+                if (any ? done > 0 : done == l.size()) {
+                    return l;
+                }
+
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return l;
+                }
+
+                waiter.await(Math.min(left, BATCH_WAIT_RECHECK_DELAY));
+            }
+        } catch (InterruptedException e) { // NOSONAR
+            throw new ConcordApplicationException(Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Request was interrputed")
+                    .build());
+        } finally {
+            completionNotifier.unregister(waiter);
+        }
+    }
+
     /**
      * Disable a process.
      *
@@ -675,7 +797,7 @@ public class ProcessResource implements Resource {
      * @param initiator
      * @param limit
      * @return
-     * @deprecated use {@link ProcessResourceV2#list(UUID, String, UUID, String, IsoDateParam, IsoDateParam, Set, ProcessStatus, String, UUID, Set, int, int, UriInfo)}
+     * @deprecated use {@link ProcessResourceV2#list(UUID, String, UUID, String, IsoDateParam, IsoDateParam, UUID, Set, ProcessStatus, String, UUID, Set, Set, int, int, UriInfo)}
      */
     @GET
     @ApiOperation(value = "List processes for all user's organizations", responseContainer = "list", response = ProcessEntry.class)
@@ -695,9 +817,9 @@ public class ProcessResource implements Resource {
                                    @ApiParam @QueryParam("offset") @DefaultValue("0") int offset,
                                    @Context UriInfo uriInfo) {
 
-        return v2.list(null, orgName, projectId, projectName, afterCreatedAt, beforeCreatedAt, tags,
+        return v2.list(null, orgName, projectId, projectName, afterCreatedAt, beforeCreatedAt, null, tags,
                 processStatus, initiator, parentId, Collections.singleton(ProcessDataInclude.CHILDREN_IDS),
-                limit, offset, uriInfo);
+                Collections.emptySet(), limit, offset, uriInfo);
     }
 
     /**
@@ -835,6 +957,53 @@ public class ProcessResource implements Resource {
         }
     }
 
+    /**
+     * Appends the log data of multiple processes. Used by the agents to send
+     * the logs of all running processes at once.
+     *
+     * @see ProcessLogBatch
+     */
+    @POST
+    @javax.ws.rs.Path("/logs/batch")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @WithTimer
+    public void appendLogBatch(InputStream data) {
+        // keep the order of the chunks, merge the chunks of the same process
+        Map<UUID, ByteArrayOutputStream> chunks = new LinkedHashMap<>();
+
+        try {
+            ProcessLogBatch.read(data, (instanceId, ab) ->
+                    chunks.computeIfAbsent(instanceId, k -> new ByteArrayOutputStream()).write(ab));
+        } catch (ProcessLogBatch.BatchTooLargeException e) {
+            log.warn("appendLogBatch -> {}", e.getMessage());
+            throw new ConcordApplicationException("append log batch error: " + e.getMessage(), Status.REQUEST_ENTITY_TOO_LARGE);
+        } catch (IOException e) {
+            log.error("appendLogBatch -> error", e);
+            throw new ConcordApplicationException("append log batch error: " + e.getMessage(), Status.BAD_REQUEST);
+        }
+
+        Map<ProcessKey, byte[]> batch = new LinkedHashMap<>(chunks.size());
+        long bytes = 0;
+        for (Map.Entry<UUID, ByteArrayOutputStream> e : chunks.entrySet()) {
+            ProcessKey processKey;
+            try {
+                processKey = processKeyCache.get(e.getKey());
+            } catch (InvalidCacheLoadException ex) {
+                // don't fail the whole batch
+                log.warn("appendLogBatch -> process not found: {}, skipping", e.getKey());
+                continue;
+            }
+
+            byte[] ab = e.getValue().toByteArray();
+            batch.put(processKey, ab);
+            bytes += ab.length;
+        }
+
+        logsDao.append(batch);
+
+        logBytesAppended.inc(bytes);
+    }
+
     /**
      * Downloads the current state snapshot of a process.
      */
@@ -859,6 +1028,53 @@ public class ProcessResource implements Resource {
                 .build();
     }
 
+    /**
+     * Lists the files of the current state snapshot of a process.
+     */
+    @GET
+    @ApiOperation(value = "List the files of a process state snapshot", responseContainer = "list", response = ProcessStateFileEntry.class)
+    @javax.ws.rs.Path("/{id}/state/manifest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<ProcessStateFileEntry> getStateManifest(@ApiParam @PathParam("id") UUID instanceId) {
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(entry);
+
+        assertProcessStateAccess(entry);
+
+        return stateManager.manifest(processKey);
+    }
+
+    /**
+     * Downloads the specified files of the current state snapshot of a process.
+     */
+    @POST
+    @ApiOperation(value = "Download the specified files of a process state snapshot", response = File.class)
+    @javax.ws.rs.Path("/{id}/state/files")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces("application/zip")
+    public Response downloadStateFiles(@ApiParam @PathParam("id") UUID instanceId,
+                                       @ApiParam List<String> paths) {
+
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = ProcessKey.from(entry);
+
+        assertProcessStateAccess(entry);
+
+        if (paths == null || paths.isEmpty()) {
+            throw new ConcordApplicationException("The list of files is required", Status.BAD_REQUEST);
+        }
+
+        StreamingOutput out = output -> {
+            try (ZipArchiveOutputStream dst = new ZipArchiveOutputStream(output)) {
+                stateManager.exportItems(processKey, paths, zipTo(dst));
+            }
+        };
+
+        return Response.ok(out, "application/zip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + instanceId + ".zip\"")
+                .build();
+    }
+
     /**
      * Downloads a single file from the current state snapshot of a process.
      */
@@ -1082,6 +1298,13 @@ public class ProcessResource implements Resource {
         return key.orElseThrow(() -> new ValidationErrorsException("Unknown instance ID: " + id));
     }
 
+    private static boolean isFinal(ProcessStatus s) {
+        return s == ProcessStatus.FINISHED ||
+                s == ProcessStatus.FAILED ||
+                s == ProcessStatus.CANCELLED ||
+                s == ProcessStatus.TIMED_OUT;
+    }
+
     private static boolean isEmpty(InputStream in) {
         try {
             return in.available() <= 0;
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process;
  * =====
  */
 
+import com.walmartlabs.concord.db.ReadOnly;
 import com.walmartlabs.concord.server.IsoDateParam;
 import com.walmartlabs.concord.server.metrics.WithTimer;
 import com.walmartlabs.concord.server.org.OrganizationEntry;
@@ -29,6 +30,7 @@ import com.walmartlabs.concord.server.org.project.ProjectAccessManager;
 import com.walmartlabs.concord.server.org.project.ProjectDao;
 import com.walmartlabs.concord.server.process.queue.ProcessFilter;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueStatsEntry;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.security.Permission;
@@ -39,6 +41,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.Authorization;
+import org.apache.shiro.authz.UnauthorizedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.siesta.Resource;
@@ -113,22 +116,30 @@ public class ProcessResourceV2 implements Resource {
 
     /**
      * Returns a list of processes in the user's organizations.
+     * <p>
+     * The processes are sorted by their creation date, newest first. To get the next page,
+     * pass the {@code createdAt} and {@code instanceId} of the last returned process as
+     * {@code beforeCreatedAt} and {@code beforeInstanceId}. Unlike {@code offset}, the cost of
+     * such requests doesn't depend on the page number.
      */
     @GET
     @ApiOperation(value = "List processes", responseContainer = "list", response = ProcessEntry.class)
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
+    @ReadOnly
     public List<ProcessEntry> list(@ApiParam @QueryParam("orgId") UUID orgId,
                                    @ApiParam @QueryParam("orgName") String orgName,
                                    @ApiParam @QueryParam("projectId") UUID projectId,
                                    @ApiParam @QueryParam("projectName") String projectName,
                                    @ApiParam @QueryParam("afterCreatedAt") IsoDateParam afterCreatedAt,
                                    @ApiParam @QueryParam("beforeCreatedAt") IsoDateParam beforeCreatedAt,
+                                   @ApiParam @QueryParam("beforeInstanceId") UUID beforeInstanceId,
                                    @ApiParam @QueryParam("tags") Set<String> tags,
                                    @ApiParam @QueryParam("status") ProcessStatus processStatus,
                                    @ApiParam @QueryParam("initiator") String initiator,
                                    @ApiParam @QueryParam("parentInstanceId") UUID parentId,
                                    @ApiParam @QueryParam("include") Set<ProcessDataInclude> processData,
+                                   @ApiParam @QueryParam("exclude") Set<ProcessDataExclude> excludes,
                                    @ApiParam @QueryParam("limit") @DefaultValue("30") int limit,
                                    @ApiParam @QueryParam("offset") @DefaultValue("0") int offset,
                                    @Context UriInfo uriInfo) {
@@ -137,6 +148,10 @@ public class ProcessResourceV2 implements Resource {
             throw new ValidationErrorsException("'limit' must be a positive number");
         }
 
+        if (beforeInstanceId != null && beforeCreatedAt == null) {
+            throw new ValidationErrorsException("'beforeInstanceId' requires 'beforeCreatedAt'");
+        }
+
         UUID effectiveOrgId = orgId;
 
         Set<UUID> orgIds = null;
@@ -192,16 +207,43 @@ public class ProcessResourceV2 implements Resource {
                 .includeWithoutProject(effectiveOrgId == null && effectiveProjectId == null)
                 .afterCreatedAt(toTimestamp(afterCreatedAt))
                 .beforeCreatedAt(toTimestamp(beforeCreatedAt))
+                .beforeInstanceId(beforeInstanceId)
                 .tags(tags)
                 .status(processStatus)
                 .initiator(initiator)
                 .metaFilters(metaFilters)
                 .includes(processData)
+                .excludes(excludes)
                 .build();
 
         return queueDao.list(filter, limit, offset);
     }
 
+    /**
+     * Returns the number of ENQUEUED and running processes, the age of the
+     * oldest ENQUEUED process and the number of recently created processes,
+     * grouped by the processes' requirements. Intended for the agent pool
+     * auto-scaling tools.
+     */
+    @GET
+    @ApiOperation(value = "Process queue statistics", responseContainer = "list", response = ProcessQueueStatsEntry.class)
+    @Path("/queue/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    @ReadOnly
+    public List<ProcessQueueStatsEntry> queueStats(@ApiParam @QueryParam("createdWithin") @DefaultValue("60") int createdWithinSec) {
+        if (createdWithinSec <= 0) {
+            throw new ValidationErrorsException("'createdWithin' must be a positive number");
+        }
+
+        boolean canSeeAllOrgs = Roles.isAdmin() || Permission.isPermitted(Permission.GET_PROCESS_QUEUE_ALL_ORGS);
+        if (!canSeeAllOrgs) {
+            throw new UnauthorizedException("The current user (" + UserPrincipal.assertCurrent().getUsername() + ") can't access the process queue statistics");
+        }
+
+        return queueDao.getQueueStats(createdWithinSec);
+    }
+
     private Set<UUID> getCurrentUserOrgIds() {
         UserPrincipal p = UserPrincipal.assertCurrent();
         return userDao.getOrgIds(p.getId());
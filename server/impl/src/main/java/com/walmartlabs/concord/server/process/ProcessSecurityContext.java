@@ -20,13 +20,12 @@ package com.walmartlabs.concord.server.process;
  * =====
  */
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.inject.Injector;
 import com.walmartlabs.concord.server.process.state.ProcessStateManager;
 import com.walmartlabs.concord.server.security.PrincipalUtils;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import com.walmartlabs.concord.server.security.internal.InternalRealm;
+import com.walmartlabs.concord.server.security.sessionkey.SessionKeyCache;
 import com.walmartlabs.concord.server.security.sessionkey.SessionKeyPrincipal;
 import com.walmartlabs.concord.server.user.UserEntry;
 import com.walmartlabs.concord.server.user.UserManager;
@@ -40,30 +39,31 @@ import org.apache.shiro.util.ThreadContext;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
 import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 @Named
+@Singleton
 public class ProcessSecurityContext {
 
     private static final String PRINCIPAL_FILE_PATH = ".concord/current_user";
 
     private final ProcessStateManager stateManager;
     private final Injector injector;
-    private final Cache<PartialProcessKey, PrincipalCollection> principalCache;
     private final UserManager userManager;
+    private final SessionKeyCache sessionKeyCache;
 
     @Inject
-    public ProcessSecurityContext(ProcessStateManager stateManager, Injector injector, UserManager userManager) {
+    public ProcessSecurityContext(ProcessStateManager stateManager,
+                                  Injector injector,
+                                  UserManager userManager,
+                                  SessionKeyCache sessionKeyCache) {
         this.stateManager = stateManager;
         this.injector = injector;
         this.userManager = userManager;
-        this.principalCache = CacheBuilder.newBuilder()
-                .expireAfterAccess(1, TimeUnit.MINUTES)
-                .build();
+        this.sessionKeyCache = sessionKeyCache;
     }
 
     public void storeCurrentSubject(ProcessKey processKey) {
@@ -85,17 +85,12 @@ public class ProcessSecurityContext {
         }
 
         stateManager.replace(processKey, PRINCIPAL_FILE_PATH, PrincipalUtils.serialize(dst));
-    }
 
-    public PrincipalCollection getPrincipals(PartialProcessKey processKey) {
-        try {
-            return principalCache.get(processKey, () -> doGetPrincipals(processKey));
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        }
+        // the process' session key must resolve into the new principals
+        sessionKeyCache.invalidate(processKey);
     }
 
-    private PrincipalCollection doGetPrincipals(PartialProcessKey processKey) {
+    public PrincipalCollection getPrincipals(PartialProcessKey processKey) {
         return stateManager.get(processKey, PRINCIPAL_FILE_PATH, PrincipalUtils::deserialize)
                 .orElse(null);
     }
@@ -0,0 +1,187 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.cfg.ProcessStateConfiguration;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.value;
+
+/**
+ * Maintains {@code PROCESS_STATS}. The table is updated by triggers on
+ * {@code PROCESS_QUEUE} which append +1/-1 rows for each change. The task
+ * periodically sums up those rows and, less often, recalculates the whole
+ * table from {@code PROCESS_QUEUE} to fix any drift.
+ */
+@Named("process-stats-reconciler")
+@Singleton
+public class ProcessStatsReconciler implements ScheduledTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessStatsReconciler.class);
+
+    private final ProcessStateConfiguration cfg;
+    private final ProcessStatsDao processStatsDao;
+
+    private long lastReconciliationAt;
+
+    @Inject
+    public ProcessStatsReconciler(ProcessStateConfiguration cfg, ProcessStatsDao processStatsDao) {
+        this.cfg = cfg;
+        this.processStatsDao = processStatsDao;
+
+        // the table is up to date after the migration, no need to scan the queue on each restart
+        this.lastReconciliationAt = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getIntervalInSec() {
+        return cfg.getStatsCompactionInterval();
+    }
+
+    @Override
+    public void performTask() {
+        long t1 = System.currentTimeMillis();
+
+        long reconciliationInterval = cfg.getStatsReconciliationInterval() * 1000;
+        if (reconciliationInterval > 0 && t1 - lastReconciliationAt >= reconciliationInterval) {
+            Integer rows = processStatsDao.reconcile();
+            if (rows == null) {
+                // another server is working on the table
+                return;
+            }
+
+            lastReconciliationAt = t1;
+            log.info("performTask -> reconciled, {} row(s), took {}ms", rows, (System.currentTimeMillis() - t1));
+            return;
+        }
+
+        Integer rows = processStatsDao.compact();
+        if (rows != null) {
+            log.debug("performTask -> compacted, {} row(s), took {}ms", rows, (System.currentTimeMillis() - t1));
+        }
+    }
+
+    @Named
+    private static class ProcessStatsDao extends AbstractDao {
+
+        private static final long LOCK_KEY = 1571325011432L;
+
+        /**
+         * The hour buckets older than that are merged into day buckets.
+         */
+        private static final String HOUR_BUCKETS_MAX_AGE = "2 days";
+
+        @Inject
+        protected ProcessStatsDao(@MainDB Configuration cfg) {
+            super(cfg);
+        }
+
+        /**
+         * Replaces the delta rows with their sums. Only the groups with more than
+         * one row and the hour buckets which must be merged into day buckets are
+         * rewritten, the already compacted rows are left as is.
+         *
+         * @return number of the inserted rows or {@code null} if the table is
+         * locked by another server.
+         */
+        Integer compact() {
+            return txResult(tx -> {
+                if (!tryLock(tx)) {
+                    return null;
+                }
+
+                return tx.execute("with G as (" +
+                        "select " + targetBucket("BUCKET_START") + " as TARGET_START, PROJECT_ID, INITIATOR_ID, CURRENT_STATUS " +
+                        "from PROCESS_STATS " +
+                        "group by 1, 2, 3, 4 " +
+                        "having count(*) > 1 or bool_or(BUCKET_START <> " + targetBucket("BUCKET_START") + ")), " +
+                        "D as (delete from PROCESS_STATS S using G " +
+                        "where " + targetBucket("S.BUCKET_START") + " = G.TARGET_START " +
+                        "and S.PROJECT_ID is not distinct from G.PROJECT_ID " +
+                        "and S.INITIATOR_ID is not distinct from G.INITIATOR_ID " +
+                        "and S.CURRENT_STATUS is not distinct from G.CURRENT_STATUS " +
+                        "returning S.*) " +
+                        "insert into PROCESS_STATS (BUCKET_START, PROJECT_ID, INITIATOR_ID, CURRENT_STATUS, PROCESS_COUNT) " +
+                        "select " + targetBucket("BUCKET_START") + ", " +
+                        "PROJECT_ID, INITIATOR_ID, CURRENT_STATUS, sum(PROCESS_COUNT) " +
+                        "from D " +
+                        "group by 1, 2, 3, 4 " +
+                        "having sum(PROCESS_COUNT) <> 0");
+            });
+        }
+
+        /**
+         * Recalculates the whole table from {@code PROCESS_QUEUE}.
+         * <p>
+         * Both parts of the statement use the same snapshot: the delta rows
+         * of the transactions which are not visible to the statement are
+         * kept, the rest is replaced with the actual numbers.
+         *
+         * @return number of the inserted rows or {@code null} if the table is
+         * locked by another server.
+         */
+        Integer reconcile() {
+            return txResult(tx -> {
+                if (!tryLock(tx)) {
+                    return null;
+                }
+
+                return tx.execute("with D as (delete from PROCESS_STATS) " +
+                        "insert into PROCESS_STATS (BUCKET_START, PROJECT_ID, INITIATOR_ID, CURRENT_STATUS, PROCESS_COUNT) " +
+                        "select (case when CREATED_AT < current_timestamp - interval '" + HOUR_BUCKETS_MAX_AGE + "' " +
+                        "then date_trunc('day', CREATED_AT) else date_trunc('hour', CREATED_AT) end), " +
+                        "PROJECT_ID, INITIATOR_ID, CURRENT_STATUS, count(*) " +
+                        "from PROCESS_QUEUE " +
+                        "group by 1, 2, 3, 4");
+            });
+        }
+
+        /**
+         * The bucket the row belongs to after the compaction: the hour
+         * buckets older than {@link #HOUR_BUCKETS_MAX_AGE} go into day buckets.
+         */
+        private static String targetBucket(String column) {
+            return "(case when " + column + " < current_timestamp - interval '" + HOUR_BUCKETS_MAX_AGE + "' " +
+                    "then date_trunc('day', " + column + ") else " + column + " end)";
+        }
+
+        /**
+         * The compaction and the reconciliation must not run concurrently,
+         * otherwise the same deltas can be counted twice.
+         */
+        private static boolean tryLock(DSLContext tx) {
+            return tx.select(field("pg_try_advisory_xact_lock({0})", Boolean.class, value(LOCK_KEY)))
+                    .fetchOne(Record1::value1);
+        }
+    }
+}
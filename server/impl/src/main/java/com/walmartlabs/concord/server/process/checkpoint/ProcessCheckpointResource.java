@@ -51,6 +51,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -118,11 +120,17 @@ public class ProcessCheckpointResource implements Resource {
 
         UUID checkpointId = MultipartUtils.getUuid(input, "id");
         String checkpointName = MultipartUtils.getString(input, "name");
+        // optional, if present the data contains only the new files
+        String manifest = MultipartUtils.getString(input, "manifest");
         try (InputStream data = MultipartUtils.getStream(input, "data");
              TemporaryPath tmpIn = IOUtils.tempFile("checkpoint", ".zip")) {
 
             Files.copy(data, tmpIn.path(), StandardCopyOption.REPLACE_EXISTING);
-            checkpointManager.importCheckpoint(processKey, checkpointId, checkpointName, tmpIn.path());
+            if (manifest != null) {
+                checkpointManager.importCheckpoint(processKey, checkpointId, checkpointName, manifest, tmpIn.path());
+            } else {
+                checkpointManager.importCheckpoint(processKey, checkpointId, checkpointName, tmpIn.path());
+            }
         } catch (IOException e) {
             log.error("uploadCheckpoint ['{}'] -> error", processKey, e);
             throw new ConcordApplicationException("upload error: " + e.getMessage());
@@ -130,4 +138,26 @@ public class ProcessCheckpointResource implements Resource {
 
         log.info("uploadCheckpoint ['{}'] -> done", processKey);
     }
+
+    /**
+     * Returns the hashes of the checkpoint files that are not stored yet.
+     * Used by the runner to upload only the new or modified files.
+     */
+    @POST
+    @javax.ws.rs.Path("{id}/checkpoint/blobs/missing")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    public Collection<String> findMissingBlobs(@PathParam("id") UUID instanceId,
+                                               List<String> hashes) {
+
+        ProcessEntry entry = processManager.assertProcess(instanceId);
+        ProcessKey processKey = ProcessKey.from(entry);
+
+        if (hashes == null || hashes.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return checkpointManager.findMissingBlobs(processKey, hashes);
+    }
 }
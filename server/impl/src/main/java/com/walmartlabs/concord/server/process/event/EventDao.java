@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.event;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.db.PgUtils;
+import com.walmartlabs.concord.db.ReadOnly;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import org.jooq.*;
@@ -30,6 +31,7 @@ import org.jooq.impl.DSL;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.util.List;
@@ -42,6 +44,11 @@ import static org.jooq.impl.DSL.*;
 @Named
 public class EventDao extends AbstractDao {
 
+    /**
+     * Number of events fetched from the DB at once.
+     */
+    private static final int FETCH_SIZE = 1000;
+
     private final ConcordObjectMapper objectMapper;
 
     @Inject
@@ -50,19 +57,63 @@ public class EventDao extends AbstractDao {
         this.objectMapper = objectMapper;
     }
 
+    @ReadOnly
     public List<ProcessEventEntry> list(ProcessEventFilter filter) {
-        try (DSLContext tx = DSL.using(cfg)) {
+        return list(filter, filter.afterSeq(), filter.limit());
+    }
+
+    /**
+     * Passes the events to the consumer one by one, ordered by {@code EVENT_SEQ}.
+     * The events are fetched from the DB in pages of {@link #FETCH_SIZE}, the next
+     * page starts after the last received {@code EVENT_SEQ}. Each page is fetched
+     * in a separate short transaction and the consumer is called after the page's
+     * transaction is completed, so a slow consumer doesn't keep a transaction open.
+     */
+    @ReadOnly
+    public void list(ProcessEventFilter filter, EventConsumer consumer) throws IOException {
+        Long afterSeq = filter.afterSeq();
+        int remaining = filter.limit();
+
+        while (true) {
+            int pageSize = remaining > 0 ? Math.min(remaining, FETCH_SIZE) : FETCH_SIZE;
+
+            List<ProcessEventEntry> page = list(filter, afterSeq, pageSize);
+            for (ProcessEventEntry e : page) {
+                consumer.accept(e);
+            }
+
+            if (page.size() < pageSize) {
+                return;
+            }
+
+            if (remaining > 0) {
+                remaining -= page.size();
+                if (remaining <= 0) {
+                    return;
+                }
+            }
+
+            afterSeq = page.get(page.size() - 1).seq();
+        }
+    }
 
+    private List<ProcessEventEntry> list(ProcessEventFilter filter, Long afterSeq, int limit) {
+        return txResult(tx -> {
             ProcessKey processKey = filter.processKey();
 
-            SelectConditionStep<Record4<UUID, String, Timestamp, String>> q = tx
+            SelectConditionStep<Record5<UUID, Long, String, Timestamp, String>> q = tx
                     .select(PROCESS_EVENTS.EVENT_ID,
+                            PROCESS_EVENTS.EVENT_SEQ,
                             PROCESS_EVENTS.EVENT_TYPE,
                             PROCESS_EVENTS.EVENT_DATE,
                             function("jsonb_strip_nulls", Object.class, PROCESS_EVENTS.EVENT_DATA).cast(String.class))
                     .from(PROCESS_EVENTS)
                     .where(PROCESS_EVENTS.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(PROCESS_EVENTS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())));
+                            .and(PgUtils.partitionKey(PROCESS_EVENTS.INSTANCE_CREATED_AT, processKey.getCreatedAt())));
+
+            if (afterSeq != null) {
+                q.and(PROCESS_EVENTS.EVENT_SEQ.greaterThan(afterSeq));
+            }
 
             Timestamp after = filter.after();
             if (after != null) {
@@ -76,22 +127,22 @@ public class EventDao extends AbstractDao {
 
             UUID eventCorrelationId = filter.eventCorrelationId();
             if (eventCorrelationId != null) {
-                q.and(PgUtils.jsonText(PROCESS_EVENTS.EVENT_DATA, "correlationId").eq(eventCorrelationId.toString()));
+                q.and(eventData("correlationId").eq(eventCorrelationId.toString()));
             }
 
             EventPhase eventPhase = filter.eventPhase();
             if (eventPhase != null) {
-                q.and(PgUtils.jsonText(PROCESS_EVENTS.EVENT_DATA, "phase").eq(eventPhase.getKey()));
+                q.and(eventData("phase").eq(eventPhase.getKey()));
             }
 
-            int limit = filter.limit();
+            SelectSeekStep1<Record5<UUID, Long, String, Timestamp, String>, Long> ordered = q.orderBy(PROCESS_EVENTS.EVENT_SEQ);
+
             if (limit > 0) {
-                q.limit(limit);
+                ordered.limit(limit);
             }
 
-            return q.orderBy(PROCESS_EVENTS.EVENT_SEQ)
-                    .fetch(this::toEntry);
-        }
+            return ordered.fetch(this::toEntry);
+        });
     }
 
     public void insert(ProcessKey processKey, String eventType, Map<String, Object> data) {
@@ -162,12 +213,26 @@ public class EventDao extends AbstractDao {
         });
     }
 
-    private ProcessEventEntry toEntry(Record4<UUID, String, Timestamp, String> r) {
+    private ProcessEventEntry toEntry(Record5<UUID, Long, String, Timestamp, String> r) {
         return ImmutableProcessEventEntry.builder()
                 .id(r.value1())
-                .eventType(r.value2())
-                .eventDate(r.value3())
-                .data(objectMapper.deserialize(r.value4()))
+                .seq(r.value2())
+                .eventType(r.value3())
+                .eventDate(r.value4())
+                .data(objectMapper.deserialize(r.value5()))
                 .build();
     }
+
+    /**
+     * Same expression as in the PROCESS_EVENTS_P_*_CORR_ID_PHASE indexes, so the filters
+     * on the event data can use them.
+     */
+    private static Field<String> eventData(String key) {
+        return field("{0}->>{1}", String.class, PROCESS_EVENTS.EVENT_DATA, inline(key));
+    }
+
+    public interface EventConsumer {
+
+        void accept(ProcessEventEntry e) throws IOException;
+    }
 }
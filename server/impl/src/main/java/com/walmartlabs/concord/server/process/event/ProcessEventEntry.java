@@ -40,6 +40,12 @@ public interface ProcessEventEntry extends Serializable {
 
     UUID id();
 
+    /**
+     * Sequence number of the event, can be used as {@code afterSeq} to fetch the next events.
+     */
+    @Nullable
+    Long seq();
+
     String eventType();
 
     @Nullable
@@ -32,6 +32,12 @@ public interface ProcessEventFilter {
 
     ProcessKey processKey();
 
+    /**
+     * Return only the events with {@code EVENT_SEQ} greater than the specified value.
+     */
+    @Nullable
+    Long afterSeq();
+
     @Nullable
     Timestamp after();
 
@@ -22,6 +22,8 @@ package com.walmartlabs.concord.server.process.event;
 
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.walmartlabs.concord.server.IsoDateParam;
 import com.walmartlabs.concord.server.metrics.WithTimer;
 import com.walmartlabs.concord.server.org.ResourceAccessLevel;
@@ -44,6 +46,8 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.sql.Timestamp;
 import java.util.*;
 
@@ -60,6 +64,7 @@ public class ProcessEventResource implements Resource {
     private final ProcessKeyCache processKeyCache;
     private final ProcessQueueDao queueDao;
     private final ProjectAccessManager projectAccessManager;
+    private final ObjectMapper objectMapper;
 
     private final Histogram batchInsertHistogram;
 
@@ -68,12 +73,14 @@ public class ProcessEventResource implements Resource {
                                 ProcessKeyCache processKeyCache,
                                 ProcessQueueDao queueDao,
                                 ProjectAccessManager projectAccessManager,
+                                ObjectMapper objectMapper,
                                 MetricRegistry metricRegistry) {
 
         this.eventDao = eventDao;
         this.processKeyCache = processKeyCache;
         this.queueDao = queueDao;
         this.projectAccessManager = projectAccessManager;
+        this.objectMapper = objectMapper;
         this.batchInsertHistogram = metricRegistry.histogram("process-events-batch-insert");
     }
 
@@ -117,6 +124,14 @@ public class ProcessEventResource implements Resource {
 
     /**
      * List process events.
+     * <p>
+     * The events are ordered by their sequence numbers. To get the next events,
+     * pass the {@code seq} of the last received event as {@code afterSeq}.
+     * <p>
+     * The response is streamed as the events are fetched from the DB. If an error
+     * occurs after the first part of the response is sent, the status can't be
+     * changed anymore: the client receives a 200 response with truncated JSON
+     * and must treat unparseable responses as errors.
      *
      * @param processInstanceId
      * @return
@@ -126,13 +141,14 @@ public class ProcessEventResource implements Resource {
     @Path("/{processInstanceId}/event")
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
-    public List<ProcessEventEntry> list(@ApiParam @PathParam("processInstanceId") UUID processInstanceId,
-                                        @ApiParam @QueryParam("type") String eventType,
-                                        @ApiParam @QueryParam("after") IsoDateParam geTimestamp,
-                                        @ApiParam @QueryParam("eventCorrelationId") UUID eventCorrelationId,
-                                        @ApiParam @QueryParam("eventPhase") EventPhase eventPhase, // TODO make it case-insensitive?
-                                        @ApiParam @QueryParam("includeAll") @DefaultValue("false") boolean includeAll,
-                                        @ApiParam @QueryParam("limit") @DefaultValue("-1") int limit) {
+    public Response list(@ApiParam @PathParam("processInstanceId") UUID processInstanceId,
+                         @ApiParam @QueryParam("type") String eventType,
+                         @ApiParam @QueryParam("after") IsoDateParam geTimestamp,
+                         @ApiParam @QueryParam("afterSeq") Long afterSeq,
+                         @ApiParam @QueryParam("eventCorrelationId") UUID eventCorrelationId,
+                         @ApiParam @QueryParam("eventPhase") EventPhase eventPhase, // TODO make it case-insensitive?
+                         @ApiParam @QueryParam("includeAll") @DefaultValue("false") boolean includeAll,
+                         @ApiParam @QueryParam("limit") @DefaultValue("-1") int limit) {
 
         ProcessKey processKey = processKeyCache.get(processInstanceId);
 
@@ -148,6 +164,7 @@ public class ProcessEventResource implements Resource {
 
         ProcessEventFilter f = ProcessEventFilter.builder()
                 .processKey(processKey)
+                .afterSeq(afterSeq)
                 .after(ts)
                 .eventType(eventType)
                 .eventCorrelationId(eventCorrelationId)
@@ -155,12 +172,18 @@ public class ProcessEventResource implements Resource {
                 .limit(limit)
                 .build();
 
-        List<ProcessEventEntry> l = eventDao.list(f);
-        if (!includeAll) {
-            l = filterOutSensitiveData(l);
-        }
+        // the events are written as they are fetched from the DB, one page at a time
+        StreamingOutput out = output -> {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(output);
+            json.writeStartArray();
+
+            eventDao.list(f, e -> json.writeObject(includeAll ? e : filterOutSensitiveData(e)));
+
+            json.writeEndArray();
+            json.flush();
+        };
 
-        return l;
+        return Response.ok(out, MediaType.APPLICATION_JSON).build();
     }
 
     private void assertAccessRights(PartialProcessKey processKey) {
@@ -192,34 +215,23 @@ public class ProcessEventResource implements Resource {
                 "the process' projects can access the extended process event data");
     }
 
-    private static List<ProcessEventEntry> filterOutSensitiveData(List<ProcessEventEntry> entries) {
-        if (entries == null || entries.isEmpty()) {
-            return entries;
+    private static ProcessEventEntry filterOutSensitiveData(ProcessEventEntry e) {
+        if (!ELEMENT_EVENT_TYPE.equals(e.eventType())) {
+            return e;
         }
 
-        List<ProcessEventEntry> result = new ArrayList<>(entries.size());
-        for (ProcessEventEntry e : entries) {
-            if (!ELEMENT_EVENT_TYPE.equals(e.eventType())) {
-                result.add(e);
-                continue;
-            }
-
-            Map<String, Object> data = e.data();
-            if (data == null) {
-                result.add(e);
-                continue;
-            }
-
-            // remove in/out variables
-            Map<String, Object> m = new HashMap<>(data);
-            m.remove("in");
-            m.remove("out");
-
-            result.add(ProcessEventEntry.from(e)
-                    .data(m)
-                    .build());
+        Map<String, Object> data = e.data();
+        if (data == null) {
+            return e;
         }
 
-        return result;
+        // remove in/out variables
+        Map<String, Object> m = new HashMap<>(data);
+        m.remove("in");
+        m.remove("out");
+
+        return ProcessEventEntry.from(e)
+                .data(m)
+                .build();
     }
 }
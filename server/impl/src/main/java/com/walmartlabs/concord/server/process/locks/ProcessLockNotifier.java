@@ -0,0 +1,90 @@
+package com.walmartlabs.concord.server.process.locks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wakes up the requests waiting for the process locks to be handed to their processes.
+ * <p>
+ * The waiters are signalled after the hand off is committed. Only the locks
+ * handed off by this server instance are signalled, the waiters must still
+ * re-check the locks periodically.
+ */
+@Named
+@Singleton
+public class ProcessLockNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLockNotifier.class);
+
+    private final Map<UUID, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a callback which is invoked when the lock is handed to the process.
+     * The callback is called on the thread that committed the hand off and must not block.
+     */
+    public Waiter register(UUID instanceId, Runnable callback) {
+        Waiter w = new Waiter(instanceId, callback);
+        waiters.computeIfAbsent(instanceId, k -> ConcurrentHashMap.newKeySet()).add(w);
+        return w;
+    }
+
+    public void unregister(Waiter w) {
+        waiters.computeIfPresent(w.instanceId, (k, v) -> {
+            v.remove(w);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    public void lockAcquired(UUID instanceId) {
+        Set<Waiter> s = waiters.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        for (Waiter w : s) {
+            try {
+                w.callback.run();
+            } catch (Exception e) {
+                log.warn("lockAcquired ['{}'] -> error while signalling a waiter: {}", instanceId, e.getMessage());
+            }
+        }
+    }
+
+    public static final class Waiter {
+
+        private final UUID instanceId;
+        private final Runnable callback;
+
+        private Waiter(UUID instanceId, Runnable callback) {
+            this.instanceId = instanceId;
+            this.callback = callback;
+        }
+    }
+}
@@ -22,31 +22,80 @@ package com.walmartlabs.concord.server.process.locks;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.Utils;
 import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.jooq.tables.ProcessLockWaiters;
 import com.walmartlabs.concord.server.jooq.tables.ProcessLocks;
+import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
+import com.walmartlabs.concord.server.jooq.tables.records.ProcessLockWaitersRecord;
 import com.walmartlabs.concord.server.jooq.tables.records.ProcessLocksRecord;
+import com.walmartlabs.concord.server.process.queue.ProcessWaitTargetsDao;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.Record4;
 import org.jooq.SelectConditionStep;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCKS;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCK_WAITERS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.jooq.impl.DSL.*;
 
+/**
+ * Process locks and their FIFO queues of waiting processes.
+ * <p>
+ * When a lock is released it is handed to the oldest waiting process right away,
+ * only that process is woken up. All operations on the same lock are serialized
+ * using a transaction-level advisory lock.
+ */
 @Named
 public class ProcessLocksDao extends AbstractDao {
 
+    private static final String[] FINISHED_STATUSES = Utils.toString(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT);
+
+    private final ProcessWaitTargetsDao waitTargetsDao;
+    private final ProcessLockNotifier notifier;
+
     @Inject
-    protected ProcessLocksDao(@MainDB Configuration cfg) {
+    public ProcessLocksDao(@MainDB Configuration cfg, ProcessWaitTargetsDao waitTargetsDao, ProcessLockNotifier notifier) {
         super(cfg);
+        this.waitTargetsDao = waitTargetsDao;
+        this.notifier = notifier;
     }
 
+    /**
+     * Acquires the lock if it is free and no other processes are queued for it.
+     * Otherwise the process is added to the lock's queue.
+     *
+     * @return the current owner of the lock.
+     */
     public LockEntry tryLock(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        while (true) {
-            boolean locked = insert(instanceId, orgId, projectId, scope, lockName);
-            if (locked) {
+        List<UUID> handedOff = new ArrayList<>();
+
+        LockEntry result = txResult(tx -> {
+            handedOff.clear();
+
+            lockQueue(tx, orgId, projectId, scope, lockName);
+
+            LockEntry owner = get(tx, orgId, projectId, scope, lockName);
+            if (owner == null) {
+                // the processes queued earlier go first
+                owner = handOff(tx, orgId, projectId, scope, lockName, instanceId, handedOff);
+            }
+
+            if (owner == null) {
+                insert(tx, instanceId, orgId, projectId, scope, lockName);
                 return LockEntry.builder()
                         .instanceId(instanceId)
                         .orgId(orgId)
@@ -54,33 +103,170 @@ public class ProcessLocksDao extends AbstractDao {
                         .scope(scope)
                         .name(lockName)
                         .build();
-            } else {
-                LockEntry e = get(orgId, projectId, scope, lockName);
-                if (e != null) {
-                    return e;
-                }
             }
-        }
+
+            if (!owner.instanceId().equals(instanceId)) {
+                enqueue(tx, instanceId, orgId, projectId, scope, lockName);
+            }
+
+            return owner;
+        });
+
+        handedOff.forEach(notifier::lockAcquired);
+
+        return result;
     }
 
     public LockEntry get(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
         return txResult(tx -> get(tx, orgId, projectId, scope, lockName));
     }
 
-    public boolean insert(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        return txResult(tx -> insert(tx, instanceId, orgId, projectId, scope, lockName));
-    }
-
+    /**
+     * Releases the lock and hands it to the next process in the queue.
+     * The process is also removed from the lock's queue.
+     */
     public void delete(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        tx(tx -> delete(tx, instanceId, orgId, projectId, scope, lockName));
+        List<UUID> handedOff = new ArrayList<>();
+
+        tx(tx -> {
+            handedOff.clear();
+
+            lockQueue(tx, orgId, projectId, scope, lockName);
+
+            dequeue(tx, instanceId, scope, lockName);
+
+            if (delete(tx, instanceId, orgId, projectId, scope, lockName)) {
+                handOff(tx, orgId, projectId, scope, lockName, null, handedOff);
+            }
+        });
+
+        handedOff.forEach(notifier::lockAcquired);
     }
 
-    private boolean insert(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+    /**
+     * Hands the free locks to the processes waiting for them. Such locks
+     * appear when their owners are finished without releasing them.
+     *
+     * @return the number of locks handed off.
+     */
+    public int handOffFreeLocks() {
+        ProcessLockWaiters w = PROCESS_LOCK_WAITERS.as("w");
         ProcessLocks l = PROCESS_LOCKS.as("l");
-        return tx.insertInto(l, l.INSTANCE_ID, l.ORG_ID, l.PROJECT_ID, l.LOCK_SCOPE, l.LOCK_NAME)
+
+        List<Record4<UUID, UUID, ProcessLockScope, String>> free = txResult(tx -> tx.selectDistinct(w.ORG_ID, w.PROJECT_ID, w.LOCK_SCOPE, w.LOCK_NAME)
+                .from(w)
+                .where(notExists(selectOne()
+                        .from(l)
+                        .where(l.LOCK_SCOPE.eq(w.LOCK_SCOPE)
+                                .and(l.LOCK_NAME.eq(w.LOCK_NAME))
+                                .and(w.LOCK_SCOPE.eq(ProcessLockScope.ORG).and(l.ORG_ID.eq(w.ORG_ID))
+                                        .or(w.LOCK_SCOPE.eq(ProcessLockScope.PROJECT).and(l.PROJECT_ID.eq(w.PROJECT_ID)))))))
+                .fetch());
+
+        int count = 0;
+        for (Record4<UUID, UUID, ProcessLockScope, String> r : free) {
+            UUID orgId = r.value1();
+            UUID projectId = r.value2();
+            ProcessLockScope scope = r.value3();
+            String lockName = r.value4();
+
+            List<UUID> handedOff = new ArrayList<>();
+
+            boolean success = txResult(tx -> {
+                handedOff.clear();
+
+                lockQueue(tx, orgId, projectId, scope, lockName);
+
+                if (get(tx, orgId, projectId, scope, lockName) != null) {
+                    // acquired in the meantime
+                    return false;
+                }
+
+                return handOff(tx, orgId, projectId, scope, lockName, null, handedOff) != null;
+            });
+
+            handedOff.forEach(notifier::lockAcquired);
+
+            if (success) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gives the lock to the oldest queued process that is still alive.
+     *
+     * @param caller the process which doesn't need to be woken up (can be {@code null})
+     * @param handedOff collects the processes to signal after the transaction is committed
+     * @return the new owner or {@code null} if the queue is empty.
+     */
+    private LockEntry handOff(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName, UUID caller, List<UUID> handedOff) {
+        ProcessLockWaiters w = PROCESS_LOCK_WAITERS.as("w");
+        ProcessQueue q = PROCESS_QUEUE.as("q");
+
+        // the processes finished while waiting lose their place in the queue
+        tx.deleteFrom(w)
+                .where(queueFilter(w, orgId, projectId, scope, lockName)
+                        .and(exists(selectOne()
+                                .from(q)
+                                .where(q.INSTANCE_ID.eq(w.INSTANCE_ID)
+                                        .and(q.CURRENT_STATUS.in(FINISHED_STATUSES))))))
+                .execute();
+
+        ProcessLockWaitersRecord next = tx.selectFrom(w)
+                .where(queueFilter(w, orgId, projectId, scope, lockName))
+                .orderBy(w.WAITER_SEQ)
+                .limit(1)
+                .fetchOne();
+
+        if (next == null) {
+            return null;
+        }
+
+        tx.deleteFrom(PROCESS_LOCK_WAITERS)
+                .where(PROCESS_LOCK_WAITERS.WAITER_SEQ.eq(next.getWaiterSeq()))
+                .execute();
+
+        UUID instanceId = next.getInstanceId();
+        insert(tx, instanceId, next.getOrgId(), next.getProjectId(), scope, lockName);
+
+        if (!instanceId.equals(caller)) {
+            waitTargetsDao.lockAcquired(tx, instanceId);
+            handedOff.add(instanceId);
+        }
+
+        return LockEntry.builder()
+                .instanceId(instanceId)
+                .orgId(next.getOrgId())
+                .projectId(next.getProjectId())
+                .scope(scope)
+                .name(lockName)
+                .build();
+    }
+
+    private void enqueue(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLockWaiters w = PROCESS_LOCK_WAITERS.as("w");
+        tx.insertInto(w, w.INSTANCE_ID, w.ORG_ID, w.PROJECT_ID, w.LOCK_SCOPE, w.LOCK_NAME)
                 .values(instanceId, orgId, projectId, scope, lockName)
                 .onConflictDoNothing()
-                .execute() == 1;
+                .execute();
+    }
+
+    private void dequeue(DSLContext tx, UUID instanceId, ProcessLockScope scope, String lockName) {
+        ProcessLockWaiters w = PROCESS_LOCK_WAITERS.as("w");
+        tx.deleteFrom(w)
+                .where(w.INSTANCE_ID.eq(instanceId)
+                        .and(w.LOCK_SCOPE.eq(scope))
+                        .and(w.LOCK_NAME.eq(lockName)))
+                .execute();
+    }
+
+    private void insert(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLocks l = PROCESS_LOCKS.as("l");
+        tx.insertInto(l, l.INSTANCE_ID, l.ORG_ID, l.PROJECT_ID, l.LOCK_SCOPE, l.LOCK_NAME)
+                .values(instanceId, orgId, projectId, scope, lockName)
+                .execute();
     }
 
     private LockEntry get(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
@@ -109,14 +295,44 @@ public class ProcessLocksDao extends AbstractDao {
                 .build());
     }
 
-    private void delete(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+    private boolean delete(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
         ProcessLocks l = PROCESS_LOCKS.as("l");
-        tx.deleteFrom(l)
+        return tx.deleteFrom(l)
                 .where(l.INSTANCE_ID.eq(instanceId)
                         .and(l.ORG_ID.eq(orgId))
                         .and(l.PROJECT_ID.eq(projectId))
                         .and(l.LOCK_SCOPE.eq(scope))
                         .and(l.LOCK_NAME.eq(lockName)))
-                .execute();
+                .execute() > 0;
+    }
+
+    private static Condition queueFilter(ProcessLockWaiters w, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        Condition c = w.LOCK_NAME.eq(lockName)
+                .and(w.LOCK_SCOPE.eq(scope));
+
+        switch (scope) {
+            case ORG:
+                return c.and(w.ORG_ID.eq(orgId));
+            case PROJECT:
+                return c.and(w.PROJECT_ID.eq(projectId));
+            default:
+                throw new IllegalArgumentException("unknown lock scope: " + scope);
+        }
+    }
+
+    /**
+     * Grabs a transaction-level lock on the specified process lock and its queue.
+     */
+    private static void lockQueue(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        tx.execute("select from pg_advisory_xact_lock(?)", hash(ProcessWaitTargetsDao.lockTarget(orgId, projectId, scope, lockName)));
+    }
+
+    private static long hash(String s) {
+        // should be "good enough" (tm) for advisory locking
+        long hash = 7;
+        for (int i = 0; i < s.length(); i++) {
+            hash = hash * 31 + s.charAt(i);
+        }
+        return hash;
     }
 }
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process.locks;
  * =====
  */
 
+import com.walmartlabs.concord.server.BackgroundTask;
 import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
 import com.walmartlabs.concord.server.metrics.WithTimer;
 import com.walmartlabs.concord.server.process.PartialProcessKey;
@@ -32,54 +33,92 @@ import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.Authorization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonatype.siesta.Resource;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Named
 @Singleton
 @Api(value = "Process Locks", authorizations = {@Authorization("session_key")})
 @Path("/api/v1/process")
-public class ProcessLocksResource implements Resource {
+public class ProcessLocksResource implements Resource, BackgroundTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLocksResource.class);
+
+    private static final long MAX_LOCK_WAIT_TIME = 30000;
+    private static final long LOCK_WAIT_RECHECK_DELAY = 5000;
+    private static final int LOCK_WAIT_THREADS = 4;
 
     private final ProcessQueueDao queueDao;
     private final ProcessLocksDao dao;
+    private final ProcessLockNotifier notifier;
+    private final long recheckDelay;
+    private final ScheduledExecutorService executor;
 
     @Inject
-    public ProcessLocksResource(ProcessQueueDao queueDao, ProcessLocksDao dao) {
+    public ProcessLocksResource(ProcessQueueDao queueDao, ProcessLocksDao dao, ProcessLockNotifier notifier) {
+        this(queueDao, dao, notifier, LOCK_WAIT_RECHECK_DELAY);
+    }
+
+    ProcessLocksResource(ProcessQueueDao queueDao, ProcessLocksDao dao, ProcessLockNotifier notifier, long recheckDelay) {
         this.queueDao = queueDao;
         this.dao = dao;
+        this.notifier = notifier;
+        this.recheckDelay = recheckDelay;
+        this.executor = Executors.newScheduledThreadPool(LOCK_WAIT_THREADS, new LockWaitThreadFactory());
+    }
+
+    @Override
+    public void start() {
+        // nothing to do
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
     }
 
     /**
      * Acquires the lock if it is available and returns the LockResult.acquired = true.
      * If the lock is not available then this method will return the LockResult.acquired = false.
+     * <p>
+     * The process is added to the lock's queue and gets the lock as soon as
+     * the processes queued before it release the lock. If {@code timeout} is
+     * specified, the response is delayed until the lock is handed to the process
+     * or for up to {@code timeout} ms (limited by {@link #MAX_LOCK_WAIT_TIME}).
+     * The request thread is not blocked while waiting.
      */
     @POST
-    @ApiOperation("Try lock")
+    @ApiOperation(value = "Try lock", response = LockResult.class)
     @Path("/{processInstanceId}/lock/{lockName}")
     @Produces(MediaType.APPLICATION_JSON)
     @WithTimer
-    public LockResult tryLock(@PathParam("processInstanceId") UUID instanceId,
-                              @PathParam("lockName") String lockName,
-                              @QueryParam("scope") @DefaultValue("PROJECT") ProcessLockScope scope) {
+    public void tryLock(@PathParam("processInstanceId") UUID instanceId,
+                        @PathParam("lockName") String lockName,
+                        @QueryParam("scope") @DefaultValue("PROJECT") ProcessLockScope scope,
+                        @QueryParam("timeout") @DefaultValue("0") long timeout,
+                        @Suspended AsyncResponse asyncResponse) {
 
         ProcessEntry e = assertProcess(instanceId);
 
-        LockEntry lock = dao.tryLock(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
-        boolean acquired = lock.instanceId().equals(instanceId);
-        AbstractWaitCondition waitCondition = acquired ? null : ProcessLockCondition.from(lock);
-        queueDao.updateWait(ProcessKey.from(e), waitCondition);
-        return LockResult.builder()
-                .acquired(acquired)
-                .info(lock)
-                .build();
+        if (timeout > 0) {
+            new LockWait(e, scope, lockName, Math.min(timeout, MAX_LOCK_WAIT_TIME), asyncResponse).start();
+        } else {
+            LockEntry lock = dao.tryLock(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
+            asyncResponse.resume(toResult(e, lock));
+        }
     }
 
     /**
@@ -97,6 +136,16 @@ public class ProcessLocksResource implements Resource {
         dao.delete(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
     }
 
+    private LockResult toResult(ProcessEntry e, LockEntry lock) {
+        boolean acquired = lock.instanceId().equals(e.instanceId());
+        AbstractWaitCondition waitCondition = acquired ? null : ProcessLockCondition.from(lock);
+        queueDao.updateWait(ProcessKey.from(e), waitCondition);
+        return LockResult.builder()
+                .acquired(acquired)
+                .info(lock)
+                .build();
+    }
+
     private ProcessEntry assertProcess(UUID instanceId) {
         PartialProcessKey processKey = PartialProcessKey.from(instanceId);
         ProcessEntry p = queueDao.get(processKey);
@@ -115,4 +164,112 @@ public class ProcessLocksResource implements Resource {
 
         return p;
     }
+
+    /**
+     * A suspended {@link #tryLock} request. The lock is re-checked when the hand off
+     * is signalled by {@link ProcessLockNotifier} or periodically, in case the lock was
+     * handed off by another server instance. The response is resumed when the lock
+     * is acquired or when the wait time expires.
+     */
+    private final class LockWait {
+
+        private final ProcessEntry process;
+        private final ProcessLockScope scope;
+        private final String lockName;
+        private final long deadline;
+        private final AsyncResponse response;
+
+        private ProcessLockNotifier.Waiter waiter;
+        private ScheduledFuture<?> recheck;
+        private boolean done;
+
+        private LockWait(ProcessEntry process, ProcessLockScope scope, String lockName, long maxWait, AsyncResponse response) {
+            this.process = process;
+            this.scope = scope;
+            this.lockName = lockName;
+            this.deadline = System.currentTimeMillis() + maxWait;
+            this.response = response;
+        }
+
+        private synchronized void start() {
+            // register before queueing, so the hand off signal can't be missed
+            waiter = notifier.register(process.instanceId(), () -> executor.execute(this::check));
+            try {
+                LockEntry lock = dao.tryLock(process.instanceId(), process.orgId(), process.projectId(), scope, lockName);
+                if (isAcquired(lock)) {
+                    complete(lock);
+                } else {
+                    schedule();
+                }
+            } catch (RuntimeException e) {
+                done = true;
+                notifier.unregister(waiter);
+                throw e;
+            }
+        }
+
+        private synchronized void check() {
+            if (done) {
+                return;
+            }
+
+            try {
+                LockEntry lock = dao.get(process.orgId(), process.projectId(), scope, lockName);
+                if (lock == null) {
+                    // released without a hand off (e.g. the queue was empty)
+                    lock = dao.tryLock(process.instanceId(), process.orgId(), process.projectId(), scope, lockName);
+                }
+
+                if (isAcquired(lock) || System.currentTimeMillis() >= deadline) {
+                    complete(lock);
+                } else {
+                    schedule();
+                }
+            } catch (Exception e) {
+                log.warn("check ['{}', '{}'] -> error while waiting for the lock: {}", process.instanceId(), lockName, e.getMessage());
+                finish();
+                response.resume(e);
+            }
+        }
+
+        private void schedule() {
+            if (recheck != null) {
+                recheck.cancel(false);
+            }
+
+            long delay = Math.min(deadline - System.currentTimeMillis(), recheckDelay);
+            recheck = executor.schedule(this::check, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        }
+
+        private void complete(LockEntry lock) {
+            finish();
+            response.resume(toResult(process, lock));
+        }
+
+        private void finish() {
+            done = true;
+
+            notifier.unregister(waiter);
+
+            if (recheck != null) {
+                recheck.cancel(false);
+            }
+        }
+
+        private boolean isAcquired(LockEntry lock) {
+            return lock.instanceId().equals(process.instanceId());
+        }
+    }
+
+    private static final class LockWaitThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "process-lock-wait-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
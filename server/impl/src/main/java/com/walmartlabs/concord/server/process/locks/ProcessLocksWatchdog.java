@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.locks;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.Utils;
+import com.walmartlabs.concord.server.jooq.tables.ProcessLockWaiters;
 import com.walmartlabs.concord.server.jooq.tables.ProcessLocks;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -39,11 +40,13 @@ import javax.inject.Singleton;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCKS;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCK_WAITERS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 
 /**
  * Takes care of processes dead process locks.
- * E.g. removes locks for finished processes.
+ * E.g. removes locks and queued waiters of finished processes and hands
+ * the released locks to the next waiting processes.
  */
 @Named("process-locks-watchdog")
 @Singleton
@@ -52,10 +55,12 @@ public class ProcessLocksWatchdog implements ScheduledTask {
     private static final Logger log = LoggerFactory.getLogger(ProcessLocksWatchdog.class);
 
     private final WatchdogDao dao;
+    private final ProcessLocksDao locksDao;
 
     @Inject
-    public ProcessLocksWatchdog(WatchdogDao dao) {
+    public ProcessLocksWatchdog(WatchdogDao dao, ProcessLocksDao locksDao) {
         this.dao = dao;
+        this.locksDao = locksDao;
     }
 
     @Override
@@ -67,7 +72,8 @@ public class ProcessLocksWatchdog implements ScheduledTask {
     @Override
     public void performTask() {
         int count = dao.deleteStalledLocks();
-        log.debug("performTask -> {} locks deleted", count);
+        int handedOff = locksDao.handOffFreeLocks();
+        log.debug("performTask -> {} locks deleted, {} locks handed off", count, handedOff);
     }
 
     @Named
@@ -95,6 +101,14 @@ public class ProcessLocksWatchdog implements ScheduledTask {
                         .where(q.INSTANCE_ID.eq(l.INSTANCE_ID)
                                 .and(q.CURRENT_STATUS.in(Utils.toString(FINISHED_STATUSES))));
 
+                ProcessLockWaiters w = PROCESS_LOCK_WAITERS.as("w");
+                tx.deleteFrom(w)
+                        .where(w.INSTANCE_ID.in(tx.select(q.INSTANCE_ID)
+                                .from(q)
+                                .where(q.INSTANCE_ID.eq(w.INSTANCE_ID)
+                                        .and(q.CURRENT_STATUS.in(Utils.toString(FINISHED_STATUSES))))))
+                        .execute();
+
                 return tx.deleteFrom(l)
                         .where(l.INSTANCE_ID.in(finishedProcesses))
                         .execute();
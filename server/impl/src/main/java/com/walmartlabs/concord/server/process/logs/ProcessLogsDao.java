@@ -22,9 +22,12 @@ package com.walmartlabs.concord.server.process.logs;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.db.PgUtils;
+import com.walmartlabs.concord.db.ReadOnly;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.Query;
 import org.jooq.Record2;
 import org.jooq.impl.DSL;
 
@@ -32,7 +35,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.Serializable;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Routines.processLogLastNBytes2;
@@ -50,10 +55,29 @@ public class ProcessLogsDao extends AbstractDao {
     }
 
     public void append(ProcessKey processKey, byte[] data) {
+        tx(tx -> insert(tx, processKey, data).execute());
+    }
+
+    /**
+     * Appends the log data of multiple processes in a single transaction.
+     */
+    public void append(Map<ProcessKey, byte[]> data) {
+        if (data.isEmpty()) {
+            return;
+        }
+
+        tx(tx -> {
+            List<Query> queries = new ArrayList<>(data.size());
+            data.forEach((k, v) -> queries.add(insert(tx, k, v)));
+            tx.batch(queries).execute();
+        });
+    }
+
+    private static Query insert(DSLContext tx, ProcessKey processKey, byte[] data) {
         UUID instanceId = processKey.getInstanceId();
         Timestamp createdAt = processKey.getCreatedAt();
 
-        tx(tx -> tx.insertInto(PROCESS_LOGS)
+        return tx.insertInto(PROCESS_LOGS)
                 .columns(PROCESS_LOGS.INSTANCE_ID,
                         PROCESS_LOGS.INSTANCE_CREATED_AT,
                         PROCESS_LOGS.CHUNK_RANGE,
@@ -61,10 +85,10 @@ public class ProcessLogsDao extends AbstractDao {
                 .values(value(instanceId),
                         value(createdAt),
                         processLogNextRange2(instanceId, createdAt, data.length),
-                        value(data))
-                .execute());
+                        value(data));
     }
 
+    @ReadOnly
     public ProcessLog get(ProcessKey processKey, Integer start, Integer end) {
         UUID instanceId = processKey.getInstanceId();
         Timestamp createdAt = processKey.getCreatedAt();
@@ -75,7 +99,7 @@ public class ProcessLogsDao extends AbstractDao {
             int size = tx.select(V_PROCESS_LOGS_SIZE.SIZE)
                     .from(V_PROCESS_LOGS_SIZE)
                     .where(V_PROCESS_LOGS_SIZE.INSTANCE_ID.eq(instanceId)
-                            .and(V_PROCESS_LOGS_SIZE.INSTANCE_CREATED_AT.eq(createdAt)))
+                            .and(PgUtils.partitionKey(V_PROCESS_LOGS_SIZE.INSTANCE_CREATED_AT, createdAt)))
                     .fetchOptional(V_PROCESS_LOGS_SIZE.SIZE)
                     .orElse(0);
 
@@ -94,7 +118,7 @@ public class ProcessLogsDao extends AbstractDao {
             return tx.select(field(lowerBoundExpr), PROCESS_LOGS.CHUNK_DATA)
                     .from(PROCESS_LOGS)
                     .where(PROCESS_LOGS.INSTANCE_ID.eq(instanceId)
-                            .and(PROCESS_LOGS.INSTANCE_CREATED_AT.eq(createdAt)))
+                            .and(PgUtils.partitionKey(PROCESS_LOGS.INSTANCE_CREATED_AT, createdAt)))
                     .orderBy(PROCESS_LOGS.CHUNK_RANGE)
                     .fetch(ProcessLogsDao::toChunk);
 
@@ -104,7 +128,7 @@ public class ProcessLogsDao extends AbstractDao {
             return tx.select(field(lowerBoundExpr), PROCESS_LOGS.CHUNK_DATA)
                     .from(PROCESS_LOGS)
                     .where(PROCESS_LOGS.INSTANCE_ID.eq(instanceId)
-                            .and(PROCESS_LOGS.INSTANCE_CREATED_AT.eq(createdAt))
+                            .and(PgUtils.partitionKey(PROCESS_LOGS.INSTANCE_CREATED_AT, createdAt))
                             .and(rangeExpr, start, end))
                     .orderBy(PROCESS_LOGS.CHUNK_RANGE)
                     .fetch(ProcessLogsDao::toChunk);
@@ -116,7 +140,7 @@ public class ProcessLogsDao extends AbstractDao {
                     .select(field(lowerBoundExpr), PROCESS_LOGS.CHUNK_DATA)
                     .from(PROCESS_LOGS)
                     .where(PROCESS_LOGS.INSTANCE_ID.eq(instanceId)
-                            .and(PROCESS_LOGS.INSTANCE_CREATED_AT.eq(createdAt))
+                            .and(PgUtils.partitionKey(PROCESS_LOGS.INSTANCE_CREATED_AT, createdAt))
                             .and(rangeExpr, instanceId, end))
                     .orderBy(PROCESS_LOGS.CHUNK_RANGE)
                     .fetch(ProcessLogsDao::toChunk);
@@ -32,8 +32,11 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Named
 public class InitialQueueEntryProcessor implements PayloadProcessor {
@@ -47,23 +50,61 @@ public class InitialQueueEntryProcessor implements PayloadProcessor {
 
     @Override
     @WithTimer
-    @SuppressWarnings("unchecked")
     public Payload process(Chain chain, Payload payload) {
+        // the entry was already created using the batch method
+        if (payload.getHeader(Payload.QUEUE_ENTRY_CREATED, false)) {
+            return chain.process(payload);
+        }
+
         ProcessKey processKey = payload.getProcessKey();
         ProcessKind kind = payload.getHeader(Payload.PROCESS_KIND, ProcessKind.DEFAULT);
         UUID projectId = payload.getHeader(Payload.PROJECT_ID);
         UUID parentInstanceId = payload.getHeader(Payload.PARENT_INSTANCE_ID);
         UUID initiatorId = payload.getHeader(Payload.INITIATOR_ID);
-
-        Map<String, Object> cfg = payload.getHeader(Payload.REQUEST_DATA_MAP, Collections.emptyMap());
-        Map<String, Object> meta = getMeta(cfg);
         String exclusiveGroup = payload.getHeader(Payload.EXCLUSIVE_GROUP);
 
-        queueDao.insertInitial(processKey, kind, parentInstanceId, projectId, initiatorId, meta, exclusiveGroup);
+        queueDao.insertInitial(processKey, kind, parentInstanceId, projectId, initiatorId, getMeta(payload), exclusiveGroup);
 
         return chain.process(payload);
     }
 
+    /**
+     * Creates the queue entries of multiple payloads in a single batch.
+     * The payloads must share the same kind, parent, project and initiator
+     * and have no exclusive group (e.g. forks of the same process).
+     *
+     * @return the payloads marked with {@link Payload#QUEUE_ENTRY_CREATED}
+     */
+    @WithTimer
+    public List<Payload> insertBatch(List<Payload> payloads) {
+        if (payloads.isEmpty()) {
+            return payloads;
+        }
+
+        Payload first = payloads.get(0);
+        ProcessKind kind = first.getHeader(Payload.PROCESS_KIND, ProcessKind.DEFAULT);
+        UUID projectId = first.getHeader(Payload.PROJECT_ID);
+        UUID parentInstanceId = first.getHeader(Payload.PARENT_INSTANCE_ID);
+        UUID initiatorId = first.getHeader(Payload.INITIATOR_ID);
+
+        Map<ProcessKey, Map<String, Object>> processes = new LinkedHashMap<>();
+        for (Payload p : payloads) {
+            processes.put(p.getProcessKey(), getMeta(p));
+        }
+
+        queueDao.insertInitial(processes, kind, parentInstanceId, projectId, initiatorId);
+
+        return payloads.stream()
+                .map(p -> p.putHeader(Payload.QUEUE_ENTRY_CREATED, true))
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMeta(Payload payload) {
+        Map<String, Object> cfg = payload.getHeader(Payload.REQUEST_DATA_MAP, Collections.emptyMap());
+        return getMeta(cfg);
+    }
+
     @SuppressWarnings("unchecked")
     private static Map<String, Object> getMeta(Map<String, Object> cfg) {
         Map<String, Object> m = (Map<String, Object>) cfg.get(Constants.Request.META);
@@ -0,0 +1,98 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wakes up the threads waiting for processes to reach a final status.
+ * <p>
+ * Only the status changes made by this server instance are signalled,
+ * the waiters must still re-check the processes periodically.
+ */
+@Named
+@Singleton
+public class ProcessCompletionNotifier {
+
+    private final Map<UUID, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    public Waiter register(Collection<UUID> instanceIds) {
+        Waiter w = new Waiter(instanceIds);
+        for (UUID id : instanceIds) {
+            waiters.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(w);
+        }
+        return w;
+    }
+
+    public void unregister(Waiter w) {
+        for (UUID id : w.instanceIds) {
+            waiters.computeIfPresent(id, (k, v) -> {
+                v.remove(w);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    public void completed(UUID instanceId) {
+        Set<Waiter> s = waiters.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        s.forEach(Waiter::signal);
+    }
+
+    public static final class Waiter {
+
+        private final Collection<UUID> instanceIds;
+        private boolean signalled;
+
+        private Waiter(Collection<UUID> instanceIds) {
+            this.instanceIds = instanceIds;
+        }
+
+        /**
+         * Waits for a signal or until the timeout expires.
+         *
+         * @return {@code true} if the waiter was signalled.
+         */
+        public synchronized boolean await(long timeout) throws InterruptedException {
+            if (!signalled && timeout > 0) {
+                wait(timeout);
+            }
+
+            boolean result = signalled;
+            signalled = false;
+            return result;
+        }
+
+        private synchronized void signal() {
+            signalled = true;
+            notifyAll();
+        }
+    }
+}
@@ -20,6 +20,7 @@ package com.walmartlabs.concord.server.process.queue;
  * =====
  */
 
+import com.walmartlabs.concord.server.process.ProcessDataExclude;
 import com.walmartlabs.concord.server.process.ProcessDataInclude;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import org.immutables.value.Value;
@@ -40,6 +41,14 @@ public interface ProcessFilter {
     @Nullable
     Timestamp beforeCreatedAt();
 
+    /**
+     * Used together with {@link #beforeCreatedAt()} to continue from
+     * the specified process: selects processes that are older than
+     * {@code (beforeCreatedAt, beforeInstanceId)}.
+     */
+    @Nullable
+    UUID beforeInstanceId();
+
     @Nullable
     String initiator();
 
@@ -72,6 +81,11 @@ public interface ProcessFilter {
         return Collections.emptySet();
     }
 
+    @Value.Default
+    default Set<ProcessDataExclude> excludes() {
+        return Collections.emptySet();
+    }
+
     @Nullable
     Map<String, String> metaFilters();
 
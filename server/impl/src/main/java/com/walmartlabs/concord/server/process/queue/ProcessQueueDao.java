@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.queue;
  */
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableSet;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.db.PgUtils;
@@ -39,6 +40,7 @@ import com.walmartlabs.concord.server.process.ProcessEntry.ProcessWaitHistoryEnt
 import com.walmartlabs.concord.server.process.event.EventDao;
 import com.walmartlabs.concord.server.queueclient.message.Imports;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.sessionkey.SessionKeyCache;
 import org.jooq.*;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
@@ -59,6 +61,7 @@ import static com.walmartlabs.concord.server.jooq.tables.Organizations.ORGANIZAT
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStats.PROCESS_STATS;
 import static com.walmartlabs.concord.server.jooq.tables.Projects.PROJECTS;
 import static org.jooq.impl.DSL.*;
 
@@ -76,25 +79,61 @@ public class ProcessQueueDao extends AbstractDao {
     private static final TypeReference<List<ProcessStatusHistoryEntry>> LIST_OF_STATUS_HISTORY = new TypeReference<List<ProcessStatusHistoryEntry>>() {
     };
 
-    private static final Field<?>[] PROCESS_QUEUE_FIELDS = allFieldsWithFixedMeta();
+    /**
+     * Columns required to build {@link ProcessEntry}, the optional ones
+     * (see {@link ProcessDataExclude}) are added separately.
+     */
+    private static final Field<?>[] PROCESS_QUEUE_FIELDS = {
+            PROCESS_QUEUE.INSTANCE_ID,
+            PROCESS_QUEUE.PROCESS_KIND,
+            PROCESS_QUEUE.PARENT_INSTANCE_ID,
+            PROCESS_QUEUE.PROJECT_ID,
+            PROCESS_QUEUE.REPO_ID,
+            PROCESS_QUEUE.REPO_URL,
+            PROCESS_QUEUE.REPO_PATH,
+            PROCESS_QUEUE.COMMIT_ID,
+            PROCESS_QUEUE.COMMIT_MSG,
+            PROCESS_QUEUE.INITIATOR_ID,
+            PROCESS_QUEUE.LAST_UPDATED_AT,
+            PROCESS_QUEUE.CREATED_AT,
+            PROCESS_QUEUE.CURRENT_STATUS,
+            PROCESS_QUEUE.LAST_AGENT_ID,
+            PROCESS_QUEUE.PROCESS_TAGS,
+            PROCESS_QUEUE.IS_DISABLED
+    };
+
+    private static final Set<ProcessStatus> FINAL_STATUSES = ImmutableSet.of(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT);
 
     private final List<ProcessQueueEntryFilter> filters;
 
     private final EventDao eventDao;
+    private final ProcessWaitTargetsDao waitTargetsDao;
     private final ProcessQueueLock queueLock;
     private final ConcordObjectMapper objectMapper;
+    private final SessionKeyCache sessionKeyCache;
+    private final ProcessCompletionNotifier completionNotifier;
 
     @Inject
     protected ProcessQueueDao(@MainDB Configuration cfg,
                               List<ProcessQueueEntryFilter> filters,
                               EventDao eventDao,
+                              ProcessWaitTargetsDao waitTargetsDao,
                               ProcessQueueLock queueLock,
-                              ConcordObjectMapper objectMapper) {
+                              ConcordObjectMapper objectMapper,
+                              SessionKeyCache sessionKeyCache,
+                              ProcessCompletionNotifier completionNotifier) {
         super(cfg);
         this.filters = filters;
         this.eventDao = eventDao;
+        this.waitTargetsDao = waitTargetsDao;
         this.queueLock = queueLock;
         this.objectMapper = objectMapper;
+        this.sessionKeyCache = sessionKeyCache;
+        this.completionNotifier = completionNotifier;
     }
 
     public ProcessKey getKey(UUID instanceId) {
@@ -117,7 +156,41 @@ public class ProcessQueueDao extends AbstractDao {
                               UUID projectId, UUID initiatorId, Map<String, Object> meta,
                               String exclusiveGroup) {
 
-        tx.insertInto(PROCESS_QUEUE)
+        insertInitialQuery(tx, processKey, kind, parentInstanceId, projectId, initiatorId, meta, exclusiveGroup)
+                .execute();
+
+        insertStatusHistory(tx, processKey, ProcessStatus.PREPARING);
+    }
+
+    /**
+     * Inserts the initial queue entries of multiple processes that share
+     * the same parent, project and initiator (e.g. forks) using a single batch.
+     *
+     * @param processes process keys and their metadata
+     */
+    public void insertInitial(Map<ProcessKey, Map<String, Object>> processes, ProcessKind kind,
+                              UUID parentInstanceId, UUID projectId, UUID initiatorId) {
+
+        if (processes.isEmpty()) {
+            return;
+        }
+
+        tx(tx -> {
+            List<Query> queries = processes.entrySet().stream()
+                    .map(e -> insertInitialQuery(tx, e.getKey(), kind, parentInstanceId, projectId, initiatorId, e.getValue(), null))
+                    .collect(Collectors.toList());
+
+            tx.batch(queries).execute();
+
+            insertStatusHistory(tx, new ArrayList<>(processes.keySet()), ProcessStatus.PREPARING);
+        });
+    }
+
+    private Query insertInitialQuery(DSLContext tx, ProcessKey processKey, ProcessKind kind, UUID parentInstanceId,
+                                     UUID projectId, UUID initiatorId, Map<String, Object> meta,
+                                     String exclusiveGroup) {
+
+        return tx.insertInto(PROCESS_QUEUE)
                 .columns(PROCESS_QUEUE.INSTANCE_ID,
                         PROCESS_QUEUE.PROCESS_KIND,
                         PROCESS_QUEUE.PARENT_INSTANCE_ID,
@@ -137,16 +210,19 @@ public class ProcessQueueDao extends AbstractDao {
                         value(ProcessStatus.PREPARING.toString()),
                         currentTimestamp(),
                         field("?::jsonb", objectMapper.serialize(meta)),
-                        value(exclusiveGroup))
-                .execute();
-
-        insertStatusHistory(tx, processKey, ProcessStatus.PREPARING);
+                        value(exclusiveGroup));
     }
 
     public void updateAgentId(ProcessKey processKey, String agentId, ProcessStatus status) {
         tx(tx -> updateAgentId(tx, processKey, agentId, status));
+        afterStatusUpdate(Collections.singletonList(processKey), status);
     }
 
+    /**
+     * Updates the status of a process as a part of the specified transaction.
+     * The caller must call {@link #afterStatusUpdate(Collection, ProcessStatus)}
+     * once the transaction is committed.
+     */
     public void updateAgentId(DSLContext tx, ProcessKey processKey, String agentId, ProcessStatus status) {
         UUID instanceId = processKey.getInstanceId();
 
@@ -262,6 +338,7 @@ public class ProcessQueueDao extends AbstractDao {
 
     public void updateStatus(ProcessKey processKey, ProcessStatus status, Map<String, Object> statusPayload) {
         tx(tx -> updateStatus(tx, processKey, status, statusPayload));
+        afterStatusUpdate(Collections.singletonList(processKey), status);
     }
 
     private void updateStatus(DSLContext tx, ProcessKey processKey, ProcessStatus status) {
@@ -284,7 +361,7 @@ public class ProcessQueueDao extends AbstractDao {
     public boolean updateStatus(ProcessKey processKey, ProcessStatus expected, ProcessStatus status) {
         UUID instanceId = processKey.getInstanceId();
 
-        return txResult(tx -> {
+        boolean updated = txResult(tx -> {
             int i = tx.update(PROCESS_QUEUE)
                     .set(PROCESS_QUEUE.CURRENT_STATUS, status.toString())
                     .set(PROCESS_QUEUE.LAST_UPDATED_AT, currentTimestamp())
@@ -297,6 +374,10 @@ public class ProcessQueueDao extends AbstractDao {
 
             return i == 1;
         });
+
+        afterStatusUpdate(Collections.singletonList(processKey), status);
+
+        return updated;
     }
 
     public boolean updateMeta(PartialProcessKey processKey, Map<String, Object> meta) {
@@ -327,7 +408,7 @@ public class ProcessQueueDao extends AbstractDao {
     }
 
     public boolean updateStatus(List<ProcessKey> processKeys, ProcessStatus status, List<ProcessStatus> expected) {
-        return txResult(tx -> {
+        boolean updated = txResult(tx -> {
             List<UUID> instanceIds = processKeys.stream()
                     .map(PartialProcessKey::getInstanceId)
                     .collect(Collectors.toList());
@@ -352,6 +433,26 @@ public class ProcessQueueDao extends AbstractDao {
 
             return i == processKeys.size();
         });
+
+        afterStatusUpdate(processKeys, status);
+
+        return updated;
+    }
+
+    /**
+     * Must be called after a transaction that changed the status of processes
+     * is committed. Otherwise a concurrent request could re-populate the caches
+     * or wake up and read the old state.
+     */
+    public void afterStatusUpdate(Collection<ProcessKey> processKeys, ProcessStatus status) {
+        if (!FINAL_STATUSES.contains(status)) {
+            return;
+        }
+
+        // finished processes can't use their session keys anymore
+        processKeys.forEach(sessionKeyCache::invalidate);
+
+        processKeys.forEach(k -> completionNotifier.completed(k.getInstanceId()));
     }
 
     public void disable(ProcessKey processKey, boolean disabled) {
@@ -471,11 +572,12 @@ public class ProcessQueueDao extends AbstractDao {
         try (DSLContext tx = DSL.using(cfg)) {
             SelectQuery<Record> query = buildSelect(tx, filter);
 
+            // INSTANCE_ID makes the order stable for the processes with the same CREATED_AT
             boolean findAdjacentToDateRows = filter.beforeCreatedAt() == null && filter.beforeCreatedAt() != null;
             if (findAdjacentToDateRows) {
-                query.addOrderBy(PROCESS_QUEUE.CREATED_AT.asc());
+                query.addOrderBy(PROCESS_QUEUE.CREATED_AT.asc(), PROCESS_QUEUE.INSTANCE_ID.asc());
             } else {
-                query.addOrderBy(PROCESS_QUEUE.CREATED_AT.desc());
+                query.addOrderBy(PROCESS_QUEUE.CREATED_AT.desc(), PROCESS_QUEUE.INSTANCE_ID.desc());
             }
 
             if (limit > 0) {
@@ -496,14 +598,52 @@ public class ProcessQueueDao extends AbstractDao {
         }
     }
 
+    /**
+     * Returns the number of processes in each status. The values are
+     * taken from {@code PROCESS_STATS} rather than from the queue itself.
+     */
     public Map<ProcessStatus, Integer> getStatistics() {
         try (DSLContext tx = DSL.using(cfg)) {
-            return tx.select(PROCESS_QUEUE.CURRENT_STATUS, count(asterisk())).from(PROCESS_QUEUE)
-                    .groupBy(PROCESS_QUEUE.CURRENT_STATUS)
+            Field<Integer> processCount = sum(PROCESS_STATS.PROCESS_COUNT).cast(Integer.class);
+            return tx.select(PROCESS_STATS.CURRENT_STATUS, processCount).from(PROCESS_STATS)
+                    .groupBy(PROCESS_STATS.CURRENT_STATUS)
+                    .having(processCount.ne(0))
                     .fetchMap(r -> ProcessStatus.valueOf(r.value1()), Record2::value2);
         }
     }
 
+    /**
+     * Returns the number of ENQUEUED and running processes and the number
+     * of processes created during the last {@code createdWithinSec} seconds,
+     * grouped by their requirements.
+     */
+    public List<ProcessQueueStatsEntry> getQueueStats(int createdWithinSec) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            Condition enqueued = PROCESS_QUEUE.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString());
+            Condition running = PROCESS_QUEUE.CURRENT_STATUS.in(ProcessStatus.STARTING.toString(), ProcessStatus.RUNNING.toString());
+            Condition created = PROCESS_QUEUE.CREATED_AT.greaterOrEqual(field("now() - ({0} * interval '1 second')", Timestamp.class, value(createdWithinSec)));
+
+            Field<Long> oldestEnqueuedAge = field("(extract(epoch from now() - min({0}) filter (where {1})) * 1000)::bigint",
+                    Long.class, PROCESS_QUEUE.LAST_UPDATED_AT, enqueued);
+
+            return tx.select(PROCESS_QUEUE.REQUIREMENTS,
+                    count().filterWhere(enqueued),
+                    oldestEnqueuedAge,
+                    count().filterWhere(running),
+                    count().filterWhere(created))
+                    .from(PROCESS_QUEUE)
+                    .where(enqueued.or(running).or(created))
+                    .groupBy(PROCESS_QUEUE.REQUIREMENTS)
+                    .fetch(r -> ProcessQueueStatsEntry.builder()
+                            .requirements(objectMapper.deserialize(r.value1()))
+                            .enqueuedCount(r.value2())
+                            .oldestEnqueuedAge(r.value3() != null ? r.value3() : 0)
+                            .runningCount(r.value4())
+                            .createdCount(r.value5())
+                            .build());
+        }
+    }
+
     // TODO move to EventDao?
     public List<ProcessStatusHistoryEntry> getHistory(ProcessKey processKey) {
         try (DSLContext tx = DSL.using(cfg)) {
@@ -511,7 +651,7 @@ public class ProcessQueueDao extends AbstractDao {
             return tx.select(historyEntryToJsonb(pe))
                     .from(pe)
                     .where(pe.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(pe.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                            .and(PgUtils.partitionKey(pe.INSTANCE_CREATED_AT, processKey.getCreatedAt()))
                             .and(pe.EVENT_TYPE.eq(EventType.PROCESS_STATUS.name())))
                     .fetch(r -> objectMapper.deserialize(r.value1(), STATUS_HISTORY_ENTRY));
 
@@ -525,7 +665,7 @@ public class ProcessQueueDao extends AbstractDao {
             return tx.select(waitEntryToJsonb(pe))
                     .from(pe)
                     .where(pe.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(pe.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                            .and(PgUtils.partitionKey(pe.INSTANCE_CREATED_AT, processKey.getCreatedAt()))
                             .and(pe.EVENT_TYPE.eq(EventType.PROCESS_WAIT.name())))
                     .orderBy(pe.EVENT_DATE.desc())
                     .fetch(r -> objectMapper.deserialize(r.value1(), WAIT_HISTORY_ENTRY));
@@ -606,6 +746,8 @@ public class ProcessQueueDao extends AbstractDao {
                 .where(PROCESS_QUEUE.INSTANCE_ID.eq(key.getInstanceId()))
                 .execute();
 
+        waitTargetsDao.update(tx, key, waits);
+
         Map<String, Object> eventData = objectMapper.convertToMap(waits != null ? waits : new NoneCondition());
         eventDao.insert(tx, key, EventType.PROCESS_WAIT.name(), eventData);
     }
@@ -698,6 +840,9 @@ public class ProcessQueueDao extends AbstractDao {
         payload.putAll(statusPayload);
 
         eventDao.insert(tx, processKey, EventType.PROCESS_STATUS.name(), objectMapper.convertToMap(payload));
+
+        // re-evaluate the wait conditions that depend on this process
+        waitTargetsDao.processesChanged(tx, Collections.singletonList(processKey.getInstanceId()));
     }
 
     private void insertStatusHistory(DSLContext tx, List<ProcessKey> processKeys, ProcessStatus status) {
@@ -705,6 +850,10 @@ public class ProcessQueueDao extends AbstractDao {
         payload.put("status", status.name());
 
         eventDao.insert(tx, processKeys, EventType.PROCESS_STATUS.name(), objectMapper.convertToMap(payload));
+
+        waitTargetsDao.processesChanged(tx, processKeys.stream()
+                .map(PartialProcessKey::getInstanceId)
+                .collect(Collectors.toList()));
     }
 
     private SelectQuery<Record> buildSelect(DSLContext tx, ProcessFilter filter) {
@@ -714,6 +863,17 @@ public class ProcessQueueDao extends AbstractDao {
         query.addSelect(PROCESS_QUEUE_FIELDS);
         query.addFrom(PROCESS_QUEUE);
 
+        Set<ProcessDataExclude> excludes = filter.excludes();
+        if (!excludes.contains(ProcessDataExclude.META)) {
+            query.addSelect(function("jsonb_strip_nulls", Object.class, PROCESS_QUEUE.META).as(PROCESS_QUEUE.META));
+        }
+        if (!excludes.contains(ProcessDataExclude.HANDLERS)) {
+            query.addSelect(PROCESS_QUEUE.HANDLERS);
+        }
+        if (!excludes.contains(ProcessDataExclude.REQUIREMENTS)) {
+            query.addSelect(PROCESS_QUEUE.REQUIREMENTS);
+        }
+
         // users
         query.addSelect(USERS.USERNAME);
         query.addJoin(USERS, JoinType.LEFT_OUTER_JOIN, USERS.USER_ID.eq(PROCESS_QUEUE.INITIATOR_ID));
@@ -758,7 +918,12 @@ public class ProcessQueueDao extends AbstractDao {
         }
 
         if (filter.beforeCreatedAt() != null) {
-            query.addConditions(PROCESS_QUEUE.CREATED_AT.lessThan(filter.beforeCreatedAt()));
+            if (filter.beforeInstanceId() != null) {
+                query.addConditions(row(PROCESS_QUEUE.CREATED_AT, PROCESS_QUEUE.INSTANCE_ID)
+                        .lessThan(filter.beforeCreatedAt(), filter.beforeInstanceId()));
+            } else {
+                query.addConditions(PROCESS_QUEUE.CREATED_AT.lessThan(filter.beforeCreatedAt()));
+            }
         }
 
         if (filter.status() != null) {
@@ -874,9 +1039,9 @@ public class ProcessQueueDao extends AbstractDao {
                 .lastAgentId(r.get(PROCESS_QUEUE.LAST_AGENT_ID))
                 .tags(tags)
                 .childrenIds(toSet(getOrNull(r, "children_ids")))
-                .meta(objectMapper.deserialize(r.get(PROCESS_QUEUE.META)))
-                .handlers(toSet(r.get(PROCESS_QUEUE.HANDLERS)))
-                .requirements(objectMapper.deserialize(r.get(PROCESS_QUEUE.REQUIREMENTS)))
+                .meta(objectMapper.deserialize(getOrNull(r, PROCESS_QUEUE.META)))
+                .handlers(toSet(getOrNull(r, PROCESS_QUEUE.HANDLERS)))
+                .requirements(objectMapper.deserialize(getOrNull(r, PROCESS_QUEUE.REQUIREMENTS)))
                 .disabled(r.get(PROCESS_QUEUE.IS_DISABLED))
                 .logFileName(r.get(PROCESS_QUEUE.INSTANCE_ID) + ".log")
                 .checkpoints(objectMapper.deserialize(getOrNull(r, "checkpoints"), LIST_OF_CHECKPOINTS))
@@ -894,6 +1059,14 @@ public class ProcessQueueDao extends AbstractDao {
         return (E) r.get(field);
     }
 
+    private static <E> E getOrNull(Record r, Field<E> field) {
+        if (r.field(field) == null) {
+            return null;
+        }
+
+        return r.get(field);
+    }
+
     private static <E> Set<E> toSet(E[] arr) {
         if (arr == null) {
             return Collections.emptySet();
@@ -909,25 +1082,6 @@ public class ProcessQueueDao extends AbstractDao {
         return s.toArray(new String[0]);
     }
 
-    /**
-     * Returns an array of all fields of {@link ProcessQueue#PROCESS_QUEUE}, but
-     * replaces the meta field with a version with all null values stripped out.
-     */
-    private static Field<?>[] allFieldsWithFixedMeta() {
-        Field<?>[] fields = PROCESS_QUEUE.fields();
-
-        List<Field<?>> l = new ArrayList<>(fields.length);
-        for (Field<?> f : fields) {
-            if (f == PROCESS_QUEUE.META) {
-                l.add(function("jsonb_strip_nulls", Object.class, f).as(f));
-            } else {
-                l.add(f);
-            }
-        }
-
-        return l.toArray(new Field[0]);
-    }
-
     public static class IdAndStatus {
 
         private final ProcessKey processKey;
@@ -0,0 +1,67 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Aggregated state of the process queue for a specific set of requirements.
+ */
+@Value.Immutable
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonSerialize(as = ImmutableProcessQueueStatsEntry.class)
+@JsonDeserialize(as = ImmutableProcessQueueStatsEntry.class)
+public interface ProcessQueueStatsEntry extends Serializable {
+
+    @Nullable
+    Map<String, Object> requirements();
+
+    /**
+     * Number of ENQUEUED processes.
+     */
+    int enqueuedCount();
+
+    /**
+     * Age of the oldest ENQUEUED process (ms).
+     */
+    long oldestEnqueuedAge();
+
+    /**
+     * Number of STARTING and RUNNING processes.
+     */
+    int runningCount();
+
+    /**
+     * Number of processes created during the requested time window.
+     */
+    int createdCount();
+
+    static ImmutableProcessQueueStatsEntry.Builder builder() {
+        return ImmutableProcessQueueStatsEntry.builder();
+    }
+}
@@ -20,16 +20,19 @@ package com.walmartlabs.concord.server.process.queue;
  * =====
  */
 
+import com.codahale.metrics.Meter;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.db.PgUtils;
 import com.walmartlabs.concord.project.InternalConstants;
 import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.BackgroundTask;
 import com.walmartlabs.concord.server.Utils;
 import com.walmartlabs.concord.server.agent.AgentCommandsDao;
 import com.walmartlabs.concord.server.agent.Commands;
 import com.walmartlabs.concord.server.cfg.ProcessWatchdogConfiguration;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
+import com.walmartlabs.concord.server.metrics.InjectMeter;
 import com.walmartlabs.concord.server.process.*;
 import com.walmartlabs.concord.server.process.logs.LogManager;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -44,10 +47,15 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.io.Serializable;
 import java.sql.Timestamp;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.walmartlabs.concord.db.PgUtils.interval;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
@@ -55,10 +63,12 @@ import static org.jooq.impl.DSL.*;
 
 @Named("process-queue-watchdog")
 @Singleton
-public class ProcessQueueWatchdog implements ScheduledTask {
+public class ProcessQueueWatchdog implements ScheduledTask, BackgroundTask {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessQueueWatchdog.class);
 
+    private static final long HANDLER_SHUTDOWN_TIMEOUT = 10000;
+
     private static final PollEntry[] POLL_ENTRIES = {
             new PollEntry(ProcessStatus.FAILED,
                     Constants.Flows.ON_FAILURE_FLOW,
@@ -73,6 +83,11 @@ public class ProcessQueueWatchdog implements ScheduledTask {
                     ProcessKind.TIMEOUT_HANDLER, 3)
     };
 
+    static final String HANDLERS = "handlers";
+    static final String STALLED = "stalled";
+    static final String START_FAILURES = "start-failures";
+    static final String TIMED_OUT = "timed-out";
+
     private static final ProcessKind[] HANDLED_PROCESS_KINDS = {
             ProcessKind.DEFAULT
     };
@@ -109,6 +124,19 @@ public class ProcessQueueWatchdog implements ScheduledTask {
     private final UserDao userDao;
     private final PayloadManager payloadManager;
     private final ProcessManager processManager;
+    private final ExecutorService handlerExecutor;
+
+    @InjectMeter
+    private final Meter startedHandlers;
+
+    @InjectMeter
+    private final Meter stalledProcesses;
+
+    @InjectMeter
+    private final Meter startFailures;
+
+    @InjectMeter
+    private final Meter timedOutProcesses;
 
     @Inject
     public ProcessQueueWatchdog(ProcessWatchdogConfiguration cfg,
@@ -118,7 +146,11 @@ public class ProcessQueueWatchdog implements ScheduledTask {
                                 WatchdogDao watchdogDao,
                                 UserDao userDao,
                                 PayloadManager payloadManager,
-                                ProcessManager processManager) {
+                                ProcessManager processManager,
+                                Meter startedHandlers,
+                                Meter stalledProcesses,
+                                Meter startFailures,
+                                Meter timedOutProcesses) {
         this.cfg = cfg;
 
         this.queueDao = queueDao;
@@ -128,6 +160,12 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         this.userDao = userDao;
         this.payloadManager = payloadManager;
         this.processManager = processManager;
+        this.handlerExecutor = Executors.newFixedThreadPool(cfg.getHandlerThreads(), new HandlerThreadFactory());
+
+        this.startedHandlers = startedHandlers;
+        this.stalledProcesses = stalledProcesses;
+        this.startFailures = startFailures;
+        this.timedOutProcesses = timedOutProcesses;
     }
 
     @Override
@@ -135,6 +173,25 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         return cfg.getPeriod();
     }
 
+    @Override
+    public void start() {
+        // the tasks are started by the TaskScheduler
+    }
+
+    @Override
+    public void stop() {
+        handlerExecutor.shutdown();
+        try {
+            if (!handlerExecutor.awaitTermination(HANDLER_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                log.warn("stop -> the process handlers weren't finished in {}ms, interrupting...", HANDLER_SHUTDOWN_TIMEOUT);
+                handlerExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            handlerExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void performTask() {
         new ProcessHandlersWorker().run();
@@ -143,6 +200,26 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         new ProcessTimedOutWorker().run();
     }
 
+    /**
+     * Returns the number of processes waiting for each of the workers.
+     * Used by {@link ProcessQueueWatchdogGaugeModule}.
+     */
+    Map<String, Integer> getBacklog() {
+        Field<Timestamp> maxAge = currentTimestamp().minus(interval(cfg.getMaxFailureHandlingAge()));
+
+        int handlers = 0;
+        for (PollEntry e : POLL_ENTRIES) {
+            handlers += watchdogDao.countHandlers(e, maxAge);
+        }
+
+        Map<String, Integer> m = new HashMap<>();
+        m.put(HANDLERS, handlers);
+        m.put(STALLED, watchdogDao.countStalled(POTENTIAL_STALLED_STATUSES, currentTimestamp().minus(interval(cfg.getMaxStalledAge()))));
+        m.put(START_FAILURES, watchdogDao.countStalled(FAILED_TO_START_STATUSES, currentTimestamp().minus(interval(cfg.getMaxStartFailureAge()))));
+        m.put(TIMED_OUT, watchdogDao.countExpired());
+        return m;
+    }
+
     private final class ProcessHandlersWorker implements Runnable {
 
         @Override
@@ -150,10 +227,47 @@ public class ProcessQueueWatchdog implements ScheduledTask {
             Field<Timestamp> maxAge = currentTimestamp().minus(interval(cfg.getMaxFailureHandlingAge()));
 
             for (PollEntry e : POLL_ENTRIES) {
-                List<ProcessEntry> parents = watchdogDao.poll(e, maxAge, 1);
+                // the parents are polled without locking: the task itself is exclusive
+                // and the started handlers are excluded from the next poll by "noRunningHandlers"
+                List<ProcessEntry> parents;
+                do {
+                    parents = watchdogDao.poll(e, maxAge, cfg.getBatchSize());
+                    processAll(e, parents);
+                } while (parents.size() >= cfg.getBatchSize());
+            }
+        }
+
+        private void processAll(PollEntry entry, List<ProcessEntry> parents) {
+            if (parents.isEmpty()) {
+                return;
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(parents.size());
+            for (ProcessEntry parent : parents) {
+                tasks.add(() -> {
+                    process(entry, parent);
+                    return null;
+                });
+            }
+
+            List<Future<Void>> results;
+            try {
+                results = handlerExecutor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
 
-                for (ProcessEntry parent : parents) {
-                    process(e, parent);
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    // continue with the rest of the batch, the failed handler is already removed from the parent
+                    log.warn("processAll -> error while starting {} handler (parent '{}'): {}",
+                            entry.flow, parents.get(i).processKey, e.getCause().getMessage());
                 }
             }
         }
@@ -169,6 +283,7 @@ public class ProcessQueueWatchdog implements ScheduledTask {
                         parent.initiatorId, userDao.get(parent.initiatorId).getName(), parent.projectId, req, null);
 
                 processManager.startFork(payload, false);
+                startedHandlers.mark();
 
                 log.info("process -> created a new child process '{}' (parent '{}', entryPoint: '{}')",
                         childKey, parent.processKey, entry.flow);
@@ -186,16 +301,26 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         public void run() {
             String maxAge = cfg.getMaxStalledAge();
 
-            watchdogDao.transaction(tx -> {
-                Field<Timestamp> cutOff = currentTimestamp().minus(interval(maxAge));
-
-                List<ProcessKey> pks = watchdogDao.pollStalled(tx, POTENTIAL_STALLED_STATUSES, cutOff, 1);
-                for (ProcessKey pk : pks) {
-                    queueDao.updateAgentId(tx, pk, null, ProcessStatus.FAILED);
-                    logManager.warn(pk, "Process stalled, no heartbeat for more than '{}'", maxAge);
-                    log.info("processStalled -> marked as failed: {}", pk);
-                }
-            });
+            int batchSize = cfg.getBatchSize();
+
+            int n;
+            do {
+                List<ProcessKey> failed = watchdogDao.transactionResult(tx -> {
+                    Field<Timestamp> cutOff = currentTimestamp().minus(interval(maxAge));
+
+                    List<ProcessKey> pks = watchdogDao.pollStalled(tx, POTENTIAL_STALLED_STATUSES, cutOff, batchSize);
+                    for (ProcessKey pk : pks) {
+                        queueDao.updateAgentId(tx, pk, null, ProcessStatus.FAILED);
+                        logManager.warn(pk, "Process stalled, no heartbeat for more than '{}'", maxAge);
+                        log.info("processStalled -> marked as failed: {}", pk);
+                    }
+                    return pks;
+                });
+                queueDao.afterStatusUpdate(failed, ProcessStatus.FAILED);
+
+                n = failed.size();
+                stalledProcesses.mark(n);
+            } while (n >= batchSize);
         }
     }
 
@@ -204,35 +329,58 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         public void run() {
             String maxAge = cfg.getMaxStartFailureAge();
 
-            watchdogDao.transaction(tx -> {
-                Field<Timestamp> cutOff = currentTimestamp().minus(interval(maxAge));
-
-                List<ProcessKey> pks = watchdogDao.pollStalled(tx, FAILED_TO_START_STATUSES, cutOff, 1);
-                for (ProcessKey pk : pks) {
-                    queueDao.updateAgentId(tx, pk, null, ProcessStatus.FAILED);
-                    logManager.warn(pk, "Process failed to start for more than '{}'", maxAge);
-                    log.info("processStartFailures -> marked as failed: {}", pk);
-                }
-            });
+            int batchSize = cfg.getBatchSize();
+
+            int n;
+            do {
+                List<ProcessKey> failed = watchdogDao.transactionResult(tx -> {
+                    Field<Timestamp> cutOff = currentTimestamp().minus(interval(maxAge));
+
+                    List<ProcessKey> pks = watchdogDao.pollStalled(tx, FAILED_TO_START_STATUSES, cutOff, batchSize);
+                    for (ProcessKey pk : pks) {
+                        queueDao.updateAgentId(tx, pk, null, ProcessStatus.FAILED);
+                        logManager.warn(pk, "Process failed to start for more than '{}'", maxAge);
+                        log.info("processStartFailures -> marked as failed: {}", pk);
+                    }
+                    return pks;
+                });
+                queueDao.afterStatusUpdate(failed, ProcessStatus.FAILED);
+
+                n = failed.size();
+                startFailures.mark(n);
+            } while (n >= batchSize);
         }
     }
 
     private final class ProcessTimedOutWorker implements Runnable {
         @Override
         public void run() {
-            watchdogDao.transaction(tx -> {
-                List<TimedOutEntry> items = watchdogDao.pollExpired(tx, 1);
-                for (TimedOutEntry i : items) {
-                    queueDao.updateAgentId(tx, i.processKey, null, ProcessStatus.TIMED_OUT);
-
-                    // TODO should AgentManager be used instead?
-                    // TODO toString()? It should be typed
-                    agentCommandsDao.insert(UUID.randomUUID(), i.agentId, Commands.cancel(i.processKey.toString()));
-
-                    logManager.warn(i.processKey, "Process timed out ({}s limit)", i.timeout);
-                    log.info("processTimedOut -> marked as timed out: {}", i.processKey);
-                }
-            });
+            int batchSize = cfg.getBatchSize();
+
+            int n;
+            do {
+                List<ProcessKey> timedOut = watchdogDao.transactionResult(tx -> {
+                    List<TimedOutEntry> items = watchdogDao.pollExpired(tx, batchSize);
+                    List<ProcessKey> pks = new ArrayList<>(items.size());
+                    for (TimedOutEntry i : items) {
+                        queueDao.updateAgentId(tx, i.processKey, null, ProcessStatus.TIMED_OUT);
+
+                        // TODO should AgentManager be used instead?
+                        // TODO toString()? It should be typed
+                        agentCommandsDao.insert(UUID.randomUUID(), i.agentId, Commands.cancel(i.processKey.toString()));
+
+                        logManager.warn(i.processKey, "Process timed out ({}s limit)", i.timeout);
+                        log.info("processTimedOut -> marked as timed out: {}", i.processKey);
+
+                        pks.add(i.processKey);
+                    }
+                    return pks;
+                });
+                queueDao.afterStatusUpdate(timedOut, ProcessStatus.TIMED_OUT);
+
+                n = timedOut.size();
+                timedOutProcesses.mark(n);
+            } while (n >= batchSize);
         }
     }
 
@@ -259,8 +407,8 @@ public class ProcessQueueWatchdog implements ScheduledTask {
             super(cfg);
         }
 
-        private void transaction(Tx t) {
-            tx(t);
+        private <T> T transactionResult(TxResult<T> t) {
+            return txResult(t);
         }
 
         public List<ProcessEntry> poll(PollEntry entry, Field<Timestamp> maxAge, int maxEntries) {
@@ -268,23 +416,22 @@ public class ProcessQueueWatchdog implements ScheduledTask {
 
             return txResult(tx -> tx.select(q.INSTANCE_ID, q.CREATED_AT, q.PROJECT_ID, q.INITIATOR_ID)
                     .from(q)
-                    .where(q.PROCESS_KIND.in(Utils.toString(HANDLED_PROCESS_KINDS))
-                            .and(q.CURRENT_STATUS.eq(entry.status.toString()))
-                            .and(q.CREATED_AT.greaterOrEqual(maxAge))
-                            .and(PgUtils.contains(q.HANDLERS, new String[]{entry.flow}))
-                            .and(noSuccessfulHandlers(q.INSTANCE_ID, entry.handlerKind))
-                            .and(count(tx, q.INSTANCE_ID, entry.handlerKind).lessThan(entry.maxTries))
-                            .and(noRunningHandlers(q.INSTANCE_ID)))
+                    .where(handlersCondition(q, entry, maxAge))
+                    .orderBy(q.CREATED_AT)
                     .limit(maxEntries)
                     .fetch(WatchdogDao::toEntry));
         }
 
+        public int countHandlers(PollEntry entry, Field<Timestamp> maxAge) {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
+            return txResult(tx -> tx.fetchCount(q, handlersCondition(q, entry, maxAge)));
+        }
+
         public List<ProcessKey> pollStalled(DSLContext tx, ProcessStatus[] statuses, Field<Timestamp> cutOff, int maxEntries) {
             ProcessQueue q = PROCESS_QUEUE.as("q");
             return tx.select(q.INSTANCE_ID, q.CREATED_AT)
                     .from(q)
-                    .where(q.CURRENT_STATUS.in(Utils.toString(statuses))
-                            .and(q.LAST_UPDATED_AT.lessThan(cutOff)))
+                    .where(stalledCondition(q, statuses, cutOff))
                     .orderBy(q.CREATED_AT)
                     .limit(maxEntries)
                     .forUpdate()
@@ -292,16 +439,17 @@ public class ProcessQueueWatchdog implements ScheduledTask {
                     .fetch(r -> new ProcessKey(r.value1(), r.value2()));
         }
 
-        public List<TimedOutEntry> pollExpired(DSLContext tx, int maxEntries) {
+        public int countStalled(ProcessStatus[] statuses, Field<Timestamp> cutOff) {
             ProcessQueue q = PROCESS_QUEUE.as("q");
+            return txResult(tx -> tx.fetchCount(q, stalledCondition(q, statuses, cutOff)));
+        }
 
-            @SuppressWarnings("unchecked")
-            Field<? extends Number> i = (Field<? extends Number>) interval("1 second");
+        public List<TimedOutEntry> pollExpired(DSLContext tx, int maxEntries) {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
 
             return tx.select(q.INSTANCE_ID, q.CREATED_AT, q.LAST_AGENT_ID, q.TIMEOUT)
                     .from(q)
-                    .where(q.CURRENT_STATUS.eq(ProcessStatus.RUNNING.toString())
-                            .and(q.LAST_RUN_AT.plus(q.TIMEOUT.mul(i)).lessOrEqual(currentTimestamp())))
+                    .where(expiredCondition(q))
                     .orderBy(q.CREATED_AT)
                     .limit(maxEntries)
                     .forUpdate()
@@ -309,22 +457,50 @@ public class ProcessQueueWatchdog implements ScheduledTask {
                     .fetch(WatchdogDao::toExpiredEntry);
         }
 
-        private Field<Number> count(DSLContext tx, Field<UUID> parentInstanceId, ProcessKind kind) {
-            return tx.selectCount()
+        public int countExpired() {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
+            return txResult(tx -> tx.fetchCount(q, expiredCondition(q)));
+        }
+
+        private static Condition handlersCondition(ProcessQueue q, PollEntry entry, Field<Timestamp> maxAge) {
+            return q.PROCESS_KIND.in(Utils.toString(HANDLED_PROCESS_KINDS))
+                    .and(q.CURRENT_STATUS.eq(entry.status.toString()))
+                    .and(q.CREATED_AT.greaterOrEqual(maxAge))
+                    .and(PgUtils.contains(q.HANDLERS, new String[]{entry.flow}))
+                    .and(noSuccessfulHandlers(q.INSTANCE_ID, entry.handlerKind))
+                    .and(count(q.INSTANCE_ID, entry.handlerKind).lessThan(entry.maxTries))
+                    .and(noRunningHandlers(q.INSTANCE_ID));
+        }
+
+        private static Condition stalledCondition(ProcessQueue q, ProcessStatus[] statuses, Field<Timestamp> cutOff) {
+            return q.CURRENT_STATUS.in(Utils.toString(statuses))
+                    .and(q.LAST_UPDATED_AT.lessThan(cutOff));
+        }
+
+        private static Condition expiredCondition(ProcessQueue q) {
+            @SuppressWarnings("unchecked")
+            Field<? extends Number> i = (Field<? extends Number>) interval("1 second");
+
+            return q.CURRENT_STATUS.eq(ProcessStatus.RUNNING.toString())
+                    .and(q.LAST_RUN_AT.plus(q.TIMEOUT.mul(i)).lessOrEqual(currentTimestamp()));
+        }
+
+        private static Field<Number> count(Field<UUID> parentInstanceId, ProcessKind kind) {
+            return selectCount()
                     .from(PROCESS_QUEUE)
                     .where(PROCESS_QUEUE.PARENT_INSTANCE_ID.eq(parentInstanceId)
                             .and(PROCESS_QUEUE.PROCESS_KIND.eq(kind.toString())))
                     .asField();
         }
 
-        private Condition noSuccessfulHandlers(Field<UUID> parentInstanceId, ProcessKind kind) {
+        private static Condition noSuccessfulHandlers(Field<UUID> parentInstanceId, ProcessKind kind) {
             return notExists(selectOne().from(PROCESS_QUEUE)
                     .where(PROCESS_QUEUE.PARENT_INSTANCE_ID.eq(parentInstanceId)
                             .and(PROCESS_QUEUE.PROCESS_KIND.eq(kind.toString()))
                             .and(PROCESS_QUEUE.CURRENT_STATUS.eq(ProcessStatus.FINISHED.toString()))));
         }
 
-        private Condition noRunningHandlers(Field<UUID> parentInstanceId) {
+        private static Condition noRunningHandlers(Field<UUID> parentInstanceId) {
             return notExists(selectOne().from(PROCESS_QUEUE)
                     .where(PROCESS_QUEUE.PARENT_INSTANCE_ID.eq(parentInstanceId)
                             .and(PROCESS_QUEUE.CURRENT_STATUS.in(Utils.toString(ACTIVE_PROCESS_STATUSES)))
@@ -357,6 +533,18 @@ public class ProcessQueueWatchdog implements ScheduledTask {
         }
     }
 
+    private static final class HandlerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "process-queue-watchdog-handler-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     private static class TimedOutEntry {
 
         private final ProcessKey processKey;
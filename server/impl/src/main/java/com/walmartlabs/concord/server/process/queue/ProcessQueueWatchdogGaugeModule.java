@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.DerivativeGauge;
+import com.codahale.metrics.Gauge;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
+import com.google.inject.multibindings.Multibinder;
+import com.walmartlabs.concord.server.metrics.GaugeProvider;
+
+import javax.inject.Named;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Number of processes waiting for the {@link ProcessQueueWatchdog} workers.
+ */
+@Named
+public class ProcessQueueWatchdogGaugeModule extends AbstractModule {
+
+    private static final String[] WORKERS = {
+            ProcessQueueWatchdog.HANDLERS,
+            ProcessQueueWatchdog.STALLED,
+            ProcessQueueWatchdog.START_FAILURES,
+            ProcessQueueWatchdog.TIMED_OUT
+    };
+
+    @Override
+    protected void configure() {
+        Provider<ProcessQueueWatchdog> watchdogProvider = getProvider(ProcessQueueWatchdog.class);
+
+        Gauge<Map<String, Integer>> base = new CachedGauge<Map<String, Integer>>(15, TimeUnit.SECONDS) {
+            @Override
+            protected Map<String, Integer> loadValue() {
+                return watchdogProvider.get().getBacklog();
+            }
+        };
+
+        Multibinder<GaugeProvider> gauges = Multibinder.newSetBinder(binder(), GaugeProvider.class);
+        for (String w : WORKERS) {
+            gauges.addBinding().toInstance(create(base, w));
+        }
+    }
+
+    private static GaugeProvider<Integer> create(Gauge<Map<String, Integer>> base, String worker) {
+        return new GaugeProvider<Integer>() {
+            @Override
+            public String name() {
+                return "process-queue-watchdog-backlog-" + worker;
+            }
+
+            @Override
+            public Gauge<Integer> gauge() {
+                return new DerivativeGauge<Map<String, Integer>, Integer>(base) {
+                    @Override
+                    protected Integer transform(Map<String, Integer> value) {
+                        return value.getOrDefault(worker, 0);
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.jooq.tables.ProcessWaitTargets;
+import com.walmartlabs.concord.server.jooq.tables.ProcessWaitWakeups;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep1;
+import org.jooq.InsertValuesStep2;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.*;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessWaitTargets.PROCESS_WAIT_TARGETS;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessWaitWakeups.PROCESS_WAIT_WAKEUPS;
+import static org.jooq.impl.DSL.selectDistinct;
+
+/**
+ * Maintains the index of "wait targets" (processes, locks) and the processes waiting for them.
+ * When a target changes its waiters are marked for re-evaluation by {@link ProcessWaitWatchdog}.
+ */
+@Named
+public class ProcessWaitTargetsDao extends AbstractDao {
+
+    @Inject
+    public ProcessWaitTargetsDao(@MainDB Configuration cfg) {
+        super(cfg);
+    }
+
+    /**
+     * Replaces the targets of the specified process. The process itself is marked
+     * for re-evaluation if it has a new wait condition.
+     */
+    public void update(DSLContext tx, ProcessKey processKey, AbstractWaitCondition waits) {
+        UUID instanceId = processKey.getInstanceId();
+
+        ProcessWaitTargets t = PROCESS_WAIT_TARGETS.as("t");
+        tx.deleteFrom(t)
+                .where(t.INSTANCE_ID.eq(instanceId))
+                .execute();
+
+        if (waits == null) {
+            return;
+        }
+
+        InsertValuesStep2<?, String, UUID> q = tx.insertInto(PROCESS_WAIT_TARGETS, PROCESS_WAIT_TARGETS.TARGET, PROCESS_WAIT_TARGETS.INSTANCE_ID);
+        for (String target : targets(instanceId, waits)) {
+            q.values(target, instanceId);
+        }
+        q.onConflictDoNothing().execute();
+
+        tx.insertInto(PROCESS_WAIT_WAKEUPS, PROCESS_WAIT_WAKEUPS.INSTANCE_ID)
+                .values(instanceId)
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    /**
+     * Marks the processes waiting for the specified processes for re-evaluation.
+     */
+    public void processesChanged(DSLContext tx, Collection<UUID> instanceIds) {
+        List<String> targets = new ArrayList<>(instanceIds.size());
+        for (UUID id : instanceIds) {
+            targets.add(processTarget(id));
+        }
+        wakeUp(tx, targets);
+    }
+
+    /**
+     * Marks the process that was handed a lock for re-evaluation.
+     * Other processes waiting for the same lock are not affected.
+     */
+    public void lockAcquired(DSLContext tx, UUID instanceId) {
+        tx.insertInto(PROCESS_WAIT_WAKEUPS, PROCESS_WAIT_WAKEUPS.INSTANCE_ID)
+                .values(instanceId)
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    /**
+     * Marks the processes for re-evaluation again, e.g. after a failed attempt.
+     */
+    public void retryWakeups(Collection<UUID> instanceIds) {
+        if (instanceIds.isEmpty()) {
+            return;
+        }
+
+        tx(tx -> {
+            InsertValuesStep1<?, UUID> q = tx.insertInto(PROCESS_WAIT_WAKEUPS, PROCESS_WAIT_WAKEUPS.INSTANCE_ID);
+            for (UUID id : instanceIds) {
+                q.values(id);
+            }
+            q.onConflictDoNothing().execute();
+        });
+    }
+
+    /**
+     * Removes and returns up to {@code limit} processes marked for re-evaluation.
+     * The caller is responsible for calling {@link #retryWakeups(Collection)} for
+     * the processes that weren't evaluated successfully.
+     */
+    public List<UUID> pollWakeups(int limit) {
+        return txResult(tx -> {
+            ProcessWaitWakeups w = PROCESS_WAIT_WAKEUPS.as("w");
+            return tx.deleteFrom(PROCESS_WAIT_WAKEUPS)
+                    .where(PROCESS_WAIT_WAKEUPS.INSTANCE_ID.in(tx.select(w.INSTANCE_ID)
+                            .from(w)
+                            .orderBy(w.WAKEUP_AT)
+                            .limit(limit)
+                            .forUpdate()
+                            .skipLocked()))
+                    .returning(PROCESS_WAIT_WAKEUPS.INSTANCE_ID)
+                    .fetch()
+                    .getValues(PROCESS_WAIT_WAKEUPS.INSTANCE_ID);
+        });
+    }
+
+    private static void wakeUp(DSLContext tx, Collection<String> targets) {
+        ProcessWaitTargets t = PROCESS_WAIT_TARGETS.as("t");
+        tx.insertInto(PROCESS_WAIT_WAKEUPS, PROCESS_WAIT_WAKEUPS.INSTANCE_ID)
+                .select(selectDistinct(t.INSTANCE_ID)
+                        .from(t)
+                        .where(t.TARGET.in(targets)))
+                .onConflictDoNothing()
+                .execute();
+    }
+
+    /**
+     * The process always depends on itself: the wait handlers are applied only
+     * to the processes in specific statuses.
+     */
+    static Set<String> targets(UUID instanceId, AbstractWaitCondition waits) {
+        Set<String> result = new HashSet<>();
+        result.add(processTarget(instanceId));
+
+        if (waits instanceof ProcessCompletionCondition) {
+            for (UUID id : ((ProcessCompletionCondition) waits).processes()) {
+                result.add(processTarget(id));
+            }
+        } else if (waits instanceof ProcessLockCondition) {
+            ProcessLockCondition c = (ProcessLockCondition) waits;
+            result.add(processTarget(c.instanceId()));
+            result.add(lockTarget(c.orgId(), c.projectId(), c.scope(), c.name()));
+        }
+
+        return result;
+    }
+
+    private static String processTarget(UUID instanceId) {
+        return "PROCESS:" + instanceId;
+    }
+
+    public static String lockTarget(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        switch (scope) {
+            case ORG:
+                return "LOCK:" + scope + ":" + orgId + ":" + lockName;
+            case PROJECT:
+                return "LOCK:" + scope + ":" + projectId + ":" + lockName;
+            default:
+                throw new IllegalArgumentException("unknown lock scope: " + scope);
+        }
+    }
+}
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.queue;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.cfg.ProcessWatchdogConfiguration;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -45,6 +46,9 @@ import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QU
 /**
  * Takes care of processes with wait conditions.
  * E.g. waiting for other processes to finish, locking, etc.
+ * <p>
+ * The conditions are re-evaluated when their targets change (see {@link ProcessWaitTargetsDao}).
+ * All conditions are periodically re-evaluated to catch up with any missed changes.
  */
 @Named("process-wait-watchdog")
 @Singleton
@@ -58,28 +62,79 @@ public class ProcessWaitWatchdog implements ScheduledTask {
             ProcessStatus.CANCELLED,
             ProcessStatus.TIMED_OUT));
 
+    private static final int WAKEUP_BATCH_SIZE = 100;
+
+    private final ProcessWatchdogConfiguration cfg;
     private final WatchdogDao dao;
+    private final ProcessWaitTargetsDao waitTargetsDao;
     private final ProcessQueueDao processQueueDao;
     private final Map<WaitType, ProcessWaitHandler<AbstractWaitCondition>> processWaitHandlers;
 
     @Inject
     @SuppressWarnings("unchecked")
-    public ProcessWaitWatchdog(WatchdogDao dao, ProcessQueueDao processQueueDao, Set<ProcessWaitHandler> handlers) {
+    public ProcessWaitWatchdog(ProcessWatchdogConfiguration cfg,
+                               WatchdogDao dao,
+                               ProcessWaitTargetsDao waitTargetsDao,
+                               ProcessQueueDao processQueueDao,
+                               Set<ProcessWaitHandler> handlers) {
+
+        this.cfg = cfg;
         this.dao = dao;
+        this.waitTargetsDao = waitTargetsDao;
         this.processQueueDao = processQueueDao;
         this.processWaitHandlers = new HashMap<>();
 
         handlers.forEach(h -> this.processWaitHandlers.put(h.getType(), h));
     }
 
+    private long lastSweepAt;
+
     @Override
     public long getIntervalInSec() {
-        // TODO cfg?
-        return 5;
+        return cfg.getWaitCheckPeriod();
     }
 
     @Override
     public void performTask() {
+        processWakeups();
+
+        long now = System.currentTimeMillis();
+        if (now - lastSweepAt >= cfg.getWaitSweepPeriod() * 1000) {
+            sweep();
+            lastSweepAt = now;
+        }
+    }
+
+    private void processWakeups() {
+        // the failed processes are re-evaluated on the next run
+        Set<UUID> failed = new HashSet<>();
+        try {
+            while (true) {
+                List<UUID> ids = waitTargetsDao.pollWakeups(WAKEUP_BATCH_SIZE);
+                if (ids.isEmpty()) {
+                    return;
+                }
+
+                Set<UUID> pending = new HashSet<>(ids);
+                try {
+                    for (WaitingProcess p : dao.get(ids)) {
+                        if (!processHandler(p.waits().type(), p)) {
+                            failed.add(p.instanceId());
+                        }
+                        pending.remove(p.instanceId());
+                    }
+                } catch (RuntimeException e) {
+                    // the remaining processes weren't evaluated
+                    failed.addAll(pending);
+                    throw e;
+                }
+            }
+        } finally {
+            waitTargetsDao.retryWakeups(failed);
+        }
+    }
+
+    private void sweep() {
         Timestamp lastUpdatedAt = null;
         while (true) {
             WaitingProcess p = dao.nextWaitItem(lastUpdatedAt);
@@ -93,11 +148,14 @@ public class ProcessWaitWatchdog implements ScheduledTask {
         }
     }
 
-    private void processHandler(WaitType type, WaitingProcess p) {
+    /**
+     * @return {@code false} if the handler failed and the process must be re-evaluated.
+     */
+    private boolean processHandler(WaitType type, WaitingProcess p) {
         ProcessWaitHandler<AbstractWaitCondition> handler = processWaitHandlers.get(type);
         if (handler == null) {
             log.warn("performTask ['{}'] -> handler '{}' not found", p.instanceId(), type);
-            return;
+            return true;
         }
 
         if (!handler.getProcessStatuses().contains(p.status())) {
@@ -105,7 +163,7 @@ public class ProcessWaitWatchdog implements ScheduledTask {
             if (FINAL_STATUSES.contains(p.status())) {
                 processQueueDao.updateWait(new ProcessKey(p.instanceId(), p.instanceCreatedAt()), null);
             }
-            return;
+            return true;
         }
 
         try {
@@ -114,8 +172,10 @@ public class ProcessWaitWatchdog implements ScheduledTask {
             if (!originalWaits.equals(processedWaits)) {
                 processQueueDao.updateWait(new ProcessKey(p.instanceId(), p.instanceCreatedAt()), processedWaits);
             }
+            return true;
         } catch (Exception e) {
             log.info("processHandler ['{}', '{}'] -> error", type, p, e);
+            return false;
         }
     }
 
@@ -149,6 +209,22 @@ public class ProcessWaitWatchdog implements ScheduledTask {
             this.objectMapper = objectMapper;
         }
 
+        public List<WaitingProcess> get(List<UUID> instanceIds) {
+            return txResult(tx -> {
+                ProcessQueue q = PROCESS_QUEUE.as("q");
+                return tx.select(
+                        q.INSTANCE_ID,
+                        q.CURRENT_STATUS,
+                        q.CREATED_AT,
+                        q.LAST_UPDATED_AT,
+                        q.WAIT_CONDITIONS)
+                        .from(q)
+                        .where(q.INSTANCE_ID.in(instanceIds)
+                                .and(q.WAIT_CONDITIONS.isNotNull()))
+                        .fetch(this::toWaitingProcess);
+            });
+        }
+
         public WaitingProcess nextWaitItem(Timestamp lastUpdatedAt) {
             return txResult(tx -> {
                 ProcessQueue q = PROCESS_QUEUE.as("q");
@@ -167,14 +243,18 @@ public class ProcessWaitWatchdog implements ScheduledTask {
 
                 return s.orderBy(q.LAST_UPDATED_AT)
                         .limit(1)
-                        .fetchOne(r -> WaitingProcess.builder()
-                                .instanceId(r.value1())
-                                .status(ProcessStatus.valueOf(r.value2()))
-                                .instanceCreatedAt(r.value3())
-                                .lastUpdatedAt(r.value4())
-                                .waits(objectMapper.deserialize(r.value5(), AbstractWaitCondition.class))
-                                .build());
+                        .fetchOne(this::toWaitingProcess);
             });
         }
+
+        private WaitingProcess toWaitingProcess(Record5<UUID, String, Timestamp, Timestamp, Object> r) {
+            return WaitingProcess.builder()
+                    .instanceId(r.value1())
+                    .status(ProcessStatus.valueOf(r.value2()))
+                    .instanceCreatedAt(r.value3())
+                    .lastUpdatedAt(r.value4())
+                    .waits(objectMapper.deserialize(r.value5(), AbstractWaitCondition.class))
+                    .build();
+        }
     }
 }
@@ -22,10 +22,12 @@ package com.walmartlabs.concord.server.process.state;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.process.ImmutableProcessCheckpointEntry;
 import com.walmartlabs.concord.server.process.ProcessEntry.ProcessCheckpointEntry;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import org.jooq.Configuration;
+import org.jooq.DSLContext;
 import org.jooq.Record;
 
 import javax.inject.Inject;
@@ -37,18 +39,22 @@ import java.nio.file.StandardCopyOption;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
-import java.util.Date;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
+import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpointBlobs.PROCESS_CHECKPOINT_BLOBS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.value;
 
 @Named
 public class ProcessCheckpointDao extends AbstractDao {
 
+    private final ConcordObjectMapper objectMapper;
+
     @Inject
-    public ProcessCheckpointDao(@MainDB Configuration cfg) {
+    public ProcessCheckpointDao(@MainDB Configuration cfg, ConcordObjectMapper objectMapper) {
         super(cfg);
+        this.objectMapper = objectMapper;
     }
 
     public List<ProcessCheckpointEntry> list(ProcessKey processKey) {
@@ -99,6 +105,94 @@ public class ProcessCheckpointDao extends AbstractDao {
         });
     }
 
+    /**
+     * Stores a checkpoint as a manifest. The blobs that are already stored are skipped.
+     * All files of the manifest must be either in {@code blobs} or stored previously.
+     *
+     * @param blobs new files of the checkpoint, by SHA-256 hash of their content
+     */
+    public void importCheckpoint(ProcessKey processKey, UUID checkpointId, String checkpointName,
+                                 ProcessCheckpointManifest manifest, Map<String, Path> blobs) {
+        tx(tx -> {
+            insertBlobs(tx, processKey, blobs);
+
+            Set<String> missing = findMissingBlobs(tx, processKey, hashes(manifest));
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("Missing checkpoint files: " + missing);
+            }
+
+            tx.insertInto(PROCESS_CHECKPOINTS)
+                    .columns(PROCESS_CHECKPOINTS.INSTANCE_ID,
+                            PROCESS_CHECKPOINTS.INSTANCE_CREATED_AT,
+                            PROCESS_CHECKPOINTS.CHECKPOINT_ID,
+                            PROCESS_CHECKPOINTS.CHECKPOINT_NAME,
+                            PROCESS_CHECKPOINTS.CHECKPOINT_DATE,
+                            PROCESS_CHECKPOINTS.CHECKPOINT_MANIFEST)
+                    .values(value(processKey.getInstanceId()),
+                            value(processKey.getCreatedAt()),
+                            value(checkpointId),
+                            value(checkpointName),
+                            value(new Timestamp(new Date().getTime())),
+                            field("?::jsonb", objectMapper.serialize(manifest)))
+                    .execute();
+        });
+    }
+
+    /**
+     * Returns the hashes of the checkpoint files that are not stored yet.
+     */
+    public Set<String> findMissingBlobs(ProcessKey processKey, Collection<String> hashes) {
+        return txResult(tx -> findMissingBlobs(tx, processKey, hashes));
+    }
+
+    /**
+     * Returns the manifest of a checkpoint or {@code null} if the checkpoint
+     * doesn't exist or was saved as a single archive.
+     */
+    public ProcessCheckpointManifest getManifest(ProcessKey processKey, UUID checkpointId) {
+        return txResult(tx -> tx.select(PROCESS_CHECKPOINTS.CHECKPOINT_MANIFEST)
+                .from(PROCESS_CHECKPOINTS)
+                .where(PROCESS_CHECKPOINTS.CHECKPOINT_ID.eq(checkpointId)
+                        .and(PROCESS_CHECKPOINTS.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_CHECKPOINTS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))))
+                .fetchOne(r -> objectMapper.deserialize(r.value1(), ProcessCheckpointManifest.class)));
+    }
+
+    /**
+     * Copies the blob into {@code dest}.
+     *
+     * @return {@code false} if the blob doesn't exist
+     */
+    public boolean exportBlob(ProcessKey processKey, String hash, Path dest) {
+        return txResult(tx -> {
+            String sql = tx.select(PROCESS_CHECKPOINT_BLOBS.BLOB_DATA)
+                    .from(PROCESS_CHECKPOINT_BLOBS)
+                    .where(PROCESS_CHECKPOINT_BLOBS.INSTANCE_ID.eq((UUID) null)
+                            .and(PROCESS_CHECKPOINT_BLOBS.INSTANCE_CREATED_AT.eq((Timestamp) null))
+                            .and(PROCESS_CHECKPOINT_BLOBS.BLOB_HASH.eq((String) null)))
+                    .getSQL();
+
+            return tx.connectionResult(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setObject(1, processKey.getInstanceId());
+                    ps.setTimestamp(2, processKey.getCreatedAt());
+                    ps.setString(3, hash);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            return false;
+                        }
+
+                        try (InputStream in = rs.getBinaryStream(1)) {
+                            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                    return true;
+                }
+            });
+        });
+    }
+
     public boolean export(ProcessKey processKey, UUID checkpointId, Path dest) {
         return txResult(tx -> {
             String sql = tx.select(PROCESS_CHECKPOINTS.CHECKPOINT_DATA)
@@ -129,6 +223,61 @@ public class ProcessCheckpointDao extends AbstractDao {
         });
     }
 
+    private static void insertBlobs(DSLContext tx, ProcessKey processKey, Map<String, Path> blobs) {
+        if (blobs.isEmpty()) {
+            return;
+        }
+
+        String sql = tx.insertInto(PROCESS_CHECKPOINT_BLOBS)
+                .columns(PROCESS_CHECKPOINT_BLOBS.INSTANCE_ID,
+                        PROCESS_CHECKPOINT_BLOBS.INSTANCE_CREATED_AT,
+                        PROCESS_CHECKPOINT_BLOBS.BLOB_HASH,
+                        PROCESS_CHECKPOINT_BLOBS.BLOB_DATA)
+                .values((UUID) null, null, null, null)
+                .onConflictDoNothing()
+                .getSQL();
+
+        tx.connection(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Map.Entry<String, Path> e : blobs.entrySet()) {
+                    ps.setObject(1, processKey.getInstanceId());
+                    ps.setTimestamp(2, processKey.getCreatedAt());
+                    ps.setString(3, e.getKey());
+                    try (InputStream in = Files.newInputStream(e.getValue())) {
+                        ps.setBinaryStream(4, in);
+                        ps.executeUpdate();
+                    }
+                }
+            }
+        });
+    }
+
+    private static Set<String> findMissingBlobs(DSLContext tx, ProcessKey processKey, Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> result = new HashSet<>(hashes);
+
+        List<String> existing = tx.select(PROCESS_CHECKPOINT_BLOBS.BLOB_HASH)
+                .from(PROCESS_CHECKPOINT_BLOBS)
+                .where(PROCESS_CHECKPOINT_BLOBS.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_CHECKPOINT_BLOBS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_CHECKPOINT_BLOBS.BLOB_HASH.in(result)))
+                .fetch(PROCESS_CHECKPOINT_BLOBS.BLOB_HASH);
+
+        result.removeAll(existing);
+        return result;
+    }
+
+    private static Set<String> hashes(ProcessCheckpointManifest manifest) {
+        Set<String> result = new HashSet<>();
+        for (ProcessCheckpointManifest.FileEntry f : manifest.files()) {
+            result.add(f.hash());
+        }
+        return result;
+    }
+
     private static ProcessCheckpointEntry toEntry(Record r) {
         return ImmutableProcessCheckpointEntry.builder()
                 .id(r.get(PROCESS_CHECKPOINTS.CHECKPOINT_ID))
@@ -20,9 +20,13 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.project.InternalConstants;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.org.ResourceAccessLevel;
 import com.walmartlabs.concord.server.org.project.ProjectAccessManager;
 import com.walmartlabs.concord.server.process.OutVariablesUtils;
@@ -30,40 +34,60 @@ import com.walmartlabs.concord.server.process.ProcessEntry;
 import com.walmartlabs.concord.server.process.ProcessEntry.ProcessCheckpointEntry;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.security.Roles;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import org.apache.shiro.authz.UnauthorizedException;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.ws.rs.core.Response.Status;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static com.walmartlabs.concord.sdk.Constants.Files.CHECKPOINT_META_FILE_NAME;
 
 @Named
 public class ProcessCheckpointManager {
 
+    private static final Pattern BLOB_NAME = Pattern.compile("[0-9a-f]{64}");
+
     private final ProcessCheckpointDao checkpointDao;
     private final ProcessQueueDao queueDao;
     private final ProcessStateManager stateManager;
     private final ProjectAccessManager projectAccessManager;
+    private final ConcordObjectMapper objectMapper;
+
+    private final Histogram checkpointSize;
+    private final Histogram checkpointUploadSize;
 
     @Inject
     protected ProcessCheckpointManager(ProcessCheckpointDao checkpointDao,
                                        ProcessQueueDao queueDao,
                                        ProcessStateManager stateManager,
-                                       ProjectAccessManager projectAccessManager) {
+                                       ProjectAccessManager projectAccessManager,
+                                       ConcordObjectMapper objectMapper,
+                                       MetricRegistry metricRegistry) {
 
         this.checkpointDao = checkpointDao;
         this.queueDao = queueDao;
         this.stateManager = stateManager;
         this.projectAccessManager = projectAccessManager;
+        this.objectMapper = objectMapper;
+
+        this.checkpointSize = metricRegistry.histogram("process-checkpoint-size");
+        this.checkpointUploadSize = metricRegistry.histogram("process-checkpoint-upload-size");
     }
 
     public UUID getRecentCheckpointId(ProcessKey processKey, String checkpointName) {
@@ -80,37 +104,82 @@ public class ProcessCheckpointManager {
      */
     public void importCheckpoint(ProcessKey processKey, UUID checkpointId, String checkpointName, Path data) {
         checkpointDao.importCheckpoint(processKey, checkpointId, checkpointName, data);
+
+        try {
+            long size = Files.size(data);
+            checkpointSize.update(size);
+            checkpointUploadSize.update(size);
+        } catch (IOException e) {
+            // ignore, metrics only
+        }
+    }
+
+    /**
+     * Import a checkpoint saved as a list of files. Only the files that are not
+     * stored yet are uploaded, see {@link #findMissingBlobs(ProcessKey, Collection)}.
+     *
+     * @param processKey     process key
+     * @param checkpointId   process checkpoint ID
+     * @param checkpointName process checkpoint name
+     * @param manifest       checkpoint manifest (JSON), see {@link ProcessCheckpointManifest}
+     * @param data           ZIP archive with the new files. Each file is named after the SHA-256 of its content
+     */
+    public void importCheckpoint(ProcessKey processKey, UUID checkpointId, String checkpointName, String manifest, Path data) {
+        ProcessCheckpointManifest m;
+        try {
+            m = objectMapper.deserialize(manifest, ProcessCheckpointManifest.class);
+        } catch (RuntimeException e) {
+            throw new ConcordApplicationException("Invalid checkpoint manifest: " + e.getMessage(), Status.BAD_REQUEST);
+        }
+
+        for (ProcessCheckpointManifest.FileEntry f : m.files()) {
+            assertRelative(f.path());
+        }
+
+        try (TemporaryPath blobsDir = IOUtils.tempDir("checkpoint-blobs")) {
+            Map<String, Path> blobs = readBlobs(data, blobsDir.path());
+            checkpointDao.importCheckpoint(processKey, checkpointId, checkpointName, m, blobs);
+
+            checkpointSize.update(m.files().stream().mapToLong(ProcessCheckpointManifest.FileEntry::size).sum());
+            checkpointUploadSize.update(Files.size(data));
+        } catch (IllegalArgumentException e) {
+            throw new ConcordApplicationException(e.getMessage(), Status.BAD_REQUEST);
+        } catch (IOException e) {
+            throw new RuntimeException("Import checkpoint '" + checkpointId + "' error", e);
+        }
+    }
+
+    /**
+     * Returns the hashes of the checkpoint files that are not stored yet.
+     */
+    public Set<String> findMissingBlobs(ProcessKey processKey, Collection<String> hashes) {
+        return checkpointDao.findMissingBlobs(processKey, hashes);
     }
 
     /**
      * Restore process to a saved checkpoint.
      */
     public String restoreCheckpoint(ProcessKey processKey, UUID checkpointId) {
-        try (TemporaryPath checkpointArchive = IOUtils.tempFile("checkpoint", ".zip")) {
-
-            boolean hasCheckpoint = export(processKey, checkpointId, checkpointArchive.path());
+        try (TemporaryPath extractedDir = IOUtils.tempDir("unzipped-checkpoint")) {
+            boolean hasCheckpoint = export(processKey, checkpointId, extractedDir.path());
             if (!hasCheckpoint) {
                 return null;
             }
 
-            try (TemporaryPath extractedDir = IOUtils.tempDir("unzipped-checkpoint")) {
-                IOUtils.unzip(checkpointArchive.path(), extractedDir.path());
-
-                String checkpointName = readCheckpointName(extractedDir.path());
+            String checkpointName = readCheckpointName(extractedDir.path());
 
-                stateManager.deleteDirectory(processKey, InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME);
-                stateManager.deleteDirectory(processKey, InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME);
-                stateManager.importPath(processKey, null, extractedDir.path());
-
-                Map<String, Object> out = OutVariablesUtils.read(extractedDir.path().resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME));
-                if (out.isEmpty()) {
-                    queueDao.removeMeta(processKey, "out");
-                } else {
-                    queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
-                }
+            stateManager.deleteDirectory(processKey, InternalConstants.Files.CONCORD_SYSTEM_DIR_NAME);
+            stateManager.deleteDirectory(processKey, InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME);
+            stateManager.importPath(processKey, null, extractedDir.path());
 
-                return checkpointName;
+            Map<String, Object> out = OutVariablesUtils.read(extractedDir.path().resolve(InternalConstants.Files.JOB_ATTACHMENTS_DIR_NAME));
+            if (out.isEmpty()) {
+                queueDao.removeMeta(processKey, "out");
+            } else {
+                queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
             }
+
+            return checkpointName;
         } catch (Exception e) {
             throw new RuntimeException("Restore checkpoint '" + checkpointId + "' error", e);
         }
@@ -156,7 +225,113 @@ public class ProcessCheckpointManager {
         return checkpointName;
     }
 
+    /**
+     * Extracts the checkpoint's files into {@code dest}.
+     */
     private boolean export(ProcessKey processKey, UUID checkpointId, Path dest) throws IOException {
-        return checkpointDao.export(processKey, checkpointId, dest);
+        ProcessCheckpointManifest manifest = checkpointDao.getManifest(processKey, checkpointId);
+        if (manifest == null) {
+            // a single archive
+            try (TemporaryPath checkpointArchive = IOUtils.tempFile("checkpoint", ".zip")) {
+                if (!checkpointDao.export(processKey, checkpointId, checkpointArchive.path())) {
+                    return false;
+                }
+
+                IOUtils.unzip(checkpointArchive.path(), dest);
+                return true;
+            }
+        }
+
+        for (ProcessCheckpointManifest.FileEntry f : manifest.files()) {
+            Path p = assertRelative(f.path());
+            Path dst = dest.resolve(p);
+
+            Path parent = dst.getParent();
+            if (!Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+
+            if (!checkpointDao.exportBlob(processKey, f.hash(), dst)) {
+                throw new IllegalStateException("Checkpoint file not found: " + f.path() + " (" + f.hash() + ")");
+            }
+
+            int unixMode = f.unixMode();
+            if (unixMode <= 0) {
+                unixMode = Posix.DEFAULT_UNIX_MODE;
+            }
+            Files.setPosixFilePermissions(dst, Posix.posix(unixMode));
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the files from the specified ZIP archive into {@code dir}
+     * and validates their hashes.
+     */
+    private static Map<String, Path> readBlobs(Path data, Path dir) throws IOException {
+        Map<String, Path> result = new HashMap<>();
+
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(data))) {
+            ZipEntry e;
+            while ((e = zip.getNextEntry()) != null) {
+                if (e.isDirectory()) {
+                    continue;
+                }
+
+                String name = e.getName();
+                if (!BLOB_NAME.matcher(name).matches()) {
+                    throw new IllegalArgumentException("Invalid checkpoint file name: " + name);
+                }
+
+                MessageDigest md = sha256();
+                Path dst = dir.resolve(name);
+                try (OutputStream out = Files.newOutputStream(dst)) {
+                    copy(new DigestInputStream(zip, md), out);
+                }
+
+                String hash = toHex(md.digest());
+                if (!hash.equals(name)) {
+                    throw new IllegalArgumentException("Invalid checkpoint file " + name + ", actual hash: " + hash);
+                }
+
+                result.put(hash, dst);
+            }
+        }
+
+        return result;
+    }
+
+    private static Path assertRelative(String path) {
+        Path p = Paths.get(path).normalize();
+        if (p.isAbsolute() || p.startsWith("..")) {
+            throw new ConcordApplicationException("Invalid checkpoint file path: " + path, Status.BAD_REQUEST);
+        }
+        return p;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] ab = new byte[8192];
+        int read;
+        while ((read = in.read(ab)) > 0) {
+            out.write(ab, 0, read);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] ab) {
+        StringBuilder sb = new StringBuilder(ab.length * 2);
+        for (byte b : ab) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
     }
 }
@@ -0,0 +1,59 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.immutables.value.Value;
+
+import java.util.List;
+
+/**
+ * List of files of a checkpoint. The files' content is stored separately,
+ * in {@code PROCESS_CHECKPOINT_BLOBS}, and addressed by its SHA-256 hash.
+ */
+@Value.Immutable
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(as = ImmutableProcessCheckpointManifest.class)
+@JsonDeserialize(as = ImmutableProcessCheckpointManifest.class)
+public interface ProcessCheckpointManifest {
+
+    List<FileEntry> files();
+
+    @Value.Immutable
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    @JsonSerialize(as = ImmutableFileEntry.class)
+    @JsonDeserialize(as = ImmutableFileEntry.class)
+    interface FileEntry {
+
+        /**
+         * Path relative to the process' working directory.
+         */
+        String path();
+
+        String hash();
+
+        long size();
+
+        int unixMode();
+    }
+}
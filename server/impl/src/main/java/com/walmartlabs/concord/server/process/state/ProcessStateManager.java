@@ -20,6 +20,8 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.db.AbstractDao;
@@ -47,6 +49,7 @@ import java.io.OutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
+import java.sql.Array;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -277,8 +280,8 @@ public class ProcessStateManager extends AbstractDao {
             data = encrypt(in);
         }
         tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values(instanceId, instanceCreatedAt, path, data, needEncrypt)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_HASH)
+                .values(instanceId, instanceCreatedAt, path, data, needEncrypt, Hashing.sha256().hashBytes(in).toString())
                 .execute();
     }
 
@@ -339,7 +342,9 @@ public class ProcessStateManager extends AbstractDao {
                             .and(PROCESS_STATE.ITEM_PATH.eq(n)))
                             .execute();
 
-                    batch.add(new BatchItem(n, file, unixMode, needsEncryption));
+                    String hash = MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+
+                    batch.add(new BatchItem(n, file, unixMode, needsEncryption, hash));
                     if (batch.size() >= INSERT_BATCH_SIZE) {
                         insert(tx, instanceId, instanceCreatedAt, batch);
                         batch.clear();
@@ -359,8 +364,8 @@ public class ProcessStateManager extends AbstractDao {
 
     private void insert(DSLContext tx, UUID instanceId, Timestamp instanceCreatedAt, Collection<BatchItem> batch) {
         String sql = tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values((UUID) null, null, null, null, null, null)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_HASH)
+                .values((UUID) null, null, null, null, null, null, null)
                 .getSQL();
 
         List<InputStream> streams = new LinkedList<>();
@@ -393,6 +398,9 @@ public class ProcessStateManager extends AbstractDao {
                         // IS_ENCRYPTED
                         ps.setBoolean(6, item.needsEncryption);
 
+                        // ITEM_HASH
+                        ps.setString(7, item.hash);
+
                         ps.addBatch();
                     }
 
@@ -443,6 +451,70 @@ public class ProcessStateManager extends AbstractDao {
         }
     }
 
+    /**
+     * Returns the list of files of a process instance without their content.
+     * The hashes of the encrypted files are omitted, the clients shouldn't
+     * cache such files.
+     */
+    public List<ProcessStateFileEntry> manifest(ProcessKey processKey) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            return tx.select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_HASH, DSL.field("octet_length({0})", Long.class, PROCESS_STATE.ITEM_DATA))
+                    .from(PROCESS_STATE)
+                    .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
+                    .fetch(r -> ImmutableProcessStateFileEntry.builder()
+                            .path(r.value1())
+                            .unixMode(r.value2())
+                            .hash(r.value3() ? null : r.value4())
+                            .size(r.value5())
+                            .build());
+        }
+    }
+
+    /**
+     * Exports the specified elements of a process instance. Unknown paths are ignored.
+     */
+    public boolean exportItems(ProcessKey processKey, Collection<String> paths, ItemConsumer consumer) {
+        try (DSLContext tx = DSL.using(cfg)) {
+            String sql = tx
+                    .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
+                    .from(PROCESS_STATE)
+                    .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
+                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((Timestamp) null))
+                            .and(PROCESS_STATE.ITEM_PATH.eq(DSL.any(new String[0]))))
+                    .getSQL();
+
+            return tx.connectionResult(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    Array arr = conn.createArrayOf("varchar", paths.toArray());
+
+                    ps.setObject(1, processKey.getInstanceId());
+                    ps.setTimestamp(2, processKey.getCreatedAt());
+                    ps.setArray(3, arr);
+
+                    boolean found = false;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            found = true;
+
+                            String n = rs.getString(1);
+                            int unixMode = rs.getInt(2);
+                            boolean encrypted = rs.getBoolean(3);
+                            try (InputStream in = rs.getBinaryStream(4);
+                                 InputStream processed = encrypted ? decrypt(in) : in) {
+                                consumer.accept(n, unixMode, processed);
+                            }
+                        }
+                    } finally {
+                        arr.free();
+                    }
+
+                    return found;
+                }
+            });
+        }
+    }
+
     /**
      * Exports elements whose path begins with the specified value.
      */
@@ -692,12 +764,14 @@ public class ProcessStateManager extends AbstractDao {
         private final Path path;
         private final int unixMode;
         private final boolean needsEncryption;
+        private final String hash;
 
-        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption) {
+        private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption, String hash) {
             this.itemPath = itemPath;
             this.path = path;
             this.unixMode = unixMode;
             this.needsEncryption = needsEncryption;
+            this.hash = hash;
         }
     }
 }
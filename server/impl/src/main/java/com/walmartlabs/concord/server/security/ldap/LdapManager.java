@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.security.ldap;
 
 import com.walmartlabs.concord.server.cfg.LdapConfiguration;
 import com.walmartlabs.concord.server.console.UserSearchResult;
+import com.walmartlabs.concord.server.metrics.WithTimer;
 import org.apache.shiro.realm.ldap.LdapContextFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +60,7 @@ public class LdapManager {
         this.ctxFactory = ctxFactory;
     }
 
+    @WithTimer
     public List<UserSearchResult> search(String filter) throws NamingException {
         return search(filter, cfg.getUserSearchFilter(), new String[]{cfg.getUserPrincipalNameProperty(), DISPLAY_NAME_ATTR},
                 attrs -> {
@@ -70,6 +72,7 @@ public class LdapManager {
                 });
     }
 
+    @WithTimer
     public List<LdapGroupSearchResult> searchGroups(String filter) throws NamingException {
         return search(filter, cfg.getGroupSearchFilter(), new String[]{cfg.getGroupNameProperty(), cfg.getGroupDisplayNameProperty()},
                 attrs -> {
@@ -84,6 +87,7 @@ public class LdapManager {
                 });
     }
 
+    @WithTimer
     public Set<String> getGroups(String username, String domain) throws NamingException {
         LdapContext ctx = null;
         try {
@@ -127,6 +131,7 @@ public class LdapManager {
         return result;
     }
 
+    @WithTimer
     public LdapPrincipal getPrincipal(String username, String domain) throws NamingException {
         LdapContext ctx = null;
         try {
@@ -154,6 +159,7 @@ public class LdapManager {
         }
     }
 
+    @WithTimer
     public LdapPrincipal getPrincipalByDn(String dn) throws NamingException {
         int idx = dn.indexOf(",");
         if (idx < 0 || idx + 1 > dn.length()) {
@@ -0,0 +1,210 @@
+package com.walmartlabs.concord.server.security.ldap;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.server.cfg.LdapConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.naming.NamingException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the LDAP principals (including their groups) found by username
+ * and domain, so the logins and user info requests don't have to query
+ * the directory each time.
+ * <p>
+ * The principals are stored under their own username and domain (the UPN's
+ * domain), the username and domain used for the lookup (e.g. a login without
+ * the domain part) is kept as an alias. This way the entries can be
+ * invalidated using the user data stored in the DB, see
+ * {@link UserLdapGroupSynchronizer}.
+ * <p>
+ * "Not found" results are cached too, but for a shorter time.
+ * The cache is memory-only.
+ */
+@Named
+@Singleton
+public class LdapPrincipalCache {
+
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Ticker ticker;
+    private final Cache<String, Entry> cache;
+    private final Cache<String, String> aliases;
+
+    /**
+     * Versions of the recent invalidations, used to discard the results
+     * of the lookups that started before the invalidation.
+     */
+    private final Cache<String, Long> invalidations;
+    private final AtomicLong version = new AtomicLong();
+    private long allInvalidatedAt = 0;
+    private final Object lock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Inject
+    public LdapPrincipalCache(LdapConfiguration cfg) {
+        this(cfg.getCacheTtl(), cfg.getNegativeCacheTtl(), cfg.getCacheMaxSize(), Ticker.systemTicker());
+    }
+
+    LdapPrincipalCache(long ttlSec, long negativeTtlSec, long maxSize, Ticker ticker) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSec);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSec);
+        this.ticker = ticker;
+
+        long maxTtlNanos = Math.max(ttlNanos, negativeTtlNanos);
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(maxTtlNanos, TimeUnit.NANOSECONDS)
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .build();
+        this.aliases = CacheBuilder.newBuilder()
+                .expireAfterWrite(maxTtlNanos, TimeUnit.NANOSECONDS)
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .build();
+        this.invalidations = CacheBuilder.newBuilder()
+                .expireAfterWrite(maxTtlNanos, TimeUnit.NANOSECONDS)
+                .maximumSize(maxSize)
+                .ticker(ticker)
+                .build();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the cached principal or loads it using the specified loader.
+     * The loader's errors are not cached.
+     *
+     * @return the principal or {@code null} if the user doesn't exist
+     */
+    public LdapPrincipal get(String username, String domain, Loader loader) throws NamingException {
+        if (ttlNanos <= 0) {
+            return loader.load();
+        }
+
+        String lookupKey = key(username, domain);
+
+        Entry e = find(lookupKey);
+        if (e != null && e.expiresAt - ticker.read() > 0) {
+            hits.increment();
+            return e.principal;
+        }
+
+        misses.increment();
+
+        long loadedAt = version.get();
+        LdapPrincipal p = loader.load();
+
+        String principalKey = lookupKey;
+        if (p != null && p.getUsername() != null) {
+            principalKey = key(p.getUsername(), p.getDomain());
+        }
+
+        synchronized (lock) {
+            // the entry was invalidated while the principal was loading, the result might be stale
+            if (invalidatedSince(lookupKey, loadedAt) || invalidatedSince(principalKey, loadedAt)) {
+                return p;
+            }
+
+            cache.put(principalKey, new Entry(p, ticker.read() + (p != null ? ttlNanos : negativeTtlNanos)));
+            if (!principalKey.equals(lookupKey)) {
+                aliases.put(lookupKey, principalKey);
+            }
+        }
+
+        return p;
+    }
+
+    /**
+     * Invalidates the principal with the specified username and domain,
+     * including the entries found using other forms of the username (aliases).
+     */
+    public void invalidate(String username, String domain) {
+        String k = key(username, domain);
+        synchronized (lock) {
+            invalidations.put(k, version.incrementAndGet());
+            cache.invalidate(k);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            allInvalidatedAt = version.incrementAndGet();
+            cache.invalidateAll();
+            aliases.invalidateAll();
+        }
+    }
+
+    private Entry find(String lookupKey) {
+        String principalKey = aliases.getIfPresent(lookupKey);
+        return cache.getIfPresent(principalKey != null ? principalKey : lookupKey);
+    }
+
+    private boolean invalidatedSince(String key, long v) {
+        if (allInvalidatedAt > v) {
+            return true;
+        }
+
+        Long invalidatedAt = invalidations.getIfPresent(key);
+        return invalidatedAt != null && invalidatedAt > v;
+    }
+
+    private static String key(String username, String domain) {
+        String k = username.trim().toLowerCase(Locale.ROOT);
+        if (domain != null) {
+            k = k + "@" + domain.trim().toLowerCase(Locale.ROOT);
+        }
+        return k;
+    }
+
+    public interface Loader {
+
+        LdapPrincipal load() throws NamingException;
+    }
+
+    private static final class Entry {
+
+        private final LdapPrincipal principal;
+        private final long expiresAt;
+
+        private Entry(LdapPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
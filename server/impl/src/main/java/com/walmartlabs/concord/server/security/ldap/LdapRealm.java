@@ -56,6 +56,7 @@ public class LdapRealm extends AbstractLdapRealm {
 
     private final UserManager userManager;
     private final LdapManager ldapManager;
+    private final LdapPrincipalCache principalCache;
     private final LdapGroupManager ldapGroupManager;
     private final LdapContextFactory ldapContextFactory;
     private final AuditLog auditLog;
@@ -66,12 +67,14 @@ public class LdapRealm extends AbstractLdapRealm {
                      UserManager userManager,
                      ConcordLdapContextFactory ldapContextFactory,
                      LdapManager ldapManager,
+                     LdapPrincipalCache principalCache,
                      LdapGroupManager ldapGroupManager,
                      AuditLog auditLog) {
 
         this.cfg = cfg;
         this.userManager = userManager;
         this.ldapManager = ldapManager;
+        this.principalCache = principalCache;
         this.ldapGroupManager = ldapGroupManager;
         this.auditLog = auditLog;
 
@@ -154,7 +157,9 @@ public class LdapRealm extends AbstractLdapRealm {
         }
 
         String[] usernameDomain = getUsernameDomain(t);
-        LdapPrincipal ldapPrincipal = ldapManager.getPrincipal(usernameDomain[0], usernameDomain[1]);
+        // only the principal's data is cached, the password is always checked by binding to the server
+        LdapPrincipal ldapPrincipal = principalCache.get(usernameDomain[0], usernameDomain[1],
+                () -> ldapManager.getPrincipal(usernameDomain[0], usernameDomain[1]));
         if (ldapPrincipal == null) {
             throw new AuthenticationException("LDAP data not found: " + username);
         }
@@ -42,11 +42,13 @@ public class LdapUserInfoProvider implements UserInfoProvider {
 
     private final UserDao userDao;
     private final LdapManager ldapManager;
+    private final LdapPrincipalCache principalCache;
 
     @Inject
-    public LdapUserInfoProvider(UserDao userDao, LdapManager ldapManager) {
+    public LdapUserInfoProvider(UserDao userDao, LdapManager ldapManager, LdapPrincipalCache principalCache) {
         this.userDao = userDao;
         this.ldapManager = ldapManager;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -57,7 +59,7 @@ public class LdapUserInfoProvider implements UserInfoProvider {
     @Override
     public UserInfo getInfo(UUID id, String username, String userDomain) {
         try {
-            LdapPrincipal p = ldapManager.getPrincipal(username, userDomain);
+            LdapPrincipal p = principalCache.get(username, userDomain, () -> ldapManager.getPrincipal(username, userDomain));
             return buildInfo(id, p);
         } catch (NamingException e) {
             log.error("getInfo ['{}'] -> error", username, e);
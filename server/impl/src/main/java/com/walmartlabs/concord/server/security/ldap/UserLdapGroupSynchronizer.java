@@ -52,14 +52,16 @@ public class UserLdapGroupSynchronizer implements ScheduledTask {
     private final LdapGroupSyncConfiguration cfg;
     private final Dao dao;
     private final LdapManager ldapManager;
+    private final LdapPrincipalCache principalCache;
     private final UserDao userDao;
     private final LdapGroupDao ldapGroupsDao;
 
     @Inject
-    public UserLdapGroupSynchronizer(LdapGroupSyncConfiguration cfg, Dao dao, LdapManager ldapManager, UserDao userDao, LdapGroupDao ldapGroupsDao) {
+    public UserLdapGroupSynchronizer(LdapGroupSyncConfiguration cfg, Dao dao, LdapManager ldapManager, LdapPrincipalCache principalCache, UserDao userDao, LdapGroupDao ldapGroupsDao) {
         this.cfg = cfg;
         this.dao = dao;
         this.ldapManager = ldapManager;
+        this.principalCache = principalCache;
         this.userDao = userDao;
         this.ldapGroupsDao = ldapGroupsDao;
     }
@@ -85,6 +87,9 @@ public class UserLdapGroupSynchronizer implements ScheduledTask {
 
     private void processUser(UserItem u) {
         try {
+            // the groups (or the account itself) might have changed, force the next login to re-read the data
+            principalCache.invalidate(u.username, u.domain);
+
             Set<String> groups = ldapManager.getGroups(u.username, u.domain);
             if (groups == null) {
                 userDao.disable(u.userId);
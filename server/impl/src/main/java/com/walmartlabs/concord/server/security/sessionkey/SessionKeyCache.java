@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.server.security.sessionkey;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.walmartlabs.concord.server.process.PartialProcessKey;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the principals resolved for session key authentication, so the
+ * subsequent requests of the same process don't hit the DB and the process state.
+ * <p>
+ * Entries are evicted when the process reaches a final status or its
+ * "current user" changes. The TTL limits the staleness of the entries
+ * when such changes happen on a different server instance.
+ */
+@Named
+@Singleton
+public class SessionKeyCache {
+
+    private static final long TTL_SECONDS = 60;
+
+    private final Cache<UUID, PrincipalCollection> cache;
+
+    public SessionKeyCache() {
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+                .maximumSize(10 * 1024L)
+                .concurrencyLevel(32)
+                .recordStats()
+                .build();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return a copy of the cached principals or {@code null} if there are none.
+     */
+    public PrincipalCollection get(PartialProcessKey processKey) {
+        PrincipalCollection principals = cache.getIfPresent(processKey.getInstanceId());
+        if (principals == null) {
+            return null;
+        }
+
+        return new SimplePrincipalCollection(principals);
+    }
+
+    public void put(PartialProcessKey processKey, PrincipalCollection principals) {
+        cache.put(processKey.getInstanceId(), new SimplePrincipalCollection(principals));
+    }
+
+    public void invalidate(PartialProcessKey processKey) {
+        cache.invalidate(processKey.getInstanceId());
+    }
+}
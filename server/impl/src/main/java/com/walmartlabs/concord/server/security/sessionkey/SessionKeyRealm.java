@@ -41,9 +41,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Singleton;
 import java.util.Set;
 
 @Named
+@Singleton
 public class SessionKeyRealm extends AuthorizingRealm {
 
     private static final Logger log = LoggerFactory.getLogger(SessionKeyRealm.class);
@@ -52,6 +54,7 @@ public class SessionKeyRealm extends AuthorizingRealm {
 
     private final ProcessSecurityContext processSecurityContext;
     private final ProcessQueueDao processQueueDao;
+    private final SessionKeyCache sessionKeyCache;
 
     private static final Set<ProcessStatus> FINISHED_STATUSES = ImmutableSet.of(
             ProcessStatus.FINISHED,
@@ -61,9 +64,11 @@ public class SessionKeyRealm extends AuthorizingRealm {
 
     @Inject
     public SessionKeyRealm(ProcessSecurityContext processSecurityContext,
-                           ProcessQueueDao processQueueDao) {
+                           ProcessQueueDao processQueueDao,
+                           SessionKeyCache sessionKeyCache) {
         this.processSecurityContext = processSecurityContext;
         this.processQueueDao = processQueueDao;
+        this.sessionKeyCache = sessionKeyCache;
     }
 
     @Override
@@ -77,6 +82,11 @@ public class SessionKeyRealm extends AuthorizingRealm {
         SessionKey t = (SessionKey) token;
         PartialProcessKey processKey = PartialProcessKey.from(t.getInstanceId());
 
+        PrincipalCollection cached = sessionKeyCache.get(processKey);
+        if (cached != null) {
+            return new SimpleAccount(cached, t.getInstanceId(), getName());
+        }
+
         try {
             ProcessEntry p = processQueueDao.get(processKey);
             if (p == null) {
@@ -95,6 +105,7 @@ public class SessionKeyRealm extends AuthorizingRealm {
             }
 
             PrincipalCollection principals = getPrincipals(processKey);
+            sessionKeyCache.put(processKey, principals);
             return new SimpleAccount(principals, t.getInstanceId(), getName());
         } catch (Exception e) {
             log.error("doGetAuthenticationInfo ['{}'] -> error", t.getInstanceId(), e);
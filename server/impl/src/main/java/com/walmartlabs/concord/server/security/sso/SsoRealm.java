@@ -28,6 +28,7 @@ import com.walmartlabs.concord.server.security.PrincipalUtils;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import com.walmartlabs.concord.server.security.ldap.LdapManager;
 import com.walmartlabs.concord.server.security.ldap.LdapPrincipal;
+import com.walmartlabs.concord.server.security.ldap.LdapPrincipalCache;
 import com.walmartlabs.concord.server.user.UserEntry;
 import com.walmartlabs.concord.server.user.UserManager;
 import com.walmartlabs.concord.server.user.UserType;
@@ -49,12 +50,14 @@ public class SsoRealm extends AuthorizingRealm {
     public static final String REALM_NAME = "sso";
 
     private final LdapManager ldapManager;
+    private final LdapPrincipalCache principalCache;
     private final UserManager userManager;
     private final AuditLog auditLog;
 
     @Inject
-    public SsoRealm(LdapManager ldapManager, UserManager userManager, AuditLog auditLog) {
+    public SsoRealm(LdapManager ldapManager, LdapPrincipalCache principalCache, UserManager userManager, AuditLog auditLog) {
         this.ldapManager = ldapManager;
+        this.principalCache = principalCache;
         this.userManager = userManager;
         this.auditLog = auditLog;
     }
@@ -75,7 +78,7 @@ public class SsoRealm extends AuthorizingRealm {
 
         LdapPrincipal ldapPrincipal;
         try {
-            ldapPrincipal = ldapManager.getPrincipal(t.getUsername(), t.getDomain());
+            ldapPrincipal = principalCache.get(t.getUsername(), t.getDomain(), () -> ldapManager.getPrincipal(t.getUsername(), t.getDomain()));
         } catch (Exception e) {
             throw new AuthenticationException("LDAP error", e);
         }
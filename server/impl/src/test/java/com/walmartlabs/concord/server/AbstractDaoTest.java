@@ -27,13 +27,23 @@ import com.walmartlabs.concord.db.DatabaseModule;
 import com.walmartlabs.concord.db.MainDBChangeLogProvider;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.conf.SettingsTools;
+import org.jooq.conf.StatementType;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.junit.After;
 import org.junit.Before;
 
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public abstract class AbstractDaoTest {
 
@@ -69,6 +79,42 @@ public abstract class AbstractDaoTest {
         return cfg;
     }
 
+    /**
+     * Returns a configuration that records the SQL of all executed queries.
+     * The bind values are inlined, so the recorded queries can be used with {@link #explain(String)}.
+     */
+    protected Configuration getRecordingConfiguration(List<String> queries) {
+        return cfg.derive(SettingsTools.clone(cfg.settings()).withStatementType(StatementType.STATIC_STATEMENT))
+                .derive(new DefaultExecuteListenerProvider(new DefaultExecuteListener() {
+                    @Override
+                    public void executeStart(ExecuteContext ctx) {
+                        queries.add(ctx.sql());
+                    }
+                }));
+    }
+
+    protected List<String> explain(String sql) {
+        try (DSLContext ctx = DSL.using(cfg)) {
+            return ctx.fetch("explain " + sql).getValues(0, String.class);
+        }
+    }
+
+    /**
+     * Returns the partitions of the specified partitioned table scanned by the query.
+     */
+    protected Set<String> scannedPartitions(String parentTable, String sql) {
+        Pattern p = Pattern.compile(" on (" + parentTable.toLowerCase() + "_p_\\w+)");
+
+        Set<String> result = new HashSet<>();
+        for (String l : explain(sql)) {
+            Matcher m = p.matcher(l);
+            while (m.find()) {
+                result.add(m.group(1));
+            }
+        }
+        return result;
+    }
+
     private static final class DatabaseConfigurationImpl implements DatabaseConfiguration {
 
         private final String url;
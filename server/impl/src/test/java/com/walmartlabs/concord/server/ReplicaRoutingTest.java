@@ -0,0 +1,170 @@
+package com.walmartlabs.concord.server;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.matcher.Matchers;
+import com.walmartlabs.concord.db.*;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Requires a primary DB on port 5432 and its streaming replica on port 5434.
+ * See {@code docker-images/run_db_replica.sh}.
+ */
+@Ignore("requires a local DB instance with a streaming replica")
+public class ReplicaRoutingTest {
+
+    private static final long MAX_LAG = 1000;
+
+    private DataSource primary;
+    private DataSource replica;
+    private Configuration cfg;
+
+    @Before
+    public void init() {
+        ReplicaDatabaseConfiguration primaryCfg = new ReplicaCfg("jdbc:postgresql://localhost:5432/postgres");
+        ReplicaDatabaseConfiguration replicaCfg = new ReplicaCfg("jdbc:postgresql://localhost:5434/postgres");
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        primary = DataSourceUtils.createDataSource(primaryCfg, "app", primaryCfg.username(), primaryCfg.password(), metricRegistry);
+        replica = DataSourceUtils.createDataSource(replicaCfg, "replica", replicaCfg.username(), replicaCfg.password(), metricRegistry);
+
+        cfg = DataSourceUtils.createJooqConfiguration(new ReplicaRoutingConnectionProvider(primary, replica, replicaCfg));
+    }
+
+    @After
+    public void close() throws Exception {
+        for (DataSource ds : new DataSource[]{primary, replica}) {
+            Method m = ds.getClass().getMethod("close");
+            m.invoke(ds);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        Reader reader = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindInterceptor(Matchers.any(), Matchers.annotatedWith(ReadOnly.class), new ReadOnlyInterceptor());
+            }
+        }).getInstance(Reader.class);
+
+        // regular queries always go to the primary
+
+        assertFalse(reader.isReplica(cfg));
+
+        // read-only queries go to the replica
+
+        assertTrue(reader.isReplicaReadOnly(cfg));
+
+        // lagging replica, read-only queries go to the primary
+
+        try (DSLContext tx = DSL.using(DataSourceUtils.createJooqConfiguration(replica))) {
+            tx.execute("select pg_wal_replay_pause()");
+        }
+
+        try {
+            try (DSLContext tx = DSL.using(DataSourceUtils.createJooqConfiguration(primary))) {
+                tx.transaction(c -> DSL.using(c).execute("create table replica_routing_test(id int); drop table replica_routing_test"));
+            }
+
+            Thread.sleep(MAX_LAG * 2);
+
+            assertFalse(reader.isReplicaReadOnly(cfg));
+        } finally {
+            try (DSLContext tx = DSL.using(DataSourceUtils.createJooqConfiguration(replica))) {
+                tx.execute("select pg_wal_replay_resume()");
+            }
+        }
+
+        // the replica caught up
+
+        Thread.sleep(MAX_LAG);
+        assertTrue(reader.isReplicaReadOnly(cfg));
+    }
+
+    public static class Reader {
+
+        public boolean isReplica(Configuration cfg) {
+            try (DSLContext tx = DSL.using(cfg)) {
+                return tx.fetchOne("select pg_is_in_recovery()").get(0, Boolean.class);
+            }
+        }
+
+        @ReadOnly
+        public boolean isReplicaReadOnly(Configuration cfg) {
+            return isReplica(cfg);
+        }
+    }
+
+    private static final class ReplicaCfg implements ReplicaDatabaseConfiguration {
+
+        private final String url;
+
+        private ReplicaCfg(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public String url() {
+            return url;
+        }
+
+        @Override
+        public String username() {
+            return "postgres";
+        }
+
+        @Override
+        public String password() {
+            return "q1";
+        }
+
+        @Override
+        public int maxPoolSize() {
+            return 3;
+        }
+
+        @Override
+        public long maxLag() {
+            return MAX_LAG;
+        }
+
+        @Override
+        public long lagCheckInterval() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.walmartlabs.concord.server.audit;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration;
+import com.walmartlabs.concord.server.cfg.AuditConfiguration.OverflowPolicy;
+import org.jooq.exception.DataAccessException;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class AuditLogWriterTest {
+
+    private static final ConcordObjectMapper objectMapper = new ConcordObjectMapper(TestObjectMapper.INSTANCE);
+
+    @Test(timeout = 30000)
+    public void testSpillOrder() throws Exception {
+        AuditConfiguration cfg = cfg(OverflowPolicy.SPILL, Files.createTempDirectory("test"), 60000);
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch unblock = new CountDownLatch(1);
+
+        AuditDao dao = mock(AuditDao.class);
+        doAnswer(i -> {
+            unblock.await();
+            List<AuditDao.Entry> entries = i.getArgument(0);
+            entries.forEach(e -> written.add(e.getAction()));
+            return null;
+        }).when(dao).insert(anyList());
+
+        AuditLogWriter writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        // the writer is blocked, most of the entries go into the spill file
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            writer.add(entry("action-" + i));
+            expected.add("action-" + i);
+        }
+
+        assertTrue(Files.exists(cfg.getSpillDir().resolve("audit.jsonl")));
+
+        unblock.countDown();
+        writer.stop();
+
+        assertEquals(expected, written);
+    }
+
+    @Test(timeout = 30000)
+    public void testSpillOnShutdown() throws Exception {
+        AuditConfiguration cfg = cfg(OverflowPolicy.SPILL, Files.createTempDirectory("test"), 500);
+
+        // the DB is not available
+
+        AuditDao dao = mock(AuditDao.class);
+        doThrow(new RuntimeException("DB is not available")).when(dao).insert(anyList());
+
+        AuditLogWriter writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            writer.add(entry("action-" + i));
+            expected.add("action-" + i);
+        }
+
+        writer.stop();
+
+        Path spillFile = cfg.getSpillDir().resolve("audit.jsonl");
+        assertEquals(5, Files.readAllLines(spillFile).size());
+
+        // the spilled entries are written after restart
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        dao = mock(AuditDao.class);
+        doAnswer(i -> {
+            List<AuditDao.Entry> entries = i.getArgument(0);
+            entries.forEach(e -> written.add(e.getAction()));
+            return null;
+        }).when(dao).insert(anyList());
+
+        writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        writer.add(entry("action-5"));
+        expected.add("action-5");
+
+        writer.stop();
+
+        assertEquals(expected, written);
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test(timeout = 30000)
+    public void testBlockSpillOrderAfterRestart() throws Exception {
+        AuditConfiguration cfg = cfg(OverflowPolicy.BLOCK, Files.createTempDirectory("test"), 500);
+
+        // the DB is not available, the remaining entries are spilled on shutdown
+
+        AuditDao dao = mock(AuditDao.class);
+        doThrow(new RuntimeException("DB is not available")).when(dao).insert(anyList());
+
+        AuditLogWriter writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            writer.add(entry("action-" + i));
+            expected.add("action-" + i);
+        }
+
+        writer.stop();
+
+        Path spillFile = cfg.getSpillDir().resolve("audit.jsonl");
+        assertTrue(Files.exists(spillFile));
+
+        // the spilled entries go before the entries added after restart
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        dao = mock(AuditDao.class);
+        doAnswer(i -> {
+            List<AuditDao.Entry> entries = i.getArgument(0);
+            entries.forEach(e -> written.add(e.getAction()));
+            return null;
+        }).when(dao).insert(anyList());
+
+        writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        for (int i = 2; i < 10; i++) {
+            writer.add(entry("action-" + i));
+            expected.add("action-" + i);
+        }
+
+        writer.stop();
+
+        assertEquals(expected, written);
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test(timeout = 60000)
+    public void testRejectedEntry() throws Exception {
+        AuditConfiguration cfg = cfg(OverflowPolicy.BLOCK, Files.createTempDirectory("test"), 60000);
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+        AuditDao dao = mock(AuditDao.class);
+        doAnswer(i -> {
+            List<AuditDao.Entry> entries = i.getArgument(0);
+            for (AuditDao.Entry e : entries) {
+                if (e.getAction().equals("bad")) {
+                    throw new DataAccessException("invalid data", new SQLException("invalid data", "22P05"));
+                }
+            }
+            entries.forEach(e -> written.add(e.getAction()));
+            return null;
+        }).when(dao).insert(anyList());
+
+        AuditLogWriter writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+
+        writer.add(entry("action-0"));
+        writer.add(entry("bad"));
+        writer.add(entry("action-1"));
+
+        writer.stop();
+
+        // the rejected entry doesn't block the ones behind it
+        assertEquals(Arrays.asList("action-0", "action-1"), written);
+        assertEquals(1, Files.readAllLines(cfg.getSpillDir().resolve("audit.rejected.jsonl")).size());
+    }
+
+    @Test(timeout = 30000)
+    public void testProcessedOffset() throws Exception {
+        AuditConfiguration cfg = cfg(OverflowPolicy.SPILL, Files.createTempDirectory("test"), 60000);
+
+        // a previous run had written the first two spilled entries
+        Path processingFile = cfg.getSpillDir().resolve("audit.processing.jsonl");
+        Files.write(processingFile, Arrays.asList(
+                json(entry("action-0")),
+                json(entry("action-1")),
+                json(entry("action-2"))));
+        Files.write(cfg.getSpillDir().resolve("audit.processing.offset"), "2".getBytes());
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AuditDao dao = mock(AuditDao.class);
+        doAnswer(i -> {
+            List<AuditDao.Entry> entries = i.getArgument(0);
+            entries.forEach(e -> written.add(e.getAction()));
+            return null;
+        }).when(dao).insert(anyList());
+
+        AuditLogWriter writer = new AuditLogWriter(cfg, dao, objectMapper);
+        writer.start();
+        writer.stop();
+
+        assertEquals(Collections.singletonList("action-2"), written);
+        assertFalse(Files.exists(processingFile));
+        assertFalse(Files.exists(cfg.getSpillDir().resolve("audit.processing.offset")));
+    }
+
+    private static String json(AuditDao.Entry e) {
+        return "{\"entryDate\":" + e.getEntryDate().getTime()
+                + ",\"userId\":\"" + e.getUserId() + "\""
+                + ",\"object\":\"" + e.getObject() + "\""
+                + ",\"action\":\"" + e.getAction() + "\""
+                + ",\"details\":\"" + e.getDetails() + "\"}";
+    }
+
+    private static AuditDao.Entry entry(String action) {
+        return new AuditDao.Entry(new Timestamp(System.currentTimeMillis()), UUID.randomUUID(), "TEST", action, "{}");
+    }
+
+    private static AuditConfiguration cfg(OverflowPolicy overflowPolicy, Path spillDir, long shutdownTimeout) {
+        AuditConfiguration cfg = mock(AuditConfiguration.class);
+        when(cfg.getBufferSize()).thenReturn(2);
+        when(cfg.getBatchSize()).thenReturn(3);
+        when(cfg.getFlushInterval()).thenReturn(100L);
+        when(cfg.getShutdownTimeout()).thenReturn(shutdownTimeout);
+        when(cfg.getOverflowPolicy()).thenReturn(overflowPolicy);
+        when(cfg.getSpillDir()).thenReturn(spillDir);
+        return cfg;
+    }
+}
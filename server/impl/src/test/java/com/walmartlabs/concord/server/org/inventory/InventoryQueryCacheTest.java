@@ -0,0 +1,60 @@
+package com.walmartlabs.concord.server.org.inventory;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class InventoryQueryCacheTest {
+
+    @Test
+    public void test() {
+        InventoryQueryCache cache = new InventoryQueryCache();
+
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, String> preparer = text -> {
+            calls.incrementAndGet();
+            return text.toUpperCase();
+        };
+
+        UUID queryId = UUID.randomUUID();
+        UUID inventoryId = UUID.randomUUID();
+
+        InventoryQueryEntry q = new InventoryQueryEntry(queryId, "test", inventoryId, "select 1");
+        assertEquals("SELECT 1", cache.getSql(q, preparer));
+        assertEquals("SELECT 1", cache.getSql(q, preparer));
+        assertEquals(1, calls.get());
+
+        // the query was updated elsewhere
+        InventoryQueryEntry updated = new InventoryQueryEntry(queryId, "test", inventoryId, "select 2");
+        assertEquals("SELECT 2", cache.getSql(updated, preparer));
+        assertEquals(2, calls.get());
+
+        cache.invalidate(queryId);
+        assertEquals("SELECT 2", cache.getSql(updated, preparer));
+        assertEquals(3, calls.get());
+    }
+}
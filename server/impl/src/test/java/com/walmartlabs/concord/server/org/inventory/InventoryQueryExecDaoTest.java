@@ -26,13 +26,14 @@ import com.walmartlabs.concord.server.TestObjectMapper;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.org.inventory.SqlParserTest.parseQueries;
-import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -45,7 +46,7 @@ public class InventoryQueryExecDaoTest extends AbstractDaoTest {
         List<String> queries = parseQueries("queries.txt");
 
         InventoryQueryDao qd = mock(InventoryQueryDao.class);
-        InventoryQueryExecDao dao = new InventoryQueryExecDao(getConfiguration(), qd, new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        InventoryQueryExecDao dao = new InventoryQueryExecDao(getConfiguration(), qd, new InventoryQueryCache(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
 
         for(String sql : queries) {
             UUID queryId = UUID.randomUUID();
@@ -56,8 +57,8 @@ public class InventoryQueryExecDaoTest extends AbstractDaoTest {
             }
             when(qd.get(eq(queryId))).thenReturn(createInventoryQueryEntry(sql));
 
-            List<Object> result = dao.exec(queryId, params);
-            assertNotNull(result);
+            List<Object> result = new ArrayList<>();
+            assertTrue(dao.exec(queryId, params, null, null, result::add));
         }
     }
 
@@ -0,0 +1,76 @@
+package com.walmartlabs.concord.server.org.secret;
+
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SecretDataCacheTest {
+
+    @Test
+    public void testScopedByOrg() {
+        SecretDataCache cache = new SecretDataCache();
+
+        UUID orgId = UUID.randomUUID();
+        UUID secretId = UUID.randomUUID();
+        cache.put(orgId, secretId, new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get(orgId, secretId));
+        assertNull(cache.get(UUID.randomUUID(), secretId));
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void testCopies() {
+        SecretDataCache cache = new SecretDataCache();
+
+        UUID orgId = UUID.randomUUID();
+        UUID secretId = UUID.randomUUID();
+
+        byte[] ab = {1, 2, 3};
+        cache.put(orgId, secretId, ab);
+        ab[0] = 0;
+
+        byte[] cached = cache.get(orgId, secretId);
+        assertArrayEquals(new byte[]{1, 2, 3}, cached);
+
+        cached[0] = 0;
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get(orgId, secretId));
+    }
+
+    @Test
+    public void testInvalidate() {
+        SecretDataCache cache = new SecretDataCache();
+
+        UUID orgId = UUID.randomUUID();
+        UUID secretId = UUID.randomUUID();
+        cache.put(orgId, secretId, new byte[]{1});
+
+        cache.invalidate(orgId, secretId);
+        assertNull(cache.get(orgId, secretId));
+    }
+}
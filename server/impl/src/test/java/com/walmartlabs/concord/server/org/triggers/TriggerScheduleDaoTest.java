@@ -0,0 +1,86 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.org.OrganizationManager;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@Ignore("requires a local DB instance")
+public class TriggerScheduleDaoTest extends AbstractDaoTest {
+
+    private TriggerScheduleDao scheduleDao;
+    private TriggersDao triggersDao;
+    private RepositoryDao repositoryDao;
+    private ProjectDao projectDao;
+
+    @Before
+    public void setUp() {
+        ConcordObjectMapper objectMapper = new ConcordObjectMapper(TestObjectMapper.INSTANCE);
+        scheduleDao = new TriggerScheduleDao(getConfiguration(), objectMapper);
+        triggersDao = new TriggersDao(getConfiguration(), objectMapper);
+        repositoryDao = new RepositoryDao(getConfiguration(), objectMapper);
+        projectDao = new ProjectDao(getConfiguration(), objectMapper);
+    }
+
+    @Test
+    public void testFindNext() throws Exception {
+        UUID projectId = projectDao.insert(OrganizationManager.DEFAULT_ORG_ID, "project_" + System.currentTimeMillis(), null, null, null, null, true, new byte[0], null);
+        UUID repoId = repositoryDao.insert(projectId, "repo", "http://localhost", null, null, null, null, false, null);
+
+        Instant now = scheduleDao.now();
+
+        Set<UUID> triggerIds = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            UUID triggerId = triggersDao.insert(projectId, repoId, "cron", null, null, Collections.singletonMap("spec", "* * * * *"), null);
+            tx(tx -> scheduleDao.insert(tx, triggerId, now.minusSeconds(60)));
+            triggerIds.add(triggerId);
+        }
+
+        Set<UUID> fired = new HashSet<>();
+        List<TriggerSchedulerEntry> l;
+        do {
+            l = scheduleDao.findNext(2);
+            assertTrue(l.size() <= 2);
+
+            for (TriggerSchedulerEntry e : l) {
+                fired.add(e.getTriggerId());
+                assertEquals("* * * * *", e.getCronSpec());
+            }
+        } while (!l.isEmpty());
+
+        assertTrue(fired.containsAll(triggerIds));
+
+        // the schedules are moved to the next execution time
+        assertTrue(scheduleDao.findNext(10).isEmpty());
+    }
+}
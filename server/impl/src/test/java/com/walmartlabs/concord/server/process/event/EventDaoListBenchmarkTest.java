@@ -0,0 +1,162 @@
+package com.walmartlabs.concord.server.process.event;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import org.jooq.impl.DSL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_EVENTS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the event retrieval of a process with a large number of events.
+ * The number of generated events can be changed with {@code -Dbench.eventCount=...}
+ */
+@Ignore("requires a local DB instance")
+public class EventDaoListBenchmarkTest extends AbstractDaoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(EventDaoListBenchmarkTest.class);
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int ITERATIONS = 5;
+
+    private ProcessKey processKey;
+    private int eventCount;
+    private UUID correlationId;
+
+    @Before
+    public void setUp() {
+        processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        eventCount = Integer.getInteger("bench.eventCount", 1_000_000);
+
+        // pairs of ELEMENT events (pre and post) with the same correlationId
+        long t1 = System.currentTimeMillis();
+        tx(tx -> tx.execute("insert into PROCESS_EVENTS (INSTANCE_ID, INSTANCE_CREATED_AT, EVENT_TYPE, EVENT_DATE, EVENT_DATA) " +
+                "select ?, ?, 'ELEMENT', current_timestamp, jsonb_build_object(" +
+                "'correlationId', md5((i / 2)::text)::uuid, " +
+                "'phase', case when i % 2 = 0 then 'pre' else 'post' end, " +
+                "'description', repeat('x', 256)) " +
+                "from generate_series(0, ? - 1) i", processKey.getInstanceId(), processKey.getCreatedAt(), eventCount));
+        tx(tx -> tx.execute("analyze PROCESS_EVENTS"));
+        log.info("setUp -> inserted {} events in {}ms", eventCount, (System.currentTimeMillis() - t1));
+
+        // an element somewhere in the middle of the process
+        correlationId = (UUID) DSL.using(getConfiguration()).fetchValue("select md5(?::text)::uuid", eventCount / 4);
+    }
+
+    @After
+    public void tearDown() {
+        tx(tx -> tx.deleteFrom(PROCESS_EVENTS)
+                .where(PROCESS_EVENTS.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_EVENTS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
+                .execute());
+    }
+
+    @Test
+    public void test() {
+        List<String> queries = new ArrayList<>();
+        EventDao eventDao = new EventDao(getRecordingConfiguration(queries), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+
+        ProcessEventFilter all = ProcessEventFilter.builder()
+                .processKey(processKey)
+                .build();
+
+        // streaming, the events are not collected
+        AtomicLong count = new AtomicLong();
+        long streamTime = measure(() -> {
+            count.set(0);
+            try {
+                eventDao.list(all, e -> count.incrementAndGet());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertEquals(eventCount, count.get());
+
+        long listTime = measure(() -> eventDao.list(all));
+
+        log.info("test -> all events: list {}ms, streaming {}ms", listTime / 1000, streamTime / 1000);
+
+        // the last page, using the seq of the previous page's last event
+        ProcessEventFilter lastPage = ProcessEventFilter.builder()
+                .processKey(processKey)
+                .afterSeq(lastSeqBefore(eventDao, eventCount - PAGE_SIZE))
+                .limit(PAGE_SIZE)
+                .build();
+        assertEquals(PAGE_SIZE, eventDao.list(lastPage).size());
+
+        long lastPageTime = measure(() -> eventDao.list(lastPage));
+        log.info("test -> last page ({} events): {}us", PAGE_SIZE, lastPageTime);
+
+        ProcessEventFilter byCorrelationId = ProcessEventFilter.builder()
+                .processKey(processKey)
+                .eventCorrelationId(correlationId)
+                .eventPhase(EventPhase.POST)
+                .build();
+        assertEquals(1, eventDao.list(byCorrelationId).size());
+
+        queries.clear();
+        long correlationIdTime = measure(() -> eventDao.list(byCorrelationId));
+        log.info("test -> correlationId + phase: {}us, plan:\n{}", correlationIdTime, String.join("\n", explain(queries.get(0))));
+    }
+
+    private Long lastSeqBefore(EventDao eventDao, int n) {
+        AtomicLong seq = new AtomicLong();
+        eventDao.list(ProcessEventFilter.builder()
+                .processKey(processKey)
+                .limit(n)
+                .build(), e -> seq.set(e.seq()));
+        return seq.get();
+    }
+
+    /**
+     * @return the median time in microseconds
+     */
+    private static long measure(Runnable r) {
+        long[] times = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long t1 = System.nanoTime();
+            r.run();
+            times[i] = (System.nanoTime() - t1) / 1000;
+        }
+
+        Arrays.sort(times);
+        return times[ITERATIONS / 2];
+    }
+}
@@ -0,0 +1,117 @@
+package com.walmartlabs.concord.server.process.event;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import org.jooq.impl.DSL;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_EVENTS;
+import static org.junit.Assert.assertEquals;
+
+@Ignore("requires a local DB instance")
+public class EventDaoTest extends AbstractDaoTest {
+
+    @Test
+    public void testPartitionPruning() throws Exception {
+        long now = System.currentTimeMillis();
+
+        // the current and a pre-created partition
+        assertPruning(new ProcessKey(UUID.randomUUID(), new Timestamp(now)));
+        assertPruning(new ProcessKey(UUID.randomUUID(), new Timestamp(now + TimeUnit.DAYS.toMillis(2))));
+    }
+
+    @Test
+    public void testAfterSeq() {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        EventDao eventDao = new EventDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        for (int i = 0; i < 5; i++) {
+            eventDao.insert(processKey, "TEST", Collections.singletonMap("n", i));
+        }
+
+        List<Object> result = new ArrayList<>();
+        Long afterSeq = null;
+        while (true) {
+            List<ProcessEventEntry> l = eventDao.list(ProcessEventFilter.builder()
+                    .processKey(processKey)
+                    .afterSeq(afterSeq)
+                    .limit(2)
+                    .build());
+
+            if (l.isEmpty()) {
+                break;
+            }
+
+            for (ProcessEventEntry e : l) {
+                result.add(e.data().get("n"));
+            }
+
+            afterSeq = l.get(l.size() - 1).seq();
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), result);
+    }
+
+    private void assertPruning(ProcessKey processKey) {
+        List<String> queries = new ArrayList<>();
+        EventDao eventDao = new EventDao(getRecordingConfiguration(queries), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("correlationId", UUID.randomUUID().toString());
+        data.put("phase", EventPhase.PRE.getKey());
+        eventDao.insert(processKey, "TEST", data);
+
+        String partition = DSL.using(getConfiguration())
+                .select(DSL.field("tableoid::regclass::text", String.class))
+                .from(PROCESS_EVENTS)
+                .where(PROCESS_EVENTS.INSTANCE_ID.eq(processKey.getInstanceId()))
+                .limit(1)
+                .fetchOne(0, String.class);
+
+        queries.clear();
+
+        eventDao.list(ProcessEventFilter.builder()
+                .processKey(processKey)
+                .build());
+
+        eventDao.list(ProcessEventFilter.builder()
+                .processKey(processKey)
+                .eventType("TEST")
+                .eventPhase(EventPhase.PRE)
+                .after(new Timestamp(0))
+                .limit(10)
+                .build());
+
+        assertEquals(2, queries.size());
+        for (String q : queries) {
+            assertEquals(q, Collections.singleton(partition), scannedPartitions("PROCESS_EVENTS", q));
+        }
+    }
+}
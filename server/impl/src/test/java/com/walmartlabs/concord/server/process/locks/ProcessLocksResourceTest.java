@@ -0,0 +1,164 @@
+package com.walmartlabs.concord.server.process.locks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.process.PartialProcessKey;
+import com.walmartlabs.concord.server.process.ProcessEntry;
+import com.walmartlabs.concord.server.process.queue.ProcessLockCondition;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.container.AsyncResponse;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ProcessLocksResourceTest {
+
+    private static final String LOCK_NAME = "test";
+    private static final ProcessLockScope SCOPE = ProcessLockScope.PROJECT;
+
+    private final UUID instanceId = UUID.randomUUID();
+    private final UUID orgId = UUID.randomUUID();
+    private final UUID projectId = UUID.randomUUID();
+
+    private ProcessQueueDao queueDao;
+    private ProcessLocksDao dao;
+    private ProcessLockNotifier notifier;
+    private ProcessLocksResource resource;
+
+    @Before
+    public void setUp() {
+        ProcessEntry process = mock(ProcessEntry.class);
+        when(process.instanceId()).thenReturn(instanceId);
+        when(process.orgId()).thenReturn(orgId);
+        when(process.projectId()).thenReturn(projectId);
+        when(process.createdAt()).thenReturn(new Date());
+
+        queueDao = mock(ProcessQueueDao.class);
+        when(queueDao.get(any(PartialProcessKey.class))).thenReturn(process);
+
+        dao = mock(ProcessLocksDao.class);
+        notifier = new ProcessLockNotifier();
+    }
+
+    @After
+    public void tearDown() {
+        if (resource != null) {
+            resource.stop();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testSignal() throws Exception {
+        resource = new ProcessLocksResource(queueDao, dao, notifier, 60000);
+
+        when(dao.tryLock(instanceId, orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(lock(UUID.randomUUID()));
+        when(dao.get(orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(lock(instanceId));
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        resource.tryLock(instanceId, LOCK_NAME, SCOPE, 30000, response);
+
+        // the request is suspended until the lock is handed off
+        verify(response, after(200).never()).resume(any(Object.class));
+
+        notifier.lockAcquired(instanceId);
+
+        // resumed long before the re-check delay
+        assertTrue(awaitResult(response).acquired());
+
+        // the waiter is unregistered after the request is resumed
+        notifier.lockAcquired(instanceId);
+        verify(dao, after(200).times(1)).get(orgId, projectId, SCOPE, LOCK_NAME);
+    }
+
+    @Test(timeout = 30000)
+    public void testRecheck() throws Exception {
+        resource = new ProcessLocksResource(queueDao, dao, notifier, 100);
+
+        // the lock is released without a hand off, e.g. by another server instance
+        when(dao.tryLock(instanceId, orgId, projectId, SCOPE, LOCK_NAME))
+                .thenReturn(lock(UUID.randomUUID()))
+                .thenReturn(lock(instanceId));
+        when(dao.get(orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(null);
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        resource.tryLock(instanceId, LOCK_NAME, SCOPE, 30000, response);
+
+        assertTrue(awaitResult(response).acquired());
+        verify(dao, times(2)).tryLock(instanceId, orgId, projectId, SCOPE, LOCK_NAME);
+    }
+
+    @Test(timeout = 30000)
+    public void testDeadline() throws Exception {
+        resource = new ProcessLocksResource(queueDao, dao, notifier, 60000);
+
+        UUID owner = UUID.randomUUID();
+        when(dao.tryLock(instanceId, orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(lock(owner));
+        when(dao.get(orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(lock(owner));
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        resource.tryLock(instanceId, LOCK_NAME, SCOPE, 300, response);
+
+        // resumed when the wait time expires, long before the re-check delay
+        assertFalse(awaitResult(response).acquired());
+        verify(queueDao).updateWait(any(), any(ProcessLockCondition.class));
+    }
+
+    @Test
+    public void testNoTimeout() {
+        resource = new ProcessLocksResource(queueDao, dao, notifier, 60000);
+
+        when(dao.tryLock(instanceId, orgId, projectId, SCOPE, LOCK_NAME)).thenReturn(lock(instanceId));
+
+        AsyncResponse response = mock(AsyncResponse.class);
+        resource.tryLock(instanceId, LOCK_NAME, SCOPE, 0, response);
+
+        // resumed right away
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(response).resume(captor.capture());
+        assertTrue(((LockResult) captor.getValue()).acquired());
+    }
+
+    private static LockResult awaitResult(AsyncResponse response) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(response, timeout(5000)).resume(captor.capture());
+        return (LockResult) captor.getValue();
+    }
+
+    private LockEntry lock(UUID owner) {
+        return LockEntry.builder()
+                .instanceId(owner)
+                .orgId(orgId)
+                .projectId(projectId)
+                .scope(SCOPE)
+                .name(LOCK_NAME)
+                .build();
+    }
+}
@@ -22,12 +22,17 @@ package com.walmartlabs.concord.server.process.logs;
 
 import com.walmartlabs.concord.server.AbstractDaoTest;
 import com.walmartlabs.concord.server.process.ProcessKey;
+import org.jooq.impl.DSL;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.sql.Timestamp;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOGS;
+import static org.junit.Assert.assertEquals;
 
 @Ignore
 public class ProcessLogsDaoTest extends AbstractDaoTest {
@@ -56,4 +61,66 @@ public class ProcessLogsDaoTest extends AbstractDaoTest {
             }
         }
     }
+
+    @Test
+    public void testAppendBatch() throws Exception {
+        ProcessLogsDao processLogsDao = new ProcessLogsDao(getConfiguration());
+
+        Timestamp t = new Timestamp(System.currentTimeMillis());
+        ProcessKey a = new ProcessKey(UUID.randomUUID(), t);
+        ProcessKey b = new ProcessKey(UUID.randomUUID(), t);
+
+        processLogsDao.append(a, "Hello, ".getBytes());
+
+        Map<ProcessKey, byte[]> batch = new LinkedHashMap<>();
+        batch.put(a, "A!".getBytes());
+        batch.put(b, "B!".getBytes());
+        processLogsDao.append(batch);
+
+        assertEquals("Hello, A!", toString(processLogsDao.get(a, null, null)));
+        assertEquals("B!", toString(processLogsDao.get(b, null, null)));
+    }
+
+    @Test
+    public void testPartitionPruning() throws Exception {
+        long now = System.currentTimeMillis();
+
+        // the current and a pre-created partition
+        assertPruning(new ProcessKey(UUID.randomUUID(), new Timestamp(now)));
+        assertPruning(new ProcessKey(UUID.randomUUID(), new Timestamp(now + TimeUnit.DAYS.toMillis(2))));
+    }
+
+    private void assertPruning(ProcessKey processKey) {
+        List<String> queries = new ArrayList<>();
+        ProcessLogsDao processLogsDao = new ProcessLogsDao(getRecordingConfiguration(queries));
+
+        processLogsDao.append(processKey, "Hello!".getBytes());
+        processLogsDao.append(processKey, "Bye!".getBytes());
+
+        String partition = DSL.using(getConfiguration())
+                .select(DSL.field("tableoid::regclass::text", String.class))
+                .from(PROCESS_LOGS)
+                .where(PROCESS_LOGS.INSTANCE_ID.eq(processKey.getInstanceId()))
+                .limit(1)
+                .fetchOne(0, String.class);
+
+        queries.clear();
+
+        processLogsDao.get(processKey, null, null);
+        processLogsDao.get(processKey, 0, 4);
+        processLogsDao.get(processKey, null, 4);
+
+        assertEquals(6, queries.size());
+        for (String q : queries) {
+            assertEquals(q, Collections.singleton(partition), scannedPartitions("PROCESS_LOGS", q));
+        }
+    }
+
+    private static String toString(ProcessLogsDao.ProcessLog l) {
+        StringBuilder sb = new StringBuilder();
+        for (ProcessLogsDao.ProcessLogChunk c : l.getChunks()) {
+            sb.append(new String(c.getData()));
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,76 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessCompletionNotifierTest {
+
+    @Test
+    public void testSignal() throws Exception {
+        ProcessCompletionNotifier notifier = new ProcessCompletionNotifier();
+
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        ProcessCompletionNotifier.Waiter w = notifier.register(Arrays.asList(a, b));
+
+        CompletableFuture<Boolean> f = CompletableFuture.supplyAsync(() -> {
+            try {
+                return w.await(10000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        notifier.completed(UUID.randomUUID());
+        notifier.completed(b);
+
+        assertTrue(f.get(5, TimeUnit.SECONDS));
+
+        // the signal is consumed by the first await
+        assertFalse(w.await(10));
+
+        notifier.unregister(w);
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        ProcessCompletionNotifier notifier = new ProcessCompletionNotifier();
+
+        UUID a = UUID.randomUUID();
+
+        ProcessCompletionNotifier.Waiter w = notifier.register(Collections.singletonList(a));
+        notifier.unregister(w);
+
+        notifier.completed(a);
+        assertFalse(w.await(10));
+    }
+}
@@ -25,17 +25,20 @@ import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.TestObjectMapper;
 import com.walmartlabs.concord.server.org.OrganizationManager;
 import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ProcessDataExclude;
+import com.walmartlabs.concord.server.process.ProcessEntry;
 import com.walmartlabs.concord.server.process.ProcessKey;
 import com.walmartlabs.concord.server.process.ProcessKind;
 import com.walmartlabs.concord.server.process.event.EventDao;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.sessionkey.SessionKeyCache;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.sql.Timestamp;
-import java.util.Collections;
-import java.util.UUID;
+import java.util.*;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -48,7 +51,7 @@ public class ProcessQueueDaoTest extends AbstractDaoTest {
 
     @Before
     public void setUp() {
-        queueDao = new ProcessQueueDao(getConfiguration(), Collections.emptyList(), mock(EventDao.class), mock(ProcessQueueLock.class), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        queueDao = new ProcessQueueDao(getConfiguration(), Collections.emptyList(), mock(EventDao.class), new ProcessWaitTargetsDao(getConfiguration()), mock(ProcessQueueLock.class), new ConcordObjectMapper(TestObjectMapper.INSTANCE), new SessionKeyCache(), new ProcessCompletionNotifier());
         projectDao = new ProjectDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
     }
 
@@ -84,4 +87,112 @@ public class ProcessQueueDaoTest extends AbstractDaoTest {
 
         assertNull(e3);
     }
+
+    @Test
+    public void testInsertInitialBatch() {
+        UUID orgId = OrganizationManager.DEFAULT_ORG_ID;
+
+        String projectName = "project_" + System.currentTimeMillis();
+        UUID projectId = projectDao.insert(orgId, projectName, null, null, null, null, true, new byte[0], null);
+
+        ProcessKey parent = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        queueDao.insertInitial(parent, ProcessKind.DEFAULT, null, projectId, null, null, null);
+
+        Map<ProcessKey, Map<String, Object>> forks = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            ProcessKey k = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+            forks.put(k, Collections.singletonMap("n", i));
+        }
+
+        queueDao.insertInitial(forks, ProcessKind.DEFAULT, parent.getInstanceId(), projectId, null);
+
+        int n = 0;
+        for (Map.Entry<ProcessKey, Map<String, Object>> f : forks.entrySet()) {
+            ProcessEntry e = queueDao.get(f.getKey());
+            assertNotNull(e);
+            assertEquals(ProcessStatus.PREPARING, e.status());
+            assertEquals(parent.getInstanceId(), e.parentInstanceId());
+            assertEquals(projectId, e.projectId());
+            assertEquals(n++, e.meta().get("n"));
+        }
+    }
+
+    @Test
+    public void testStatistics() {
+        UUID orgId = OrganizationManager.DEFAULT_ORG_ID;
+
+        String projectName = "project_" + System.currentTimeMillis();
+        UUID projectId = projectDao.insert(orgId, projectName, null, null, null, null, true, new byte[0], null);
+
+        Map<ProcessStatus, Integer> before = queueDao.getStatistics();
+
+        ProcessKey instanceA = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        queueDao.insertInitial(instanceA, ProcessKind.DEFAULT, null, projectId, null, null, null);
+        queueDao.updateStatus(instanceA, ProcessStatus.ENQUEUED);
+        queueDao.updateStatus(instanceA, ProcessStatus.RUNNING);
+
+        ProcessKey instanceB = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        queueDao.insertInitial(instanceB, ProcessKind.DEFAULT, null, projectId, null, null, null);
+        queueDao.updateStatus(instanceB, ProcessStatus.ENQUEUED);
+
+        Map<ProcessStatus, Integer> after = queueDao.getStatistics();
+
+        assertEquals(count(before, ProcessStatus.RUNNING) + 1, count(after, ProcessStatus.RUNNING));
+        assertEquals(count(before, ProcessStatus.ENQUEUED) + 1, count(after, ProcessStatus.ENQUEUED));
+        assertEquals(count(before, ProcessStatus.PREPARING), count(after, ProcessStatus.PREPARING));
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        UUID orgId = OrganizationManager.DEFAULT_ORG_ID;
+
+        String projectName = "project_" + System.currentTimeMillis();
+        UUID projectId = projectDao.insert(orgId, projectName, null, null, null, null, true, new byte[0], null);
+
+        // some of the processes share the same CREATED_AT
+        Timestamp t = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < 7; i++) {
+            ProcessKey k = new ProcessKey(UUID.randomUUID(), i % 2 == 0 ? t : new Timestamp(t.getTime() + i));
+            queueDao.insertInitial(k, ProcessKind.DEFAULT, null, projectId, null, Collections.singletonMap("n", i), null);
+        }
+
+        ProcessFilter filter = ProcessFilter.builder()
+                .projectId(projectId)
+                .includeWithoutProject(false)
+                .build();
+
+        List<ProcessEntry> all = queueDao.list(filter, 100, 0);
+        assertEquals(7, all.size());
+
+        List<ProcessEntry> pages = new ArrayList<>();
+        ProcessEntry last = null;
+        while (true) {
+            ImmutableProcessFilter.Builder b = ProcessFilter.builder().from(filter)
+                    .excludes(Collections.singleton(ProcessDataExclude.META));
+
+            if (last != null) {
+                b.beforeCreatedAt(new Timestamp(last.createdAt().getTime()))
+                        .beforeInstanceId(last.instanceId());
+            }
+
+            List<ProcessEntry> page = queueDao.list(b.build(), 3, -1);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            for (ProcessEntry e : page) {
+                assertNull(e.meta());
+            }
+
+            pages.addAll(page);
+            last = page.get(page.size() - 1);
+        }
+
+        assertEquals(all.stream().map(ProcessEntry::instanceId).collect(Collectors.toList()),
+                pages.stream().map(ProcessEntry::instanceId).collect(Collectors.toList()));
+    }
+
+    private static int count(Map<ProcessStatus, Integer> stats, ProcessStatus status) {
+        return stats.getOrDefault(status, 0);
+    }
 }
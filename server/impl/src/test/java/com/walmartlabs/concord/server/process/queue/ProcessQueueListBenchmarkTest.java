@@ -0,0 +1,143 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.org.OrganizationManager;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ProcessDataExclude;
+import com.walmartlabs.concord.server.process.ProcessEntry;
+import com.walmartlabs.concord.server.process.event.EventDao;
+import com.walmartlabs.concord.server.security.sessionkey.SessionKeyCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares the latency of {@code OFFSET} and keyset pagination of the process list.
+ * The number of generated processes can be changed with {@code -Dbench.processCount=...}
+ */
+@Ignore("requires a local DB instance")
+public class ProcessQueueListBenchmarkTest extends AbstractDaoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessQueueListBenchmarkTest.class);
+
+    private static final int PAGE_SIZE = 50;
+    private static final int[] PAGES = {1, 10, 100, 1000, 10000};
+    private static final int ITERATIONS = 5;
+
+    private ProcessQueueDao queueDao;
+    private UUID projectId;
+
+    @Before
+    public void setUp() {
+        queueDao = new ProcessQueueDao(getConfiguration(), Collections.emptyList(), mock(EventDao.class), new ProcessWaitTargetsDao(getConfiguration()), mock(ProcessQueueLock.class), new ConcordObjectMapper(TestObjectMapper.INSTANCE), new SessionKeyCache(), new ProcessCompletionNotifier());
+
+        ProjectDao projectDao = new ProjectDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        projectId = projectDao.insert(OrganizationManager.DEFAULT_ORG_ID, "project_" + System.currentTimeMillis(), null, null, null, null, true, new byte[0], null);
+
+        int processCount = Integer.getInteger("bench.processCount", 2_000_000);
+
+        long t1 = System.currentTimeMillis();
+        tx(tx -> tx.execute("insert into PROCESS_QUEUE (INSTANCE_ID, PROCESS_KIND, PROJECT_ID, CREATED_AT, CURRENT_STATUS, LAST_UPDATED_AT, META) " +
+                "select md5(random()::text || i)::uuid, 'DEFAULT', ?, " +
+                "date_trunc('milliseconds', current_timestamp) - (i / 2) * interval '1 millisecond', " +
+                "'FINISHED', current_timestamp, jsonb_build_object('n', i, 'data', repeat('x', 512)) " +
+                "from generate_series(1, ?) i", projectId, processCount));
+        tx(tx -> tx.execute("analyze PROCESS_QUEUE"));
+        log.info("setUp -> inserted {} processes in {}ms", processCount, (System.currentTimeMillis() - t1));
+    }
+
+    @After
+    public void tearDown() {
+        tx(tx -> tx.deleteFrom(PROCESS_QUEUE)
+                .where(PROCESS_QUEUE.PROJECT_ID.eq(projectId))
+                .execute());
+    }
+
+    @Test
+    public void test() {
+        ProcessFilter filter = ProcessFilter.builder()
+                .projectId(projectId)
+                .includeWithoutProject(false)
+                .build();
+
+        ProcessFilter narrowFilter = ProcessFilter.builder().from(filter)
+                .excludes(EnumSet.allOf(ProcessDataExclude.class))
+                .build();
+
+        for (int page : PAGES) {
+            int offset = (page - 1) * PAGE_SIZE;
+
+            // the cursor is the last process of the previous page
+            ProcessEntry last = offset > 0 ? queueDao.list(narrowFilter, 1, offset - 1).get(0) : null;
+            ProcessFilter keysetFilter = last == null ? filter : ProcessFilter.builder().from(filter)
+                    .beforeCreatedAt(new Timestamp(last.createdAt().getTime()))
+                    .beforeInstanceId(last.instanceId())
+                    .build();
+            ProcessFilter narrowKeysetFilter = ProcessFilter.builder().from(keysetFilter)
+                    .excludes(narrowFilter.excludes())
+                    .build();
+
+            List<ProcessEntry> expected = queueDao.list(filter, PAGE_SIZE, offset);
+            assertEquals(expected, queueDao.list(keysetFilter, PAGE_SIZE, -1));
+
+            long offsetTime = measure(() -> queueDao.list(filter, PAGE_SIZE, offset));
+            long keysetTime = measure(() -> queueDao.list(keysetFilter, PAGE_SIZE, -1));
+            long narrowKeysetTime = measure(() -> queueDao.list(narrowKeysetFilter, PAGE_SIZE, -1));
+
+            log.info("test -> page {}: offset {}us, keyset {}us, keyset w/o {} {}us",
+                    page, offsetTime, keysetTime, narrowFilter.excludes(), narrowKeysetTime);
+        }
+    }
+
+    /**
+     * @return the median time in microseconds
+     */
+    private static long measure(Supplier<?> s) {
+        long[] times = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long t1 = System.nanoTime();
+            s.get();
+            times[i] = (System.nanoTime() - t1) / 1000;
+        }
+
+        Arrays.sort(times);
+        return times[ITERATIONS / 2];
+    }
+}
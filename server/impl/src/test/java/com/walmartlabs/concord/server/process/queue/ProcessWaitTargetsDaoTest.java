@@ -0,0 +1,147 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.org.OrganizationManager;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import com.walmartlabs.concord.server.process.ProcessKind;
+import com.walmartlabs.concord.server.process.event.EventDao;
+import com.walmartlabs.concord.server.process.locks.LockEntry;
+import com.walmartlabs.concord.server.process.locks.ProcessLockNotifier;
+import com.walmartlabs.concord.server.process.locks.ProcessLocksDao;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.sessionkey.SessionKeyCache;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+@Ignore("requires a local DB instance")
+public class ProcessWaitTargetsDaoTest extends AbstractDaoTest {
+
+    private ProcessWaitTargetsDao waitTargetsDao;
+    private ProcessQueueDao queueDao;
+    private ProcessLocksDao locksDao;
+    private ProjectDao projectDao;
+
+    @Before
+    public void setUp() {
+        waitTargetsDao = new ProcessWaitTargetsDao(getConfiguration());
+        queueDao = new ProcessQueueDao(getConfiguration(), Collections.emptyList(), mock(EventDao.class), waitTargetsDao, mock(ProcessQueueLock.class), new ConcordObjectMapper(TestObjectMapper.INSTANCE), new SessionKeyCache(), new ProcessCompletionNotifier());
+        locksDao = new ProcessLocksDao(getConfiguration(), waitTargetsDao, new ProcessLockNotifier());
+        projectDao = new ProjectDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+    }
+
+    @Test
+    public void testProcessCompletion() throws Exception {
+        UUID projectId = createProject();
+
+        ProcessKey parent = createProcess(projectId);
+        ProcessKey child = createProcess(projectId);
+
+        queueDao.updateWait(parent, ProcessCompletionCondition.builder()
+                .processes(Collections.singleton(child.getInstanceId()))
+                .build());
+
+        // a new wait condition is evaluated right away
+        assertEquals(Collections.singletonList(parent.getInstanceId()), drain());
+
+        // unrelated changes don't wake up the waiting process
+        createProcess(projectId);
+        assertTrue(drain().isEmpty());
+
+        queueDao.updateStatus(child, ProcessStatus.FINISHED);
+        assertEquals(Collections.singletonList(parent.getInstanceId()), drain());
+
+        // no more wakeups once the condition is removed
+        queueDao.updateWait(parent, null);
+        queueDao.updateStatus(child, ProcessStatus.FAILED);
+        assertTrue(drain().isEmpty());
+    }
+
+    @Test
+    public void testLockHandOff() throws Exception {
+        UUID orgId = OrganizationManager.DEFAULT_ORG_ID;
+        UUID projectId = createProject();
+        String lockName = "lock_" + System.currentTimeMillis();
+
+        ProcessKey holder = createProcess(projectId);
+        ProcessKey first = createProcess(projectId);
+        ProcessKey second = createProcess(projectId);
+
+        assertEquals(holder.getInstanceId(), tryLock(holder, orgId, projectId, lockName).instanceId());
+
+        for (ProcessKey waiter : new ProcessKey[]{first, second}) {
+            LockEntry lock = tryLock(waiter, orgId, projectId, lockName);
+            assertEquals(holder.getInstanceId(), lock.instanceId());
+            queueDao.updateWait(waiter, ProcessLockCondition.from(lock));
+        }
+        drain();
+
+        // the lock goes to the first queued process, only that process is woken up
+        locksDao.delete(holder.getInstanceId(), orgId, projectId, ProcessLockScope.PROJECT, lockName);
+        assertEquals(Collections.singletonList(first.getInstanceId()), drain());
+        assertEquals(first.getInstanceId(), locksDao.get(orgId, projectId, ProcessLockScope.PROJECT, lockName).instanceId());
+
+        // new processes can't jump the queue
+        ProcessKey late = createProcess(projectId);
+        assertEquals(first.getInstanceId(), tryLock(late, orgId, projectId, lockName).instanceId());
+
+        // finished processes lose their place in the queue
+        queueDao.updateStatus(second, ProcessStatus.CANCELLED);
+        drain();
+
+        locksDao.delete(first.getInstanceId(), orgId, projectId, ProcessLockScope.PROJECT, lockName);
+        assertEquals(Collections.singletonList(late.getInstanceId()), drain());
+        assertEquals(late.getInstanceId(), tryLock(late, orgId, projectId, lockName).instanceId());
+    }
+
+    private LockEntry tryLock(ProcessKey processKey, UUID orgId, UUID projectId, String lockName) {
+        return locksDao.tryLock(processKey.getInstanceId(), orgId, projectId, ProcessLockScope.PROJECT, lockName);
+    }
+
+    private List<UUID> drain() {
+        return waitTargetsDao.pollWakeups(100);
+    }
+
+    private UUID createProject() {
+        String projectName = "project_" + System.currentTimeMillis();
+        return projectDao.insert(OrganizationManager.DEFAULT_ORG_ID, projectName, null, null, null, null, true, new byte[0], null);
+    }
+
+    private ProcessKey createProcess(UUID projectId) {
+        ProcessKey k = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+        queueDao.insertInitial(k, ProcessKind.DEFAULT, null, projectId, null, null, null);
+        return k;
+    }
+}
@@ -0,0 +1,101 @@
+package com.walmartlabs.concord.server.process.state;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.process.ProcessKey;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@Ignore("requires a local DB instance")
+public class ProcessCheckpointDaoTest extends AbstractDaoTest {
+
+    @Test
+    public void testManifest() throws Exception {
+        ProcessCheckpointDao dao = new ProcessCheckpointDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        Path blob = Files.createTempFile("blob", ".bin");
+        Files.write(blob, "hello".getBytes());
+
+        String hashA = "a".concat(String.join("", Collections.nCopies(63, "0")));
+        String hashB = "b".concat(String.join("", Collections.nCopies(63, "0")));
+
+        // the first checkpoint uploads the file
+        ProcessCheckpointManifest manifest = ImmutableProcessCheckpointManifest.builder()
+                .addFiles(ImmutableFileEntry.builder()
+                        .path("_attachments/a.txt")
+                        .hash(hashA)
+                        .size(5)
+                        .unixMode(0644)
+                        .build())
+                .build();
+
+        assertEquals(Collections.singleton(hashA), dao.findMissingBlobs(processKey, Collections.singleton(hashA)));
+
+        UUID checkpointA = UUID.randomUUID();
+        dao.importCheckpoint(processKey, checkpointA, "a", manifest, Collections.singletonMap(hashA, blob));
+
+        Set<String> missing = dao.findMissingBlobs(processKey, Arrays.asList(hashA, hashB));
+        assertEquals(Collections.singleton(hashB), missing);
+
+        // the second checkpoint reuses the stored file
+        UUID checkpointB = UUID.randomUUID();
+        dao.importCheckpoint(processKey, checkpointB, "b", manifest, Collections.emptyMap());
+
+        assertEquals(manifest, dao.getManifest(processKey, checkpointB));
+
+        Path dst = Files.createTempFile("blob", ".bin");
+        assertTrue(dao.exportBlob(processKey, hashA, dst));
+        assertEquals("hello", new String(Files.readAllBytes(dst)));
+        assertFalse(dao.exportBlob(processKey, hashB, dst));
+
+        // all files of the manifest must be stored
+        ProcessCheckpointManifest invalid = ImmutableProcessCheckpointManifest.builder()
+                .addFiles(ImmutableFileEntry.builder()
+                        .path("_attachments/b.txt")
+                        .hash(hashB)
+                        .size(5)
+                        .unixMode(0644)
+                        .build())
+                .build();
+
+        try {
+            dao.importCheckpoint(processKey, UUID.randomUUID(), "c", invalid, Collections.emptyMap());
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -37,10 +37,12 @@ import java.nio.file.StandardOpenOption;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.copyTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -80,6 +82,40 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
         assertFileContent("456", tmpDir.resolve("file-2"));
     }
 
+    @Test
+    public void testManifest() throws Exception {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()));
+
+        Path baseDir = Files.createTempDirectory("testImport");
+
+        writeTempFile(baseDir.resolve("file-1"), "123".getBytes());
+        writeTempFile(baseDir.resolve("file-2"), "456".getBytes());
+
+        ProcessStateConfiguration stateCfg = new ProcessStateConfiguration(24 * 60 * 60 * 1000, Collections.singletonList(Constants.Files.REQUEST_DATA_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg);
+        stateManager.importPath(processKey, null, baseDir);
+
+        List<ProcessStateFileEntry> manifest = stateManager.manifest(processKey);
+        assertEquals(2, manifest.size());
+
+        ProcessStateFileEntry e = manifest.stream()
+                .filter(i -> i.path().equals("file-1"))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+
+        assertEquals("a665a45920422f9d417e4867efdc4fb8a04a1f3fff1fa07e998e86f7f7a27ae3", e.hash());
+        assertEquals(3, e.size());
+
+        // ---
+
+        Path tmpDir = Files.createTempDirectory("testExport");
+
+        boolean result = stateManager.exportItems(processKey, Arrays.asList("file-2", "file-3"), copyTo(tmpDir));
+        assertTrue(result);
+        assertFileContent("456", tmpDir.resolve("file-2"));
+        assertFalse(Files.exists(tmpDir.resolve("file-1")));
+    }
+
     @Ignore
     @Test
     public void testLargeImport() throws Exception {
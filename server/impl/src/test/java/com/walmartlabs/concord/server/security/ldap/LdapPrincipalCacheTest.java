@@ -0,0 +1,201 @@
+package com.walmartlabs.concord.server.security.ldap;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.naming.NamingException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LdapPrincipalCacheTest {
+
+    private FakeTicker ticker;
+    private LdapPrincipalCache cache;
+
+    @Before
+    public void setUp() {
+        ticker = new FakeTicker();
+        cache = new LdapPrincipalCache(300, 60, 2, ticker);
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        CountingLoader loader = new CountingLoader(principal("alice"));
+
+        LdapPrincipal a = cache.get("alice", "example.com", loader);
+        LdapPrincipal b = cache.get("ALICE", "Example.com", loader);
+        assertSame(a, b);
+        assertEquals(1, loader.calls.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        ticker.advance(301);
+
+        cache.get("alice", "example.com", loader);
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(cache.get("bob", null, loader));
+        assertNull(cache.get("bob", null, loader));
+        assertEquals(1, loader.calls.get());
+
+        // "not found" entries expire sooner than the regular ones
+        ticker.advance(61);
+
+        assertNull(cache.get("bob", null, loader));
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        try {
+            cache.get("carol", null, () -> {
+                throw new NamingException("boom");
+            });
+            fail("exception expected");
+        } catch (NamingException e) {
+            // expected
+        }
+
+        CountingLoader loader = new CountingLoader(principal("carol"));
+        assertNotNull(cache.get("carol", null, loader));
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        CountingLoader loader = new CountingLoader(principal("dave"));
+
+        cache.get("dave", "example.com", loader);
+        cache.invalidate("Dave", "example.com");
+        cache.get("dave", "example.com", loader);
+        assertEquals(2, loader.calls.get());
+
+        cache.invalidateAll();
+        cache.get("dave", "example.com", loader);
+        assertEquals(3, loader.calls.get());
+    }
+
+    @Test
+    public void testInvalidateAlias() throws Exception {
+        CountingLoader loader = new CountingLoader(principal("jdoe"));
+
+        // logged in without the domain part
+        cache.get("jdoe", null, loader);
+        cache.get("jdoe", null, loader);
+        assertEquals(1, loader.calls.get());
+
+        // invalidated using the username and domain stored in the DB
+        cache.invalidate("jdoe", "example.com");
+
+        cache.get("jdoe", null, loader);
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testInvalidateWhileLoading() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        LdapPrincipalCache.Loader loader = () -> {
+            // the group sync runs while the principal is being loaded
+            if (calls.incrementAndGet() == 1) {
+                cache.invalidate("frank", "example.com");
+            }
+            return principal("frank");
+        };
+
+        cache.get("frank", null, loader);
+
+        // the result of the first lookup is possibly stale and must not be cached
+        cache.get("frank", null, loader);
+        assertEquals(2, calls.get());
+
+        cache.get("frank", null, loader);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        CountingLoader u1 = new CountingLoader(principal("u1"));
+
+        cache.get("u1", null, u1);
+        cache.get("u2", null, new CountingLoader(principal("u2")));
+        cache.get("u3", null, new CountingLoader(principal("u3")));
+        cache.get("u1", null, u1);
+
+        // the oldest entry is evicted once the size limit is reached
+        assertEquals(2, u1.calls.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        cache = new LdapPrincipalCache(0, 0, 10, ticker);
+
+        CountingLoader loader = new CountingLoader(principal("eve"));
+        cache.get("eve", null, loader);
+        cache.get("eve", null, loader);
+        assertEquals(2, loader.calls.get());
+    }
+
+    private static LdapPrincipal principal(String username) {
+        return new LdapPrincipal(username, "example.com", "cn=" + username, null, username, null,
+                Collections.singleton("cn=users"), Collections.emptyMap());
+    }
+
+    private static class CountingLoader implements LdapPrincipalCache.Loader {
+
+        private final LdapPrincipal result;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingLoader(LdapPrincipal result) {
+            this.result = result;
+        }
+
+        @Override
+        public LdapPrincipal load() {
+            calls.incrementAndGet();
+            return result;
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        public void advance(long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+}
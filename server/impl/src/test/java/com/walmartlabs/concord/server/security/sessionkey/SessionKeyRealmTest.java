@@ -0,0 +1,95 @@
+package com.walmartlabs.concord.server.security.sessionkey;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.process.PartialProcessKey;
+import com.walmartlabs.concord.server.process.ProcessEntry;
+import com.walmartlabs.concord.server.process.ProcessSecurityContext;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SessionKeyRealmTest {
+
+    private ProcessSecurityContext securityContext;
+    private ProcessQueueDao queueDao;
+    private SessionKeyCache cache;
+    private SessionKeyRealm realm;
+
+    @Before
+    public void setUp() {
+        securityContext = mock(ProcessSecurityContext.class);
+        queueDao = mock(ProcessQueueDao.class);
+        cache = new SessionKeyCache();
+        realm = new SessionKeyRealm(securityContext, queueDao, cache);
+    }
+
+    @Test
+    public void testCachedPrincipals() {
+        UUID instanceId = UUID.randomUUID();
+        mockProcess(ProcessStatus.RUNNING);
+
+        AuthenticationInfo a = realm.doGetAuthenticationInfo(new SessionKey(instanceId));
+        AuthenticationInfo b = realm.doGetAuthenticationInfo(new SessionKey(instanceId));
+
+        assertNotNull(a);
+        assertNotNull(b);
+        assertNotSame(a.getPrincipals(), b.getPrincipals());
+        assertEquals(a.getPrincipals().asList(), b.getPrincipals().asList());
+        assertNotNull(b.getPrincipals().oneByType(SessionKeyPrincipal.class));
+
+        // the second call must be served from the cache
+        verify(queueDao, times(1)).get((PartialProcessKey) any());
+        verify(securityContext, times(1)).getPrincipals(any());
+    }
+
+    @Test
+    public void testInvalidation() {
+        UUID instanceId = UUID.randomUUID();
+        mockProcess(ProcessStatus.RUNNING);
+
+        assertNotNull(realm.doGetAuthenticationInfo(new SessionKey(instanceId)));
+
+        mockProcess(ProcessStatus.FINISHED);
+        cache.invalidate(PartialProcessKey.from(instanceId));
+
+        assertNull(realm.doGetAuthenticationInfo(new SessionKey(instanceId)));
+        assertNull(cache.get(PartialProcessKey.from(instanceId)));
+    }
+
+    private void mockProcess(ProcessStatus status) {
+        ProcessEntry p = mock(ProcessEntry.class);
+        when(p.initiatorId()).thenReturn(UUID.randomUUID());
+        when(p.status()).thenReturn(status);
+
+        when(queueDao.get((PartialProcessKey) any())).thenReturn(p);
+        when(securityContext.getPrincipals(any())).thenReturn(new SimplePrincipalCollection("test", "test"));
+    }
+}
@@ -20,10 +20,13 @@ package com.walmartlabs.concord.server.plugins.ansible;
  * =====
  */
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.jooq.tables.EventProcessorMarker;
 import com.walmartlabs.concord.server.jooq.tables.ProcessEvents;
+import com.walmartlabs.concord.server.jooq.tables.records.EventProcessorMarkerRecord;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.ScheduledTask;
 import org.immutables.value.Value;
@@ -35,18 +38,25 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.jooq.Tables.*;
 import static com.walmartlabs.concord.server.plugins.ansible.jooq.tables.AnsibleHosts.ANSIBLE_HOSTS;
 import static org.jooq.impl.DSL.*;
 
+/**
+ * Aggregates ansible events into {@code ANSIBLE_HOSTS}.
+ * <p>
+ * The events are split into markers by the process creation date. Each marker
+ * covers its own range of processes, so the markers are claimed and processed
+ * in parallel by the worker threads without touching the same host rows.
+ */
 @Named("ansible-event-processor")
 @Singleton
 public class AnsibleEventProcessor implements ScheduledTask {
@@ -57,10 +67,16 @@ public class AnsibleEventProcessor implements ScheduledTask {
     private final AnsibleEventsConfiguration cfg;
     private final AnsibleEventDao dao;
 
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicLong lagMs = new AtomicLong();
+
     @Inject
-    public AnsibleEventProcessor(AnsibleEventsConfiguration cfg, AnsibleEventDao dao) {
+    public AnsibleEventProcessor(AnsibleEventsConfiguration cfg, AnsibleEventDao dao, MetricRegistry metricRegistry) {
         this.cfg = cfg;
         this.dao = dao;
+
+        metricRegistry.gauge("ansible-event-processor-lag", () -> (Gauge<Long>) lag::get);
+        metricRegistry.gauge("ansible-event-processor-lag-ms", () -> (Gauge<Long>) lagMs::get);
     }
 
     @Override
@@ -69,28 +85,57 @@ public class AnsibleEventProcessor implements ScheduledTask {
     }
 
     public void performTask() {
-        boolean continueProcess;
+        List<EventMarker> markers = dao.listMarkers(PROCESSOR_NAME);
+        if (markers.isEmpty()) {
+            EventMarker m = createInitMarker();
+            if (m == null) {
+                return;
+            }
+        }
 
-        do {
-            continueProcess = false;
+        List<Callable<Integer>> workers = new ArrayList<>(cfg.getWorkers());
+        for (int i = 0; i < cfg.getWorkers(); i++) {
+            workers.add(new Worker());
+        }
 
-            List<EventMarker> markers = dao.listMarkers(PROCESSOR_NAME);
-            if (markers.isEmpty()) {
-                EventMarker m = createInitMarker();
-                if (m == null) {
-                    return;
-                }
-            }
+        long t1 = System.currentTimeMillis();
+        int processedEvents = 0;
 
-            for (EventMarker m : markers) {
-                int processedEvents = process(m, cfg.getFetchLimit());
-                if (processedEvents >= cfg.getFetchLimit()) {
-                    continueProcess = true;
-                }
+        // the pool lives only as long as the run, so nothing is left behind when the server stops
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size(), new WorkerThreadFactory());
+        try {
+            for (Future<Integer> f : executor.invokeAll(workers)) {
+                processedEvents += f.get();
             }
-        } while (continueProcess);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while processing ansible events", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
 
         dao.cleanUpMarkers(PROCESSOR_NAME);
+
+        updateLag();
+
+        if (processedEvents > 0) {
+            log.info("performTask -> processed {} event(s) in {}ms, lag: {} event(s), {}ms",
+                    processedEvents, System.currentTimeMillis() - t1, lag.get(), lagMs.get());
+        }
+    }
+
+    private void updateLag() {
+        Lag l = dao.getLag(PROCESSOR_NAME);
+        if (l == null || l.lastSeq() <= l.processedSeq()) {
+            lag.set(0);
+            lagMs.set(0);
+            return;
+        }
+
+        lag.set(l.lastSeq() - l.processedSeq());
+        lagMs.set(Math.max(0, System.currentTimeMillis() - l.processedDate().getTime()));
     }
 
     private EventMarker createInitMarker() {
@@ -104,54 +149,50 @@ public class AnsibleEventProcessor implements ScheduledTask {
                 .eventDate(firstProcess)
                 .eventSeq(-1)
                 .build();
-        dao.updateMarker(PROCESSOR_NAME, m, MarkerStatus.IN_PROCESS);
+        dao.createMarker(PROCESSOR_NAME, m);
 
         return m;
     }
 
-    private int process(EventMarker marker, int fetchLimit) {
+    private int process(DSLContext tx, EventMarker marker, int fetchLimit) {
         if (marker.endTo() != null) {
-            return processOldMarker(marker, fetchLimit);
+            return processOldMarker(tx, marker, fetchLimit);
         } else {
-            return processActiveMarker(marker, fetchLimit);
+            return processActiveMarker(tx, marker, fetchLimit);
         }
     }
 
-    private int processActiveMarker(EventMarker marker, int fetchLimit) {
-        return dao.txResult(tx -> {
-            List<EventItem> events = processEvents(tx, marker, fetchLimit);
-            if (events.isEmpty()) {
-                return 0;
-            }
+    private int processActiveMarker(DSLContext tx, EventMarker marker, int fetchLimit) {
+        List<EventItem> events = processEvents(tx, marker, fetchLimit);
+        if (events.isEmpty()) {
+            return 0;
+        }
 
-            List<EventMarker> markers = collectMarkers(marker, events);
-            dao.updateMarkers(tx, PROCESSOR_NAME, markers, MarkerStatus.IN_PROCESS);
+        List<EventMarker> markers = collectMarkers(marker, events);
+        dao.updateMarkers(tx, PROCESSOR_NAME, markers, MarkerStatus.IN_PROCESS);
 
-            return events.size();
-        });
+        return events.size();
     }
 
-    private int processOldMarker(EventMarker marker, int fetchLimit) {
-        return dao.txResult(tx -> {
-            boolean hasActiveProcesses = dao.hasActiveProcess(tx, marker.startFrom(), marker.endTo());
-            List<EventItem> events = processEvents(tx, marker, fetchLimit);
-            if (events.isEmpty()) {
-                if (!hasActiveProcesses) {
-                    dao.updateMarker(tx, PROCESSOR_NAME, marker, MarkerStatus.DONE);
-                }
-
-                return 0;
+    private int processOldMarker(DSLContext tx, EventMarker marker, int fetchLimit) {
+        boolean hasActiveProcesses = dao.hasActiveProcess(tx, marker.startFrom(), marker.endTo());
+        List<EventItem> events = processEvents(tx, marker, fetchLimit);
+        if (events.isEmpty()) {
+            if (!hasActiveProcesses) {
+                dao.updateMarker(tx, PROCESSOR_NAME, marker, MarkerStatus.DONE);
             }
 
-            EventItem lastEvent = events.get(events.size() - 1);
-            dao.updateMarker(tx, PROCESSOR_NAME, EventMarker.builder().from(marker)
-                            .eventDate(lastEvent.eventDate())
-                            .eventSeq(lastEvent.eventSeq())
-                            .build(),
-                    MarkerStatus.IN_PROCESS);
+            return 0;
+        }
+
+        EventItem lastEvent = events.get(events.size() - 1);
+        dao.updateMarker(tx, PROCESSOR_NAME, EventMarker.builder().from(marker)
+                        .eventDate(lastEvent.eventDate())
+                        .eventSeq(lastEvent.eventSeq())
+                        .build(),
+                MarkerStatus.IN_PROCESS);
 
-            return events.size();
-        });
+        return events.size();
     }
 
     private List<EventItem> processEvents(DSLContext tx, EventMarker marker, int fetchLimit) {
@@ -224,6 +265,54 @@ public class AnsibleEventProcessor implements ScheduledTask {
         return Timestamp.valueOf(ts.toLocalDateTime().toLocalDate().atTime(LocalTime.MIN));
     }
 
+    /**
+     * Claims the markers one by one and processes them until there are
+     * no unclaimed markers with new events left.
+     */
+    private final class Worker implements Callable<Integer> {
+
+        private final Set<Timestamp> completed = new HashSet<>();
+
+        @Override
+        public Integer call() {
+            int fetchLimit = cfg.getFetchLimit();
+
+            int total = 0;
+            while (true) {
+                int processed = dao.txResult(tx -> {
+                    EventMarker m = dao.claimMarker(tx, PROCESSOR_NAME, completed);
+                    if (m == null) {
+                        return -1;
+                    }
+
+                    int n = process(tx, m, fetchLimit);
+                    if (n < fetchLimit) {
+                        completed.add(m.startFrom());
+                    }
+                    return n;
+                });
+
+                if (processed < 0) {
+                    return total;
+                }
+
+                total += processed;
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ansible-event-processor-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     @Named
     public static class AnsibleEventDao extends AbstractDao {
 
@@ -308,24 +397,80 @@ public class AnsibleEventProcessor implements ScheduledTask {
             return count > 0;
         }
 
+        /**
+         * Merges the (already combined) host items into {@code ANSIBLE_HOSTS}
+         * using a single {@code insert ... on conflict do update} statement.
+         * The items are passed as arrays, so the number of bind parameters
+         * doesn't depend on the size of the batch.
+         */
         public void insert(DSLContext tx, List<HostItem> items) {
             List<HostItem> hosts = removeInvalidItems(items);
             if (hosts.isEmpty()) {
                 return;
             }
-            tx.connection(conn -> {
-                int[] updated = update(tx, conn, hosts);
-                List<HostItem> hostsForInsert = new ArrayList<>();
-                for (int i = 0; i < updated.length; i++) {
-                    if (updated[i] < 1) {
-                        hostsForInsert.add(hosts.get(i));
-                    }
-                }
-                if (!hostsForInsert.isEmpty()) {
-                    insert(tx, conn, hostsForInsert);
-                }
-                log.debug("insert -> updated: {}, inserted: {}", hosts.size() - hostsForInsert.size(), hostsForInsert.size());
-            });
+
+            int size = hosts.size();
+            UUID[] instanceIds = new UUID[size];
+            Timestamp[] instanceCreatedAt = new Timestamp[size];
+            String[] host = new String[size];
+            String[] hostGroup = new String[size];
+            String[] status = new String[size];
+            Long[] duration = new Long[size];
+            Long[] eventSeq = new Long[size];
+            Integer[] retryCount = new Integer[size];
+
+            for (int i = 0; i < size; i++) {
+                HostItem h = hosts.get(i);
+                instanceIds[i] = h.key().instanceId();
+                instanceCreatedAt[i] = h.key().instanceCreatedAt();
+                host[i] = h.key().host();
+                hostGroup[i] = h.key().hostGroup();
+                status[i] = h.status();
+                duration[i] = h.duration();
+                eventSeq[i] = h.eventSeq();
+                retryCount[i] = h.retryCount();
+            }
+
+            Table<Record> rows = table("unnest({0}::uuid[], {1}::timestamp[], {2}::varchar[], {3}::varchar[], {4}::varchar[], {5}::bigint[], {6}::bigint[], {7}::int[]) " +
+                            "as r(INSTANCE_ID, INSTANCE_CREATED_AT, HOST, HOST_GROUP, STATUS, DURATION, EVENT_SEQ, RETRY_COUNT)",
+                    val(instanceIds), val(instanceCreatedAt), val(host), val(hostGroup), val(status), val(duration), val(eventSeq), val(retryCount));
+
+            Condition retried = ANSIBLE_HOSTS.RETRY_COUNT.notEqual(excluded(ANSIBLE_HOSTS.RETRY_COUNT));
+            Condition keepCurrentStatus = decodeStatus(choose(ANSIBLE_HOSTS.STATUS))
+                    .greaterThan(decodeStatus(choose(excluded(ANSIBLE_HOSTS.STATUS))));
+
+            int inserted = tx.insertInto(ANSIBLE_HOSTS)
+                    .columns(ANSIBLE_HOSTS.INSTANCE_ID,
+                            ANSIBLE_HOSTS.INSTANCE_CREATED_AT,
+                            ANSIBLE_HOSTS.HOST,
+                            ANSIBLE_HOSTS.HOST_GROUP,
+                            ANSIBLE_HOSTS.STATUS,
+                            ANSIBLE_HOSTS.DURATION,
+                            ANSIBLE_HOSTS.EVENT_SEQ,
+                            ANSIBLE_HOSTS.RETRY_COUNT)
+                    .select(select(field("r.INSTANCE_ID", UUID.class),
+                            field("r.INSTANCE_CREATED_AT", Timestamp.class),
+                            field("r.HOST", String.class),
+                            field("r.HOST_GROUP", String.class),
+                            field("r.STATUS", String.class),
+                            field("r.DURATION", Long.class),
+                            field("r.EVENT_SEQ", Long.class),
+                            field("r.RETRY_COUNT", Integer.class))
+                            .from(rows))
+                    .onConflict(ANSIBLE_HOSTS.INSTANCE_ID, ANSIBLE_HOSTS.INSTANCE_CREATED_AT, ANSIBLE_HOSTS.HOST, ANSIBLE_HOSTS.HOST_GROUP)
+                    .doUpdate()
+                    .set(ANSIBLE_HOSTS.DURATION, when(retried, excluded(ANSIBLE_HOSTS.DURATION))
+                            .otherwise(ANSIBLE_HOSTS.DURATION.plus(excluded(ANSIBLE_HOSTS.DURATION))))
+                    .set(ANSIBLE_HOSTS.STATUS, when(retried, excluded(ANSIBLE_HOSTS.STATUS))
+                            .when(keepCurrentStatus, ANSIBLE_HOSTS.STATUS)
+                            .otherwise(excluded(ANSIBLE_HOSTS.STATUS)))
+                    .set(ANSIBLE_HOSTS.EVENT_SEQ, when(retried, excluded(ANSIBLE_HOSTS.EVENT_SEQ))
+                            .when(keepCurrentStatus, ANSIBLE_HOSTS.EVENT_SEQ)
+                            .otherwise(excluded(ANSIBLE_HOSTS.EVENT_SEQ)))
+                    .set(ANSIBLE_HOSTS.RETRY_COUNT, excluded(ANSIBLE_HOSTS.RETRY_COUNT))
+                    .execute();
+
+            log.debug("insert -> upserted: {}", inserted);
         }
 
         public void updateMarkers(DSLContext tx, String processorName, List<EventMarker> markers, MarkerStatus status) {
@@ -334,8 +479,81 @@ public class AnsibleEventProcessor implements ScheduledTask {
             }
         }
 
-        public void updateMarker(String processorName, EventMarker marker, MarkerStatus status) {
-            tx(tx -> updateMarker(tx, processorName, marker, status));
+        public void createMarker(String processorName, EventMarker marker) {
+            tx(tx -> tx.insertInto(EVENT_PROCESSOR_MARKER)
+                    .columns(EVENT_PROCESSOR_MARKER.PROCESSOR_NAME,
+                            EVENT_PROCESSOR_MARKER.START_FROM,
+                            EVENT_PROCESSOR_MARKER.END_TO,
+                            EVENT_PROCESSOR_MARKER.EVENT_DATE,
+                            EVENT_PROCESSOR_MARKER.EVENT_SEQ,
+                            EVENT_PROCESSOR_MARKER.STATUS)
+                    .values(processorName, marker.startFrom(), marker.endTo(), marker.eventDate(), marker.eventSeq(), MarkerStatus.IN_PROCESS.name())
+                    .onConflictDoNothing()
+                    .execute());
+        }
+
+        /**
+         * Locks the next available marker. The markers locked by other
+         * workers (or other server instances) are skipped.
+         */
+        public EventMarker claimMarker(DSLContext tx, String processorName, Collection<Timestamp> exclude) {
+            SelectConditionStep<EventProcessorMarkerRecord> q = tx.selectFrom(EVENT_PROCESSOR_MARKER)
+                    .where(EVENT_PROCESSOR_MARKER.PROCESSOR_NAME.eq(processorName)
+                            .and(EVENT_PROCESSOR_MARKER.STATUS.eq(MarkerStatus.IN_PROCESS.name())));
+
+            if (!exclude.isEmpty()) {
+                q.and(EVENT_PROCESSOR_MARKER.START_FROM.notIn(exclude));
+            }
+
+            return q.orderBy(EVENT_PROCESSOR_MARKER.START_FROM.desc())
+                    .limit(1)
+                    .forUpdate()
+                    .skipLocked()
+                    .fetchOne(AnsibleEventDao::toMarker);
+        }
+
+        /**
+         * Returns the lag of the marker that is furthest behind: the sequence number
+         * of the newest unprocessed ansible event in the marker's range and the
+         * marker's position. Returns {@code null} if all markers are up to date.
+         */
+        public Lag getLag(String processorName) {
+            return txResult(tx -> {
+                List<EventMarker> markers = tx.selectFrom(EVENT_PROCESSOR_MARKER)
+                        .where(EVENT_PROCESSOR_MARKER.PROCESSOR_NAME.eq(processorName)
+                                .and(EVENT_PROCESSOR_MARKER.STATUS.eq(MarkerStatus.IN_PROCESS.name())))
+                        .fetch(AnsibleEventDao::toMarker);
+
+                ProcessEvents pe = PROCESS_EVENTS.as("pe");
+
+                Lag result = null;
+                for (EventMarker m : markers) {
+                    SelectConditionStep<Record1<Long>> q = tx.select(max(pe.EVENT_SEQ))
+                            .from(pe)
+                            .where(pe.EVENT_TYPE.eq(Constants.EVENT_TYPE)
+                                    .and(pe.INSTANCE_CREATED_AT.greaterOrEqual(m.startFrom()))
+                                    .and(pe.EVENT_SEQ.greaterThan(m.eventSeq())));
+
+                    if (m.endTo() != null) {
+                        q.and(pe.INSTANCE_CREATED_AT.lessThan(m.endTo()));
+                    }
+
+                    Long lastSeq = q.fetchOne(Record1::value1);
+                    if (lastSeq == null) {
+                        continue;
+                    }
+
+                    if (result == null || lastSeq - m.eventSeq() > result.lastSeq() - result.processedSeq()) {
+                        result = ImmutableLag.builder()
+                                .lastSeq(lastSeq)
+                                .processedSeq(m.eventSeq())
+                                .processedDate(m.eventDate())
+                                .build();
+                    }
+                }
+
+                return result;
+            });
         }
 
         public void updateMarker(DSLContext tx, String processorName, EventMarker marker, MarkerStatus status) {
@@ -367,93 +585,23 @@ public class AnsibleEventProcessor implements ScheduledTask {
                     .where(EVENT_PROCESSOR_MARKER.PROCESSOR_NAME.eq(processorName)
                             .and(EVENT_PROCESSOR_MARKER.STATUS.eq(MarkerStatus.IN_PROCESS.name())))
                     .orderBy(EVENT_PROCESSOR_MARKER.START_FROM.desc()))
-                    .fetch(e -> EventMarker.builder()
-                            .startFrom(e.getStartFrom())
-                            .endTo(e.getEndTo())
-                            .eventDate(e.getEventDate())
-                            .eventSeq(e.getEventSeq())
-                            .build());
-        }
-
-        private int[] update(DSLContext tx, Connection conn, List<HostItem> hosts) throws SQLException {
-            Field<Integer> currentStatusWeight = decodeStatus(choose(ANSIBLE_HOSTS.STATUS));
-            Field<Integer> newStatusWeight = decodeStatus(choose(value((String) null)));
-
-            String update = tx.update(ANSIBLE_HOSTS)
-                    .set(ANSIBLE_HOSTS.DURATION, when(ANSIBLE_HOSTS.RETRY_COUNT.notEqual((Integer)null), value((Long)null)).otherwise(ANSIBLE_HOSTS.DURATION.plus(value((Integer) null))))
-                    .set(ANSIBLE_HOSTS.STATUS, when(ANSIBLE_HOSTS.RETRY_COUNT.notEqual((Integer)null), value((String)null)).otherwise(when(currentStatusWeight.greaterThan(newStatusWeight), ANSIBLE_HOSTS.STATUS).otherwise(value((String) null))))
-                    .set(ANSIBLE_HOSTS.EVENT_SEQ, when(ANSIBLE_HOSTS.RETRY_COUNT.notEqual((Integer)null), value((Long)null)).otherwise(when(currentStatusWeight.greaterThan(newStatusWeight), ANSIBLE_HOSTS.EVENT_SEQ).otherwise(value((Long) null))))
-                    .set(ANSIBLE_HOSTS.RETRY_COUNT, (Integer)null)
-                    .where(ANSIBLE_HOSTS.INSTANCE_ID.eq(value((UUID) null))
-                            .and(ANSIBLE_HOSTS.INSTANCE_CREATED_AT.eq(value((Timestamp) null))
-                                    .and(ANSIBLE_HOSTS.HOST.eq(value((String) null))
-                                            .and(ANSIBLE_HOSTS.HOST_GROUP.eq(value((String) null))))))
-                    .getSQL();
-
-            try (PreparedStatement ps = conn.prepareStatement(update)) {
-                for (HostItem h : hosts) {
-                    // set duration
-                    ps.setInt(1, h.retryCount());
-                    ps.setLong(2, h.duration());
-                    ps.setLong(3, h.duration());
-
-                    // set status
-                    ps.setInt(4, h.retryCount());
-                    ps.setString(5, h.status());
-                    ps.setString(6, h.status());
-                    ps.setString(7, h.status());
-
-                    // set event seq
-                    ps.setInt(8, h.retryCount());
-                    ps.setLong(9, h.eventSeq());
-                    ps.setString(10, h.status());
-                    ps.setLong(11, h.eventSeq());
-
-                    //set retry count
-                    ps.setInt(12, h.retryCount());
-
-                    ps.setObject(13, h.key().instanceId());
-                    ps.setTimestamp(14, h.key().instanceCreatedAt());
-                    ps.setString(15, h.key().host());
-                    ps.setString(16, h.key().hostGroup());
-
-                    ps.addBatch();
-                }
-                return ps.executeBatch();
-            }
+                    .fetch(AnsibleEventDao::toMarker);
         }
 
-        private void insert(DSLContext tx, Connection conn, List<HostItem> hosts) throws SQLException {
-            String insert = tx.insertInto(ANSIBLE_HOSTS)
-                    .columns(ANSIBLE_HOSTS.INSTANCE_ID,
-                            ANSIBLE_HOSTS.INSTANCE_CREATED_AT,
-                            ANSIBLE_HOSTS.HOST,
-                            ANSIBLE_HOSTS.HOST_GROUP,
-                            ANSIBLE_HOSTS.STATUS,
-                            ANSIBLE_HOSTS.DURATION,
-                            ANSIBLE_HOSTS.EVENT_SEQ,
-                            ANSIBLE_HOSTS.RETRY_COUNT)
-                    .values(value((UUID) null), null, null, null, null, null, null, null)
-                    .getSQL();
-
-            try (PreparedStatement ps = conn.prepareStatement(insert)) {
-                for (HostItem h : hosts) {
-                    ps.setObject(1, h.key().instanceId());
-                    ps.setTimestamp(2, h.key().instanceCreatedAt());
-                    ps.setString(3, h.key().host());
-                    ps.setString(4, h.key().hostGroup());
-                    ps.setString(5, h.status());
-                    ps.setLong(6, h.duration());
-                    ps.setLong(7, h.eventSeq());
-                    ps.setLong(8, h.retryCount());
-
-                    ps.addBatch();
-                }
-                ps.executeBatch();
-            }
+        private static EventMarker toMarker(EventProcessorMarkerRecord r) {
+            return EventMarker.builder()
+                    .startFrom(r.getStartFrom())
+                    .endTo(r.getEndTo())
+                    .eventDate(r.getEventDate())
+                    .eventSeq(r.getEventSeq())
+                    .build();
+        }
+
+        private static <T> Field<T> excluded(Field<T> f) {
+            return field("excluded.{0}", f.getType(), name(f.getName()));
         }
 
-        private Field<Integer> decodeStatus(CaseValueStep<String> choose) {
+        private static Field<Integer> decodeStatus(CaseValueStep<String> choose) {
             return choose
                     .when(inline(Status.FAILED.name()), inline(Status.FAILED.weight))
                     .when(inline(Status.UNREACHABLE.name()), inline(Status.UNREACHABLE.weight))
@@ -580,6 +728,16 @@ public class AnsibleEventProcessor implements ScheduledTask {
         }
     }
 
+    @Value.Immutable
+    public interface Lag {
+
+        long lastSeq();
+
+        long processedSeq();
+
+        Timestamp processedDate();
+    }
+
     public enum MarkerStatus {
         IN_PROCESS,
         DONE
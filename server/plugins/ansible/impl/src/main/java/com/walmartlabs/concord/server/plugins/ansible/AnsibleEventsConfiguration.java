@@ -39,12 +39,17 @@ public class AnsibleEventsConfiguration implements Serializable {
     @Config("ansibleEvents.fetchLimit")
     private int fetchLimit;
 
+    @Inject
+    @Config("ansibleEvents.workers")
+    private int workers;
+
     public AnsibleEventsConfiguration() {
     }
 
-    public AnsibleEventsConfiguration(int period, int fetchLimit) {
+    public AnsibleEventsConfiguration(int period, int fetchLimit, int workers) {
         this.period = period;
         this.fetchLimit = fetchLimit;
+        this.workers = workers;
     }
 
     public int getPeriod() {
@@ -54,4 +59,8 @@ public class AnsibleEventsConfiguration implements Serializable {
     public int getFetchLimit() {
         return fetchLimit;
     }
+
+    public int getWorkers() {
+        return workers;
+    }
 }
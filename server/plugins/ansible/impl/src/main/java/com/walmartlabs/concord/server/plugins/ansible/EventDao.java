@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.plugins.ansible;
 
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.db.PgUtils;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
@@ -58,7 +59,7 @@ public class EventDao extends AbstractDao {
                             PROCESS_EVENTS.EVENT_DATA.cast(String.class))
                     .from(PROCESS_EVENTS)
                     .where(PROCESS_EVENTS.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(PROCESS_EVENTS.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())));
+                            .and(PgUtils.partitionKey(PROCESS_EVENTS.INSTANCE_CREATED_AT, processKey.getCreatedAt())));
 
             q.and(PROCESS_EVENTS.EVENT_TYPE.eq(Constants.EVENT_TYPE));
 
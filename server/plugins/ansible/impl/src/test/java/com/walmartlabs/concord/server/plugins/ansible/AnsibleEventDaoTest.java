@@ -0,0 +1,181 @@
+package com.walmartlabs.concord.server.plugins.ansible;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.DatabaseChangeLogProvider;
+import com.walmartlabs.concord.db.DatabaseConfiguration;
+import com.walmartlabs.concord.db.DatabaseModule;
+import com.walmartlabs.concord.db.MainDBChangeLogProvider;
+import com.walmartlabs.concord.server.plugins.ansible.AnsibleEventProcessor.*;
+import com.walmartlabs.concord.server.plugins.ansible.db.AnsibleDBChangeLogProvider;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.server.plugins.ansible.jooq.tables.AnsibleHosts.ANSIBLE_HOSTS;
+import static org.junit.Assert.*;
+
+@Ignore("requires a local DB instance")
+public class AnsibleEventDaoTest {
+
+    private DataSource dataSource;
+    private AnsibleEventDao dao;
+
+    @Before
+    public void setUp() {
+        Set<DatabaseChangeLogProvider> changeLogs = new HashSet<>(Arrays.asList(new MainDBChangeLogProvider(), new AnsibleDBChangeLogProvider()));
+
+        DatabaseModule db = new DatabaseModule();
+        this.dataSource = db.appDataSource(new TestDatabaseConfiguration(), new MetricRegistry(), changeLogs);
+        this.dao = new AnsibleEventDao(db.appJooqConfiguration(dataSource));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Method m = dataSource.getClass().getMethod("close");
+        m.invoke(dataSource);
+    }
+
+    @Test
+    public void testStatusPrecedence() {
+        Key key = ImmutableKey.of(UUID.randomUUID(), new Timestamp(System.currentTimeMillis()), "host", "group");
+
+        // a higher priority status replaces the current one
+        upsert(key, "OK", 1, 0);
+        assertHost(key, "OK", 1, 10);
+
+        upsert(key, "FAILED", 2, 0);
+        assertHost(key, "FAILED", 2, 20);
+
+        // a lower priority status doesn't, but the duration still adds up
+        upsert(key, "OK", 3, 0);
+        assertHost(key, "FAILED", 2, 30);
+
+        // a retry starts over
+        upsert(key, "OK", 4, 1);
+        assertHost(key, "OK", 4, 10);
+    }
+
+    @Test(timeout = 30000)
+    public void testClaimMarker() throws Exception {
+        String processorName = "test-" + UUID.randomUUID();
+
+        long now = System.currentTimeMillis();
+        Timestamp a = new Timestamp(now - TimeUnit.DAYS.toMillis(1));
+        Timestamp b = new Timestamp(now);
+
+        dao.createMarker(processorName, EventMarker.builder().startFrom(a).endTo(b).eventDate(a).eventSeq(-1).build());
+        dao.createMarker(processorName, EventMarker.builder().startFrom(b).eventDate(b).eventSeq(-1).build());
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            dao.txResult(tx -> {
+                EventMarker first = claim(tx, processorName);
+                assertNotNull(first);
+
+                // while the first marker is held, another worker gets the remaining one
+                // and the next one gets nothing
+                List<EventMarker> others = executor.submit(() -> dao.txResult(tx2 -> {
+                    EventMarker second = claim(tx2, processorName);
+                    EventMarker third = executor.submit(() -> dao.txResult(tx3 -> claim(tx3, processorName)))
+                            .get(10, TimeUnit.SECONDS);
+                    return Arrays.asList(second, third);
+                })).get(10, TimeUnit.SECONDS);
+
+                assertNotNull(others.get(0));
+                assertNotEquals(first.startFrom(), others.get(0).startFrom());
+                assertNull(others.get(1));
+
+                return null;
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private EventMarker claim(DSLContext tx, String processorName) {
+        return dao.claimMarker(tx, processorName, Collections.emptySet());
+    }
+
+    private void upsert(Key key, String status, long eventSeq, int retryCount) {
+        HostItem item = ImmutableHostItem.builder()
+                .key(key)
+                .status(status)
+                .duration(10)
+                .eventSeq(eventSeq)
+                .retryCount(retryCount)
+                .build();
+
+        dao.txResult(tx -> {
+            dao.insert(tx, Collections.singletonList(item));
+            return null;
+        });
+    }
+
+    private void assertHost(Key key, String status, long eventSeq, long duration) {
+        Record r = dao.txResult(tx -> tx.selectFrom(ANSIBLE_HOSTS)
+                .where(ANSIBLE_HOSTS.INSTANCE_ID.eq(key.instanceId())
+                        .and(ANSIBLE_HOSTS.INSTANCE_CREATED_AT.eq(key.instanceCreatedAt()))
+                        .and(ANSIBLE_HOSTS.HOST.eq(key.host()))
+                        .and(ANSIBLE_HOSTS.HOST_GROUP.eq(key.hostGroup())))
+                .fetchOne());
+
+        assertNotNull(r);
+        assertEquals(status, r.get(ANSIBLE_HOSTS.STATUS));
+        assertEquals(eventSeq, (long) r.get(ANSIBLE_HOSTS.EVENT_SEQ));
+        assertEquals(duration, (long) r.get(ANSIBLE_HOSTS.DURATION));
+    }
+
+    private static final class TestDatabaseConfiguration implements DatabaseConfiguration {
+
+        @Override
+        public String url() {
+            return "jdbc:postgresql://localhost:5432/postgres";
+        }
+
+        @Override
+        public String username() {
+            return "postgres";
+        }
+
+        @Override
+        public String password() {
+            return "q1";
+        }
+
+        @Override
+        public int maxPoolSize() {
+            return 3;
+        }
+    }
+}